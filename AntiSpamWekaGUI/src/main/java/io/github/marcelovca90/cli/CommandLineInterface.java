@@ -0,0 +1,401 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.cli;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.Constants.CLIOption;
+import io.github.marcelovca90.common.Constants.Metric;
+import io.github.marcelovca90.common.Constants.SamplingMode;
+import io.github.marcelovca90.common.MethodConfiguration;
+import io.github.marcelovca90.helper.ExecutionHelper;
+import io.github.marcelovca90.helper.ExecutionHelper.ProgressListener;
+
+public class CommandLineInterface
+{
+    private static final Logger LOGGER = LogManager.getLogger(CommandLineInterface.class);
+
+    // exit codes, so that job schedulers can tell a failed experiment from a misconfigured one
+    public static final int EXIT_SUCCESS = 0;
+    public static final int EXIT_FAILED_CELLS = 1;
+    public static final int EXIT_USAGE = 2;
+    public static final int EXIT_ERROR = 3;
+    public static final int EXIT_CANCELLED = 4;
+
+    // how long a shutdown waits for the experiment to stop its running runs
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    // log4j2 does not shut down on its own (see log4j2.xml), so that the results of the experiment are logged until it finishes
+    public static void main(String[] args)
+    {
+        int exitCode = execute(args);
+        LogManager.shutdown();
+        System.exit(exitCode);
+    }
+
+    // parses the arguments, runs the experiment they describe and returns the exit code
+    public static int execute(String[] args)
+    {
+        Options options = buildOptions();
+
+        try
+        {
+            CommandLine line = new DefaultParser().parse(options, args);
+
+            if (line.hasOption(getLongName(CLIOption.HELP)))
+            {
+                printUsage(options);
+                return EXIT_SUCCESS;
+            }
+
+            setUpExecutionHelper(line);
+        }
+        catch (ParseException | IllegalArgumentException | IOException e)
+        {
+            System.err.println(e.getMessage());
+            printUsage(options);
+            return EXIT_USAGE;
+        }
+
+        // on SIGTERM/SIGINT (e.g. a job scheduler's time limit), cancel the experiment and wait for it to wind down, so that
+        // the runs completed so far stay checkpointed and the results of finished cells are flushed; only then is log4j2 shut
+        // down, since the virtual machine may halt before main gets to do it
+        CountDownLatch finished = new CountDownLatch(1);
+        Thread shutdownHook = new Thread(() ->
+        {
+            ExecutionHelper.cancel();
+            try
+            {
+                finished.await(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                LogManager.shutdown();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        try
+        {
+            boolean succeeded = ExecutionHelper.searchSpaces.isEmpty() ? ExecutionHelper.run() : ExecutionHelper.search();
+
+            if (ExecutionHelper.isCancelled())
+                return EXIT_CANCELLED;
+
+            return succeeded ? EXIT_SUCCESS : EXIT_FAILED_CELLS;
+        }
+        catch (RuntimeException e)
+        {
+            LOGGER.error(e);
+            return EXIT_ERROR;
+        }
+        finally
+        {
+            finished.countDown();
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            }
+            catch (IllegalStateException e)
+            {
+                // the virtual machine is already shutting down
+            }
+        }
+    }
+
+    public static Options buildOptions()
+    {
+        Options options = new Options();
+
+        for (CLIOption option : CLIOption.values())
+        {
+            Option.Builder builder = Option.builder().longOpt(getLongName(option)).desc(getDescription(option));
+
+            String argumentName = getArgumentName(option);
+            if (argumentName != null)
+                builder.hasArg().argName(argumentName);
+
+            options.addOption(builder.build());
+        }
+
+        return options;
+    }
+
+    // options are written in lower case, with hyphens (e.g. SKIP_TRAIN is --skip-train)
+    public static String getLongName(CLIOption option)
+    {
+        return option.name().toLowerCase().replace('_', '-');
+    }
+
+    private static String getArgumentName(CLIOption option)
+    {
+        switch (option)
+        {
+            case METADATA:
+            case SEARCH_SPACES:
+                return "file";
+            case METHODS:
+                return "names";
+            case RUNS:
+            case MINIMUM_RUNS:
+            case FOLDS:
+            case RUN_PARALLELISM:
+            case CELL_PARALLELISM:
+            case SAMPLE_SIZE:
+            case STREAM_BATCH_SIZE:
+                return "count";
+            case RUN_TIMEOUT:
+            case CELL_TIMEOUT:
+                return "seconds";
+            case METHOD_TIMEOUTS:
+                return "budgets";
+            case TARGET_HALF_WIDTH:
+                return "points";
+            case RACING_SIGNIFICANCE:
+                return "level";
+            case CONVERGENCE_METRICS:
+                return "metrics";
+            case SAMPLING_MODE:
+                return "mode";
+            case OUTPUT_FOLDER:
+            case CACHE_FOLDER:
+                return "folder";
+            default:
+                return null;
+        }
+    }
+
+    private static String getDescription(CLIOption option)
+    {
+        switch (option)
+        {
+            case METADATA:
+                return "data sets metadata file (required)";
+            case METHODS:
+                return "comma-separated methods, e.g. NB,J48 (required)";
+            case RUNS:
+                return "number of runs per method and data set, or the maximum one with adaptive runs (default 10)";
+            case MINIMUM_RUNS:
+                return "runs executed before stopping once the results converge (default 0, always execute every run)";
+            case TARGET_HALF_WIDTH:
+                return "95% confidence interval half-width, in percentage points, at which the results converge (default 0.5)";
+            case CONVERGENCE_METRICS:
+                return "comma-separated metrics that must converge (default WEIGHTED_F_MEASURE)";
+            case RACING:
+                return "stop executing runs of methods significantly worse than the best one on the same data set";
+            case RACING_SIGNIFICANCE:
+                return "significance level of the paired t-test that drops methods from a race (default 0.05)";
+            case SEARCH_SPACES:
+                return "file of METHOD=options lines with choices, e.g. FRF=-I {50,100,200} -K 0 -S 1; searches the best options instead of running the experiment";
+            case RUN_PARALLELISM:
+                return "runs executed concurrently (default 1)";
+            case CELL_PARALLELISM:
+                return "method and data set pairs executed concurrently (default 1)";
+            case FOLDS:
+                return "folds of a stratified cross-validation executed as each run, instead of a holdout (default 0, holdout)";
+            case RUN_TIMEOUT:
+                return "time budget of each run, after which it is interrupted and recorded as timed out (default 0, no budget)";
+            case METHOD_TIMEOUTS:
+                return "comma-separated run time budgets of specific methods, e.g. SMO=3600,A2DE=7200";
+            case CELL_TIMEOUT:
+                return "time budget of all runs of a method on a data set (default 0, no budget)";
+            case BALANCE_BY_WEIGHT:
+                return "match the class cardinalities by weighting the minority class instead of replicating its instances";
+            case SHARED_STORE:
+                return "map the prepared data sets off the heap from their columnar caches, so that processes running on the same host share them";
+            case SAMPLE_SIZE:
+                return "instances sampled from the raw files of each data set, reading only their records (default 0, all instances)";
+            case SAMPLING_MODE:
+                return "RANDOM, STRATIFIED (same class proportions) or BALANCED (same amount of each class) sampling (default STRATIFIED)";
+            case STREAM_BATCH_SIZE:
+                return "instances read at a time from the files of each data set to train updateable methods incrementally, never holding the data set "
+                    + "in memory (default 0, whole data set in memory)";
+            case OUTPUT_FOLDER:
+                return "folder of the results files (default logs)";
+            case CACHE_FOLDER:
+                return "folder of the attribute selections, run checkpoints and run durations (default cache)";
+            case CHECKPOINT_RUNS:
+                return "checkpoint completed runs, replaying them in later executions on unchanged data sets instead of executing them again";
+            case NO_CACHE:
+                return "always recompute attribute selections and runs";
+            case HELP:
+                return "print this message";
+            default:
+                return option.name().toLowerCase().replace('_', ' ');
+        }
+    }
+
+    private static void setUpExecutionHelper(CommandLine line) throws IOException
+    {
+        // output settings come first, so that everything else is logged to the right place
+        if (line.hasOption(getLongName(CLIOption.OUTPUT_FOLDER)))
+            ExecutionHelper.setUpOutputFolder(line.getOptionValue(getLongName(CLIOption.OUTPUT_FOLDER)));
+        if (line.hasOption(getLongName(CLIOption.NO_CACHE)))
+            ExecutionHelper.setUpCacheFolder(null);
+        else if (line.hasOption(getLongName(CLIOption.CACHE_FOLDER)))
+            ExecutionHelper.setUpCacheFolder(line.getOptionValue(getLongName(CLIOption.CACHE_FOLDER)));
+        ExecutionHelper.checkpointRuns = line.hasOption(getLongName(CLIOption.CHECKPOINT_RUNS));
+
+        // anti spam settings
+        ExecutionHelper.setUpMetadata(getRequiredValue(line, CLIOption.METADATA));
+        ExecutionHelper.setUpMethods(parseMethodNames(getRequiredValue(line, CLIOption.METHODS)));
+        ExecutionHelper.numberOfRuns = getCount(line, CLIOption.RUNS, 10, 0);
+        ExecutionHelper.runParallelism = getCount(line, CLIOption.RUN_PARALLELISM, 1, 1);
+        ExecutionHelper.cellParallelism = getCount(line, CLIOption.CELL_PARALLELISM, 1, 1);
+        ExecutionHelper.folds = getCount(line, CLIOption.FOLDS, 0, 0);
+
+        // adaptive run settings
+        ExecutionHelper.minimumRuns = getCount(line, CLIOption.MINIMUM_RUNS, 0, 0);
+        ExecutionHelper.targetHalfWidth = getAmount(line, CLIOption.TARGET_HALF_WIDTH, 0.5);
+        ExecutionHelper.setUpConvergenceMetrics(line.getOptionValue(getLongName(CLIOption.CONVERGENCE_METRICS), Metric.WEIGHTED_F_MEASURE.name()));
+
+        // racing settings
+        ExecutionHelper.racing = line.hasOption(getLongName(CLIOption.RACING));
+        ExecutionHelper.racingSignificance = getAmount(line, CLIOption.RACING_SIGNIFICANCE, 0.05);
+
+        // search settings
+        if (line.hasOption(getLongName(CLIOption.SEARCH_SPACES)))
+            ExecutionHelper.setUpSearchSpaces(line.getOptionValue(getLongName(CLIOption.SEARCH_SPACES)));
+        else
+            ExecutionHelper.searchSpaces = new EnumMap<>(MethodConfiguration.class);
+
+        // time budget settings
+        ExecutionHelper.runTimeout = 1000L * getCount(line, CLIOption.RUN_TIMEOUT, 0, 0);
+        ExecutionHelper.setUpMethodTimeouts(line.getOptionValue(getLongName(CLIOption.METHOD_TIMEOUTS), ""));
+        ExecutionHelper.cellTimeout = 1000L * getCount(line, CLIOption.CELL_TIMEOUT, 0, 0);
+
+        // run settings
+        ExecutionHelper.skipTrain = line.hasOption(getLongName(CLIOption.SKIP_TRAIN));
+        ExecutionHelper.skipTest = line.hasOption(getLongName(CLIOption.SKIP_TEST));
+        ExecutionHelper.shrinkFeatures = line.hasOption(getLongName(CLIOption.SHRINK_FEATURES));
+        ExecutionHelper.balanceClasses = line.hasOption(getLongName(CLIOption.BALANCE_CLASSES));
+        ExecutionHelper.balanceByWeight = line.hasOption(getLongName(CLIOption.BALANCE_BY_WEIGHT));
+        ExecutionHelper.includeEmpty = line.hasOption(getLongName(CLIOption.INCLUDE_EMPTY));
+        ExecutionHelper.removeOutliers = line.hasOption(getLongName(CLIOption.REMOVE_OUTLIERS));
+        ExecutionHelper.mapRawFiles = line.hasOption(getLongName(CLIOption.MAP_RAW_FILES));
+        ExecutionHelper.sharedStore = line.hasOption(getLongName(CLIOption.SHARED_STORE));
+        ExecutionHelper.sampleSize = getCount(line, CLIOption.SAMPLE_SIZE, 0, 0);
+        ExecutionHelper.streamBatchSize = getCount(line, CLIOption.STREAM_BATCH_SIZE, 0, 0);
+        ExecutionHelper.samplingMode = SamplingMode.valueOf(line.getOptionValue(getLongName(CLIOption.SAMPLING_MODE), SamplingMode.STRATIFIED.name()).trim().toUpperCase());
+        ExecutionHelper.saveArff = line.hasOption(getLongName(CLIOption.SAVE_ARFF));
+        ExecutionHelper.saveModel = line.hasOption(getLongName(CLIOption.SAVE_MODEL));
+        ExecutionHelper.saveSets = line.hasOption(getLongName(CLIOption.SAVE_SETS));
+        ExecutionHelper.emailResults = false;
+
+        // progress settings
+        ExecutionHelper.progressListener = new LoggingProgressListener();
+    }
+
+    private static String getRequiredValue(CommandLine line, CLIOption option)
+    {
+        String value = line.getOptionValue(getLongName(option));
+        if (value == null)
+            throw new IllegalArgumentException("Missing required option: " + getLongName(option));
+        return value;
+    }
+
+    private static int getCount(CommandLine line, CLIOption option, int defaultValue, int minimumValue)
+    {
+        String value = line.getOptionValue(getLongName(option));
+        int count = value == null ? defaultValue : Integer.parseInt(value.trim());
+        if (count < minimumValue)
+            throw new IllegalArgumentException(String.format("Option %s must be at least %d: %d", getLongName(option), minimumValue, count));
+        return count;
+    }
+
+    private static double getAmount(CommandLine line, CLIOption option, double defaultValue)
+    {
+        String value = line.getOptionValue(getLongName(option));
+        double amount = value == null ? defaultValue : Double.parseDouble(value.trim());
+        if (!(amount > 0))
+            throw new IllegalArgumentException(String.format("Option %s must be positive: %s", getLongName(option), value));
+        return amount;
+    }
+
+    private static Set<String> parseMethodNames(String value)
+    {
+        return Arrays
+            .stream(value.split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .map(String::toUpperCase)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static void printUsage(Options options)
+    {
+        PrintWriter writer = new PrintWriter(System.err);
+        new HelpFormatter().printHelp(writer, HelpFormatter.DEFAULT_WIDTH, "java " + CommandLineInterface.class.getName(), null, options,
+            HelpFormatter.DEFAULT_LEFT_PAD, HelpFormatter.DEFAULT_DESC_PAD, null, true);
+        writer.flush();
+    }
+
+    // logs the progress every tenth of the experiment, instead of on every run
+    private static class LoggingProgressListener implements ProgressListener
+    {
+        private final AtomicInteger finishedRuns = new AtomicInteger();
+        private volatile int totalRuns;
+
+        @Override
+        public void started(int totalRuns)
+        {
+            this.totalRuns = totalRuns;
+            finishedRuns.set(0);
+            LOGGER.info("Started {} runs.", totalRuns);
+        }
+
+        @Override
+        public void runFinished()
+        {
+            int runs = finishedRuns.incrementAndGet();
+            if (totalRuns > 0 && runs * 10 / totalRuns != (runs - 1) * 10 / totalRuns)
+                LOGGER.info("Finished {} of {} runs.", runs, totalRuns);
+        }
+    }
+
+    // used to suppress the default public constructor
+    private CommandLineInterface()
+    {
+    }
+}
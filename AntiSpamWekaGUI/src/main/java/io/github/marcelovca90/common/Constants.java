@@ -28,15 +28,38 @@ public class Constants
         METADATA,
         METHODS,
         RUNS,
+        MINIMUM_RUNS,
+        TARGET_HALF_WIDTH,
+        CONVERGENCE_METRICS,
+        RACING,
+        RACING_SIGNIFICANCE,
+        SEARCH_SPACES,
+        RUN_PARALLELISM,
+        CELL_PARALLELISM,
+        FOLDS,
+        RUN_TIMEOUT,
+        METHOD_TIMEOUTS,
+        CELL_TIMEOUT,
         SKIP_TRAIN,
         SKIP_TEST,
         SHRINK_FEATURES,
         BALANCE_CLASSES,
+        BALANCE_BY_WEIGHT,
         INCLUDE_EMPTY,
         REMOVE_OUTLIERS,
+        MAP_RAW_FILES,
+        SHARED_STORE,
+        SAMPLE_SIZE,
+        SAMPLING_MODE,
+        STREAM_BATCH_SIZE,
         SAVE_ARFF,
         SAVE_MODEL,
-        SAVE_SETS
+        SAVE_SETS,
+        OUTPUT_FOLDER,
+        CACHE_FOLDER,
+        CHECKPOINT_RUNS,
+        NO_CACHE,
+        HELP
     }
 
     public enum MessageType
@@ -45,6 +68,13 @@ public class Constants
         SPAM
     }
 
+    public enum SamplingMode
+    {
+        RANDOM,
+        STRATIFIED,
+        BALANCED
+    }
+
     public enum Metric
     {
         HAM_PRECISION,
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.common;
+
+public class ExperimentCell
+{
+    // LibSVM allocates its kernel cache (the -M option, in megabytes) on top of the data
+    private static final long LIBSVM_CACHE_BYTES = 1024L * 1024L * 1024L;
+
+    private MethodConfiguration method;
+    private DataSetMetadata metadata;
+    private long estimatedBytes;
+    private int numberOfInstances;
+    private int numberOfFeatures;
+    private double predictedMillis = Double.NaN;
+
+    public ExperimentCell(MethodConfiguration method, DataSetMetadata metadata, long dataSetBytes)
+    {
+        this(method, metadata, dataSetBytes, 0, 0);
+    }
+
+    public ExperimentCell(MethodConfiguration method, DataSetMetadata metadata, long dataSetBytes, int numberOfInstances, int numberOfFeatures)
+    {
+        super();
+        this.method = method;
+        this.metadata = metadata;
+        this.estimatedBytes = estimateBytes(method, dataSetBytes);
+        this.numberOfInstances = numberOfInstances;
+        this.numberOfFeatures = numberOfFeatures;
+    }
+
+    public MethodConfiguration getMethod()
+    {
+        return method;
+    }
+
+    public DataSetMetadata getMetadata()
+    {
+        return metadata;
+    }
+
+    public long getEstimatedBytes()
+    {
+        return estimatedBytes;
+    }
+
+    public int getNumberOfInstances()
+    {
+        return numberOfInstances;
+    }
+
+    public int getNumberOfFeatures()
+    {
+        return numberOfFeatures;
+    }
+
+    // predicted duration of all the cell's runs, or NaN if it cannot be predicted
+    public double getPredictedMillis()
+    {
+        return predictedMillis;
+    }
+
+    public void setPredictedMillis(double predictedMillis)
+    {
+        this.predictedMillis = predictedMillis;
+    }
+
+    // estimates the heap needed to run the method on a data set (the data set itself, plus the classifier's working memory)
+    public static long estimateBytes(MethodConfiguration method, long dataSetBytes)
+    {
+        long bytes = dataSetBytes + (long) (getClassifierFactor(method) * dataSetBytes);
+
+        if (method == MethodConfiguration.LIBSVM)
+            bytes += LIBSVM_CACHE_BYTES;
+
+        return bytes;
+    }
+
+    // rough ratio between the classifier's working memory and the size of the data set it is trained on
+    public static double getClassifierFactor(MethodConfiguration method)
+    {
+        switch (method)
+        {
+            // only keep per-class summaries of the data
+            case HP:
+            case NB:
+            case NBU:
+                return 0.1;
+
+            // trees, rules and linear learners, which keep at most a filtered copy of the data
+            case BFTREE:
+            case CART:
+            case DTNB:
+            case FURIA:
+            case J48:
+            case J48C:
+            case J48G:
+            case JRIP:
+            case NBTREE:
+            case RT:
+            case SGD:
+            case SPEGASOS:
+                return 0.5;
+
+            // learners that convert the whole data set to their own sparse representation
+            case A2DE:
+            case LIBLINEAR:
+                return 2.0;
+            case LIBSVM:
+                return 3.0;
+
+            // instance-based, ensemble, kernel and neural learners, which keep (copies of) the data
+            default:
+                return 1.0;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ExperimentCell [method=" + method + ", folder=" + metadata.getFolder() + ", estimatedBytes=" + estimatedBytes + ", predictedMillis=" + predictedMillis + "]";
+    }
+}
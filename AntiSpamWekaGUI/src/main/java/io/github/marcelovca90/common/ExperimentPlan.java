@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.common;
+
+import java.util.List;
+
+public class ExperimentPlan
+{
+    private List<ExperimentCell> cells;
+    private int workers;
+    private double projectedMakespanMillis;
+    private int unpredictedCells;
+
+    public ExperimentPlan(List<ExperimentCell> cells, int workers, double projectedMakespanMillis, int unpredictedCells)
+    {
+        super();
+        this.cells = cells;
+        this.workers = workers;
+        this.projectedMakespanMillis = projectedMakespanMillis;
+        this.unpredictedCells = unpredictedCells;
+    }
+
+    // cells in the order they should be executed
+    public List<ExperimentCell> getCells()
+    {
+        return cells;
+    }
+
+    public int getWorkers()
+    {
+        return workers;
+    }
+
+    // projected duration of the whole experiment, considering only the cells whose duration could be predicted
+    public double getProjectedMakespanMillis()
+    {
+        return projectedMakespanMillis;
+    }
+
+    // number of cells whose duration could not be predicted, for lack of history
+    public int getUnpredictedCells()
+    {
+        return unpredictedCells;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ExperimentPlan [cells=" + cells.size() + ", workers=" + workers + ", projectedMakespanMillis=" + projectedMakespanMillis + ", unpredictedCells=" + unpredictedCells + "]";
+    }
+}
@@ -21,11 +21,19 @@
  ******************************************************************************/
 package io.github.marcelovca90.common;
 
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import io.github.marcelovca90.data.AttributeSelectionStore;
+import io.github.marcelovca90.data.AttributeSelectionStore.Selection;
 import weka.attributeSelection.ASEvaluation;
 import weka.attributeSelection.ASSearch;
+import weka.attributeSelection.AttributeTransformer;
 import weka.attributeSelection.BestFirst;
 import weka.attributeSelection.CfsSubsetEval;
 import weka.attributeSelection.CorrelationAttributeEval;
@@ -45,6 +53,7 @@ import weka.attributeSelection.ReliefFAttributeEval;
 import weka.attributeSelection.SVMAttributeEval;
 import weka.attributeSelection.ScatterSearchV1;
 import weka.attributeSelection.SignificanceAttributeEval;
+import weka.attributeSelection.SubsetEvaluator;
 import weka.attributeSelection.SymmetricalUncertAttributeEval;
 import weka.attributeSelection.SymmetricalUncertAttributeSetEval;
 import weka.attributeSelection.TabuSearch;
@@ -57,14 +66,17 @@ import weka.filters.supervised.instance.ClassBalancer;
 import weka.filters.supervised.instance.Resample;
 import weka.filters.supervised.instance.SpreadSubsample;
 import weka.filters.supervised.instance.StratifiedRemoveFolds;
+import weka.filters.unsupervised.attribute.Reorder;
 
 public class FilterConfiguration
 {
     private static final Logger LOGGER = LogManager.getLogger(FilterConfiguration.class);
-    private static final int NO_CORES = Runtime.getRuntime().availableProcessors();
-    private static final String CFS_SUBSET_EVAL_CONFIG = String.format("-Z -P %d -E %d", NO_CORES, NO_CORES);
+    // the pool size and number of threads (-P and -E) are set when the evaluator is built, according to the thread budget
+    private static final String CFS_SUBSET_EVAL_CONFIG = "-Z";
     private static final String RANKER_CONFIG = "-T -1.7976931348623157E308 -N -1";
 
+    private static AttributeSelectionStore attributeSelectionStore = new AttributeSelectionStore(Paths.get("cache", "attribute-selection"));
+
     public enum AttributeFilter
     {
         // Correlation-based Feature Subset Selection
@@ -164,13 +176,48 @@ public class FilterConfiguration
         }
     }
 
+    public static AttributeSelectionStore getAttributeSelectionStore()
+    {
+        return attributeSelectionStore;
+    }
+
+    // sets the store of attribute selection results (null disables it)
+    public static void setAttributeSelectionStore(AttributeSelectionStore attributeSelectionStore)
+    {
+        FilterConfiguration.attributeSelectionStore = attributeSelectionStore;
+    }
+
     public static Instances buildAndApply(Instances dataSet, AttributeFilter filter)
+    {
+        return buildAndApply(dataSet, filter, Runtime.getRuntime().availableProcessors());
+    }
+
+    // the selection does not depend on the number of threads, so stored selections are shared regardless of it
+    public static Instances buildAndApply(Instances dataSet, AttributeFilter filter, int threads)
     {
         try
         {
             LOGGER.trace("Applying {} to the data set (numAttributes: {}).", filter.getDescription(), dataSet.numAttributes());
 
-            return Filter.useFilter(dataSet, buildAttributeFilterFor(filter, dataSet));
+            // transformers (e.g. principal components) build new attributes, so their result cannot be replayed as a projection
+            if (attributeSelectionStore == null || AttributeTransformer.class.isAssignableFrom(filter.getEvalClazz()))
+                return Filter.useFilter(dataSet, buildAttributeFilterFor(filter, dataSet, threads));
+
+            // look for a previous selection made on identical data with the same configuration
+            String key = attributeSelectionStore.buildKey(dataSet, filter.name(), filter.getEvalConfig(), filter.getSearchConfig());
+            Selection selection = attributeSelectionStore.load(key);
+
+            if (selection == null)
+            {
+                selection = selectAttributes(filter, dataSet, threads);
+                attributeSelectionStore.save(key, selection, filter.getDescription());
+            }
+            else
+            {
+                LOGGER.trace("Replaying stored selection of {} attributes.", selection.getSelectedAttributes().length - 1);
+            }
+
+            return Filter.useFilter(dataSet, buildProjectionFor(selection, dataSet));
         }
         catch (Exception e)
         {
@@ -188,10 +235,9 @@ public class FilterConfiguration
     }
 
     // remove less relevant attributes from the given data set
-    private static Filter buildAttributeFilterFor(AttributeFilter attributeFilter, Instances dataSet) throws Exception
+    private static Filter buildAttributeFilterFor(AttributeFilter attributeFilter, Instances dataSet, int threads) throws Exception
     {
-        ASEvaluation evaluator = attributeFilter.getEvalClazz().newInstance();
-        ((OptionHandler) evaluator).setOptions(Utils.splitOptions(attributeFilter.getEvalConfig()));
+        ASEvaluation evaluator = buildEvaluatorFor(attributeFilter, threads);
 
         ASSearch search = attributeFilter.getSearchClazz().newInstance();
         ((OptionHandler) search).setOptions(Utils.splitOptions(attributeFilter.getSearchConfig()));
@@ -204,6 +250,70 @@ public class FilterConfiguration
         return filter;
     }
 
+    // instantiate the attribute evaluator, limiting its internal threads to the given amount
+    private static ASEvaluation buildEvaluatorFor(AttributeFilter attributeFilter, int threads) throws Exception
+    {
+        ASEvaluation evaluator = attributeFilter.getEvalClazz().newInstance();
+        ((OptionHandler) evaluator).setOptions(Utils.splitOptions(attributeFilter.getEvalConfig()));
+
+        if (evaluator instanceof CfsSubsetEval)
+        {
+            ((CfsSubsetEval) evaluator).setPoolSize(threads);
+            ((CfsSubsetEval) evaluator).setNumThreads(threads);
+        }
+
+        return evaluator;
+    }
+
+    // run the attribute evaluator and search, keeping the selected indices and their merits
+    private static Selection selectAttributes(AttributeFilter attributeFilter, Instances dataSet, int threads) throws Exception
+    {
+        ASEvaluation evaluator = buildEvaluatorFor(attributeFilter, threads);
+
+        ASSearch search = attributeFilter.getSearchClazz().newInstance();
+        ((OptionHandler) search).setOptions(Utils.splitOptions(attributeFilter.getSearchConfig()));
+
+        weka.attributeSelection.AttributeSelection selector = new weka.attributeSelection.AttributeSelection();
+        selector.setEvaluator(evaluator);
+        selector.setSearch(search);
+        selector.SelectAttributes(dataSet);
+
+        int[] selectedAttributes = selector.selectedAttributes();
+
+        // rankers score each attribute individually, while subset evaluators score the subset as a whole
+        double[] attributeMerits = new double[0];
+        double subsetMerit = Double.NaN;
+        if (search instanceof Ranker)
+        {
+            Map<Integer, Double> merits = new HashMap<>();
+            for (double[] rankedAttribute : selector.rankedAttributes())
+                merits.put((int) rankedAttribute[0], rankedAttribute[1]);
+            attributeMerits = new double[selectedAttributes.length - 1];
+            for (int i = 0; i < attributeMerits.length; i++)
+                attributeMerits[i] = merits.getOrDefault(selectedAttributes[i], Double.NaN);
+        }
+        else if (evaluator instanceof SubsetEvaluator)
+        {
+            BitSet subset = new BitSet(dataSet.numAttributes());
+            for (int index : selectedAttributes)
+                if (index != dataSet.classIndex())
+                    subset.set(index);
+            subsetMerit = ((SubsetEvaluator) evaluator).evaluateSubset(subset);
+        }
+
+        return new Selection(selectedAttributes, attributeMerits, subsetMerit);
+    }
+
+    // keep only the selected attributes, in the order they were selected
+    private static Filter buildProjectionFor(Selection selection, Instances dataSet) throws Exception
+    {
+        Reorder filter = new Reorder();
+        filter.setAttributeIndicesArray(selection.getSelectedAttributes());
+        filter.setInputFormat(dataSet);
+
+        return filter;
+    }
+
     // remove less relevant instances from the given data set
     private static Filter buildInstanceFilterFor(InstanceFilter instanceFilter, Instances dataSet) throws Exception
     {
@@ -26,7 +26,10 @@ import org.apache.logging.log4j.Logger;
 
 import hr.irb.fastRandomForest.FastRandomForest;
 import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.ParallelIteratedSingleClassifierEnhancer;
 import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.bayes.NaiveBayesUpdateable;
 import weka.classifiers.bayes.AveragedNDependenceEstimators.A1DE;
 import weka.classifiers.bayes.AveragedNDependenceEstimators.A2DE;
 import weka.classifiers.functions.LibLINEAR;
@@ -106,6 +109,9 @@ public enum MethodConfiguration
     // http://weka.sourceforge.net/doc.stable/weka/classifiers/trees/NBTree.html
     NBTREE("Decision tree with naive Bayes classifiers at the leaves", "", NBTree.class),
 
+    // http://weka.sourceforge.net/doc.stable/weka/classifiers/bayes/NaiveBayesUpdateable.html
+    NBU("Updateable naive Bayes", "", NaiveBayesUpdateable.class),
+
     // http://weka.sourceforge.net/doc.packages/RBFNetwork/weka/classifiers/functions/RBFNetwork.html
     RBF("Radial basis function network", "-B 2 -S 1 -R 1.0E-8 -M -1 -W 0.1", RBFNetwork.class),
 
@@ -146,6 +152,48 @@ public enum MethodConfiguration
         return classifier;
     }
 
+    // dynamically instantiates a classifier for the given method configuration, limiting its internal threads to the given amount
+    public static AbstractClassifier buildClassifierFor(MethodConfiguration methodConfiguration, int threads)
+    {
+        AbstractClassifier classifier = buildClassifierFor(methodConfiguration);
+
+        limitThreads(classifier, threads);
+
+        return classifier;
+    }
+
+    // dynamically instantiates a classifier of the given method with other options than its own (e.g. while searching for them),
+    // limiting its internal threads; unlike the method's own options, invalid options are reported
+    public static AbstractClassifier buildClassifierFor(MethodConfiguration methodConfiguration, String config, int threads) throws Exception
+    {
+        AbstractClassifier classifier = methodConfiguration.getClazz().newInstance();
+
+        classifier.setOptions(Utils.splitOptions(config));
+
+        limitThreads(classifier, threads);
+
+        return classifier;
+    }
+
+    // number of threads the given classifier uses internally while it is built
+    public static int getThreadsUsedBy(Classifier classifier)
+    {
+        if (classifier instanceof FastRandomForest)
+            return Math.max(1, ((FastRandomForest) classifier).getNumThreads());
+        else if (classifier instanceof ParallelIteratedSingleClassifierEnhancer)
+            return Math.max(1, ((ParallelIteratedSingleClassifierEnhancer) classifier).getNumExecutionSlots());
+        else
+            return 1;
+    }
+
+    private static void limitThreads(AbstractClassifier classifier, int threads)
+    {
+        if (classifier instanceof FastRandomForest)
+            ((FastRandomForest) classifier).setNumThreads(threads);
+        else if (classifier instanceof ParallelIteratedSingleClassifierEnhancer)
+            ((ParallelIteratedSingleClassifierEnhancer) classifier).setNumExecutionSlots(threads);
+    }
+
     private final Class<? extends AbstractClassifier> clazz;
     private final String config;
     private final String name;
@@ -24,7 +24,10 @@ package io.github.marcelovca90.common;
 import static io.github.marcelovca90.common.Constants.MessageType.HAM;
 import static io.github.marcelovca90.common.Constants.MessageType.SPAM;
 
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -32,6 +35,10 @@ import org.apache.logging.log4j.Logger;
 import io.github.marcelovca90.common.Constants.MessageType;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
+import weka.classifiers.UpdateableClassifier;
+import weka.classifiers.evaluation.NominalPrediction;
+import weka.classifiers.evaluation.Prediction;
+import weka.core.Instance;
 import weka.core.Instances;
 
 public class MethodEvaluation
@@ -159,6 +166,24 @@ public class MethodEvaluation
         this.numberOfTotalFeatures = numberOfTotalFeatures;
     }
 
+    // adds the predictions, the instance counts and the train/test times of a cross-validation fold to this evaluation; the
+    // predictions are replayed in the order the fold's testing set was evaluated, so no instance is classified again
+    public void aggregate(MethodEvaluation fold, Instances foldTestSet) throws Exception
+    {
+        ArrayList<Prediction> predictions = fold.getEvaluation().predictions();
+        if (predictions == null || predictions.size() != foldTestSet.size())
+            throw new IllegalStateException("The fold's predictions were not recorded.");
+
+        for (int i = 0; i < predictions.size(); i++)
+            evaluation.evaluateModelOnceAndRecordPrediction(((NominalPrediction) predictions.get(i)).distribution(), foldTestSet.get(i));
+
+        fold.getTrainingSetCounts().forEach((messageType, count) -> trainingSetCounts.merge(messageType, count, Integer::sum));
+        fold.getTestingSetCounts().forEach((messageType, count) -> testingSetCounts.merge(messageType, count, Integer::sum));
+
+        trainEnd += fold.getTrainEnd() - fold.getTrainStart();
+        testEnd += fold.getTestEnd() - fold.getTestStart();
+    }
+
     // train the classifier with the given data set
     public void train(Instances trainSet)
     {
@@ -190,6 +215,12 @@ public class MethodEvaluation
 
     // test the classifier agains the given data set
     public void test(Instances testSet)
+    {
+        test(testSet, null);
+    }
+
+    // evaluate the classifier with the given data set and, if any, the weighted empty patterns
+    public void test(Instances testSet, Instances emptySet)
     {
         try
         {
@@ -208,6 +239,7 @@ public class MethodEvaluation
             LOGGER.trace("Started evaluating [{}] classifier.", classifier.getClass().getName());
             testStart = System.currentTimeMillis();
             evaluation.evaluateModel(classifier, testSet);
+            evaluateEmptyPatterns(emptySet);
             testEnd = System.currentTimeMillis();
             LOGGER.trace("Finished evaluating [{}] classifier.", classifier.getClass().getName());
         }
@@ -216,4 +248,110 @@ public class MethodEvaluation
             LOGGER.error(e);
         }
     }
+
+    // train an updateable classifier with batches of the training set, so that the training set is never held as a whole; the
+    // classifier is built with the first (non-empty) batch and then updated with each instance of the following ones
+    public void trainIncrementally(Iterator<Instances> batches)
+    {
+        try
+        {
+            trainingSetCounts.put(HAM, 0);
+            trainingSetCounts.put(SPAM, 0);
+
+            LOGGER.trace("Started building [{}] classifier incrementally.", classifier.getClass().getName());
+            trainStart = System.currentTimeMillis();
+            boolean built = false;
+            while (batches.hasNext())
+            {
+                Instances batch = batches.next();
+                if (batch.isEmpty())
+                    continue;
+
+                countInstances(batch, trainingSetCounts);
+                if (!built)
+                {
+                    classifier.buildClassifier(batch);
+                    built = true;
+                }
+                else
+                {
+                    for (Instance instance : batch)
+                        ((UpdateableClassifier) classifier).updateClassifier(instance);
+                }
+            }
+            trainEnd = System.currentTimeMillis();
+            LOGGER.trace("Finished building [{}] classifier incrementally ({} HAM, {} SPAM).", classifier.getClass().getName(), trainingSetCounts.get(HAM),
+                trainingSetCounts.get(SPAM));
+        }
+        catch (CancellationException e)
+        {
+            // the run was stopped between two batches
+            throw e;
+        }
+        catch (Exception e)
+        {
+            LOGGER.error(e);
+        }
+    }
+
+    // evaluate the classifier with batches of the testing set, so that the testing set is never held as a whole, and then with
+    // the weighted empty patterns, if any
+    public void testIncrementally(Iterator<Instances> batches, Instances emptySet)
+    {
+        try
+        {
+            testingSetCounts.put(HAM, 0);
+            testingSetCounts.put(SPAM, 0);
+
+            LOGGER.trace("Started evaluating [{}] classifier incrementally.", classifier.getClass().getName());
+            testStart = System.currentTimeMillis();
+            while (batches.hasNext())
+            {
+                Instances batch = batches.next();
+                countInstances(batch, testingSetCounts);
+                evaluation.evaluateModel(classifier, batch);
+            }
+            evaluateEmptyPatterns(emptySet);
+            testEnd = System.currentTimeMillis();
+            LOGGER.trace("Finished evaluating [{}] classifier incrementally ({} HAM, {} SPAM).", classifier.getClass().getName(), testingSetCounts.get(HAM),
+                testingSetCounts.get(SPAM));
+        }
+        catch (CancellationException e)
+        {
+            // the run was stopped between two batches
+            throw e;
+        }
+        catch (Exception e)
+        {
+            LOGGER.error(e);
+        }
+    }
+
+    private void countInstances(Instances batch, EnumMap<MessageType, Integer> counts)
+    {
+        for (Instance instance : batch)
+        {
+            if (instance.classValue() == HAM.ordinal())
+                counts.merge(HAM, 1, Integer::sum);
+            else if (instance.classValue() == SPAM.ordinal())
+                counts.merge(SPAM, 1, Integer::sum);
+        }
+    }
+
+    // the empty patterns are all the same zero vector, so the classifier is queried once and each class's pattern is recorded with
+    // its count as the weight
+    private void evaluateEmptyPatterns(Instances emptySet) throws Exception
+    {
+        if (emptySet == null || emptySet.isEmpty())
+            return;
+
+        Instance emptyInstance = (Instance) emptySet.get(0).copy();
+        emptyInstance.setClassMissing();
+        double[] distribution = classifier.distributionForInstance(emptyInstance);
+        for (Instance instance : emptySet)
+        {
+            evaluation.evaluateModelOnceAndRecordPrediction(distribution, instance);
+            testingSetCounts.merge(MessageType.values()[(int) instance.classValue()], (int) instance.weight(), Integer::sum);
+        }
+    }
 }
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+public class ParameterSpace
+{
+    // a set of choices, e.g. {50,100,200}
+    private static final Pattern CHOICES = Pattern.compile("\\{([^{}]*)\\}");
+
+    private MethodConfiguration method;
+    private String template;
+    private List<String> candidates;
+
+    // the template is an option string in which some values are replaced by their choices, e.g. -I {50,100,200} -K 0 -S 1
+    public ParameterSpace(MethodConfiguration method, String template)
+    {
+        super();
+        this.method = method;
+        this.template = template.trim();
+        this.candidates = Collections.unmodifiableList(expand(this.template));
+    }
+
+    public MethodConfiguration getMethod()
+    {
+        return method;
+    }
+
+    public String getTemplate()
+    {
+        return template;
+    }
+
+    // every option string the template describes, in the order the choices are written
+    public List<String> getCandidates()
+    {
+        return candidates;
+    }
+
+    private static List<String> expand(String template)
+    {
+        List<String> candidates = new ArrayList<>(Arrays.asList(""));
+
+        Matcher matcher = CHOICES.matcher(template);
+        int end = 0;
+        while (matcher.find())
+        {
+            String prefix = checkLiteral(template.substring(end, matcher.start()), template);
+            List<String> choices = Arrays
+                .stream(matcher.group(1).split(","))
+                .map(String::trim)
+                .filter(choice -> !choice.isEmpty())
+                .collect(Collectors.toList());
+
+            if (choices.isEmpty())
+                throw new IllegalArgumentException("Empty choices in parameter space: " + template);
+
+            List<String> expanded = new ArrayList<>();
+            for (String candidate : candidates)
+                for (String choice : choices)
+                    expanded.add(candidate + prefix + choice);
+            candidates = expanded;
+
+            end = matcher.end();
+        }
+
+        String suffix = checkLiteral(template.substring(end), template);
+
+        return candidates.stream().map(candidate -> candidate + suffix).collect(Collectors.toList());
+    }
+
+    // the text between choices must not contain unbalanced braces
+    private static String checkLiteral(String literal, String template)
+    {
+        if (literal.contains("{") || literal.contains("}"))
+            throw new IllegalArgumentException("Unbalanced braces in parameter space: " + template);
+        return literal;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ParameterSpace [method=" + method + ", template=" + template + ", candidates=" + candidates.size() + "]";
+    }
+}
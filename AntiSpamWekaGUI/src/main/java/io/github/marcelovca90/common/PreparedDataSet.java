@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.common;
+
+import io.github.marcelovca90.data.MatrixInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+public class PreparedDataSet
+{
+    // rough per-instance overhead of a DenseInstance and its backing array, in bytes
+    private static final long INSTANCE_OVERHEAD = 48L;
+
+    // rough per-instance overhead of a SparseInstance and its index and value arrays, in bytes
+    private static final long SPARSE_INSTANCE_OVERHEAD = 64L;
+
+    private Instances dataSet;
+    private int numberOfTotalFeatures;
+    private int numberOfActualFeatures;
+
+    public PreparedDataSet(Instances dataSet, int numberOfTotalFeatures)
+    {
+        super();
+        this.dataSet = dataSet;
+        this.numberOfTotalFeatures = numberOfTotalFeatures;
+        this.numberOfActualFeatures = dataSet.numAttributes() - 1;
+    }
+
+    public Instances getDataSet()
+    {
+        return dataSet;
+    }
+
+    public int getNumberOfTotalFeatures()
+    {
+        return numberOfTotalFeatures;
+    }
+
+    public int getNumberOfActualFeatures()
+    {
+        return numberOfActualFeatures;
+    }
+
+    // estimates the heap held by a data set (instances x attributes x 8 bytes, plus per-instance overhead)
+    public static long estimateBytes(long numberOfInstances, long numberOfAttributes)
+    {
+        return numberOfInstances * (numberOfAttributes * 8L + INSTANCE_OVERHEAD);
+    }
+
+    // estimates the heap held by a sparse data set (non-zero values x (4 + 8) bytes, plus per-instance overhead)
+    public static long estimateSparseBytes(long numberOfInstances, long numberOfNonZeroValues)
+    {
+        return numberOfNonZeroValues * (Integer.BYTES + Double.BYTES) + numberOfInstances * SPARSE_INSTANCE_OVERHEAD;
+    }
+
+    // estimates the heap held by the data set, which is much less when its instances are views over a matrix or sparse
+    public long getEstimatedBytes()
+    {
+        if (!dataSet.isEmpty() && dataSet.instance(0) instanceof MatrixInstance)
+            return ((MatrixInstance) dataSet.instance(0)).getMatrix().estimateBytes();
+        if (!dataSet.isEmpty() && dataSet.instance(0) instanceof SparseInstance)
+            return estimateSparseBytes(dataSet.numInstances(), dataSet.stream().mapToLong(Instance::numValues).sum());
+
+        return estimateBytes(dataSet.numInstances(), dataSet.numAttributes());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PreparedDataSet [numberOfInstances=" + dataSet.numInstances() + ", numberOfTotalFeatures=" + numberOfTotalFeatures + ", numberOfActualFeatures=" + numberOfActualFeatures + "]";
+    }
+}
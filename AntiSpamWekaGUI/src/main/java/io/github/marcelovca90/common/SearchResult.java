@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.common;
+
+public class SearchResult
+{
+    private MethodConfiguration method;
+    private String folder;
+    private String bestConfig;
+    private double bestScore;
+    private int candidates;
+    private int evaluations;
+    private long costMillis;
+
+    public SearchResult(MethodConfiguration method, String folder, String bestConfig, double bestScore, int candidates, int evaluations, long costMillis)
+    {
+        super();
+        this.method = method;
+        this.folder = folder;
+        this.bestConfig = bestConfig;
+        this.bestScore = bestScore;
+        this.candidates = candidates;
+        this.evaluations = evaluations;
+        this.costMillis = costMillis;
+    }
+
+    public MethodConfiguration getMethod()
+    {
+        return method;
+    }
+
+    public String getFolder()
+    {
+        return folder;
+    }
+
+    // option string of the candidate that won the last rung
+    public String getBestConfig()
+    {
+        return bestConfig;
+    }
+
+    // mean weighted F-measure of the best candidate on the full training set
+    public double getBestScore()
+    {
+        return bestScore;
+    }
+
+    public int getCandidates()
+    {
+        return candidates;
+    }
+
+    // number of (candidate, run) pairs trained and tested
+    public int getEvaluations()
+    {
+        return evaluations;
+    }
+
+    // training and testing time spent by all evaluations, summed over the workers
+    public long getCostMillis()
+    {
+        return costMillis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SearchResult [method=" + method + ", folder=" + folder + ", bestConfig=" + bestConfig + ", bestScore=" + bestScore + ", candidates=" + candidates
+                + ", evaluations=" + evaluations + ", costMillis=" + costMillis + "]";
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class AttributeSelectionStore
+{
+    private static final Logger LOGGER = LogManager.getLogger(AttributeSelectionStore.class);
+
+    private final Path folder;
+
+    public AttributeSelectionStore(Path folder)
+    {
+        this.folder = folder;
+    }
+
+    public Path getFolder()
+    {
+        return folder;
+    }
+
+    // builds the key of an attribute selection from the data set content and the filter configuration
+    public String buildKey(Instances dataSet, String filterName, String evalConfig, String searchConfig)
+    {
+        MessageDigest digest = newDigest();
+        digest.update(hash(dataSet).getBytes(StandardCharsets.UTF_8));
+        digest.update(String.join("\n", "", filterName, evalConfig, searchConfig).getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    // returns the stored selection for the given key, or null if it was never stored or cannot be read
+    public Selection load(String key)
+    {
+        Path file = folder.resolve(key + ".properties");
+
+        if (!Files.exists(file))
+            return null;
+
+        try (InputStream in = Files.newInputStream(file))
+        {
+            Properties properties = new Properties();
+            properties.load(in);
+
+            int[] selectedAttributes = Arrays.stream(properties.getProperty("selectedAttributes").split(",")).mapToInt(Integer::parseInt).toArray();
+            String merits = properties.getProperty("merits", "");
+            double[] attributeMerits = merits.isEmpty() ? new double[0] : Arrays.stream(merits.split(",")).mapToDouble(Double::parseDouble).toArray();
+            double subsetMerit = Double.parseDouble(properties.getProperty("subsetMerit", "NaN"));
+
+            return new Selection(selectedAttributes, attributeMerits, subsetMerit);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            LOGGER.warn("Ignoring attribute selection [{}]: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    // persists the selection under the given key; a failure here only means the selection will be recomputed
+    public void save(String key, Selection selection, String description)
+    {
+        Properties properties = new Properties();
+        properties.setProperty("selectedAttributes", Arrays.stream(selection.getSelectedAttributes()).mapToObj(String::valueOf).collect(Collectors.joining(",")));
+        properties.setProperty("merits", Arrays.stream(selection.getAttributeMerits()).mapToObj(String::valueOf).collect(Collectors.joining(",")));
+        properties.setProperty("subsetMerit", String.valueOf(selection.getSubsetMerit()));
+
+        try
+        {
+            Files.createDirectories(folder);
+            Path temporary = Files.createTempFile(folder, key, ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary))
+            {
+                properties.store(out, description);
+            }
+            Files.move(temporary, folder.resolve(key + ".properties"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Could not save attribute selection [{}]: {}", key, e.getMessage());
+        }
+    }
+
+    // computes a digest of the data set header, weights and values
+    public static String hash(Instances dataSet)
+    {
+        MessageDigest digest = newDigest();
+
+        digest.update(ByteBuffer.allocate(2 * Integer.BYTES).putInt(dataSet.numAttributes()).putInt(dataSet.classIndex()).array());
+        for (int j = 0; j < dataSet.numAttributes(); j++)
+            digest.update(dataSet.attribute(j).toString().getBytes(StandardCharsets.UTF_8));
+
+        ByteBuffer row = ByteBuffer.allocate((dataSet.numAttributes() + 1) * Double.BYTES);
+        for (Instance instance : dataSet)
+        {
+            row.clear();
+            row.putDouble(instance.weight());
+            for (int j = 0; j < dataSet.numAttributes(); j++)
+                row.putDouble(instance.value(j));
+            digest.update(row.array(), 0, row.position());
+        }
+
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder sb = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes)
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    public static class Selection
+    {
+        private final int[] selectedAttributes;
+        private final double[] attributeMerits;
+        private final double subsetMerit;
+
+        public Selection(int[] selectedAttributes, double[] attributeMerits, double subsetMerit)
+        {
+            this.selectedAttributes = selectedAttributes;
+            this.attributeMerits = attributeMerits;
+            this.subsetMerit = subsetMerit;
+        }
+
+        // indices of the selected attributes, in output order, including the class attribute
+        public int[] getSelectedAttributes()
+        {
+            return selectedAttributes;
+        }
+
+        // merit of each selected attribute (excluding the class), when the search ranks attributes individually
+        public double[] getAttributeMerits()
+        {
+            return attributeMerits;
+        }
+
+        // merit of the selected subset as a whole, when the evaluator scores subsets
+        public double getSubsetMerit()
+        {
+            return subsetMerit;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.Constants.Metric;
+import io.github.marcelovca90.common.MethodConfiguration;
+
+public class CheckpointJournal
+{
+    private static final Logger LOGGER = LogManager.getLogger(CheckpointJournal.class);
+
+    private final Path file;
+    private Map<String, Checkpoint> checkpoints;
+
+    public CheckpointJournal(Path file)
+    {
+        this.file = file;
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    public synchronized int size()
+    {
+        return getCheckpoints().size();
+    }
+
+    // builds the key of a run from everything that determines its results, including the raw files of its data set
+    public static String buildKey(MethodConfiguration method, String folder, long rawFilesFingerprint, int seed, String runSettings)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String text = String.join("\n", method.name(), method.getClazz().getName(), method.getConfig(), String.valueOf(method.getSplitPercent()), folder,
+                String.valueOf(rawFilesFingerprint), String.valueOf(seed), runSettings);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest(text.getBytes(StandardCharsets.UTF_8)))
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // returns the checkpoint of the run with the given key, or null if the run was never completed
+    public synchronized Checkpoint lookup(String key)
+    {
+        return getCheckpoints().get(key);
+    }
+
+    // appends the checkpoint of a completed run and forces it to disk, so that it survives a crash right after;
+    // a failure here only means the run will be executed again
+    public synchronized void append(String key, Checkpoint checkpoint)
+    {
+        String results = checkpoint
+            .getResults()
+            .entrySet()
+            .stream()
+            .map(e -> e.getKey().name() + "=" + e.getValue())
+            .collect(Collectors.joining(","));
+        String line = String.join("\t", key, String.valueOf(checkpoint.getNumberOfInstances()), String.valueOf(checkpoint.getNumberOfTotalFeatures()),
+            String.valueOf(checkpoint.getNumberOfActualFeatures()), results) + "\n";
+
+        try
+        {
+            Path folder = file.toAbsolutePath().getParent();
+            Files.createDirectories(folder);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+            {
+                channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+                channel.force(false);
+            }
+            getCheckpoints().put(key, checkpoint);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Could not append checkpoint to [{}]: {}", file, e.getMessage());
+        }
+    }
+
+    // the journal is read on first use; a line left incomplete by a crash is skipped
+    private Map<String, Checkpoint> getCheckpoints()
+    {
+        if (checkpoints == null)
+        {
+            checkpoints = new HashMap<>();
+
+            if (Files.exists(file))
+            {
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+                {
+                    String line;
+                    while ((line = reader.readLine()) != null)
+                    {
+                        try
+                        {
+                            String[] parts = line.split("\t");
+                            Map<Metric, Double> results = new EnumMap<>(Metric.class);
+                            for (String result : parts[4].split(","))
+                            {
+                                String[] pair = result.split("=");
+                                results.put(Metric.valueOf(pair[0]), Double.parseDouble(pair[1]));
+                            }
+                            if (results.size() != Metric.values().length)
+                                throw new IllegalArgumentException("incomplete results");
+                            checkpoints.put(parts[0], new Checkpoint(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), results));
+                        }
+                        catch (RuntimeException e)
+                        {
+                            LOGGER.warn("Ignoring checkpoint line in [{}]: {}", file, e.getMessage());
+                        }
+                    }
+                }
+                catch (IOException e)
+                {
+                    LOGGER.warn("Ignoring checkpoint journal [{}]: {}", file, e.getMessage());
+                }
+            }
+
+            LOGGER.debug("Loaded {} checkpoints from [{}].", checkpoints.size(), file);
+        }
+
+        return checkpoints;
+    }
+
+    public static class Checkpoint
+    {
+        private final int numberOfInstances;
+        private final int numberOfTotalFeatures;
+        private final int numberOfActualFeatures;
+        private final Map<Metric, Double> results;
+
+        public Checkpoint(int numberOfInstances, int numberOfTotalFeatures, int numberOfActualFeatures, Map<Metric, Double> results)
+        {
+            this.numberOfInstances = numberOfInstances;
+            this.numberOfTotalFeatures = numberOfTotalFeatures;
+            this.numberOfActualFeatures = numberOfActualFeatures;
+            this.results = Collections.unmodifiableMap(new EnumMap<>(results));
+        }
+
+        // size of the data set whose indices were shuffled for the run, needed to reproduce the following runs' shuffles
+        public int getNumberOfInstances()
+        {
+            return numberOfInstances;
+        }
+
+        public int getNumberOfTotalFeatures()
+        {
+            return numberOfTotalFeatures;
+        }
+
+        public int getNumberOfActualFeatures()
+        {
+            return numberOfActualFeatures;
+        }
+
+        // value of every metric computed for the run
+        public Map<Metric, Double> getResults()
+        {
+            return results;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Checkpoint [numberOfInstances=" + numberOfInstances + ", numberOfTotalFeatures=" + numberOfTotalFeatures + ", numberOfActualFeatures="
+                + numberOfActualFeatures + ", results=" + results + "]";
+        }
+    }
+}
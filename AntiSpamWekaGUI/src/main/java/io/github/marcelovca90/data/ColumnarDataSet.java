@@ -0,0 +1,469 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class ColumnarDataSet
+{
+    private static final Logger LOGGER = LogManager.getLogger(ColumnarDataSet.class);
+
+    public static final String EXTENSION = ".columnar";
+
+    // file layout (big-endian): magic, version, no. instances, no. total features, flags, raw files fingerprint, no. features,
+    // the post-filter attribute names, padding to 8 bytes, then the class, weight and feature columns
+    private static final int MAGIC = 0x41535743; // "ASWC"
+    private static final int VERSION = 2;
+    private static final int FLAG_SHRINK_FEATURES = 1;
+    private static final int FLAG_BALANCE_CLASSES = 2;
+    private static final int FLAG_BALANCE_BY_WEIGHT = 4;
+
+    private final Instances dataSet;
+    private final int numberOfTotalFeatures;
+    private final boolean shrinkFeatures;
+    private final boolean balanceClasses;
+    private final boolean balanceByWeight;
+    private final long rawFilesFingerprint;
+
+    public ColumnarDataSet(Instances dataSet, int numberOfTotalFeatures, boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight,
+            long rawFilesFingerprint)
+    {
+        this.dataSet = dataSet;
+        this.numberOfTotalFeatures = numberOfTotalFeatures;
+        this.shrinkFeatures = shrinkFeatures;
+        this.balanceClasses = balanceClasses;
+        this.balanceByWeight = balanceByWeight;
+        this.rawFilesFingerprint = rawFilesFingerprint;
+    }
+
+    public Instances getDataSet()
+    {
+        return dataSet;
+    }
+
+    public int getNumberOfTotalFeatures()
+    {
+        return numberOfTotalFeatures;
+    }
+
+    public boolean isShrinkFeatures()
+    {
+        return shrinkFeatures;
+    }
+
+    public boolean isBalanceClasses()
+    {
+        return balanceClasses;
+    }
+
+    public boolean isBalanceByWeight()
+    {
+        return balanceByWeight;
+    }
+
+    public long getRawFilesFingerprint()
+    {
+        return rawFilesFingerprint;
+    }
+
+    // each combination of filters is cached in a file of its own (e.g. data.balance-weight.columnar), so that experiments, or
+    // processes sharing a store, with different settings do not keep overwriting each other's cache
+    public static String getFilename(boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight)
+    {
+        StringJoiner flags = new StringJoiner("-").setEmptyValue("plain");
+        if (shrinkFeatures)
+            flags.add("shrink");
+        if (balanceClasses)
+            flags.add("balance");
+        if (balanceByWeight)
+            flags.add("weight");
+
+        return "data." + flags + EXTENSION;
+    }
+
+    // checks if this cache was built from the same raw files, with the same filters that are about to be applied
+    public boolean matches(boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight, long rawFilesFingerprint)
+    {
+        return this.shrinkFeatures == shrinkFeatures && this.balanceClasses == balanceClasses && this.balanceByWeight == balanceByWeight
+                && this.rawFilesFingerprint == rawFilesFingerprint;
+    }
+
+    public static ColumnarDataSet read(String filename) throws IOException
+    {
+        LOGGER.trace("Reading data from COLUMNAR file [{}].", filename);
+
+        return load(filename, false);
+    }
+
+    // same as above, but the instances are views over the mapped columns instead of copies of them, so the values stay off the heap
+    // and every process that maps the same file shares a single copy of them through the page cache; only the weights are copied
+    public static ColumnarDataSet map(String filename) throws IOException
+    {
+        LOGGER.trace("Mapping data from COLUMNAR file [{}].", filename);
+
+        return load(filename, true);
+    }
+
+    private static ColumnarDataSet load(String filename, boolean mapped) throws IOException
+    {
+        Columns columns = mapColumns(filename);
+        int numberOfInstances = columns.numberOfInstances;
+        int numberOfFeatures = columns.featureColumns.length;
+        Instances dataSet = new Instances(columns.header, numberOfInstances);
+
+        // weight column
+        double[] weights = new double[numberOfInstances];
+        columns.weightColumn.duplicate().get(weights);
+
+        if (mapped)
+        {
+            // feature columns, then the class column, matching the attribute order
+            DoubleBuffer[] matrixColumns = Arrays.copyOf(columns.featureColumns, numberOfFeatures + 1);
+            matrixColumns[numberOfFeatures] = columns.classColumn;
+            InstanceMatrix.map(matrixColumns, numberOfInstances).toInstances(dataSet, weights);
+
+            return new ColumnarDataSet(dataSet, columns.numberOfTotalFeatures, columns.isShrinkFeatures(), columns.isBalanceClasses(),
+                columns.isBalanceByWeight(), columns.rawFilesFingerprint);
+        }
+
+        // transpose the columns into a single row-major matrix (class last), which backs every instance, unless the data set is
+        // too large for it; in that case, allocate one array per row, which will directly back each instance
+        int numberOfColumns = numberOfFeatures + 1;
+        boolean useMatrix = InstanceMatrix.fits(numberOfInstances, numberOfColumns);
+        double[] matrix = useMatrix ? new double[numberOfInstances * numberOfColumns] : null;
+        double[][] rows = useMatrix ? null : new double[numberOfInstances][numberOfColumns];
+        double[] column = new double[numberOfInstances];
+
+        // class column
+        columns.classColumn.duplicate().get(column);
+        for (int i = 0; i < numberOfInstances; i++)
+            setValue(matrix, rows, numberOfColumns, i, numberOfFeatures, column[i]);
+
+        // feature columns
+        for (int j = 0; j < numberOfFeatures; j++)
+        {
+            columns.featureColumns[j].duplicate().get(column);
+            for (int i = 0; i < numberOfInstances; i++)
+                setValue(matrix, rows, numberOfColumns, i, j, column[i]);
+        }
+
+        if (useMatrix)
+            InstanceMatrix.of(matrix, numberOfInstances, numberOfColumns).toInstances(dataSet, weights);
+        else
+            for (int i = 0; i < numberOfInstances; i++)
+                dataSet.add(new DenseInstance(weights[i], rows[i]));
+
+        return new ColumnarDataSet(dataSet, columns.numberOfTotalFeatures, columns.isShrinkFeatures(), columns.isBalanceClasses(), columns.isBalanceByWeight(),
+            columns.rawFilesFingerprint);
+    }
+
+    // checks if the columnar file was built from the given raw files with the given filters, reading nothing but its header
+    public static boolean matches(String filename, boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight, long rawFilesFingerprint)
+            throws IOException
+    {
+        Columns columns = mapColumns(filename);
+
+        return columns.isShrinkFeatures() == shrinkFeatures && columns.isBalanceClasses() == balanceClasses && columns.isBalanceByWeight() == balanceByWeight
+                && columns.rawFilesFingerprint == rawFilesFingerprint;
+    }
+
+    // iterates over the instances of the given class (or of both, if none is given) in batches of at most the given size, copying
+    // each batch out of the mapped columns, so that neither the values nor one view per instance are ever held on the heap; the
+    // weight of every instance is multiplied by the given factor
+    public static InstanceBatchReader openBatches(String filename, MessageType messageType, int batchSize, double weightFactor) throws IOException
+    {
+        LOGGER.trace("Streaming [{}] data from COLUMNAR file [{}].", messageType, filename);
+
+        return new ColumnarBatchReader(mapColumns(filename), messageType, batchSize, weightFactor);
+    }
+
+    // maps the columns of the file, which stay valid after its channel is closed, and reads its header
+    private static Columns mapColumns(String filename) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            long fileSize = channel.size();
+
+            // map the whole file at once whenever it fits in a single mapping
+            MappedByteBuffer whole = fileSize <= Integer.MAX_VALUE ? channel.map(MapMode.READ_ONLY, 0, fileSize) : null;
+            ByteBuffer header = whole != null ? whole.duplicate() : channel.map(MapMode.READ_ONLY, 0, Math.min(fileSize, Integer.MAX_VALUE));
+
+            if (header.remaining() < 6 * Integer.BYTES + Long.BYTES || header.getInt() != MAGIC)
+                throw new IOException("Not a columnar data set file: " + filename);
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException(String.format("Unsupported columnar data set version %d in file %s", version, filename));
+
+            Columns columns = new Columns();
+            columns.numberOfInstances = header.getInt();
+            columns.numberOfTotalFeatures = header.getInt();
+            columns.flags = header.getInt();
+            columns.rawFilesFingerprint = header.getLong();
+            int numberOfFeatures = header.getInt();
+
+            // rebuild the post-filter attribute list
+            ArrayList<Attribute> attributes = new ArrayList<>(numberOfFeatures + 1);
+            for (int j = 0; j < numberOfFeatures; j++)
+            {
+                byte[] name = new byte[header.getInt()];
+                header.get(name);
+                attributes.add(new Attribute(new String(name, StandardCharsets.UTF_8)));
+            }
+            attributes.add(new Attribute("class", Arrays.asList(MessageType.HAM.name(), MessageType.SPAM.name())));
+            columns.header = new Instances(UUID.randomUUID().toString(), attributes, 0);
+            columns.header.setClassIndex(attributes.size() - 1);
+
+            long columnsOffset = align(header.position());
+            long columnSize = (long) columns.numberOfInstances * Double.BYTES;
+            if (fileSize != columnsOffset + (numberOfFeatures + 2L) * columnSize)
+                throw new IOException("Truncated columnar data set file: " + filename);
+
+            columns.classColumn = mapColumn(channel, whole, columnsOffset, columnSize);
+            columns.weightColumn = mapColumn(channel, whole, columnsOffset + columnSize, columnSize);
+            columns.featureColumns = new DoubleBuffer[numberOfFeatures];
+            for (int j = 0; j < numberOfFeatures; j++)
+                columns.featureColumns[j] = mapColumn(channel, whole, columnsOffset + (j + 2L) * columnSize, columnSize);
+
+            return columns;
+        }
+    }
+
+    public Path write(String filename) throws IOException
+    {
+        LOGGER.trace("Saving data to COLUMNAR file [{}].", filename);
+
+        int numberOfInstances = dataSet.numInstances();
+        int numberOfFeatures = dataSet.numAttributes() - 1;
+        int classIndex = dataSet.classIndex();
+
+        // write to a temporary file first, so that a partially written cache is never read
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numberOfInstances);
+            out.writeInt(numberOfTotalFeatures);
+            out.writeInt((shrinkFeatures ? FLAG_SHRINK_FEATURES : 0) | (balanceClasses ? FLAG_BALANCE_CLASSES : 0) | (balanceByWeight ? FLAG_BALANCE_BY_WEIGHT : 0));
+            out.writeLong(rawFilesFingerprint);
+            out.writeInt(numberOfFeatures);
+
+            for (int j = 0; j < dataSet.numAttributes(); j++)
+            {
+                if (j == classIndex)
+                    continue;
+                byte[] name = dataSet.attribute(j).name().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+            }
+
+            while (out.size() % Double.BYTES != 0)
+                out.writeByte(0);
+
+            for (int i = 0; i < numberOfInstances; i++)
+                out.writeDouble(dataSet.instance(i).classValue());
+
+            for (int i = 0; i < numberOfInstances; i++)
+                out.writeDouble(dataSet.instance(i).weight());
+
+            for (int j = 0; j < dataSet.numAttributes(); j++)
+            {
+                if (j == classIndex)
+                    continue;
+                for (int i = 0; i < numberOfInstances; i++)
+                    out.writeDouble(dataSet.instance(i).value(j));
+            }
+        }
+
+        return Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void setValue(double[] matrix, double[][] rows, int numberOfColumns, int row, int column, double value)
+    {
+        if (matrix != null)
+            matrix[row * numberOfColumns + column] = value;
+        else
+            rows[row][column] = value;
+    }
+
+    private static long align(long position)
+    {
+        return (position + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+    }
+
+    // the header and the mapped columns of a columnar file; only absolute reads (or reads from duplicates) are made on the columns
+    private static class Columns
+    {
+        private Instances header;
+        private int numberOfInstances;
+        private int numberOfTotalFeatures;
+        private int flags;
+        private long rawFilesFingerprint;
+        private DoubleBuffer classColumn;
+        private DoubleBuffer weightColumn;
+        private DoubleBuffer[] featureColumns;
+
+        private boolean isShrinkFeatures()
+        {
+            return (flags & FLAG_SHRINK_FEATURES) != 0;
+        }
+
+        private boolean isBalanceClasses()
+        {
+            return (flags & FLAG_BALANCE_CLASSES) != 0;
+        }
+
+        private boolean isBalanceByWeight()
+        {
+            return (flags & FLAG_BALANCE_BY_WEIGHT) != 0;
+        }
+    }
+
+    private static class ColumnarBatchReader implements InstanceBatchReader
+    {
+        private final Columns columns;
+        private final double classValue;
+        private final int batchSize;
+        private final double weightFactor;
+        private final int numberOfInstances;
+        private int row;
+        private int returnedInstances;
+
+        private ColumnarBatchReader(Columns columns, MessageType messageType, int batchSize, double weightFactor)
+        {
+            this.columns = columns;
+            this.classValue = messageType != null ? columns.header.classAttribute().indexOfValue(messageType.name()) : -1;
+            this.batchSize = batchSize;
+            this.weightFactor = weightFactor;
+
+            // the rows of the requested class are counted upfront, straight from the mapped class column
+            int count = 0;
+            for (int i = 0; i < columns.numberOfInstances; i++)
+                if (includes(i))
+                    count++;
+            this.numberOfInstances = count;
+        }
+
+        private boolean includes(int row)
+        {
+            return classValue < 0 || columns.classColumn.get(row) == classValue;
+        }
+
+        @Override
+        public Instances getHeader()
+        {
+            return columns.header;
+        }
+
+        @Override
+        public int getNumberOfInstances()
+        {
+            return numberOfInstances;
+        }
+
+        @Override
+        public int getNumberOfTotalFeatures()
+        {
+            return columns.numberOfTotalFeatures;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return returnedInstances < numberOfInstances;
+        }
+
+        @Override
+        public Instances next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            int numberOfFeatures = columns.featureColumns.length;
+            Instances batch = new Instances(columns.header, Math.min(batchSize, numberOfInstances - returnedInstances));
+            while (batch.size() < batchSize && returnedInstances < numberOfInstances)
+            {
+                if (includes(row))
+                {
+                    double[] values = new double[numberOfFeatures + 1];
+                    for (int j = 0; j < numberOfFeatures; j++)
+                        values[j] = columns.featureColumns[j].get(row);
+                    values[numberOfFeatures] = columns.classColumn.get(row);
+                    batch.add(new DenseInstance(columns.weightColumn.get(row) * weightFactor, values));
+                    returnedInstances++;
+                }
+                row++;
+            }
+
+            return batch;
+        }
+
+        @Override
+        public void close()
+        {
+            // the mappings are released once they are no longer referenced
+        }
+    }
+
+    private static DoubleBuffer mapColumn(FileChannel channel, MappedByteBuffer whole, long offset, long size) throws IOException
+    {
+        if (whole != null)
+        {
+            ByteBuffer column = whole.duplicate();
+            column.position((int) offset);
+            column.limit((int) (offset + size));
+            return column.slice().asDoubleBuffer();
+        }
+        else
+        {
+            return channel.map(MapMode.READ_ONLY, offset, size).asDoubleBuffer();
+        }
+    }
+}
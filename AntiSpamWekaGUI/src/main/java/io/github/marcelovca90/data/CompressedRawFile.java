@@ -0,0 +1,737 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.data.InstanceMatrix.Storage;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+// the second version of the raw format: the instances are split in blocks of a fixed amount of rows, each one deflated on its own and
+// located through an index, so that the blocks are inflated in parallel and a sample only inflates the blocks it draws from
+public class CompressedRawFile
+{
+    private static final Logger LOGGER = LogManager.getLogger(CompressedRawFile.class);
+
+    // file layout (big-endian): magic, version, storage of the values, flags, no. instances, no. attributes, rows per block, no. blocks,
+    // the index (offset, deflated size, inflated size and checksum of each block), the checksum of all of the above, then the blocks;
+    // a dense block holds its values row by row, and a sparse one the amount of non-zero values of each row followed by their
+    // (index, value) pairs, with increasing indices
+    private static final int MAGIC = 0x41535232; // "ASR2"
+    private static final int VERSION = 2;
+    private static final int FLAG_SPARSE = 1;
+    private static final int HEADER_BYTES = 8 * Integer.BYTES;
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES + 3 * Integer.BYTES;
+
+    public static final String EXTENSION = ".v2";
+    public static final int DEFAULT_ROWS_PER_BLOCK = 4096;
+
+    private final String filename;
+    private final Storage storage;
+    private final boolean sparse;
+    private final int numberOfInstances;
+    private final int numberOfAttributes;
+    private final int rowsPerBlock;
+    private final long[] offsets;
+    private final int[] deflatedSizes;
+    private final int[] inflatedSizes;
+    private final int[] checksums;
+
+    private CompressedRawFile(String filename, Storage storage, boolean sparse, int numberOfInstances, int numberOfAttributes, int rowsPerBlock, long[] offsets,
+            int[] deflatedSizes, int[] inflatedSizes, int[] checksums)
+    {
+        this.filename = filename;
+        this.storage = storage;
+        this.sparse = sparse;
+        this.numberOfInstances = numberOfInstances;
+        this.numberOfAttributes = numberOfAttributes;
+        this.rowsPerBlock = rowsPerBlock;
+        this.offsets = offsets;
+        this.deflatedSizes = deflatedSizes;
+        this.inflatedSizes = inflatedSizes;
+        this.checksums = checksums;
+    }
+
+    public Storage getStorage()
+    {
+        return storage;
+    }
+
+    public boolean isSparse()
+    {
+        return sparse;
+    }
+
+    public int getNumberOfInstances()
+    {
+        return numberOfInstances;
+    }
+
+    public int getNumberOfAttributes()
+    {
+        return numberOfAttributes;
+    }
+
+    public int getNumberOfBlocks()
+    {
+        return offsets.length;
+    }
+
+    // reads and verifies the header and the index, leaving the blocks in the file
+    public static CompressedRawFile open(String filename) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            header.flip();
+
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a compressed raw file: " + filename);
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException(String.format("Unsupported compressed raw file version %d in file %s", version, filename));
+            int storageOrdinal = header.getInt();
+            int flags = header.getInt();
+            int numberOfInstances = header.getInt();
+            int numberOfAttributes = header.getInt();
+            int rowsPerBlock = header.getInt();
+            int numberOfBlocks = header.getInt();
+
+            long indexBytes = (long) numberOfBlocks * INDEX_ENTRY_BYTES + Integer.BYTES;
+            if (storageOrdinal < 0 || storageOrdinal >= Storage.values().length || numberOfInstances < 0 || numberOfAttributes < 0 || rowsPerBlock <= 0
+                || numberOfBlocks != countBlocks(numberOfInstances, rowsPerBlock) || HEADER_BYTES + indexBytes > channel.size())
+                throw new IOException("Corrupted header of compressed raw file: " + filename);
+
+            ByteBuffer index = ByteBuffer.allocate((int) indexBytes);
+            readFully(channel, index, HEADER_BYTES);
+            index.flip();
+
+            long[] offsets = new long[numberOfBlocks];
+            int[] deflatedSizes = new int[numberOfBlocks];
+            int[] inflatedSizes = new int[numberOfBlocks];
+            int[] checksums = new int[numberOfBlocks];
+            for (int b = 0; b < numberOfBlocks; b++)
+            {
+                offsets[b] = index.getLong();
+                deflatedSizes[b] = index.getInt();
+                inflatedSizes[b] = index.getInt();
+                checksums[b] = index.getInt();
+            }
+
+            // the checksum covers the header and the index, so a corrupted offset or size is caught before any block is read
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, HEADER_BYTES);
+            crc.update(index.array(), 0, index.limit() - Integer.BYTES);
+            if ((int) crc.getValue() != index.getInt())
+                throw new IOException("Checksum mismatch in the header of compressed raw file: " + filename);
+
+            for (int b = 0; b < numberOfBlocks; b++)
+                if (offsets[b] < HEADER_BYTES + indexBytes || deflatedSizes[b] < 0 || inflatedSizes[b] < 0 || offsets[b] + deflatedSizes[b] > channel.size())
+                    throw new IOException("Truncated compressed raw file: " + filename);
+
+            return new CompressedRawFile(filename, Storage.values()[storageOrdinal], (flags & FLAG_SPARSE) != 0, numberOfInstances, numberOfAttributes,
+                rowsPerBlock, offsets, deflatedSizes, inflatedSizes, checksums);
+        }
+    }
+
+    // inflates the blocks holding the given records (or every block, if none are given) with up to the given amount of threads, and
+    // decodes them into instances of the given class, in the order of the records
+    public Instances read(Instances header, MessageType messageType, int[] records, int threads) throws IOException
+    {
+        LOGGER.trace("Reading [{}] data from compressed RAW file [{}] with [{}] threads.", messageType, filename, threads);
+
+        if (records != null)
+            for (int i : records)
+                if (i < 0 || i >= numberOfInstances)
+                    throw new IOException(String.format("Invalid record %d of compressed raw file %s with %d instances", i, filename, numberOfInstances));
+
+        double classValue = header.classAttribute().indexOfValue(messageType.name());
+        int[] blocks = records == null ? IntStream.range(0, getNumberOfBlocks()).toArray()
+            : IntStream.of(records).map(i -> i / rowsPerBlock).distinct().sorted().toArray();
+
+        Instance[][] decodedBlocks;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            List<Callable<Instance[]>> tasks = new ArrayList<>(blocks.length);
+            for (int block : blocks)
+                tasks.add(() -> decodeBlock(channel, block, header, classValue, 1.0));
+            decodedBlocks = invokeAll(tasks, threads).toArray(new Instance[blocks.length][]);
+        }
+
+        Instances dataSet = new Instances(header, records == null ? numberOfInstances : records.length);
+        if (records == null)
+        {
+            for (Instance[] decodedBlock : decodedBlocks)
+                for (Instance instance : decodedBlock)
+                    dataSet.add(instance);
+        }
+        else
+        {
+            for (int i : records)
+                dataSet.add(decodedBlocks[Arrays.binarySearch(blocks, i / rowsPerBlock)][i % rowsPerBlock]);
+        }
+
+        return dataSet;
+    }
+
+    // iterates over the instances in batches of at most the given size, inflating one block at a time; every instance has the given
+    // class and weight
+    public InstanceBatchReader openBatches(Instances header, MessageType messageType, int batchSize, double weight) throws IOException
+    {
+        LOGGER.trace("Streaming [{}] data from compressed RAW file [{}].", messageType, filename);
+
+        return new BlockBatchReader(header, header.classAttribute().indexOfValue(messageType.name()), batchSize, weight);
+    }
+
+    // writes the values of the instances (but not their classes or weights) to a compressed raw file in blocks of the given amount of
+    // rows, deflated with up to the given amount of threads; the values are stored in the narrowest storage that holds them all
+    public static Path write(Instances instances, String filename, boolean sparse, int rowsPerBlock, int threads) throws IOException
+    {
+        LOGGER.trace("Saving data to {}compressed RAW file [{}].", sparse ? "sparse " : "", filename);
+
+        int classIndex = instances.classIndex();
+        Storage storage = Storage.SHORT;
+        for (Instance instance : instances)
+            for (int k = 0; k < instance.numValues() && storage != Storage.DOUBLE; k++)
+                if (instance.index(k) != classIndex)
+                    storage = storage.widen(instance.valueSparse(k));
+
+        try (BlockWriter writer = new BlockWriter(filename, instances, storage, sparse, instances.numInstances(), rowsPerBlock, threads))
+        {
+            for (Instance instance : instances)
+                writer.add(instance);
+            return writer.commit();
+        }
+    }
+
+    // writes the values of a known amount of instances (but not their classes or weights) to a compressed raw file as they are
+    // added, in the given storage; only the blocks being deflated are kept in memory, so the instances never need to be held at once
+    public static BlockWriter openWriter(String filename, Instances header, Storage storage, boolean sparse, int numberOfInstances, int rowsPerBlock,
+            int threads) throws IOException
+    {
+        LOGGER.trace("Streaming data to {}compressed RAW file [{}].", sparse ? "sparse " : "", filename);
+
+        return new BlockWriter(filename, header, storage, sparse, numberOfInstances, rowsPerBlock, threads);
+    }
+
+    private static int countBlocks(int numberOfInstances, int rowsPerBlock)
+    {
+        return (int) ((numberOfInstances + (long) rowsPerBlock - 1) / rowsPerBlock);
+    }
+
+    private static byte[] encodeBlock(List<Instance> instances, int first, int last, int classIndex, Storage storage, boolean sparse) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            for (int i = first; i < last; i++)
+            {
+                Instance instance = instances.get(i);
+                if (sparse)
+                {
+                    int count = 0;
+                    for (int k = 0; k < instance.numValues(); k++)
+                        if (instance.index(k) != classIndex && instance.valueSparse(k) != 0)
+                            count++;
+
+                    out.writeInt(count);
+                    for (int k = 0; k < instance.numValues(); k++)
+                    {
+                        if (instance.index(k) != classIndex && instance.valueSparse(k) != 0)
+                        {
+                            out.writeInt(classIndex >= 0 && instance.index(k) > classIndex ? instance.index(k) - 1 : instance.index(k));
+                            writeValue(out, storage, instance.valueSparse(k));
+                        }
+                    }
+                }
+                else
+                {
+                    for (int j = 0; j < instance.numAttributes(); j++)
+                        if (j != classIndex)
+                            writeValue(out, storage, instance.value(j));
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    // reads, inflates, verifies and decodes a block; the channel is only read positionally, so blocks are decoded concurrently
+    private Instance[] decodeBlock(FileChannel channel, int block, Instances header, double classValue, double weight) throws IOException
+    {
+        ByteBuffer deflated = ByteBuffer.allocate(deflatedSizes[block]);
+        readFully(channel, deflated, offsets[block]);
+
+        byte[] inflated = new byte[inflatedSizes[block]];
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(deflated.array());
+            int length = 0;
+            while (length < inflated.length)
+            {
+                int inflatedBytes = inflater.inflate(inflated, length, inflated.length - length);
+                if (inflatedBytes == 0)
+                    break;
+                length += inflatedBytes;
+            }
+            if (length != inflated.length)
+                throw new IOException(String.format("Corrupted block %d of compressed raw file %s", block, filename));
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException(String.format("Corrupted block %d of compressed raw file %s", block, filename), e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(inflated);
+        if ((int) crc.getValue() != checksums[block])
+            throw new IOException(String.format("Checksum mismatch in block %d of compressed raw file %s", block, filename));
+
+        int rows = Math.min(rowsPerBlock, numberOfInstances - block * rowsPerBlock);
+        Instance[] instances = new Instance[rows];
+        ByteBuffer values = ByteBuffer.wrap(inflated);
+        try
+        {
+            for (int i = 0; i < rows; i++)
+                instances[i] = sparse ? decodeSparseInstance(values, classValue, weight) : decodeDenseInstance(values, classValue, weight);
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IOException(String.format("Corrupted block %d of compressed raw file %s", block, filename), e);
+        }
+        if (values.hasRemaining())
+            throw new IOException(String.format("Corrupted block %d of compressed raw file %s", block, filename));
+
+        return instances;
+    }
+
+    private Instance decodeDenseInstance(ByteBuffer buffer, double classValue, double weight)
+    {
+        double[] values = new double[numberOfAttributes + 1];
+        for (int j = 0; j < numberOfAttributes; j++)
+            values[j] = readValue(buffer, storage);
+        values[numberOfAttributes] = classValue;
+
+        return new DenseInstance(weight, values);
+    }
+
+    // the class is the last attribute, so it is stored after the features whenever it is not zero
+    private Instance decodeSparseInstance(ByteBuffer buffer, double classValue, double weight) throws IOException
+    {
+        int classCount = classValue != 0 ? 1 : 0;
+
+        int count = buffer.getInt();
+        if (count < 0 || count > numberOfAttributes)
+            throw new IOException(String.format("Invalid amount of values (%d) in compressed raw file %s", count, filename));
+
+        int[] indices = new int[count + classCount];
+        double[] values = new double[count + classCount];
+        for (int k = 0; k < count; k++)
+        {
+            indices[k] = buffer.getInt();
+            values[k] = readValue(buffer, storage);
+            if (indices[k] < 0 || indices[k] >= numberOfAttributes || (k > 0 && indices[k] <= indices[k - 1]))
+                throw new IOException(String.format("Invalid index (%d) in compressed raw file %s", indices[k], filename));
+        }
+        if (classCount > 0)
+        {
+            indices[count] = numberOfAttributes;
+            values[count] = classValue;
+        }
+
+        return new SparseInstance(weight, values, indices, numberOfAttributes + 1);
+    }
+
+    private static void writeValue(DataOutputStream out, Storage storage, double value) throws IOException
+    {
+        switch (storage)
+        {
+            case SHORT:
+                out.writeShort((short) value);
+                break;
+            case FLOAT:
+                out.writeFloat((float) value);
+                break;
+            default:
+                out.writeDouble(value);
+                break;
+        }
+    }
+
+    private static double readValue(ByteBuffer buffer, Storage storage)
+    {
+        switch (storage)
+        {
+            case SHORT:
+                return buffer.getShort();
+            case FLOAT:
+                return buffer.getFloat();
+            default:
+                return buffer.getDouble();
+        }
+    }
+
+    // runs the tasks on up to the given amount of threads, returning their results in order
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks, int threads) throws IOException
+    {
+        List<T> results = new ArrayList<>(tasks.size());
+        try
+        {
+            if (threads <= 1 || tasks.size() <= 1)
+            {
+                for (Callable<T> task : tasks)
+                    results.add(task.call());
+                return results;
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(Math.min(threads, tasks.size()));
+            try
+            {
+                for (Future<T> future : pool.invokeAll(tasks))
+                    results.add(future.get());
+                return results;
+            }
+            finally
+            {
+                pool.shutdownNow();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing the blocks of a compressed raw file");
+        }
+        catch (IOException | RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of file at byte " + (position + buffer.position()));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+
+    // a block deflated for writing, along with what the index keeps of it
+    private static class DeflatedBlock
+    {
+        private final byte[] deflated;
+        private final int inflatedSize;
+        private final int checksum;
+
+        private DeflatedBlock(byte[] inflated)
+        {
+            CRC32 crc = new CRC32();
+            crc.update(inflated);
+
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try
+            {
+                deflater.setInput(inflated);
+                deflater.finish();
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(inflated.length / 4 + 64);
+                byte[] buffer = new byte[1 << 16];
+                while (!deflater.finished())
+                    bytes.write(buffer, 0, deflater.deflate(buffer));
+
+                this.deflated = bytes.toByteArray();
+                this.inflatedSize = inflated.length;
+                this.checksum = (int) crc.getValue();
+            }
+            finally
+            {
+                deflater.end();
+            }
+        }
+    }
+
+    // the header and index come first, but the space for them is known upfront, so the blocks are written after it as they are deflated
+    // and the header and index are filled in last; the file is written to a temporary file first, so that a partially written file is
+    // never read
+    public static class BlockWriter implements AutoCloseable
+    {
+        private final Path target;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final int classIndex;
+        private final Storage storage;
+        private final boolean sparse;
+        private final int numberOfInstances;
+        private final int numberOfAttributes;
+        private final int rowsPerBlock;
+        private final int threads;
+        private final long[] offsets;
+        private final int[] deflatedSizes;
+        private final int[] inflatedSizes;
+        private final int[] checksums;
+        private final List<Instance> pending;
+        private int writtenBlocks;
+        private int addedInstances;
+        private long offset;
+        private boolean committed;
+
+        private BlockWriter(String filename, Instances header, Storage storage, boolean sparse, int numberOfInstances, int rowsPerBlock, int threads)
+                throws IOException
+        {
+            if (rowsPerBlock <= 0)
+                throw new IllegalArgumentException("Expected a positive amount of rows per block, got " + rowsPerBlock + ".");
+
+            this.classIndex = header.classIndex();
+            this.storage = storage;
+            this.sparse = sparse;
+            this.numberOfInstances = numberOfInstances;
+            this.numberOfAttributes = header.numAttributes() - (classIndex >= 0 ? 1 : 0);
+            this.rowsPerBlock = rowsPerBlock;
+            this.threads = Math.max(1, threads);
+
+            // a block is encoded in a single array before being deflated
+            long rowBytes = sparse ? Integer.BYTES + (long) numberOfAttributes * (Integer.BYTES + storage.getBytes()) : (long) numberOfAttributes * storage.getBytes();
+            if (Math.min(rowsPerBlock, numberOfInstances) * rowBytes > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException(String.format("Blocks of %d rows of %d attributes are too large.", rowsPerBlock, numberOfAttributes));
+
+            int numberOfBlocks = countBlocks(numberOfInstances, rowsPerBlock);
+            this.offsets = new long[numberOfBlocks];
+            this.deflatedSizes = new int[numberOfBlocks];
+            this.inflatedSizes = new int[numberOfBlocks];
+            this.checksums = new int[numberOfBlocks];
+            this.pending = new ArrayList<>((int) Math.min((long) rowsPerBlock * this.threads, numberOfInstances));
+            this.offset = HEADER_BYTES + (long) numberOfBlocks * INDEX_ENTRY_BYTES + Integer.BYTES;
+
+            this.target = Paths.get(filename).toAbsolutePath();
+            this.temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try
+            {
+                this.channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+            }
+            catch (IOException e)
+            {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+        }
+
+        // the instance is only kept until its block is written, once as many blocks as threads are pending
+        public void add(Instance instance) throws IOException
+        {
+            if (addedInstances == numberOfInstances)
+                throw new IllegalStateException(String.format("Expected %d instances to write to %s.", numberOfInstances, target));
+
+            pending.add(instance);
+            addedInstances++;
+            if (pending.size() == rowsPerBlock * threads || addedInstances == numberOfInstances)
+                flush();
+        }
+
+        // writes the header and the index and moves the complete file into place
+        public Path commit() throws IOException
+        {
+            if (addedInstances != numberOfInstances)
+                throw new IOException(String.format("Expected %d instances to write to %s, got %d.", numberOfInstances, target, addedInstances));
+
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES + offsets.length * INDEX_ENTRY_BYTES + Integer.BYTES);
+            head.putInt(MAGIC).putInt(VERSION).putInt(storage.ordinal()).putInt(sparse ? FLAG_SPARSE : 0);
+            head.putInt(numberOfInstances).putInt(numberOfAttributes).putInt(rowsPerBlock).putInt(offsets.length);
+            for (int b = 0; b < offsets.length; b++)
+                head.putLong(offsets[b]).putInt(deflatedSizes[b]).putInt(inflatedSizes[b]).putInt(checksums[b]);
+            CRC32 crc = new CRC32();
+            crc.update(head.array(), 0, head.position());
+            head.putInt((int) crc.getValue());
+            head.flip();
+            writeFully(channel, head, 0);
+            channel.close();
+
+            Path moved = Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return moved;
+        }
+
+        // a writer closed without being committed leaves nothing behind
+        @Override
+        public void close() throws IOException
+        {
+            if (committed)
+                return;
+
+            channel.close();
+            Files.deleteIfExists(temporary);
+        }
+
+        // encodes and deflates the pending blocks in parallel, then appends them in order
+        private void flush() throws IOException
+        {
+            List<Callable<DeflatedBlock>> tasks = new ArrayList<>(threads);
+            for (int first = 0; first < pending.size(); first += rowsPerBlock)
+            {
+                int from = first;
+                int to = Math.min(pending.size(), first + rowsPerBlock);
+                tasks.add(() -> new DeflatedBlock(encodeBlock(pending, from, to, classIndex, storage, sparse)));
+            }
+
+            for (DeflatedBlock block : invokeAll(tasks, threads))
+            {
+                offsets[writtenBlocks] = offset;
+                deflatedSizes[writtenBlocks] = block.deflated.length;
+                inflatedSizes[writtenBlocks] = block.inflatedSize;
+                checksums[writtenBlocks] = block.checksum;
+                writeFully(channel, ByteBuffer.wrap(block.deflated), offset);
+                offset += block.deflated.length;
+                writtenBlocks++;
+            }
+            pending.clear();
+        }
+    }
+
+    private class BlockBatchReader implements InstanceBatchReader
+    {
+        private final FileChannel channel;
+        private final Instances header;
+        private final double classValue;
+        private final int batchSize;
+        private final double weight;
+        private Instance[] block;
+        private int nextBlock;
+        private int position;
+        private int returnedInstances;
+
+        private BlockBatchReader(Instances header, double classValue, int batchSize, double weight) throws IOException
+        {
+            this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+            this.header = header;
+            this.classValue = classValue;
+            this.batchSize = batchSize;
+            this.weight = weight;
+        }
+
+        @Override
+        public Instances getHeader()
+        {
+            return header;
+        }
+
+        @Override
+        public int getNumberOfInstances()
+        {
+            return numberOfInstances;
+        }
+
+        @Override
+        public int getNumberOfTotalFeatures()
+        {
+            return numberOfAttributes;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return returnedInstances < numberOfInstances;
+        }
+
+        @Override
+        public Instances next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            Instances batch = new Instances(header, Math.min(batchSize, numberOfInstances - returnedInstances));
+            try
+            {
+                while (batch.size() < batchSize && returnedInstances < numberOfInstances)
+                {
+                    if (block == null || position == block.length)
+                    {
+                        block = decodeBlock(channel, nextBlock++, header, classValue, weight);
+                        position = 0;
+                    }
+                    batch.add(block[position++]);
+                    returnedInstances++;
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+
+            return batch;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
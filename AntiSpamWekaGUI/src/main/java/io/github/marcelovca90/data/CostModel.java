@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.MethodConfiguration;
+
+public class CostModel
+{
+    private static final Logger LOGGER = LogManager.getLogger(CostModel.class);
+
+    // weight of a new observation when it is blended with the one already stored for the same key
+    private static final double SMOOTHING = 0.5;
+
+    private final Path file;
+    private final Properties observations = new Properties();
+
+    // loads the observations persisted in the given file, if it exists and is readable
+    public CostModel(Path file)
+    {
+        this.file = file;
+
+        if (Files.exists(file))
+        {
+            try (InputStream in = Files.newInputStream(file))
+            {
+                observations.load(in);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                LOGGER.warn("Ignoring cost model [{}]: {}", file, e.getMessage());
+                observations.clear();
+            }
+        }
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    public synchronized int size()
+    {
+        return observations.size();
+    }
+
+    // records the mean duration (train + test) of a run of the method on a data set with the given dimensions
+    public synchronized void record(MethodConfiguration method, int numberOfFeatures, int numberOfInstances, double millisPerRun)
+    {
+        if (Double.isNaN(millisPerRun) || millisPerRun < 0)
+            return;
+
+        String key = buildKey(method, numberOfFeatures, numberOfInstances);
+        String previous = observations.getProperty(key);
+        double millis = previous == null ? millisPerRun : SMOOTHING * millisPerRun + (1.0 - SMOOTHING) * Double.parseDouble(previous);
+
+        observations.setProperty(key, String.valueOf(millis));
+    }
+
+    // predicts the duration of a run of the method on a data set with the given dimensions, or NaN if the method was never observed;
+    // unseen dimensions are extrapolated from the method's median cost per feature and instance
+    public synchronized double predict(MethodConfiguration method, int numberOfFeatures, int numberOfInstances)
+    {
+        String observed = observations.getProperty(buildKey(method, numberOfFeatures, numberOfInstances));
+        if (observed != null)
+            return Double.parseDouble(observed);
+
+        DescriptiveStatistics millisPerCell = new DescriptiveStatistics();
+        String prefix = method.name() + "|";
+        for (String key : observations.stringPropertyNames())
+        {
+            if (key.startsWith(prefix))
+            {
+                String[] parts = key.split("\\|");
+                double cells = Math.max(1.0, Double.parseDouble(parts[1]) * Double.parseDouble(parts[2]));
+                millisPerCell.addValue(Double.parseDouble(observations.getProperty(key)) / cells);
+            }
+        }
+
+        if (millisPerCell.getN() == 0)
+            return Double.NaN;
+
+        return millisPerCell.getPercentile(50) * Math.max(1.0, (double) numberOfFeatures * numberOfInstances);
+    }
+
+    // persists the observations; a failure here only means the next plan will be less accurate
+    public synchronized void save()
+    {
+        try
+        {
+            Path folder = file.toAbsolutePath().getParent();
+            Files.createDirectories(folder);
+            Path temporary = Files.createTempFile(folder, file.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary))
+            {
+                observations.store(out, "mean milliseconds per run, keyed by method|features|instances");
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Could not save cost model [{}]: {}", file, e.getMessage());
+        }
+    }
+
+    private String buildKey(MethodConfiguration method, int numberOfFeatures, int numberOfInstances)
+    {
+        return String.format("%s|%d|%d", method.name(), numberOfFeatures, numberOfInstances);
+    }
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import java.nio.DoubleBuffer;
+
+import weka.core.Instances;
+
+public class InstanceMatrix
+{
+    // the narrowest type that holds every value of the matrix without any loss
+    public enum Storage
+    {
+        SHORT(Short.BYTES), FLOAT(Float.BYTES), DOUBLE(Double.BYTES);
+
+        private final int bytes;
+
+        private Storage(int bytes)
+        {
+            this.bytes = bytes;
+        }
+
+        public int getBytes()
+        {
+            return bytes;
+        }
+
+        // the narrowest storage, at least as wide as this one, that also holds the given value without any loss
+        public Storage widen(double value)
+        {
+            if (this == SHORT && Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits((short) value))
+                return SHORT;
+            if (this != DOUBLE && (Double.isNaN(value) || Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits((float) value)))
+                return FLOAT;
+            return DOUBLE;
+        }
+    }
+
+    // rough overhead of each row's MatrixInstance view, in bytes
+    public static final long VIEW_OVERHEAD = 32L;
+
+    private final int numberOfRows;
+    private final int numberOfColumns;
+    private final Storage storage;
+    private final short[] shortValues;
+    private final float[] floatValues;
+    private final double[] doubleValues;
+    private final DoubleBuffer[] mappedColumns;
+
+    private InstanceMatrix(int numberOfRows, int numberOfColumns, Storage storage, short[] shortValues, float[] floatValues, double[] doubleValues,
+            DoubleBuffer[] mappedColumns)
+    {
+        this.numberOfRows = numberOfRows;
+        this.numberOfColumns = numberOfColumns;
+        this.storage = storage;
+        this.shortValues = shortValues;
+        this.floatValues = floatValues;
+        this.doubleValues = doubleValues;
+        this.mappedColumns = mappedColumns;
+    }
+
+    // builds a matrix from row-major values, narrowing them to shorts (integral counts) or floats whenever that loses nothing
+    public static InstanceMatrix of(double[] values, int numberOfRows, int numberOfColumns)
+    {
+        if ((long) numberOfRows * numberOfColumns != values.length)
+            throw new IllegalArgumentException("Expected " + ((long) numberOfRows * numberOfColumns) + " values, got " + values.length + ".");
+
+        Storage storage = Storage.SHORT;
+        for (int i = 0; i < values.length && storage != Storage.DOUBLE; i++)
+            storage = storage.widen(values[i]);
+
+        switch (storage)
+        {
+            case SHORT:
+                short[] shortValues = new short[values.length];
+                for (int i = 0; i < values.length; i++)
+                    shortValues[i] = (short) values[i];
+                return new InstanceMatrix(numberOfRows, numberOfColumns, storage, shortValues, null, null, null);
+            case FLOAT:
+                float[] floatValues = new float[values.length];
+                for (int i = 0; i < values.length; i++)
+                    floatValues[i] = (float) values[i];
+                return new InstanceMatrix(numberOfRows, numberOfColumns, storage, null, floatValues, null, null);
+            default:
+                return new InstanceMatrix(numberOfRows, numberOfColumns, storage, null, null, values, null);
+        }
+    }
+
+    // builds a matrix over columns that stay off the heap (e.g. read-only file mappings shared by several processes through the page
+    // cache); only absolute reads are ever made, so the buffers can be read concurrently
+    public static InstanceMatrix map(DoubleBuffer[] columns, int numberOfRows)
+    {
+        for (DoubleBuffer column : columns)
+            if (column.limit() != numberOfRows)
+                throw new IllegalArgumentException("Expected columns of " + numberOfRows + " values, got " + column.limit() + ".");
+
+        return new InstanceMatrix(numberOfRows, columns.length, Storage.DOUBLE, null, null, null, columns);
+    }
+
+    // a single array holds every value, so its length must be a valid array size
+    public static boolean fits(long numberOfRows, long numberOfColumns)
+    {
+        return numberOfRows * numberOfColumns <= Integer.MAX_VALUE - 8;
+    }
+
+    // copies the data set into a matrix and returns a data set with the same header and weights whose instances are views over
+    // its rows; the data set is returned as is if it does not fit in a single matrix
+    public static Instances compact(Instances dataSet)
+    {
+        int numberOfRows = dataSet.numInstances();
+        int numberOfColumns = dataSet.numAttributes();
+        if (!fits(numberOfRows, numberOfColumns))
+            return dataSet;
+
+        double[] values = new double[numberOfRows * numberOfColumns];
+        double[] weights = new double[numberOfRows];
+        for (int i = 0; i < numberOfRows; i++)
+        {
+            for (int j = 0; j < numberOfColumns; j++)
+                values[i * numberOfColumns + j] = dataSet.instance(i).value(j);
+            weights[i] = dataSet.instance(i).weight();
+        }
+
+        return of(values, numberOfRows, numberOfColumns).toInstances(new Instances(dataSet, numberOfRows), weights);
+    }
+
+    // fills the given (empty) header with one view per row, carrying the given weights
+    public Instances toInstances(Instances header, double[] weights)
+    {
+        if (header.numAttributes() != numberOfColumns)
+            throw new IllegalArgumentException("Expected " + numberOfColumns + " attributes, got " + header.numAttributes() + ".");
+
+        for (int i = 0; i < numberOfRows; i++)
+            header.add(new MatrixInstance(this, i, weights[i]));
+
+        return header;
+    }
+
+    public int getNumberOfRows()
+    {
+        return numberOfRows;
+    }
+
+    public int getNumberOfColumns()
+    {
+        return numberOfColumns;
+    }
+
+    public Storage getStorage()
+    {
+        return storage;
+    }
+
+    public boolean isMapped()
+    {
+        return mappedColumns != null;
+    }
+
+    public double get(int row, int column)
+    {
+        if (mappedColumns != null)
+            return mappedColumns[column].get(row);
+
+        int index = row * numberOfColumns + column;
+        switch (storage)
+        {
+            case SHORT:
+                return shortValues[index];
+            case FLOAT:
+                return floatValues[index];
+            default:
+                return doubleValues[index];
+        }
+    }
+
+    public double[] getRow(int row)
+    {
+        double[] values = new double[numberOfColumns];
+        for (int j = 0; j < numberOfColumns; j++)
+            values[j] = get(row, j);
+        return values;
+    }
+
+    // estimates the heap held by the matrix and the views over its rows; mapped values live off the heap, so only the views count
+    public long estimateBytes()
+    {
+        return mappedColumns != null ? numberOfRows * VIEW_OVERHEAD : estimateBytes(numberOfRows, numberOfColumns, storage);
+    }
+
+    public static long estimateBytes(long numberOfRows, long numberOfColumns, Storage storage)
+    {
+        return numberOfRows * numberOfColumns * storage.getBytes() + numberOfRows * VIEW_OVERHEAD;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstanceMatrix [numberOfRows=" + numberOfRows + ", numberOfColumns=" + numberOfColumns + ", storage=" + storage + ", mapped=" + isMapped() + "]";
+    }
+}
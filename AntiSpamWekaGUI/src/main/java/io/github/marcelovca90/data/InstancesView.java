@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class InstancesView extends Instances
+{
+    private static final long serialVersionUID = 1L;
+
+    // a split over the shared data set that reads through the run's permutation instead of copying the references
+    public InstancesView(Instances dataSet, int[] order, int from, int to)
+    {
+        this(dataSet, order, from, to, null);
+    }
+
+    // same as above, with the given instances (e.g. the empty patterns) appended after the permuted ones
+    public InstancesView(Instances dataSet, int[] order, int from, int to, Instances tail)
+    {
+        super(dataSet, 0);
+        if (from < 0 || to > order.length || from > to)
+            throw new IndexOutOfBoundsException("Invalid range [" + from + ", " + to + ") for " + order.length + " indices.");
+        m_Instances = new IndexedList(dataSet, order, from, to, tail);
+    }
+
+    public boolean isMaterialized()
+    {
+        return ((IndexedList) m_Instances).materialized;
+    }
+
+    // reads go through the permutation until something changes the list structurally (e.g. a learner deleting
+    // instances with a missing class); only then are the references copied, so the shared data set is never touched
+    private static class IndexedList extends ArrayList<Instance>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Instance> view;
+        private boolean materialized;
+
+        public IndexedList(Instances dataSet, int[] order, int from, int to, Instances tail)
+        {
+            super(0);
+            int length = to - from;
+            int tailLength = tail == null ? 0 : tail.size();
+            this.view = new AbstractList<Instance>()
+            {
+                @Override
+                public Instance get(int index)
+                {
+                    if (index < 0 || index >= length + tailLength)
+                        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (length + tailLength));
+                    return index < length ? dataSet.get(order[from + index]) : tail.get(index - length);
+                }
+
+                @Override
+                public int size()
+                {
+                    return length + tailLength;
+                }
+            };
+            this.materialized = false;
+        }
+
+        private void materialize()
+        {
+            if (!materialized)
+            {
+                super.ensureCapacity(view.size());
+                for (Instance instance : view)
+                    super.add(instance);
+                materialized = true;
+            }
+        }
+
+        // read operations
+
+        @Override
+        public Instance get(int index)
+        {
+            return materialized ? super.get(index) : view.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return materialized ? super.size() : view.size();
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return size() == 0;
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            return materialized ? super.contains(o) : view.contains(o);
+        }
+
+        @Override
+        public int indexOf(Object o)
+        {
+            return materialized ? super.indexOf(o) : view.indexOf(o);
+        }
+
+        @Override
+        public int lastIndexOf(Object o)
+        {
+            return materialized ? super.lastIndexOf(o) : view.lastIndexOf(o);
+        }
+
+        @Override
+        public Object[] toArray()
+        {
+            return materialized ? super.toArray() : view.toArray();
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a)
+        {
+            return materialized ? super.toArray(a) : view.toArray(a);
+        }
+
+        @Override
+        public Iterator<Instance> iterator()
+        {
+            return materialized ? super.iterator() : view.iterator();
+        }
+
+        @Override
+        public ListIterator<Instance> listIterator()
+        {
+            return materialized ? super.listIterator() : view.listIterator();
+        }
+
+        @Override
+        public ListIterator<Instance> listIterator(int index)
+        {
+            return materialized ? super.listIterator(index) : view.listIterator(index);
+        }
+
+        @Override
+        public List<Instance> subList(int fromIndex, int toIndex)
+        {
+            return materialized ? super.subList(fromIndex, toIndex) : view.subList(fromIndex, toIndex);
+        }
+
+        @Override
+        public void forEach(Consumer<? super Instance> action)
+        {
+            if (materialized)
+                super.forEach(action);
+            else
+                view.forEach(action);
+        }
+
+        @Override
+        public Spliterator<Instance> spliterator()
+        {
+            return materialized ? super.spliterator() : view.spliterator();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return materialized ? super.equals(o) : view.equals(o);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return materialized ? super.hashCode() : view.hashCode();
+        }
+
+        @Override
+        public Object clone()
+        {
+            return new ArrayList<>(this);
+        }
+
+        // write operations
+
+        @Override
+        public Instance set(int index, Instance element)
+        {
+            materialize();
+            return super.set(index, element);
+        }
+
+        @Override
+        public boolean add(Instance e)
+        {
+            materialize();
+            return super.add(e);
+        }
+
+        @Override
+        public void add(int index, Instance element)
+        {
+            materialize();
+            super.add(index, element);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends Instance> c)
+        {
+            materialize();
+            return super.addAll(c);
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends Instance> c)
+        {
+            materialize();
+            return super.addAll(index, c);
+        }
+
+        @Override
+        public Instance remove(int index)
+        {
+            materialize();
+            return super.remove(index);
+        }
+
+        @Override
+        public boolean remove(Object o)
+        {
+            materialize();
+            return super.remove(o);
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c)
+        {
+            materialize();
+            return super.removeAll(c);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c)
+        {
+            materialize();
+            return super.retainAll(c);
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super Instance> filter)
+        {
+            materialize();
+            return super.removeIf(filter);
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<Instance> operator)
+        {
+            materialize();
+            super.replaceAll(operator);
+        }
+
+        @Override
+        public void sort(Comparator<? super Instance> c)
+        {
+            materialize();
+            super.sort(c);
+        }
+
+        @Override
+        public void clear()
+        {
+            materialized = true;
+            super.clear();
+        }
+
+        // serialized (e.g. inside a saved lazy learner) as a plain list, so the view never leaks into model files
+        private Object writeReplace()
+        {
+            return new ArrayList<>(this);
+        }
+    }
+}
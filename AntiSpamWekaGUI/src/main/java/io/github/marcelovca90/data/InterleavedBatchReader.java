@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+// merges two readers (e.g. of the ham and the spam instances) into batches of the given size; each instance is taken from either
+// reader with a probability proportional to the instances it has left, so both are spread over the whole stream in a random, yet
+// repeatable, order
+public class InterleavedBatchReader implements InstanceBatchReader
+{
+    private final InstanceBatchReader first;
+    private final InstanceBatchReader second;
+    private final int batchSize;
+    private final Random random;
+    private Instances firstBatch;
+    private Instances secondBatch;
+    private int firstPosition;
+    private int secondPosition;
+    private long firstRemaining;
+    private long secondRemaining;
+
+    public InterleavedBatchReader(InstanceBatchReader first, InstanceBatchReader second, int batchSize, Random random)
+    {
+        if (first.getHeader().numAttributes() != second.getHeader().numAttributes())
+            throw new IllegalArgumentException(String.format("Expected readers of the same attributes, got %d and %d.", first.getHeader().numAttributes(),
+                second.getHeader().numAttributes()));
+
+        this.first = first;
+        this.second = second;
+        this.batchSize = batchSize;
+        this.random = random;
+        this.firstRemaining = first.getNumberOfInstances();
+        this.secondRemaining = second.getNumberOfInstances();
+    }
+
+    @Override
+    public Instances getHeader()
+    {
+        return first.getHeader();
+    }
+
+    @Override
+    public int getNumberOfInstances()
+    {
+        return first.getNumberOfInstances() + second.getNumberOfInstances();
+    }
+
+    @Override
+    public int getNumberOfTotalFeatures()
+    {
+        return first.getNumberOfTotalFeatures();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return firstRemaining + secondRemaining > 0;
+    }
+
+    @Override
+    public Instances next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        Instances batch = new Instances(getHeader(), (int) Math.min(batchSize, firstRemaining + secondRemaining));
+        while (batch.size() < batchSize && firstRemaining + secondRemaining > 0)
+        {
+            if (random.nextDouble() * (firstRemaining + secondRemaining) < firstRemaining)
+            {
+                batch.add(nextOfFirst());
+                firstRemaining--;
+            }
+            else
+            {
+                batch.add(nextOfSecond());
+                secondRemaining--;
+            }
+        }
+
+        return batch;
+    }
+
+    private Instance nextOfFirst()
+    {
+        if (firstBatch == null || firstPosition == firstBatch.size())
+        {
+            firstBatch = first.next();
+            firstPosition = 0;
+        }
+        return firstBatch.get(firstPosition++);
+    }
+
+    private Instance nextOfSecond()
+    {
+        if (secondBatch == null || secondPosition == secondBatch.size())
+        {
+            secondBatch = second.next();
+            secondPosition = 0;
+        }
+        return secondBatch.get(secondPosition++);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            first.close();
+        }
+        finally
+        {
+            second.close();
+        }
+    }
+}
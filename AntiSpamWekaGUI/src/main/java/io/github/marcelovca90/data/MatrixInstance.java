@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import weka.core.AbstractInstance;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+public class MatrixInstance extends AbstractInstance
+{
+    private static final long serialVersionUID = 1L;
+
+    private final InstanceMatrix matrix;
+    private final int row;
+
+    // reads its values from a row of the shared matrix; like a DenseInstance, the first change copies the values into a private
+    // array (m_AttValues), so neither the matrix nor the other instances over the same row are ever touched
+    public MatrixInstance(InstanceMatrix matrix, int row, double weight)
+    {
+        this.matrix = matrix;
+        this.row = row;
+        this.m_Weight = weight;
+        this.m_AttValues = null;
+        this.m_Dataset = null;
+    }
+
+    public InstanceMatrix getMatrix()
+    {
+        return matrix;
+    }
+
+    public int getRow()
+    {
+        return row;
+    }
+
+    @Override
+    public Object copy()
+    {
+        MatrixInstance result = new MatrixInstance(matrix, row, m_Weight);
+        result.m_AttValues = m_AttValues;
+        result.m_Dataset = m_Dataset;
+        return result;
+    }
+
+    @Override
+    public Instance copy(double[] values)
+    {
+        DenseInstance result = new DenseInstance(m_Weight, values);
+        result.setDataset(m_Dataset);
+        return result;
+    }
+
+    @Override
+    public int index(int position)
+    {
+        return position;
+    }
+
+    @Override
+    public Instance mergeInstance(Instance inst)
+    {
+        int m = 0;
+        double[] values = new double[numAttributes() + inst.numAttributes()];
+        for (int j = 0; j < numAttributes(); j++, m++)
+            values[m] = value(j);
+        for (int j = 0; j < inst.numAttributes(); j++, m++)
+            values[m] = inst.value(j);
+        return new DenseInstance(1.0, values);
+    }
+
+    @Override
+    public int numAttributes()
+    {
+        return m_AttValues != null ? m_AttValues.length : matrix.getNumberOfColumns();
+    }
+
+    @Override
+    public int numValues()
+    {
+        return numAttributes();
+    }
+
+    @Override
+    public void replaceMissingValues(double[] array)
+    {
+        if (array == null || array.length != numAttributes())
+            throw new IllegalArgumentException("Unequal number of attributes!");
+
+        double[] values = toDoubleArray();
+        for (int i = 0; i < values.length; i++)
+            if (Utils.isMissingValue(values[i]))
+                values[i] = array[i];
+        m_AttValues = values;
+    }
+
+    @Override
+    public void setValue(int attIndex, double value)
+    {
+        double[] values = toDoubleArray();
+        values[attIndex] = value;
+        m_AttValues = values;
+    }
+
+    @Override
+    public void setValueSparse(int indexOfIndex, double value)
+    {
+        setValue(indexOfIndex, value);
+    }
+
+    @Override
+    public double[] toDoubleArray()
+    {
+        return m_AttValues != null ? m_AttValues.clone() : matrix.getRow(row);
+    }
+
+    @Override
+    public String toStringNoWeight()
+    {
+        return toStringNoWeight(AbstractInstance.s_numericAfterDecimalPoint);
+    }
+
+    @Override
+    public String toStringNoWeight(int afterDecimalPoint)
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < numAttributes(); i++)
+        {
+            if (i > 0)
+                text.append(",");
+            text.append(toString(i, afterDecimalPoint));
+        }
+        return text.toString();
+    }
+
+    @Override
+    public double value(int attIndex)
+    {
+        return m_AttValues != null ? m_AttValues[attIndex] : matrix.get(row, attIndex);
+    }
+
+    @Override
+    public double valueSparse(int indexOfIndex)
+    {
+        return value(indexOfIndex);
+    }
+
+    @Override
+    protected void forceDeleteAttributeAt(int position)
+    {
+        double[] values = toDoubleArray();
+        double[] newValues = new double[values.length - 1];
+        System.arraycopy(values, 0, newValues, 0, position);
+        System.arraycopy(values, position + 1, newValues, position, values.length - position - 1);
+        m_AttValues = newValues;
+    }
+
+    @Override
+    protected void forceInsertAttributeAt(int position)
+    {
+        double[] values = toDoubleArray();
+        double[] newValues = new double[values.length + 1];
+        System.arraycopy(values, 0, newValues, 0, position);
+        newValues[position] = Utils.missingValue();
+        System.arraycopy(values, position, newValues, position + 1, values.length - position);
+        m_AttValues = newValues;
+    }
+
+    @Override
+    public String getRevision()
+    {
+        return RevisionUtils.extract("$Revision: 1 $");
+    }
+
+    // serialized (e.g. inside a saved lazy learner) as a plain DenseInstance, so the shared matrix never ends up in model files
+    private Object writeReplace()
+    {
+        DenseInstance instance = new DenseInstance(m_Weight, toDoubleArray());
+        instance.setDataset(m_Dataset);
+        return instance;
+    }
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.NoSuchElementException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+// reads a dense or sparse raw file sequentially, one batch at a time; every instance has the given class and weight
+public class RawFileBatchReader implements InstanceBatchReader
+{
+    private static final Logger LOGGER = LogManager.getLogger(RawFileBatchReader.class);
+
+    private final String filename;
+    private final DataInputStream inputStream;
+    private final Instances header;
+    private final boolean sparse;
+    private final double classValue;
+    private final double weight;
+    private final int batchSize;
+    private final int numberOfInstances;
+    private final int numberOfAttributes;
+    private int returnedInstances;
+
+    public RawFileBatchReader(String filename, MessageType messageType, Instances header, boolean sparse, int batchSize, double weight) throws IOException
+    {
+        LOGGER.trace("Streaming [{}] data from {}RAW file [{}].", messageType, sparse ? "sparse " : "", filename);
+
+        this.filename = filename;
+        this.inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16));
+        this.header = header;
+        this.sparse = sparse;
+        this.classValue = header.classAttribute().indexOfValue(messageType.name());
+        this.weight = weight;
+        this.batchSize = batchSize;
+
+        try
+        {
+            this.numberOfInstances = inputStream.readInt();
+            this.numberOfAttributes = inputStream.readInt();
+            if (numberOfAttributes != header.numAttributes() - 1)
+                throw new IOException(String.format("Expected %d attributes in raw file %s, found %d", header.numAttributes() - 1, filename, numberOfAttributes));
+        }
+        catch (IOException e)
+        {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Instances getHeader()
+    {
+        return header;
+    }
+
+    @Override
+    public int getNumberOfInstances()
+    {
+        return numberOfInstances;
+    }
+
+    @Override
+    public int getNumberOfTotalFeatures()
+    {
+        return numberOfAttributes;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return returnedInstances < numberOfInstances;
+    }
+
+    @Override
+    public Instances next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        Instances batch = new Instances(header, Math.min(batchSize, numberOfInstances - returnedInstances));
+        try
+        {
+            while (batch.size() < batchSize && returnedInstances < numberOfInstances)
+            {
+                batch.add(sparse ? readSparseInstance() : readDenseInstance());
+                returnedInstances++;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        return batch;
+    }
+
+    private DenseInstance readDenseInstance() throws IOException
+    {
+        double[] values = new double[numberOfAttributes + 1];
+        for (int j = 0; j < numberOfAttributes; j++)
+            values[j] = inputStream.readDouble();
+        values[numberOfAttributes] = classValue;
+
+        return new DenseInstance(weight, values);
+    }
+
+    // the amount of non-zero features, then their (index, value) pairs with increasing indices; the class is the last attribute, so
+    // it is stored after the features whenever it is not zero
+    private SparseInstance readSparseInstance() throws IOException
+    {
+        int classCount = classValue != 0 ? 1 : 0;
+
+        int count = inputStream.readInt();
+        if (count < 0 || count > numberOfAttributes)
+            throw new IOException(String.format("Invalid amount of values (%d) of instance %d in sparse raw file %s", count, returnedInstances, filename));
+
+        int[] indices = new int[count + classCount];
+        double[] values = new double[count + classCount];
+        for (int k = 0; k < count; k++)
+        {
+            indices[k] = inputStream.readInt();
+            values[k] = inputStream.readDouble();
+            if (indices[k] < 0 || indices[k] >= numberOfAttributes || (k > 0 && indices[k] <= indices[k - 1]))
+                throw new IOException(String.format("Invalid index (%d) of instance %d in sparse raw file %s", indices[k], returnedInstances, filename));
+        }
+        if (classCount > 0)
+        {
+            indices[count] = numberOfAttributes;
+            values[count] = classValue;
+        }
+
+        return new SparseInstance(weight, values, indices, numberOfAttributes + 1);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        inputStream.close();
+    }
+}
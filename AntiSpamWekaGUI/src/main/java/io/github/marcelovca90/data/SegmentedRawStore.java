@@ -0,0 +1,558 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.data.InstanceMatrix.Storage;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+// a raw data set of a single class that grows by appending immutable segments (compressed raw files) instead of being rewritten; the
+// manifest lists the segments that make up the data set and is only ever replaced atomically, so readers always see a consistent
+// snapshot while a writer appends segments or merges them in the background
+public class SegmentedRawStore
+{
+    private static final Logger LOGGER = LogManager.getLogger(SegmentedRawStore.class);
+
+    // manifest layout (text): the no. attributes, then the file name and no. instances of each segment, in order, one per line
+    public static final String EXTENSION = ".segments";
+    public static final String MANIFEST = "manifest";
+    private static final String LOCK = "lock";
+    private static final String ATTRIBUTES = "attributes";
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    // a segment may be merged away between reading the manifest and reading the segment, in which case the manifest is read again
+    private static final int READ_ATTEMPTS = 3;
+
+    // the file lock serializes writers of different processes, and these monitors the writers of this one, which the file lock cannot
+    private static final Map<Path, Object> WRITERS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+
+    public SegmentedRawStore(String directory)
+    {
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+    }
+
+    public Path getDirectory()
+    {
+        return directory;
+    }
+
+    public boolean exists()
+    {
+        return Files.exists(directory.resolve(MANIFEST));
+    }
+
+    // the segments that currently make up the data set
+    public Manifest readManifest() throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(directory.resolve(MANIFEST), StandardCharsets.UTF_8))
+        {
+            String[] header = reader.readLine().split("\t");
+            if (header.length != 2 || !header[0].equals(ATTRIBUTES))
+                throw new IOException("Not a segmented raw store manifest: " + directory.resolve(MANIFEST));
+
+            List<String> segments = new ArrayList<>();
+            List<Integer> sizes = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] parts = line.split("\t");
+                if (parts.length != 2)
+                    throw new IOException("Corrupted segmented raw store manifest: " + directory.resolve(MANIFEST));
+                segments.add(parts[0]);
+                sizes.add(Integer.parseInt(parts[1]));
+            }
+
+            return new Manifest(Integer.parseInt(header[1]), segments, sizes);
+        }
+        catch (NullPointerException | NumberFormatException e)
+        {
+            throw new IOException("Corrupted segmented raw store manifest: " + directory.resolve(MANIFEST), e);
+        }
+    }
+
+    // reads the given records (or every instance, if none are given) of all segments as a single data set of the given class, each
+    // segment inflating its blocks with up to the given amount of threads
+    public Instances read(Instances header, MessageType messageType, int[] records, int threads) throws IOException
+    {
+        LOGGER.trace("Reading [{}] data from segmented RAW store [{}].", messageType, directory);
+
+        for (int attempt = 1;; attempt++)
+        {
+            Manifest manifest = readManifest();
+            try
+            {
+                return read(manifest, header, messageType, records, threads);
+            }
+            catch (NoSuchFileException e)
+            {
+                if (attempt == READ_ATTEMPTS)
+                    throw e;
+                LOGGER.debug("Segment [{}] was merged away while reading, reading the manifest again.", e.getFile());
+            }
+        }
+    }
+
+    private Instances read(Manifest manifest, Instances header, MessageType messageType, int[] records, int threads) throws IOException
+    {
+        int numberOfSegments = manifest.getSegments().size();
+        if (records == null)
+        {
+            Instances dataSet = new Instances(header, manifest.getNumberOfInstances());
+            for (String segment : manifest.getSegments())
+                dataSet.addAll(CompressedRawFile.open(resolve(segment).toString()).read(header, messageType, null, threads));
+            return dataSet;
+        }
+
+        // split the records among the segments, keeping the position of each one in the sample
+        long[] firsts = new long[numberOfSegments + 1];
+        for (int s = 0; s < numberOfSegments; s++)
+            firsts[s + 1] = firsts[s] + manifest.getSizes().get(s);
+
+        List<List<Integer>> segmentRecords = new ArrayList<>(numberOfSegments);
+        List<List<Integer>> segmentPositions = new ArrayList<>(numberOfSegments);
+        for (int s = 0; s < numberOfSegments; s++)
+        {
+            segmentRecords.add(new ArrayList<>());
+            segmentPositions.add(new ArrayList<>());
+        }
+        for (int p = 0; p < records.length; p++)
+        {
+            if (records[p] < 0 || records[p] >= firsts[numberOfSegments])
+                throw new IOException(String.format("Invalid record %d of segmented raw store %s with %d instances", records[p], directory, firsts[numberOfSegments]));
+            int s = 0;
+            while (records[p] >= firsts[s + 1])
+                s++;
+            segmentRecords.get(s).add((int) (records[p] - firsts[s]));
+            segmentPositions.get(s).add(p);
+        }
+
+        Instance[] sample = new Instance[records.length];
+        for (int s = 0; s < numberOfSegments; s++)
+        {
+            if (segmentRecords.get(s).isEmpty())
+                continue;
+            int[] localRecords = segmentRecords.get(s).stream().mapToInt(Integer::intValue).toArray();
+            Instances segmentSample = CompressedRawFile.open(resolve(manifest.getSegments().get(s)).toString()).read(header, messageType, localRecords, threads);
+            for (int k = 0; k < localRecords.length; k++)
+                sample[segmentPositions.get(s).get(k)] = segmentSample.get(k);
+        }
+
+        Instances dataSet = new Instances(header, records.length);
+        Collections.addAll(dataSet, sample);
+        return dataSet;
+    }
+
+    // iterates over the instances of all segments in batches of at most the given size; every segment is opened upfront, so that
+    // merging them away while streaming does not affect the stream
+    public InstanceBatchReader openBatches(Instances header, MessageType messageType, int batchSize, double weight) throws IOException
+    {
+        LOGGER.trace("Streaming [{}] data from segmented RAW store [{}].", messageType, directory);
+
+        for (int attempt = 1;; attempt++)
+        {
+            Manifest manifest = readManifest();
+            List<InstanceBatchReader> readers = new ArrayList<>(manifest.getSegments().size());
+            try
+            {
+                for (String segment : manifest.getSegments())
+                    readers.add(CompressedRawFile.open(resolve(segment).toString()).openBatches(header, messageType, batchSize, weight));
+                return new SegmentBatchReader(header, manifest, readers);
+            }
+            catch (NoSuchFileException e)
+            {
+                for (InstanceBatchReader reader : readers)
+                    reader.close();
+                if (attempt == READ_ATTEMPTS)
+                    throw e;
+                LOGGER.debug("Segment [{}] was merged away while opening it, reading the manifest again.", e.getFile());
+            }
+        }
+    }
+
+    // appends the instances (without their classes or weights) as a new segment, creating the store if needed; the segment is
+    // written before the manifest is locked, so only publishing it waits for other writers
+    public void append(Instances instances, boolean sparse, int threads) throws IOException
+    {
+        LOGGER.trace("Appending [{}] instances to segmented RAW store [{}].", instances.numInstances(), directory);
+
+        Files.createDirectories(directory);
+        Path segment = createSegment(instances, sparse, threads);
+        int numberOfAttributes = instances.numAttributes() - (instances.classIndex() >= 0 ? 1 : 0);
+
+        boolean published = false;
+        try
+        {
+            synchronized (WRITERS.computeIfAbsent(directory, d -> new Object()))
+            {
+                try (FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+                {
+                    FileLock lock = lockChannel.lock();
+                    try
+                    {
+                        Manifest manifest = exists() ? readManifest() : new Manifest(numberOfAttributes, Collections.emptyList(), Collections.emptyList());
+                        if (manifest.getNumberOfAttributes() != numberOfAttributes)
+                            throw new IllegalArgumentException(String.format("Expected %d attributes to append to %s, got %d.",
+                                manifest.getNumberOfAttributes(), directory, numberOfAttributes));
+
+                        List<String> segments = new ArrayList<>(manifest.getSegments());
+                        List<Integer> sizes = new ArrayList<>(manifest.getSizes());
+                        segments.add(segment.getFileName().toString());
+                        sizes.add(instances.numInstances());
+                        writeManifest(new Manifest(numberOfAttributes, segments, sizes));
+                        published = true;
+                    }
+                    finally
+                    {
+                        lock.release();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if (!published)
+                Files.deleteIfExists(segment);
+        }
+    }
+
+    // merges the segments listed by the manifest into a single one, while appends go on; the merged segment replaces only the
+    // segments it was built from, so segments appended meanwhile are kept after it, and the merge is dropped if another one got
+    // there first; returns whether the segments were merged
+    public boolean compact(int threads) throws IOException
+    {
+        Manifest snapshot = readManifest();
+        if (snapshot.getSegments().size() < 2)
+            return false;
+
+        LOGGER.trace("Compacting [{}] segments of segmented RAW store [{}].", snapshot.getSegments().size(), directory);
+
+        Path segment = mergeSegments(snapshot, threads);
+
+        boolean published = false;
+        try
+        {
+            synchronized (WRITERS.computeIfAbsent(directory, d -> new Object()))
+            {
+                try (FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+                {
+                    FileLock lock = lockChannel.lock();
+                    try
+                    {
+                        Manifest manifest = readManifest();
+                        int merging = snapshot.getSegments().size();
+                        if (manifest.getSegments().size() < merging || !manifest.getSegments().subList(0, merging).equals(snapshot.getSegments()))
+                            return false;
+
+                        List<String> segments = new ArrayList<>();
+                        List<Integer> sizes = new ArrayList<>();
+                        segments.add(segment.getFileName().toString());
+                        sizes.add(snapshot.getNumberOfInstances());
+                        segments.addAll(manifest.getSegments().subList(merging, manifest.getSegments().size()));
+                        sizes.addAll(manifest.getSizes().subList(merging, manifest.getSizes().size()));
+                        writeManifest(new Manifest(manifest.getNumberOfAttributes(), segments, sizes));
+                        published = true;
+                    }
+                    finally
+                    {
+                        lock.release();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if (!published)
+                Files.deleteIfExists(segment);
+        }
+
+        // readers that still need the merged segments read the manifest again
+        for (String mergedSegment : snapshot.getSegments())
+        {
+            try
+            {
+                Files.deleteIfExists(resolve(mergedSegment));
+            }
+            catch (IOException e)
+            {
+                LOGGER.warn("Could not delete merged segment [{}]: {}", mergedSegment, e.getMessage());
+            }
+        }
+
+        return true;
+    }
+
+    // compacts the store on a daemon thread, so that appending and reading go on meanwhile
+    public CompletableFuture<Boolean> compactInBackground(int threads)
+    {
+        CompletableFuture<Boolean> compaction = new CompletableFuture<>();
+
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                compaction.complete(compact(threads));
+            }
+            catch (IOException e)
+            {
+                compaction.completeExceptionally(new UncheckedIOException(e));
+            }
+            catch (RuntimeException e)
+            {
+                compaction.completeExceptionally(e);
+            }
+        }, "compaction-" + directory.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+
+        return compaction;
+    }
+
+    private static Instances createHeader(int numberOfAttributes)
+    {
+        ArrayList<Attribute> attributes = new ArrayList<>(numberOfAttributes + 1);
+        for (int j = 0; j < numberOfAttributes; j++)
+            attributes.add(new Attribute("x" + j));
+        attributes.add(new Attribute("class", Arrays.asList(MessageType.HAM.name(), MessageType.SPAM.name())));
+
+        Instances header = new Instances(UUID.randomUUID().toString(), attributes, 0);
+        header.setClassIndex(numberOfAttributes);
+        return header;
+    }
+
+    // streams the segments of the snapshot into a new one block by block, so that the store is never held in memory at once; the merged
+    // segment is sparse if any of its sources is, since those are the ones with mostly zeros, and its storage is the widest of theirs
+    private Path mergeSegments(Manifest snapshot, int threads) throws IOException
+    {
+        List<CompressedRawFile> sources = new ArrayList<>(snapshot.getSegments().size());
+        boolean sparse = false;
+        Storage storage = Storage.SHORT;
+        for (String segment : snapshot.getSegments())
+        {
+            CompressedRawFile source = CompressedRawFile.open(resolve(segment).toString());
+            sources.add(source);
+            sparse |= source.isSparse();
+            if (source.getStorage().compareTo(storage) > 0)
+                storage = source.getStorage();
+        }
+
+        // the class is not stored in the segments, so the merged instances are read as any of them
+        Instances header = createHeader(snapshot.getNumberOfAttributes());
+        Path segment = Files.createTempFile(directory, SEGMENT_PREFIX, CompressedRawFile.EXTENSION);
+        try (CompressedRawFile.BlockWriter writer = CompressedRawFile.openWriter(segment.toString(), header, storage, sparse, snapshot.getNumberOfInstances(),
+            CompressedRawFile.DEFAULT_ROWS_PER_BLOCK, threads))
+        {
+            for (CompressedRawFile source : sources)
+            {
+                try (InstanceBatchReader batches = source.openBatches(header, MessageType.HAM, CompressedRawFile.DEFAULT_ROWS_PER_BLOCK, 1.0))
+                {
+                    while (batches.hasNext())
+                        for (Instance instance : batches.next())
+                            writer.add(instance);
+                }
+            }
+            return writer.commit();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            Files.deleteIfExists(segment);
+            throw e;
+        }
+    }
+
+    private Path resolve(String segment)
+    {
+        return directory.resolve(segment);
+    }
+
+    private Path createSegment(Instances instances, boolean sparse, int threads) throws IOException
+    {
+        Path segment = Files.createTempFile(directory, SEGMENT_PREFIX, CompressedRawFile.EXTENSION);
+        try
+        {
+            return CompressedRawFile.write(instances, segment.toString(), sparse, CompressedRawFile.DEFAULT_ROWS_PER_BLOCK, threads);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            Files.deleteIfExists(segment);
+            throw e;
+        }
+    }
+
+    // the manifest is written to a temporary file and forced to disk first, so that readers only ever see a complete one
+    private void writeManifest(Manifest manifest) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ATTRIBUTES).append('\t').append(manifest.getNumberOfAttributes()).append('\n');
+        for (int s = 0; s < manifest.getSegments().size(); s++)
+            sb.append(manifest.getSegments().get(s)).append('\t').append(manifest.getSizes().get(s)).append('\n');
+
+        Path temporary = Files.createTempFile(directory, MANIFEST, ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE))
+        {
+            channel.write(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        catch (IOException e)
+        {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static class Manifest
+    {
+        private final int numberOfAttributes;
+        private final List<String> segments;
+        private final List<Integer> sizes;
+
+        private Manifest(int numberOfAttributes, List<String> segments, List<Integer> sizes)
+        {
+            this.numberOfAttributes = numberOfAttributes;
+            this.segments = Collections.unmodifiableList(new ArrayList<>(segments));
+            this.sizes = Collections.unmodifiableList(new ArrayList<>(sizes));
+        }
+
+        public int getNumberOfAttributes()
+        {
+            return numberOfAttributes;
+        }
+
+        // file names of the segments, in the order their instances make up the data set
+        public List<String> getSegments()
+        {
+            return segments;
+        }
+
+        // number of instances of each segment
+        public List<Integer> getSizes()
+        {
+            return sizes;
+        }
+
+        public int getNumberOfInstances()
+        {
+            return sizes.stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+
+    private static class SegmentBatchReader implements InstanceBatchReader
+    {
+        private final Instances header;
+        private final Manifest manifest;
+        private final List<InstanceBatchReader> readers;
+        private int current;
+
+        private SegmentBatchReader(Instances header, Manifest manifest, List<InstanceBatchReader> readers)
+        {
+            this.header = header;
+            this.manifest = manifest;
+            this.readers = readers;
+        }
+
+        @Override
+        public Instances getHeader()
+        {
+            return header;
+        }
+
+        @Override
+        public int getNumberOfInstances()
+        {
+            return manifest.getNumberOfInstances();
+        }
+
+        @Override
+        public int getNumberOfTotalFeatures()
+        {
+            return manifest.getNumberOfAttributes();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (current < readers.size() && !readers.get(current).hasNext())
+                current++;
+            return current < readers.size();
+        }
+
+        // a batch never spans two segments, so the batch at the end of a segment may be smaller than the others
+        @Override
+        public Instances next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            return readers.get(current).next();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            IOException exception = null;
+            for (InstanceBatchReader reader : readers)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (IOException e)
+                {
+                    exception = e;
+                }
+            }
+            if (exception != null)
+                throw exception;
+        }
+    }
+}
@@ -42,16 +42,20 @@ import javax.swing.JPasswordField;
 import javax.swing.JProgressBar;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.EtchedBorder;
 import javax.swing.border.TitledBorder;
 import javax.xml.bind.DatatypeConverter;
 
+import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import io.github.marcelovca90.common.ExperimentPlan;
 import io.github.marcelovca90.common.MethodConfiguration;
 import io.github.marcelovca90.helper.ExecutionHelper;
+import io.github.marcelovca90.helper.ExecutionHelper.ProgressListener;
 import io.github.marcelovca90.helper.MailHelper;
 import io.github.marcelovca90.helper.MailHelper.CryptoProtocol;
 
@@ -64,8 +68,10 @@ public class UserInterface extends JFrame
 
     private JButton btnRun;
     private JCheckBox chkBalanceClasses;
+    private JCheckBox chkCheckpointRuns;
     private JCheckBox chkEmailResults;
     private JCheckBox chkIncludeEmpty;
+    private JCheckBox chkMapRawFiles;
     private JCheckBox chkRemoveOutliers;
     private JCheckBox chkSaveArff;
     private JCheckBox chkSaveModel;
@@ -80,6 +86,9 @@ public class UserInterface extends JFrame
     private JTextField txtMetadata;
     private JTextField txtRecipient;
     private JTextField txtRuns;
+    private JTextField txtRunParallelism;
+    private JTextField txtCellParallelism;
+    private JTextField txtRunTimeout;
     private JTextField txtSender;
     private JTextField txtServer;
     private JTextField txtUsername;
@@ -148,7 +157,7 @@ public class UserInterface extends JFrame
         txtMetadata.setText(USER_HOME + "!git!anti-spam-weka-data!2017_BASE2!metadata.txt".replace("!", File.separator));
         txtMetadata.setEditable(false);
         txtMetadata.setColumns(10);
-        txtMetadata.setBounds(79, 18, 399, 45);
+        txtMetadata.setBounds(79, 18, 199, 45);
         panelAntiSpamSettings.add(txtMetadata);
 
         JButton btnChooseMetadata = new JButton("Choose");
@@ -162,7 +171,7 @@ public class UserInterface extends JFrame
                 txtMetadata.setText(selectedFile.getAbsolutePath());
             }
         });
-        btnChooseMetadata.setBounds(485, 19, 97, 45);
+        btnChooseMetadata.setBounds(285, 19, 87, 45);
         panelAntiSpamSettings.add(btnChooseMetadata);
 
         panelMethods = new JPanel();
@@ -195,7 +204,7 @@ public class UserInterface extends JFrame
 
         JPanel panelRunSettings = new JPanel();
         panelRunSettings.setBorder(new TitledBorder(new EtchedBorder(EtchedBorder.LOWERED, null, null), "Run settings", TitledBorder.LEADING, TitledBorder.TOP, null, new Color(0, 0, 0)));
-        panelRunSettings.setBounds(432, 72, 304, 150);
+        panelRunSettings.setBounds(432, 72, 304, 172);
         panelAntiSpamSettings.add(panelRunSettings);
         panelRunSettings.setLayout(new GridLayout(0, 2));
 
@@ -226,6 +235,11 @@ public class UserInterface extends JFrame
         chkRemoveOutliers.setToolTipText("Rollback evaluations that contain outliers");
         panelRunSettings.add(chkRemoveOutliers);
 
+        chkMapRawFiles = new JCheckBox("Map Raw Files");
+        chkMapRawFiles.setToolTipText("Load the raw data sets through memory-mapped files");
+        chkMapRawFiles.setSelected(true);
+        panelRunSettings.add(chkMapRawFiles);
+
         chkSaveArff = new JCheckBox("Save ARFF");
         chkSaveArff.setToolTipText("Save the whole data set to a .arff file");
         panelRunSettings.add(chkSaveArff);
@@ -238,6 +252,10 @@ public class UserInterface extends JFrame
         chkSaveSets.setToolTipText("Save the training and testing data sets to a .csv file");
         panelRunSettings.add(chkSaveSets);
 
+        chkCheckpointRuns = new JCheckBox("Checkpoint Runs");
+        chkCheckpointRuns.setToolTipText("Replay the runs completed by previous executions on the same data sets, instead of executing them again");
+        panelRunSettings.add(chkCheckpointRuns);
+
         chkEmailResults = new JCheckBox("E-mail results");
         chkEmailResults.addActionListener(ae ->
         {
@@ -255,6 +273,20 @@ public class UserInterface extends JFrame
         chkEmailResults.setSelected(true);
         panelRunSettings.add(chkEmailResults);
 
+        JPanel panelRunTimeout = new JPanel();
+        panelRunTimeout.setLayout(new GridLayout(1, 2));
+        panelRunSettings.add(panelRunTimeout);
+
+        JLabel lblRunTimeout = new JLabel("Timeout");
+        lblRunTimeout.setHorizontalAlignment(SwingConstants.CENTER);
+        panelRunTimeout.add(lblRunTimeout);
+
+        txtRunTimeout = new JTextField();
+        txtRunTimeout.setToolTipText("Seconds after which a run is interrupted and recorded as timed out (0 means no limit)");
+        txtRunTimeout.setHorizontalAlignment(SwingConstants.CENTER);
+        txtRunTimeout.setText("0");
+        panelRunTimeout.add(txtRunTimeout);
+
         txtRuns = new JTextField();
         txtRuns.setHorizontalAlignment(SwingConstants.CENTER);
         txtRuns.setText("10");
@@ -266,8 +298,32 @@ public class UserInterface extends JFrame
         lblRuns.setBounds(594, 18, 62, 45);
         panelAntiSpamSettings.add(lblRuns);
 
+        txtRunParallelism = new JTextField();
+        txtRunParallelism.setToolTipText("Number of runs executed in parallel for each data set");
+        txtRunParallelism.setHorizontalAlignment(SwingConstants.CENTER);
+        txtRunParallelism.setText("1");
+        txtRunParallelism.setColumns(10);
+        txtRunParallelism.setBounds(518, 18, 68, 45);
+        panelAntiSpamSettings.add(txtRunParallelism);
+
+        JLabel lblRunParallelism = new JLabel("Threads");
+        lblRunParallelism.setBounds(454, 18, 62, 45);
+        panelAntiSpamSettings.add(lblRunParallelism);
+
+        txtCellParallelism = new JTextField();
+        txtCellParallelism.setToolTipText("Number of (method, data set) pairs executed in parallel, as long as the heap allows");
+        txtCellParallelism.setHorizontalAlignment(SwingConstants.CENTER);
+        txtCellParallelism.setText("1");
+        txtCellParallelism.setColumns(10);
+        txtCellParallelism.setBounds(418, 18, 30, 45);
+        panelAntiSpamSettings.add(txtCellParallelism);
+
+        JLabel lblCellParallelism = new JLabel("Cells");
+        lblCellParallelism.setBounds(380, 18, 36, 45);
+        panelAntiSpamSettings.add(lblCellParallelism);
+
         panelEmailSettings = new JPanel();
-        panelEmailSettings.setBounds(432, 225, 304, 263);
+        panelEmailSettings.setBounds(432, 247, 304, 241);
         panelAntiSpamSettings.add(panelEmailSettings);
         panelEmailSettings.setBorder(new TitledBorder(new EtchedBorder(EtchedBorder.LOWERED, null, null), "E-mail settings", TitledBorder.LEADING, TitledBorder.TOP, null, new Color(0, 0, 0)));
         panelEmailSettings.setLayout(new GridLayout(0, 2, 0, 0));
@@ -383,16 +439,40 @@ public class UserInterface extends JFrame
         {
             try
             {
-                setUpExecutionHelper();
-
                 if (!ExecutionHelper.isRunning)
                 {
+                    setUpExecutionHelper();
+
+                    // show the projected duration of the experiment before starting it
+                    ExperimentPlan plan = ExecutionHelper.plan();
+                    String message = String.format("%d cells on %d workers.%nProjected makespan: %s (%d cells without history).%nStart the experiment?",
+                            plan.getCells().size(), plan.getWorkers(), DurationFormatUtils.formatDurationHMS((long) plan.getProjectedMakespanMillis()),
+                            plan.getUnpredictedCells());
+                    if (JOptionPane.showConfirmDialog(null, message, "Experiment plan", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION)
+                        return;
+
                     setPanelEnabled(contentPane, false);
-                    btnRun.setText("Exit");
+                    btnRun.setText("Stop");
                     btnRun.setEnabled(true);
                     progressBar.setEnabled(true);
 
-                    new Thread(() -> ExecutionHelper.run()).start();
+                    // once the experiment finishes (or stops), the button exits the application
+                    new Thread(() ->
+                    {
+                        ExecutionHelper.run();
+                        SwingUtilities.invokeLater(() ->
+                        {
+                            btnRun.setText("Exit");
+                            btnRun.setEnabled(true);
+                        });
+                    }).start();
+                }
+                else if (btnRun.getText().equals("Stop"))
+                {
+                    // let the running runs be interrupted and checkpointed runs be kept, instead of exiting right away
+                    ExecutionHelper.cancel();
+                    btnRun.setText("Stopping");
+                    btnRun.setEnabled(false);
                 }
                 else
                 {
@@ -413,6 +493,9 @@ public class UserInterface extends JFrame
         ExecutionHelper.setUpMetadata(txtMetadata.getText());
         ExecutionHelper.setUpMethods(selectedMethods);
         ExecutionHelper.numberOfRuns = Integer.parseInt(txtRuns.getText());
+        ExecutionHelper.runParallelism = Integer.parseInt(txtRunParallelism.getText());
+        ExecutionHelper.cellParallelism = Integer.parseInt(txtCellParallelism.getText());
+        ExecutionHelper.runTimeout = 1000L * Long.parseLong(txtRunTimeout.getText());
 
         // run settings
         ExecutionHelper.skipTrain = chkSkipTrain.isSelected();
@@ -421,9 +504,11 @@ public class UserInterface extends JFrame
         ExecutionHelper.balanceClasses = chkBalanceClasses.isSelected();
         ExecutionHelper.includeEmpty = chkIncludeEmpty.isSelected();
         ExecutionHelper.removeOutliers = chkRemoveOutliers.isSelected();
+        ExecutionHelper.mapRawFiles = chkMapRawFiles.isSelected();
         ExecutionHelper.saveArff = chkSaveArff.isSelected();
         ExecutionHelper.saveModel = chkSaveModel.isSelected();
         ExecutionHelper.saveSets = chkSaveSets.isSelected();
+        ExecutionHelper.checkpointRuns = chkCheckpointRuns.isSelected();
         ExecutionHelper.emailResults = chkEmailResults.isSelected();
 
         // e-mail settings
@@ -433,6 +518,29 @@ public class UserInterface extends JFrame
         ExecutionHelper.protocol = (CryptoProtocol) cbProtocol.getSelectedItem();
         ExecutionHelper.username = txtUsername.getText();
         ExecutionHelper.password = new String(fldPassword.getPassword());
+
+        // progress settings
+        ExecutionHelper.progressListener = new ProgressListener()
+        {
+            @Override
+            public void started(int totalRuns)
+            {
+                SwingUtilities.invokeLater(() ->
+                {
+                    progressBar.setMinimum(0);
+                    progressBar.setMaximum(totalRuns);
+                });
+            }
+
+            @Override
+            public void runFinished()
+            {
+                SwingUtilities.invokeLater(() ->
+                {
+                    progressBar.setValue(progressBar.getValue() + 1);
+                });
+            }
+        };
     }
 
     private void setPanelEnabled(JPanel panel, Boolean isEnabled)
@@ -463,6 +571,8 @@ public class UserInterface extends JFrame
                     if (component instanceof JCheckBox)
                         ((JCheckBox) component).setSelected(selectedMethods.contains(((JCheckBox) component).getText()));
                 txtRuns.setText(prop.getProperty("numberOfRuns"));
+                txtRunParallelism.setText(prop.getProperty("runParallelism", "1"));
+                txtCellParallelism.setText(prop.getProperty("cellParallelism", "1"));
 
                 // run settings
                 chkSkipTrain.setSelected(Boolean.parseBoolean(prop.getProperty("skipTrain")));
@@ -471,10 +581,13 @@ public class UserInterface extends JFrame
                 chkBalanceClasses.setSelected(Boolean.parseBoolean(prop.getProperty("balanceClasses")));
                 chkIncludeEmpty.setSelected(Boolean.parseBoolean(prop.getProperty("includeEmpty")));
                 chkRemoveOutliers.setSelected(Boolean.parseBoolean(prop.getProperty("removeOutliers")));
+                chkMapRawFiles.setSelected(Boolean.parseBoolean(prop.getProperty("mapRawFiles", "true")));
                 chkSaveArff.setSelected(Boolean.parseBoolean(prop.getProperty("saveArff")));
                 chkSaveModel.setSelected(Boolean.parseBoolean(prop.getProperty("saveModel")));
                 chkSaveSets.setSelected(Boolean.parseBoolean(prop.getProperty("saveSets")));
+                chkCheckpointRuns.setSelected(Boolean.parseBoolean(prop.getProperty("checkpointRuns")));
                 chkEmailResults.setSelected(Boolean.parseBoolean(prop.getProperty("emailResults")));
+                txtRunTimeout.setText(prop.getProperty("runTimeout", "0"));
                 setPanelEnabled(panelEmailSettings, chkEmailResults.isSelected());
                 btnRun.setEnabled(!chkEmailResults.isSelected());
 
@@ -502,6 +615,8 @@ public class UserInterface extends JFrame
         prop.put("txtMetadata", txtMetadata.getText());
         prop.put("selectedMethods", selectedMethods.stream().collect(Collectors.joining(",")));
         prop.put("numberOfRuns", txtRuns.getText());
+        prop.put("runParallelism", txtRunParallelism.getText());
+        prop.put("cellParallelism", txtCellParallelism.getText());
 
         // run settings
         prop.put("skipTrain", String.valueOf(chkSkipTrain.isSelected()));
@@ -510,10 +625,13 @@ public class UserInterface extends JFrame
         prop.put("balanceClasses", String.valueOf(chkBalanceClasses.isSelected()));
         prop.put("includeEmpty", String.valueOf(chkIncludeEmpty.isSelected()));
         prop.put("removeOutliers", String.valueOf(chkRemoveOutliers.isSelected()));
+        prop.put("mapRawFiles", String.valueOf(chkMapRawFiles.isSelected()));
         prop.put("saveArff", String.valueOf(chkSaveArff.isSelected()));
         prop.put("saveModel", String.valueOf(chkSaveModel.isSelected()));
         prop.put("saveSets", String.valueOf(chkSaveSets.isSelected()));
+        prop.put("checkpointRuns", String.valueOf(chkCheckpointRuns.isSelected()));
         prop.put("emailResults", String.valueOf(chkEmailResults.isSelected()));
+        prop.put("runTimeout", txtRunTimeout.getText());
 
         prop.put("sender", txtSender.getText());
         prop.put("recipient", txtRecipient.getText());
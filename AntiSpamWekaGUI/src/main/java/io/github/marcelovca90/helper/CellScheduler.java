@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.ExperimentCell;
+
+public class CellScheduler
+{
+    private static final Logger LOGGER = LogManager.getLogger(CellScheduler.class);
+
+    // by default, running cells may take up to three quarters of the maximum heap
+    private static final double DEFAULT_HEAP_FRACTION = 0.75;
+
+    @FunctionalInterface
+    public interface CellTask
+    {
+        void execute(ExperimentCell cell) throws Exception;
+    }
+
+    private final int parallelism;
+    private final long maximumBytes;
+    private final MemoryMXBean memoryBean;
+
+    private long runningBytes;
+    private int runningCount;
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    public CellScheduler(int parallelism)
+    {
+        this(parallelism, (long) (DEFAULT_HEAP_FRACTION * Runtime.getRuntime().maxMemory()), ManagementFactory.getMemoryMXBean());
+    }
+
+    public CellScheduler(int parallelism, long maximumBytes, MemoryMXBean memoryBean)
+    {
+        this.parallelism = Math.max(1, parallelism);
+        this.maximumBytes = maximumBytes;
+        this.memoryBean = memoryBean;
+    }
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    public long getMaximumBytes()
+    {
+        return maximumBytes;
+    }
+
+    // executes the task for every cell, admitting cells in the given order as long as their estimated heap fits;
+    // cheaper cells further down the list may be admitted ahead of a cell that does not fit yet, so idle workers are
+    // filled while expensive cells run. the listener is notified on the calling thread as each cell finishes, and the
+    // amount of failed cells is returned
+    public int execute(List<ExperimentCell> cells, CellTask task, Consumer<ExperimentCell> listener) throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        CompletionService<ExperimentCell> completionService = new ExecutorCompletionService<>(executor);
+        List<ExperimentCell> pendingCells = new LinkedList<>(cells);
+
+        runningBytes = 0L;
+        runningCount = 0;
+        failedCount.set(0);
+
+        try
+        {
+            while (!pendingCells.isEmpty() || runningCount > 0)
+            {
+                // admit as many pending cells as the workers and the heap allow
+                Iterator<ExperimentCell> iterator = pendingCells.iterator();
+                while (runningCount < parallelism && iterator.hasNext())
+                {
+                    ExperimentCell cell = iterator.next();
+
+                    if (canAdmit(cell))
+                    {
+                        iterator.remove();
+                        runningBytes += cell.getEstimatedBytes();
+                        runningCount++;
+
+                        LOGGER.trace("Admitting {} ({} cells running, {} bytes reserved).", cell, runningCount, runningBytes);
+                        completionService.submit(() -> executeCell(task, cell));
+                    }
+                }
+
+                // wait for a running cell to finish, releasing its workers and reserved heap
+                ExperimentCell finishedCell = completionService.take().get();
+                runningBytes -= finishedCell.getEstimatedBytes();
+                runningCount--;
+
+                listener.accept(finishedCell);
+            }
+        }
+        catch (ExecutionException e)
+        {
+            // cell failures are handled in executeCell, so this is not expected to happen
+            LOGGER.error(e);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return failedCount.get();
+    }
+
+    // a cell is admitted if it fits both in the budget and in the live heap headroom; when nothing is running, the
+    // cell is admitted regardless, otherwise a cell larger than the budget would never run
+    private boolean canAdmit(ExperimentCell cell)
+    {
+        if (runningCount == 0)
+            return true;
+
+        long estimatedBytes = cell.getEstimatedBytes();
+
+        return runningBytes + estimatedBytes <= maximumBytes && estimatedBytes <= getHeadroomBytes();
+    }
+
+    // heap still available, as reported by the memory bean
+    private long getHeadroomBytes()
+    {
+        MemoryUsage heapUsage = memoryBean.getHeapMemoryUsage();
+        long maximumHeap = heapUsage.getMax() >= 0 ? heapUsage.getMax() : Runtime.getRuntime().maxMemory();
+
+        return maximumHeap - heapUsage.getUsed();
+    }
+
+    // a failing cell is logged and does not prevent the remaining cells from executing
+    private ExperimentCell executeCell(CellTask task, ExperimentCell cell)
+    {
+        try
+        {
+            task.execute(cell);
+        }
+        catch (Exception e)
+        {
+            LOGGER.error("Cell {} failed.", cell, e);
+            failedCount.incrementAndGet();
+        }
+
+        return cell;
+    }
+}
@@ -0,0 +1,682 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.common.Constants.SamplingMode;
+import io.github.marcelovca90.common.DataSetMetadata;
+import io.github.marcelovca90.common.FilterConfiguration;
+import io.github.marcelovca90.common.PreparedDataSet;
+import io.github.marcelovca90.data.ColumnarDataSet;
+import io.github.marcelovca90.data.InstanceBatchReader;
+import io.github.marcelovca90.data.InstanceMatrix;
+import io.github.marcelovca90.data.InstanceMatrix.Storage;
+import io.github.marcelovca90.data.InterleavedBatchReader;
+import io.github.marcelovca90.data.SegmentedRawStore;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+public class DataSetHelper
+{
+    private static final Logger LOGGER = LogManager.getLogger(DataSetHelper.class);
+
+    // by default, prepared data sets may take up to a quarter of the maximum heap
+    private static final double DEFAULT_HEAP_FRACTION = 0.25;
+
+    // sibling of the columnar cache that processes sharing it lock while checking or building it
+    public static final String LOCK_EXTENSION = ".lock";
+
+    // the prepared data sets are softly referenced, so the garbage collector may still reclaim them under pressure
+    private final Map<String, SoftReference<PreparedDataSet>> preparedDataSets = new LinkedHashMap<>();
+    private final Map<String, Long> preparedDataSetsBytes = new LinkedHashMap<>();
+
+    // data sets of different folders may be prepared concurrently, but each folder is prepared by one thread at a time
+    private final Map<String, Object> folderLocks = new ConcurrentHashMap<>();
+
+    private long maximumBytes = (long) (DEFAULT_HEAP_FRACTION * Runtime.getRuntime().maxMemory());
+
+    // when set, the columnar caches are mapped instead of read, so they become an off-heap store shared by every process on the host
+    private volatile boolean sharedStore;
+
+    // when positive, only this amount of instances is sampled from the raw files of each folder
+    private volatile int sampleSize;
+    private volatile SamplingMode samplingMode = SamplingMode.STRATIFIED;
+
+    public synchronized void clear()
+    {
+        preparedDataSets.clear();
+        preparedDataSetsBytes.clear();
+        folderLocks.clear();
+    }
+
+    public synchronized long getCachedBytes()
+    {
+        purgeCollectedEntries();
+
+        return preparedDataSetsBytes.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public synchronized int getCachedCount()
+    {
+        purgeCollectedEntries();
+
+        return preparedDataSets.size();
+    }
+
+    public long getMaximumBytes()
+    {
+        return maximumBytes;
+    }
+
+    public void setMaximumBytes(long maximumBytes)
+    {
+        this.maximumBytes = maximumBytes;
+    }
+
+    public boolean isSharedStore()
+    {
+        return sharedStore;
+    }
+
+    public void setSharedStore(boolean sharedStore)
+    {
+        this.sharedStore = sharedStore;
+    }
+
+    public int getSampleSize()
+    {
+        return sampleSize;
+    }
+
+    public SamplingMode getSamplingMode()
+    {
+        return samplingMode;
+    }
+
+    public void setSampling(int sampleSize, SamplingMode samplingMode)
+    {
+        this.sampleSize = sampleSize;
+        this.samplingMode = samplingMode;
+    }
+
+    // estimates the heap needed by the data set in the given folder, without loading it
+    public long estimateBytes(DataSetMetadata metadata, boolean shrinkFeatures, boolean balanceClasses)
+    {
+        return estimateBytes(metadata, shrinkFeatures, balanceClasses, false);
+    }
+
+    public long estimateBytes(DataSetMetadata metadata, boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight)
+    {
+        PreparedDataSet preparedDataSet = lookup(buildKey(metadata, shrinkFeatures, balanceClasses, balanceByWeight));
+        if (preparedDataSet != null)
+            return preparedDataSet.getEstimatedBytes();
+
+        // the raw dimensions give an upper bound, since filters only ever remove attributes; a mapped store only takes its views
+        int[] dimensions = estimateDimensions(metadata, balanceByWeight);
+        if (sharedStore)
+            return dimensions[0] * InstanceMatrix.VIEW_OVERHEAD;
+
+        return PreparedDataSet.estimateBytes(dimensions[0], dimensions[1] + 1L);
+    }
+
+    // reads the number of instances and total features of the data set in the given folder from its raw headers, without loading it
+    public int[] estimateDimensions(DataSetMetadata metadata)
+    {
+        return estimateDimensions(metadata, false);
+    }
+
+    public int[] estimateDimensions(DataSetMetadata metadata, boolean balanceByWeight)
+    {
+        try
+        {
+            String folder = metadata.getFolder();
+            int[] hamHeader = MetaHelper.getInputOutputHelper().loadRawFileHeader(resolveRawFile(folder, MessageType.HAM));
+            int[] spamHeader = MetaHelper.getInputOutputHelper().loadRawFileHeader(resolveRawFile(folder, MessageType.SPAM));
+
+            // a random sample is expected to keep the class proportions, like a stratified one
+            int[] amounts = sampleSize > 0 ? computeSampleAmounts(hamHeader[0], spamHeader[0], sampleSize, samplingMode)
+                : new int[] { hamHeader[0], spamHeader[0] };
+
+            // cardinalities are matched before merging, so both classes end up with the larger amount (unless weights match them)
+            int numberOfInstances = balanceByWeight ? amounts[0] + amounts[1] : 2 * Math.max(amounts[0], amounts[1]);
+            return new int[] { numberOfInstances, hamHeader[1] };
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Could not estimate the size of data set [{}]: {}", metadata.getFolder(), e.getMessage());
+            return new int[] { 0, 0 };
+        }
+    }
+
+    // assigns the shuffled instances to the given amount of folds, dealing the instances of each class in turn so that every fold
+    // keeps the class proportions of the data set; the fold of the instance at each position of the order is returned
+    public int[] stratify(Instances dataSet, int[] order, int folds)
+    {
+        int[] foldOf = new int[order.length];
+        int[] dealtPerClass = new int[Math.max(1, dataSet.numClasses())];
+
+        for (int i = 0; i < order.length; i++)
+        {
+            int classIndex = (int) dataSet.get(order[i]).classValue();
+            foldOf[i] = dealtPerClass[classIndex]++ % folds;
+        }
+
+        return foldOf;
+    }
+
+    // draws the ham and spam records to be read, each array sorted so the records are read sequentially; a random sample is drawn
+    // from both classes at once, while the others draw a given amount of each class
+    public int[][] sample(int hamAmount, int spamAmount, int size, SamplingMode mode, Random random)
+    {
+        if (mode == SamplingMode.RANDOM)
+        {
+            int[] records = draw(hamAmount + spamAmount, size, random);
+            int split = Arrays.binarySearch(records, hamAmount);
+            split = split >= 0 ? split : -split - 1;
+            int[] spamRecords = Arrays.copyOfRange(records, split, records.length);
+            for (int i = 0; i < spamRecords.length; i++)
+                spamRecords[i] -= hamAmount;
+            return new int[][] { Arrays.copyOf(records, split), spamRecords };
+        }
+
+        int[] amounts = computeSampleAmounts(hamAmount, spamAmount, size, mode);
+        return new int[][] { draw(hamAmount, amounts[0], random), draw(spamAmount, amounts[1], random) };
+    }
+
+    // the amount of ham and spam instances in a sample of the given size
+    private static int[] computeSampleAmounts(int hamAmount, int spamAmount, int size, SamplingMode mode)
+    {
+        if (mode == SamplingMode.BALANCED)
+        {
+            int amount = Math.min(size / 2, Math.min(hamAmount, spamAmount));
+            return new int[] { amount, amount };
+        }
+
+        int total = Math.min(size, hamAmount + spamAmount);
+        int hamSampleAmount = total > 0 ? (int) Math.round((double) total * hamAmount / (hamAmount + spamAmount)) : 0;
+        hamSampleAmount = Math.max(total - spamAmount, Math.min(hamAmount, hamSampleAmount));
+        return new int[] { hamSampleAmount, total - hamSampleAmount };
+    }
+
+    // draws the given amount of distinct records out of the population (Floyd's algorithm), in increasing order
+    private static int[] draw(int population, int amount, Random random)
+    {
+        if (amount >= population)
+            return IntStream.range(0, population).toArray();
+
+        Set<Integer> records = new HashSet<>(2 * amount);
+        for (int j = population - amount; j < population; j++)
+        {
+            int record = random.nextInt(j + 1);
+            if (!records.add(record))
+                records.add(j);
+        }
+
+        return records.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    // loads, balances and filters the data set in the given folder, or returns the copy prepared earlier;
+    // the returned data set is shared among all methods, so it must be treated as read-only
+    public PreparedDataSet prepare(DataSetMetadata metadata, boolean shrinkFeatures, boolean balanceClasses, boolean mapRawFiles) throws Exception
+    {
+        return prepare(metadata, shrinkFeatures, balanceClasses, mapRawFiles, MetaHelper.getThreadBudgetHelper().getAvailableCores());
+    }
+
+    // same as above, but the attribute filter uses at most the given amount of threads, leased from the thread budget
+    public PreparedDataSet prepare(DataSetMetadata metadata, boolean shrinkFeatures, boolean balanceClasses, boolean mapRawFiles, int threads) throws Exception
+    {
+        return prepare(metadata, shrinkFeatures, balanceClasses, false, mapRawFiles, threads);
+    }
+
+    // same as above, but the class cardinalities are optionally matched by weighting the minority class instead of replicating it
+    public PreparedDataSet prepare(DataSetMetadata metadata, boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight, boolean mapRawFiles, int threads)
+            throws Exception
+    {
+        String key = buildKey(metadata, shrinkFeatures, balanceClasses, balanceByWeight);
+
+        synchronized (folderLocks.computeIfAbsent(metadata.getFolder(), f -> new Object()))
+        {
+            PreparedDataSet preparedDataSet = lookup(key);
+
+            if (preparedDataSet != null)
+            {
+                LOGGER.trace("Reusing prepared data set for folder [{}].", metadata.getFolder());
+                return preparedDataSet;
+            }
+
+            preparedDataSet = load(metadata.getFolder(), shrinkFeatures, balanceClasses, balanceByWeight, mapRawFiles, threads);
+
+            admit(key, preparedDataSet);
+
+            return preparedDataSet;
+        }
+    }
+
+    private String buildKey(DataSetMetadata metadata, boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight)
+    {
+        return String.format("%s|shrink=%b|balance=%b|weight=%b|sample=%d/%s", metadata.getFolder(), shrinkFeatures, balanceClasses, balanceByWeight,
+            sampleSize, samplingMode);
+    }
+
+    private synchronized PreparedDataSet lookup(String key)
+    {
+        SoftReference<PreparedDataSet> reference = preparedDataSets.get(key);
+
+        return reference != null ? reference.get() : null;
+    }
+
+    // keeps the prepared data set only if it fits in the budget and in the currently available heap;
+    // entries are never evicted in favour of newer ones, since methods revisit the folders cyclically
+    private synchronized void admit(String key, PreparedDataSet preparedDataSet)
+    {
+        purgeCollectedEntries();
+
+        long bytes = preparedDataSet.getEstimatedBytes();
+        long cachedBytes = preparedDataSetsBytes.values().stream().mapToLong(Long::longValue).sum();
+        Runtime runtime = Runtime.getRuntime();
+        long availableBytes = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+
+        if (cachedBytes + bytes <= maximumBytes && bytes <= availableBytes)
+        {
+            preparedDataSets.put(key, new SoftReference<>(preparedDataSet));
+            preparedDataSetsBytes.put(key, bytes);
+        }
+        else
+        {
+            LOGGER.trace("Not caching prepared data set [{}] ({} bytes, {} cached, {} allowed).", key, bytes, cachedBytes, maximumBytes);
+        }
+    }
+
+    private void purgeCollectedEntries()
+    {
+        preparedDataSets.entrySet().removeIf(e ->
+        {
+            boolean collected = e.getValue().get() == null;
+            if (collected)
+                preparedDataSetsBytes.remove(e.getKey());
+            return collected;
+        });
+    }
+
+    private PreparedDataSet load(String folder, boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight, boolean mapRawFiles, int threads)
+            throws Exception
+    {
+        // samples are cheap to read again, and caching them would replace the columnar cache of the whole data set
+        if (sampleSize > 0)
+        {
+            PreparedDataSet built = build(folder, shrinkFeatures, balanceClasses, balanceByWeight, mapRawFiles, threads);
+            return new PreparedDataSet(pack(built.getDataSet()), built.getNumberOfTotalFeatures());
+        }
+
+        String columnarFilePath = folder + File.separator + ColumnarDataSet.getFilename(shrinkFeatures, balanceClasses, balanceByWeight);
+        long rawFilesFingerprint = fingerprintRawFiles(folder);
+        if (sharedStore)
+            return loadSharedStore(folder, shrinkFeatures, balanceClasses, balanceByWeight, mapRawFiles, threads, columnarFilePath, rawFilesFingerprint);
+
+        ColumnarDataSet columnarDataSet = loadColumnarDataSetFromFile(columnarFilePath, false);
+        if (columnarDataSet != null && columnarDataSet.matches(shrinkFeatures, balanceClasses, balanceByWeight, rawFilesFingerprint))
+        {
+            // the cached data set has already been built from the same raw files, through the same filters
+            return new PreparedDataSet(columnarDataSet.getDataSet(), columnarDataSet.getNumberOfTotalFeatures());
+        }
+
+        PreparedDataSet built = build(folder, shrinkFeatures, balanceClasses, balanceByWeight, mapRawFiles, threads);
+
+        // keep the filtered data set either sparse or in a single narrow matrix, whichever takes less heap
+        Instances dataSet = pack(built.getDataSet());
+
+        // sparse data sets are not cached in columnar format, since that would store every zero
+        if (isSparse(dataSet))
+            return new PreparedDataSet(dataSet, built.getNumberOfTotalFeatures());
+
+        // cache the filtered data set in columnar format, so next loads skip both the raw parsing and the filters
+        saveColumnarDataSetToFile(new ColumnarDataSet(dataSet, built.getNumberOfTotalFeatures(), shrinkFeatures, balanceClasses, balanceByWeight,
+            rawFilesFingerprint), columnarFilePath);
+
+        return new PreparedDataSet(dataSet, built.getNumberOfTotalFeatures());
+    }
+
+    // opens the data set in the given folder to be read in batches of at most the given size, with its ham and spam instances
+    // interleaved; the columnar cache is read when it was built from the same raw files with the same filters, otherwise the raw files are read, in which
+    // case the class cardinalities are always matched by weight, since a stream cannot replicate instances, and the features
+    // cannot be shrunk, since that needs the whole data set
+    public InstanceBatchReader openBatches(DataSetMetadata metadata, boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight, int batchSize,
+            Random random) throws IOException
+    {
+        String folder = metadata.getFolder();
+        InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+        String columnarFilePath = folder + File.separator + ColumnarDataSet.getFilename(shrinkFeatures, balanceClasses, balanceByWeight);
+
+        InstanceBatchReader hamBatches;
+        InstanceBatchReader spamBatches;
+        if (columnarMatches(columnarFilePath, shrinkFeatures, balanceClasses, balanceByWeight, fingerprintRawFiles(folder)))
+        {
+            hamBatches = ioHelper.openColumnarFileBatches(columnarFilePath, MessageType.HAM, batchSize, 1.0);
+            spamBatches = ioHelper.openColumnarFileBatches(columnarFilePath, MessageType.SPAM, batchSize, 1.0);
+        }
+        else
+        {
+            if (shrinkFeatures)
+                throw new IllegalStateException(String.format("Streaming the shrunk data set of %s requires its columnar cache, which is built by runs "
+                        + "that hold the data set in memory.", folder));
+
+            String hamFilename = resolveRawFile(folder, MessageType.HAM);
+            String spamFilename = resolveRawFile(folder, MessageType.SPAM);
+            int hamAmount = ioHelper.loadRawFileHeader(hamFilename)[0];
+            int spamAmount = ioHelper.loadRawFileHeader(spamFilename)[0];
+            double hamWeight = balanceClasses && hamAmount < spamAmount ? (double) spamAmount / hamAmount : 1.0;
+            double spamWeight = balanceClasses && spamAmount < hamAmount ? (double) hamAmount / spamAmount : 1.0;
+            hamBatches = ioHelper.openRawFileBatches(hamFilename, MessageType.HAM, batchSize, hamWeight);
+            try
+            {
+                spamBatches = ioHelper.openRawFileBatches(spamFilename, MessageType.SPAM, batchSize, spamWeight);
+            }
+            catch (IOException e)
+            {
+                hamBatches.close();
+                throw e;
+            }
+        }
+
+        return new InterleavedBatchReader(hamBatches, spamBatches, batchSize, random);
+    }
+
+    private boolean columnarMatches(String filename, boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight, long rawFilesFingerprint)
+    {
+        if (!Paths.get(filename).toFile().exists())
+            return false;
+
+        try
+        {
+            return ColumnarDataSet.matches(filename, shrinkFeatures, balanceClasses, balanceByWeight, rawFilesFingerprint);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Ignoring columnar cache [{}]: {}", filename, e.getMessage());
+            return false;
+        }
+    }
+
+    // the shared store is the columnar cache, mapped instead of read; processes hold an exclusive lock on its sibling file while
+    // checking it, so that only the first one builds it from the raw files, while the others wait for it and then just map it
+    private PreparedDataSet loadSharedStore(String folder, boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight, boolean mapRawFiles,
+            int threads, String columnarFilePath, long rawFilesFingerprint) throws Exception
+    {
+        try (FileChannel lockChannel = FileChannel.open(Paths.get(columnarFilePath + LOCK_EXTENSION), StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+        {
+            FileLock lock = lockChannel.lock();
+            try
+            {
+                ColumnarDataSet store = loadColumnarDataSetFromFile(columnarFilePath, true);
+                if (store != null && store.matches(shrinkFeatures, balanceClasses, balanceByWeight, rawFilesFingerprint))
+                    return new PreparedDataSet(store.getDataSet(), store.getNumberOfTotalFeatures());
+
+                // the store is never kept sparse, since its values take no heap once mapped
+                PreparedDataSet built = build(folder, shrinkFeatures, balanceClasses, balanceByWeight, mapRawFiles, threads);
+                if (saveColumnarDataSetToFile(new ColumnarDataSet(built.getDataSet(), built.getNumberOfTotalFeatures(), shrinkFeatures, balanceClasses,
+                    balanceByWeight, rawFilesFingerprint), columnarFilePath))
+                    store = loadColumnarDataSetFromFile(columnarFilePath, true);
+
+                // if the store could not be written, this process keeps its own copy of the data set
+                if (store == null || !store.matches(shrinkFeatures, balanceClasses, balanceByWeight, rawFilesFingerprint))
+                    return new PreparedDataSet(pack(built.getDataSet()), built.getNumberOfTotalFeatures());
+
+                return new PreparedDataSet(store.getDataSet(), store.getNumberOfTotalFeatures());
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+    }
+
+    // loads, balances, merges and filters the raw files of the given folder
+    private PreparedDataSet build(String folder, boolean shrinkFeatures, boolean balanceClasses, boolean balanceByWeight, boolean mapRawFiles, int threads)
+            throws Exception
+    {
+        // import data sets for each class, or only the sampled records of each one; a fresh generator keeps the sample deterministic
+        String hamFilename = resolveRawFile(folder, MessageType.HAM);
+        String spamFilename = resolveRawFile(folder, MessageType.SPAM);
+        Instances hamDataSet, spamDataSet;
+        if (sampleSize > 0)
+        {
+            int hamAmount = MetaHelper.getInputOutputHelper().loadRawFileHeader(hamFilename)[0];
+            int spamAmount = MetaHelper.getInputOutputHelper().loadRawFileHeader(spamFilename)[0];
+            int[][] records = sample(hamAmount, spamAmount, sampleSize, samplingMode, new RandomHelper().getRandom());
+            hamDataSet = loadInstancesFromRawFile(hamFilename, MessageType.HAM, records[0], mapRawFiles, threads);
+            spamDataSet = loadInstancesFromRawFile(spamFilename, MessageType.SPAM, records[1], mapRawFiles, threads);
+        }
+        else
+        {
+            hamDataSet = loadInstancesFromRawFile(hamFilename, MessageType.HAM, mapRawFiles, threads);
+            spamDataSet = loadInstancesFromRawFile(spamFilename, MessageType.SPAM, mapRawFiles, threads);
+        }
+
+        // match class cardinalities so data set becomes balanced; a fresh generator keeps this deterministic across threads
+        if (balanceByWeight)
+            MetaHelper.getInputOutputHelper().matchCardinalitiesByWeight(hamDataSet, spamDataSet);
+        else
+            MetaHelper.getInputOutputHelper().matchCardinalities(hamDataSet, spamDataSet, new RandomHelper().getRandom());
+
+        // merge ham and spam data sets
+        Instances dataSet = MetaHelper.getInputOutputHelper().mergeInstances(hamDataSet, spamDataSet);
+
+        // count the number of total features by looking at the data set
+        int numberOfTotalFeatures = dataSet.numAttributes() - 1;
+
+        // apply attribute and instance filters to the data set, if specified
+        if (shrinkFeatures)
+        {
+            try (ThreadBudgetHelper.Lease lease = MetaHelper.getThreadBudgetHelper().acquire(threads))
+            {
+                dataSet = FilterConfiguration.buildAndApply(dataSet, FilterConfiguration.AttributeFilter.CfsSubsetEval_MultiObjectiveEvolutionarySearch, lease.getThreads());
+            }
+        }
+        if (balanceClasses)
+            dataSet = FilterConfiguration.buildAndApply(dataSet, FilterConfiguration.InstanceFilter.ClassBalancer);
+
+        return new PreparedDataSet(dataSet, numberOfTotalFeatures);
+    }
+
+    // import (or map) the columnar cache of a data set, if it exists and is readable
+    private ColumnarDataSet loadColumnarDataSetFromFile(String filename, boolean map)
+    {
+        if (!Paths.get(filename).toFile().exists())
+            return null;
+
+        try
+        {
+            InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+            return map ? ioHelper.mapColumnarDataSetFromFile(filename) : ioHelper.loadColumnarDataSetFromFile(filename);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Ignoring columnar cache [{}]: {}", filename, e.getMessage());
+            return null;
+        }
+    }
+
+    // fingerprints the raw files the data set of the given folder is read from by their names, sizes and modification times, so
+    // whatever is derived from them can tell when they change; a segmented raw store only ever grows by appending, so it is
+    // fingerprinted by its logical content (no. attributes and instances) rather than by its segments, which compaction rewrites
+    public long fingerprintRawFiles(String folder) throws IOException
+    {
+        long fingerprint = 1;
+        for (MessageType messageType : MessageType.values())
+        {
+            Path rawFile = Paths.get(resolveRawFile(folder, messageType));
+            fingerprint = 31 * fingerprint + rawFile.getFileName().toString().hashCode();
+            if (Files.isDirectory(rawFile))
+            {
+                SegmentedRawStore.Manifest manifest = new SegmentedRawStore(rawFile.toString()).readManifest();
+                fingerprint = 31 * fingerprint + manifest.getNumberOfAttributes();
+                fingerprint = 31 * fingerprint + manifest.getNumberOfInstances();
+            }
+            else
+            {
+                fingerprint = 31 * fingerprint + Files.size(rawFile);
+                fingerprint = 31 * fingerprint + Files.getLastModifiedTime(rawFile).toMillis();
+            }
+        }
+        return fingerprint;
+    }
+
+    // persist the columnar cache of a data set; a failure here only means the next load will be slower
+    private boolean saveColumnarDataSetToFile(ColumnarDataSet columnarDataSet, String filename)
+    {
+        try
+        {
+            MetaHelper.getInputOutputHelper().saveColumnarDataSetToFile(columnarDataSet, filename);
+            return true;
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Could not save columnar cache [{}]: {}", filename, e.getMessage());
+            return false;
+        }
+    }
+
+    // keeps the data set sparse when its non-zero values take less heap than the narrowest matrix that holds all of its values, so
+    // the density threshold adapts to each folder; otherwise, compacts it into such a matrix
+    public Instances pack(Instances dataSet)
+    {
+        long numberOfNonZeroValues = 0;
+        Storage storage = Storage.SHORT;
+        for (Instance instance : dataSet)
+        {
+            for (int k = 0; k < instance.numValues(); k++)
+            {
+                double value = instance.valueSparse(k);
+                if (value != 0)
+                    numberOfNonZeroValues++;
+                storage = storage.widen(value);
+            }
+        }
+
+        long sparseBytes = PreparedDataSet.estimateSparseBytes(dataSet.numInstances(), numberOfNonZeroValues);
+        long denseBytes = InstanceMatrix.estimateBytes(dataSet.numInstances(), dataSet.numAttributes(), storage);
+        LOGGER.trace("Packing data set with [{}] non-zero values ({} bytes sparse, {} bytes dense).", numberOfNonZeroValues, sparseBytes, denseBytes);
+
+        if (sparseBytes >= denseBytes && InstanceMatrix.fits(dataSet.numInstances(), dataSet.numAttributes()))
+            return InstanceMatrix.compact(dataSet);
+        if (isSparse(dataSet))
+            return dataSet;
+
+        Instances sparseDataSet = new Instances(dataSet, dataSet.numInstances());
+        for (Instance instance : dataSet)
+            sparseDataSet.add(new SparseInstance(instance));
+        return sparseDataSet;
+    }
+
+    private boolean isSparse(Instances dataSet)
+    {
+        return !dataSet.isEmpty() && dataSet.instance(0) instanceof SparseInstance;
+    }
+
+    // the segmented raw store of a class is preferred over its compressed raw file, then over the sparse one and then over the dense
+    // one, when they exist
+    private String resolveRawFile(String folder, MessageType messageType)
+    {
+        String filename = folder + File.separator + messageType.name().toLowerCase();
+        if (Files.isDirectory(Paths.get(filename + InputOutputHelper.SEGMENTED_RAW_EXTENSION)))
+            return filename + InputOutputHelper.SEGMENTED_RAW_EXTENSION;
+        if (Files.exists(Paths.get(filename + InputOutputHelper.COMPRESSED_RAW_EXTENSION)))
+            return filename + InputOutputHelper.COMPRESSED_RAW_EXTENSION;
+        return Files.exists(Paths.get(filename + InputOutputHelper.SPARSE_RAW_EXTENSION)) ? filename + InputOutputHelper.SPARSE_RAW_EXTENSION : filename;
+    }
+
+    // import a raw data set either by inflating its compressed blocks with the given amount of threads, leased from the thread
+    // budget, or through a memory-mapped channel or a plain input stream
+    private Instances loadInstancesFromRawFile(String filename, MessageType messageType, boolean mapRawFiles, int threads) throws Exception
+    {
+        if (filename.endsWith(InputOutputHelper.SEGMENTED_RAW_EXTENSION))
+        {
+            try (ThreadBudgetHelper.Lease lease = MetaHelper.getThreadBudgetHelper().acquire(threads))
+            {
+                return MetaHelper.getInputOutputHelper().loadInstancesFromSegmentedRawStore(filename, messageType, lease.getThreads());
+            }
+        }
+        else if (filename.endsWith(InputOutputHelper.COMPRESSED_RAW_EXTENSION))
+        {
+            try (ThreadBudgetHelper.Lease lease = MetaHelper.getThreadBudgetHelper().acquire(threads))
+            {
+                return MetaHelper.getInputOutputHelper().loadInstancesFromCompressedRawFile(filename, messageType, lease.getThreads());
+            }
+        }
+        else if (filename.endsWith(InputOutputHelper.SPARSE_RAW_EXTENSION))
+            return MetaHelper.getInputOutputHelper().loadInstancesFromSparseRawFile(filename, messageType);
+        else if (mapRawFiles)
+            return MetaHelper.getInputOutputHelper().loadInstancesFromMappedRawFile(filename, messageType);
+        else
+            return MetaHelper.getInputOutputHelper().loadInstancesFromRawFile(filename, messageType);
+    }
+
+    // import only the given records of a raw data set; the records of a sparse raw file have different sizes, so that file is still
+    // read as a whole, while a compressed one only inflates the blocks that hold them
+    private Instances loadInstancesFromRawFile(String filename, MessageType messageType, int[] records, boolean mapRawFiles, int threads) throws Exception
+    {
+        if (filename.endsWith(InputOutputHelper.SEGMENTED_RAW_EXTENSION))
+        {
+            try (ThreadBudgetHelper.Lease lease = MetaHelper.getThreadBudgetHelper().acquire(threads))
+            {
+                return MetaHelper.getInputOutputHelper().loadInstancesFromSegmentedRawStore(filename, messageType, records, lease.getThreads());
+            }
+        }
+        else if (filename.endsWith(InputOutputHelper.COMPRESSED_RAW_EXTENSION))
+        {
+            try (ThreadBudgetHelper.Lease lease = MetaHelper.getThreadBudgetHelper().acquire(threads))
+            {
+                return MetaHelper.getInputOutputHelper().loadInstancesFromCompressedRawFile(filename, messageType, records, lease.getThreads());
+            }
+        }
+        else if (!filename.endsWith(InputOutputHelper.SPARSE_RAW_EXTENSION))
+            return MetaHelper.getInputOutputHelper().loadInstancesFromRawFile(filename, messageType, records);
+
+        Instances dataSet = loadInstancesFromRawFile(filename, messageType, mapRawFiles, threads);
+        Instances sample = new Instances(dataSet, records.length);
+        for (int record : records)
+            sample.add(dataSet.get(record));
+        return sample;
+    }
+}
@@ -6,43 +6,100 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import javax.swing.SwingUtilities;
-
+import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
 
-import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.common.Constants.Metric;
+import io.github.marcelovca90.common.Constants.SamplingMode;
 import io.github.marcelovca90.common.DataSetMetadata;
+import io.github.marcelovca90.common.ExperimentCell;
+import io.github.marcelovca90.common.ExperimentPlan;
 import io.github.marcelovca90.common.FilterConfiguration;
 import io.github.marcelovca90.common.MethodConfiguration;
 import io.github.marcelovca90.common.MethodEvaluation;
-import io.github.marcelovca90.gui.UserInterface;
+import io.github.marcelovca90.common.ParameterSpace;
+import io.github.marcelovca90.common.PreparedDataSet;
+import io.github.marcelovca90.data.AttributeSelectionStore;
+import io.github.marcelovca90.data.CheckpointJournal;
+import io.github.marcelovca90.data.CheckpointJournal.Checkpoint;
+import io.github.marcelovca90.data.CostModel;
+import io.github.marcelovca90.data.InstanceBatchReader;
+import io.github.marcelovca90.data.InstancesView;
 import io.github.marcelovca90.helper.MailHelper.CryptoProtocol;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
+import weka.classifiers.UpdateableClassifier;
+import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.WeightedInstancesHandler;
 
 public class ExecutionHelper
 {
     private static final Logger LOGGER = LogManager.getLogger(ExecutionHelper.class);
 
+    // system property read by the logging configuration to place the results files
+    public static final String OUTPUT_FOLDER_PROPERTY = "asw.output.folder";
+
+    // notified as the experiment progresses; runs of different cells finish concurrently, so implementations must be thread-safe
+    public interface ProgressListener
+    {
+        void started(int totalRuns);
+
+        void runFinished();
+    }
+
     // anti spam settings
     public static Set<DataSetMetadata> metadata;
     public static List<MethodConfiguration> methods;
     public static int numberOfRuns;
+    public static int runParallelism;
+    public static int cellParallelism;
+
+    // validation settings: with two or more folds, each run is a stratified k-fold cross-validation instead of a holdout
+    public static int folds;
+
+    // streaming settings: with a positive batch size, each run reads the data set from its files in batches of that size and trains
+    // an updateable classifier incrementally, so the data set is never held in memory as a whole
+    public static int streamBatchSize;
 
     // run settings
     public static boolean skipTrain;
     public static boolean skipTest;
     public static boolean shrinkFeatures;
     public static boolean balanceClasses;
+    public static boolean balanceByWeight;
     public static boolean includeEmpty;
     public static boolean removeOutliers;
+    public static boolean mapRawFiles;
+    public static boolean sharedStore;
+    public static int sampleSize;
+    public static SamplingMode samplingMode = SamplingMode.STRATIFIED;
     public static boolean saveArff;
     public static boolean saveModel;
     public static boolean saveSets;
@@ -56,8 +113,51 @@ public class ExecutionHelper
     public static String username;
     public static String password;
 
+    // output settings
+    public static String outputFolder = "logs";
+    public static ProgressListener progressListener = new ProgressListener()
+    {
+        @Override
+        public void started(int totalRuns)
+        {
+        }
+
+        @Override
+        public void runFinished()
+        {
+        }
+    };
+
+    // time budget settings, in milliseconds (zero means no budget); method budgets replace the run budget for their method
+    public static long runTimeout;
+    public static Map<MethodConfiguration, Long> methodTimeouts = new EnumMap<>(MethodConfiguration.class);
+    public static long cellTimeout;
+
+    // adaptive run settings: with a positive minimum, runs stop as soon as the confidence interval half-width of every
+    // convergence metric is within the target, and the number of runs becomes the maximum amount of runs
+    public static int minimumRuns;
+    public static double targetHalfWidth = 0.5;
+    public static Set<Metric> convergenceMetrics = EnumSet.of(Metric.WEIGHTED_F_MEASURE);
+
+    // racing settings: methods on the same data set are compared on the runs they share, and those significantly worse than
+    // the leader stop executing runs
+    public static boolean racing;
+    public static double racingSignificance = 0.05;
+    public static int racingMinimumRuns = 5;
+    public static Metric racingMetric = Metric.WEIGHTED_F_MEASURE;
+
+    // search settings: methods with a parameter space are searched for their best options instead of being run
+    public static Map<MethodConfiguration, ParameterSpace> searchSpaces = new EnumMap<>(MethodConfiguration.class);
+
+    // checkpoint settings: when enabled, completed runs are appended to the journal (unless it is null) and replayed by later
+    // executions, as long as the raw files of their data sets did not change
+    public static boolean checkpointRuns;
+    public static CheckpointJournal checkpointJournal = new CheckpointJournal(Paths.get("cache", "checkpoints.journal"));
+
     public static boolean isRunning = false;
 
+    private static volatile boolean cancelled = false;
+
     // prepare the data sets and empty counts to be used in training/testing
     public static void setUpMetadata(String metadataPath) throws IOException
     {
@@ -66,6 +166,91 @@ public class ExecutionHelper
             .loadDataSetsMetadataFromFile(metadataPath);
     }
 
+    // prepare the per-method run time budgets, given as comma-separated METHOD=seconds pairs
+    public static void setUpMethodTimeouts(String methodTimeoutsSpecification)
+    {
+        methodTimeouts = new EnumMap<>(MethodConfiguration.class);
+
+        for (String pair : methodTimeoutsSpecification.split(","))
+        {
+            if (pair.trim().isEmpty())
+                continue;
+
+            String[] parts = pair.split("=");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Invalid method time budget: " + pair.trim());
+
+            methodTimeouts.put(MethodConfiguration.valueOf(parts[0].trim().toUpperCase()), 1000L * Long.parseLong(parts[1].trim()));
+        }
+    }
+
+    // the time budget of a single run of the given method
+    public static long getRunTimeout(MethodConfiguration method)
+    {
+        return methodTimeouts.getOrDefault(method, runTimeout);
+    }
+
+    // asks the running experiment to stop: no further cells or runs are started and the running ones are interrupted;
+    // runs completed so far remain checkpointed
+    public static void cancel()
+    {
+        cancelled = true;
+    }
+
+    public static boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    // redirect the results files to the given folder, reloading the logging configuration
+    public static void setUpOutputFolder(String folder)
+    {
+        outputFolder = folder;
+        System.setProperty(OUTPUT_FOLDER_PROPERTY, folder);
+        ((LoggerContext) LogManager.getContext(false)).reconfigure();
+    }
+
+    // keep the attribute selections, run checkpoints and cost model in the given folder; without a folder, attribute selections
+    // and runs are always recomputed
+    public static void setUpCacheFolder(String folder)
+    {
+        if (folder == null)
+        {
+            FilterConfiguration.setAttributeSelectionStore(null);
+            checkpointJournal = null;
+        }
+        else
+        {
+            FilterConfiguration.setAttributeSelectionStore(new AttributeSelectionStore(Paths.get(folder, "attribute-selection")));
+            checkpointJournal = new CheckpointJournal(Paths.get(folder, "checkpoints.journal"));
+            MetaHelper.getPlanningHelper().setCostModel(new CostModel(Paths.get(folder, "cost-model.properties")));
+        }
+    }
+
+    // prepare the metrics that must converge before the adaptive runs stop, given as comma-separated names
+    public static void setUpConvergenceMetrics(String metricNames)
+    {
+        Set<Metric> metrics = Arrays
+            .stream(metricNames.split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .map(name -> Metric.valueOf(name.toUpperCase()))
+            .collect(Collectors.toCollection(() -> EnumSet.noneOf(Metric.class)));
+
+        if (metrics.isEmpty())
+            throw new IllegalArgumentException("At least one convergence metric is required.");
+
+        convergenceMetrics = metrics;
+    }
+
+    // prepare the parameter spaces to be searched
+    public static void setUpSearchSpaces(String searchSpacesPath) throws IOException
+    {
+        searchSpaces = MetaHelper
+            .getInputOutputHelper()
+            .loadParameterSpacesFromFile(searchSpacesPath);
+    }
+
     // prepare the machine learning methods to be trained/tested
     public static void setUpMethods(Set<String> methodNames)
     {
@@ -75,210 +260,998 @@ public class ExecutionHelper
             .collect(Collectors.toList());
     }
 
-    // run training/classification for the configured methods, metadata and no. runs
-    public static void run()
+    // lists the (method, data set) cells of the configured experiment, ordered longest-first by their predicted durations
+    public static ExperimentPlan plan()
+    {
+        ThreadBudgetHelper threadBudget = MetaHelper.getThreadBudgetHelper();
+        int cellWorkers = threadBudget.grantWorkers(cellParallelism);
+        int runWorkers = threadBudget.grantWorkers(runParallelism);
+
+        // cells are listed method by method, as they used to be executed, before being ordered
+        List<ExperimentCell> cells = new ArrayList<>();
+        for (MethodConfiguration method : methods)
+        {
+            for (DataSetMetadata metadata : metadata)
+            {
+                int[] dimensions = MetaHelper.getDataSetHelper().estimateDimensions(metadata);
+                long dataSetBytes = MetaHelper.getDataSetHelper().estimateBytes(metadata, shrinkFeatures, balanceClasses, balanceByWeight);
+                cells.add(new ExperimentCell(method, metadata, dataSetBytes, dimensions[0], dimensions[1]));
+            }
+        }
+
+        return MetaHelper.getPlanningHelper().plan(cells, numberOfRuns, cellWorkers, runWorkers);
+    }
+
+    // run training/classification for the configured methods, metadata and no. runs; returns whether every cell succeeded
+    public static boolean run()
     {
+        // split the cores among the cells, the runs and the threads used inside filters and classifiers
+        ThreadBudgetHelper threadBudget = MetaHelper.getThreadBudgetHelper();
+        int cellWorkers = threadBudget.grantWorkers(cellParallelism);
+        int runWorkers = threadBudget.grantWorkers(runParallelism);
+        int filterThreads = threadBudget.getThreadsPerTask(cellWorkers);
+
+        // map the prepared data sets off the heap, so that concurrent processes share them, and read only the sampled instances
+        MetaHelper.getDataSetHelper().setSharedStore(sharedStore);
+        MetaHelper.getDataSetHelper().setSampling(sampleSize, samplingMode);
+
+        // bounded pool on which the repeated runs of every cell are executed
+        ForkJoinPool pool = new ForkJoinPool(runWorkers);
+
         try
         {
             // indicates that the training/classification is running
             isRunning = true;
+            cancelled = false;
+
+            // report the total amount of runs
+            progressListener.started(methods.size() * metadata.size() * numberOfRuns);
+
+            // each (method, data set) pair is a cell; the longest cells are started first, so that none is left running alone at the end
+            ExperimentPlan plan = plan();
+            List<ExperimentCell> cells = plan.getCells();
+            LOGGER.info("Projected makespan of {} cells on {} workers: {} ({} cells without history).", cells.size(), plan.getWorkers(),
+                DurationFormatUtils.formatDurationHMS((long) plan.getProjectedMakespanMillis()), plan.getUnpredictedCells());
+
+            Map<MethodConfiguration, Integer> pendingCellsPerMethod = new EnumMap<>(MethodConfiguration.class);
+            for (ExperimentCell cell : cells)
+                pendingCellsPerMethod.merge(cell.getMethod(), 1, Integer::sum);
 
-            // objects that will hold all kinds of data sets
-            Instances dataSet = null;
-            Instances trainingSet = null;
-            Instances testingSet = null;
-            Instances emptySet = null;
+            // when racing, the methods of each data set race in a single task, which is scheduled as its largest cell
+            Map<ExperimentCell, List<ExperimentCell>> races = isRacing() ? groupRaces(cells) : null;
+            List<ExperimentCell> scheduledCells = races != null ? new ArrayList<>(races.keySet()) : cells;
 
-            // calculate and set the progress bar maximum value
-            setUpProgressBar();
+            // execute the cells concurrently, as far as the heap allows, and e-mail each method's results once all of its cells finish
+            int failedCells = new CellScheduler(cellWorkers).execute(scheduledCells, cell ->
+            {
+                if (races != null)
+                    runRace(races.get(cell), pool, filterThreads);
+                else
+                    runCell(cell, pool, filterThreads);
+            }, cell ->
+            {
+                for (ExperimentCell finishedCell : races != null ? races.get(cell) : Collections.singletonList(cell))
+                {
+                    MethodConfiguration method = finishedCell.getMethod();
+                    if (pendingCellsPerMethod.merge(method, -1, Integer::sum) == 0 && emailResults)
+                        sendResults(method);
+                }
+            });
+
+            return failedCells == 0;
+        }
+        catch (Exception e)
+        {
+            LOGGER.error(e);
+            e.printStackTrace();
+            return false;
+        }
+        finally
+        {
+            // stop the workers of the runs pool
+            pool.shutdownNow();
 
-            for (MethodConfiguration method : methods)
+            // runs abandoned for not stopping gave their threads back, but may still be using the cores
+            if (TimeoutHelper.getAbandonedTasks() > 0)
+                LOGGER.warn("{} abandoned runs are still executing in the background.", TimeoutHelper.getAbandonedTasks());
+
+            // release the data sets prepared for this experiment
+            MetaHelper.getDataSetHelper().clear();
+        }
+    }
+
+    // search the best options of the configured methods that have a parameter space, on every data set; the full budget of a
+    // candidate is the configured no. runs on the whole training set. returns whether every search succeeded
+    public static boolean search()
+    {
+        ThreadBudgetHelper threadBudget = MetaHelper.getThreadBudgetHelper();
+        int workers = threadBudget.grantWorkers(runParallelism);
+        int filterThreads = threadBudget.getThreadsPerTask(1);
+        boolean succeeded = true;
+
+        // map the prepared data sets off the heap, so that concurrent processes share them, and read only the sampled instances
+        MetaHelper.getDataSetHelper().setSharedStore(sharedStore);
+        MetaHelper.getDataSetHelper().setSampling(sampleSize, samplingMode);
+
+        try
+        {
+            // indicates that the search is running
+            isRunning = true;
+            cancelled = false;
+
+            for (DataSetMetadata metadata : metadata)
             {
-                for (DataSetMetadata metadata : metadata)
+                for (MethodConfiguration method : methods)
                 {
-                    String folder = metadata.getFolder();
-                    int numberOfTotalFeatures;
-                    int numberOfActualFeatures;
+                    ParameterSpace space = searchSpaces.get(method);
+                    if (space == null)
+                        continue;
 
-                    // initialize random number generator
-                    MetaHelper.getRandomHelper().reset();
+                    if (cancelled)
+                        return false;
 
-                    String arffFilePath = folder + File.separator + "data.arff";
-                    if (Paths.get(arffFilePath).toFile().exists())
+                    try
                     {
-                        // count the number of total features by looking at the file name
-                        dataSet = MetaHelper.getInputOutputHelper().loadInstancesFromArffFile(arffFilePath);
-
-                        // count the number of total features by looking at the data set
-                        numberOfTotalFeatures = Integer.valueOf(folder.substring(folder.lastIndexOf(folder.contains("\\") ? "\\" : "/") + 1));
+                        PreparedDataSet preparedDataSet = MetaHelper.getDataSetHelper().prepare(metadata, shrinkFeatures, balanceClasses, balanceByWeight, mapRawFiles, filterThreads);
+                        MetaHelper.getSearchHelper().search(space, preparedDataSet.getDataSet(), metadata.getFolder(), numberOfRuns, workers);
                     }
-                    else
+                    catch (Exception e)
                     {
-                        // import data sets for each class
-                        String hamFilePath = folder + File.separator + MessageType.HAM.name().toLowerCase();
-                        Instances hamDataSet = MetaHelper.getInputOutputHelper().loadInstancesFromRawFile(hamFilePath, MessageType.HAM);
-                        String spamFilePath = folder + File.separator + MessageType.SPAM.name().toLowerCase();
-                        Instances spamDataSet = MetaHelper.getInputOutputHelper().loadInstancesFromRawFile(spamFilePath, MessageType.SPAM);
+                        // a failing search is logged and does not prevent the remaining ones from executing
+                        LOGGER.error("Search of {} on {} failed.", method, metadata.getFolder(), e);
+                        succeeded = false;
+                    }
+                }
+            }
+
+            return succeeded;
+        }
+        finally
+        {
+            // release the data sets prepared for this search
+            MetaHelper.getDataSetHelper().clear();
+        }
+    }
 
-                        // match class cardinalities so data set becomes balanced
-                        MetaHelper.getInputOutputHelper().matchCardinalities(hamDataSet, spamDataSet);
+    // run training/classification for a single method and data set; adaptive runs not converged yet lead to additional rounds
+    private static void runCell(ExperimentCell cell, ForkJoinPool pool, int filterThreads) throws Exception
+    {
+        // cells admitted after the experiment was cancelled are skipped
+        if (cancelled)
+            return;
 
-                        // merge ham and spam data sets
-                        dataSet = MetaHelper.getInputOutputHelper().mergeInstances(hamDataSet, spamDataSet);
+        CellExecution execution = new CellExecution(cell, pool, filterThreads, null);
 
-                        // count the number of total features by looking at the data set
-                        numberOfTotalFeatures = dataSet.numAttributes() - 1;
-                    }
+        int runsToExecute = getFirstRuns(pool, null);
+        while (runsToExecute > 0 && execution.executeRound(runsToExecute))
+            runsToExecute = execution.getFurtherRuns();
+
+        execution.finish();
+    }
+
+    // race the methods of a single data set round by round: every method still in the race executes a round, and only once all
+    // of them did is each one tested against the leader, so that every method (the most expensive ones included) has rivals with
+    // as many runs as it has when it is tested
+    private static void runRace(List<ExperimentCell> cells, ForkJoinPool pool, int filterThreads) throws Exception
+    {
+        // cells admitted after the experiment was cancelled are skipped
+        if (cancelled)
+            return;
+
+        MethodRace race = new MethodRace(racingSignificance, racingMinimumRuns);
+        Map<CellExecution, Integer> racers = new LinkedHashMap<>();
+        for (ExperimentCell cell : cells)
+            racers.put(new CellExecution(cell, pool, filterThreads, race), getFirstRuns(pool, race));
+
+        while (!racers.isEmpty())
+        {
+            // execute a round of every method in the race; a method cancelled or out of budget leaves it
+            Iterator<Map.Entry<CellExecution, Integer>> iterator = racers.entrySet().iterator();
+            while (iterator.hasNext())
+            {
+                Map.Entry<CellExecution, Integer> racer = iterator.next();
+                if (!racer.getKey().executeRound(racer.getValue()))
+                {
+                    racer.getKey().finish();
+                    iterator.remove();
+                }
+            }
+
+            // then test every method against the leader, dropping those dominated, finished or converged
+            iterator = racers.entrySet().iterator();
+            while (iterator.hasNext())
+            {
+                Map.Entry<CellExecution, Integer> racer = iterator.next();
+                int furtherRuns = racer.getKey().getFurtherRuns();
+                if (furtherRuns > 0)
+                {
+                    racer.setValue(furtherRuns);
+                }
+                else
+                {
+                    racer.getKey().finish();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    // the cells of every data set, keyed by the one with the largest estimated heap, in the order the first of them was planned
+    private static Map<ExperimentCell, List<ExperimentCell>> groupRaces(List<ExperimentCell> cells)
+    {
+        Map<String, List<ExperimentCell>> cellsPerFolder = new LinkedHashMap<>();
+        for (ExperimentCell cell : cells)
+            cellsPerFolder.computeIfAbsent(cell.getMetadata().getFolder(), folder -> new ArrayList<>()).add(cell);
 
-                    // apply attribute and instance filters to the data set, if specified
-                    if (shrinkFeatures)
-                        dataSet = FilterConfiguration.buildAndApply(dataSet, FilterConfiguration.AttributeFilter.CfsSubsetEval_MultiObjectiveEvolutionarySearch);
-                    if (balanceClasses)
-                        dataSet = FilterConfiguration.buildAndApply(dataSet, FilterConfiguration.InstanceFilter.ClassBalancer);
+        Map<ExperimentCell, List<ExperimentCell>> races = new LinkedHashMap<>();
+        for (List<ExperimentCell> folderCells : cellsPerFolder.values())
+            races.put(Collections.max(folderCells, Comparator.comparingLong(ExperimentCell::getEstimatedBytes)), folderCells);
+        return races;
+    }
+
+    // whether the amount of runs depends on the convergence of the results
+    private static boolean isAdaptive()
+    {
+        return minimumRuns > 0 && minimumRuns < numberOfRuns && !skipTest;
+    }
 
-                    // count the number of actual features by looking at the data set
-                    numberOfActualFeatures = dataSet.numAttributes() - 1;
+    // whether the methods of each data set race against each other
+    private static boolean isRacing()
+    {
+        return racing && !skipTest;
+    }
 
-                    // save whole set to .arff file, if specified
-                    if (saveArff)
-                        MetaHelper.getInputOutputHelper().saveInstancesToArffFile(dataSet, folder + File.separator + "data.arff");
+    // the amount of runs executed before the results are first checked; racing methods execute one round at a time
+    private static int getFirstRuns(ForkJoinPool pool, MethodRace race)
+    {
+        if (isAdaptive())
+            return minimumRuns;
+        if (race != null)
+            return Math.min(numberOfRuns, Math.max(racingMinimumRuns, pool.getParallelism()));
+        return numberOfRuns;
+    }
 
-                    // build empty patterns set, if specified
-                    if (includeEmpty)
-                        emptySet = MetaHelper.getInputOutputHelper().createEmptyInstances(dataSet.numAttributes() - 1, metadata.getEmptyHamCount(), metadata.getEmptySpamCount());
+    // the amount of runs to add to a cell whose results have not converged yet or whose method is still in the race, up to
+    // the maximum amount of runs; runs are added one per worker, so that the pool stays busy between checks
+    private static int getFurtherRuns(ExperimentCell cell, ForkJoinPool pool, MethodRace race, ExperimentHelper experimentHelper)
+    {
+        int resultCount = experimentHelper.getResultCount();
 
-                    // build the classifier for the given configuration
-                    Classifier baseClassifier = MethodConfiguration.buildClassifierFor(method);
+        if ((!isAdaptive() && race == null) || resultCount >= numberOfRuns)
+            return 0;
 
-                    // create the object that will hold the overall evaluations result
-                    MethodEvaluation baseEvaluation = new MethodEvaluation(folder, method);
+        if (race != null && race.isDominated(cell.getMethod()))
+        {
+            LOGGER.info("Dropped {} from the race after {} of up to {} runs, {} is significantly better.", cell, resultCount, numberOfRuns, race.getLeader());
+            return 0;
+        }
 
-                    // reset run results keeper
-                    MetaHelper.getExperimentHelper().clearResultHistory();
+        if (isAdaptive() && experimentHelper.hasConverged(convergenceMetrics, targetHalfWidth))
+        {
+            LOGGER.info("Results of {} converged after {} of up to {} runs.", cell, resultCount, numberOfRuns);
+            return 0;
+        }
 
-                    for (int run = 0; run < numberOfRuns; run++)
-                    {
-                        // set random number generator's seed
-                        MetaHelper.getRandomHelper().update();
-
-                        // randomize the data set to assure balance and avoid biasing
-                        dataSet.randomize(MetaHelper.getRandomHelper().getRandom());
-
-                        // build train and test sets
-                        double splitPercent = method.getSplitPercent();
-                        int trainingSetSize = (int) Math.round(dataSet.numInstances() * splitPercent);
-                        int testingSetSize = dataSet.numInstances() - trainingSetSize;
-                        trainingSet = new Instances(dataSet, 0, trainingSetSize);
-                        testingSet = new Instances(dataSet, trainingSetSize, testingSetSize);
-
-                        // add empty patterns to test set
-                        if (includeEmpty)
-                            testingSet.addAll(emptySet);
-
-                        // save the data sets to .csv files, if specified
-                        if (saveSets)
-                        {
-                            MetaHelper.getInputOutputHelper().saveInstancesToArffFile(trainingSet, folder + File.separator + "training.arff");
-                            MetaHelper.getInputOutputHelper().saveInstancesToArffFile(testingSet, folder + File.separator + "testing.arff");
-                        }
-
-                        // if the training should be skipped, then read the classifier from the filesystem; else, clone and train the base classifier
-                        Classifier classifier = AbstractClassifier.makeCopy(baseClassifier);
-
-                        // create the object that will hold the single evaluation result
-                        Evaluation evaluation = new Evaluation(testingSet);
-
-                        // setup the classifier evaluation
-                        baseEvaluation.setClassifier(classifier);
-                        baseEvaluation.setEvaluation(evaluation);
-                        baseEvaluation.setNumberOfTotalFeatures(numberOfTotalFeatures);
-                        baseEvaluation.setNumberOfActualFeatures(numberOfActualFeatures);
-
-                        // if the classifier could not be loaded from the filesystem, then train it
-                        if (!skipTrain)
-                            baseEvaluation.train(trainingSet);
-
-                        // if the testing should not be skipped
-                        if (!skipTest)
-                        {
-                            // evaluate the classifier
-                            baseEvaluation.test(testingSet);
-
-                            // compute and log the partial results for this configuration
-                            MetaHelper.getExperimentHelper().computeSingleRunResults(baseEvaluation);
-                            MetaHelper.getExperimentHelper().summarizeResults(baseEvaluation, false, true);
-
-                            // if at the end of last run, detect and remove outliers (if specified); this may lead to additional runs
-                            if (removeOutliers && run == (numberOfRuns - 1))
-                                run -= MetaHelper.getExperimentHelper().detectAndRemoveOutliers();
-                        }
-
-                        // persist the classifier, if specified in args
-                        if (saveModel)
-                        {
-                            String classifierFilename = MetaHelper.getInputOutputHelper().buildClassifierFilename(folder, method, splitPercent);
-                            MetaHelper.getInputOutputHelper().saveModelToFile(classifierFilename, classifier);
-                        }
-
-                        // increment the progress bar current value
-                        updateProgressBar();
-                    }
+        return Math.min(numberOfRuns - resultCount, pool.getParallelism());
+    }
+
+    // everything but the method, data set folder and seed that determines the results of a run
+    private static String buildRunSettings(DataSetMetadata metadata)
+    {
+        int emptyHamCount = includeEmpty ? metadata.getEmptyHamCount() : 0;
+        int emptySpamCount = includeEmpty ? metadata.getEmptySpamCount() : 0;
+
+        String runSettings = String.format("skipTrain=%b;shrinkFeatures=%b;balanceClasses=%b;includeEmpty=%b;emptyHamCount=%d;emptySpamCount=%d", skipTrain,
+            shrinkFeatures, balanceClasses, includeEmpty, emptyHamCount, emptySpamCount);
+
+        // replicated holdout runs keep the keys they were checkpointed with before weighting and cross-validation existed
+        if (balanceByWeight)
+            runSettings += ";balanceByWeight=true";
+        if (sampleSize > 0)
+            runSettings += String.format(";sampleSize=%d;samplingMode=%s", sampleSize, samplingMode);
+        if (isStreaming())
+            runSettings += String.format(";streamBatchSize=%d", streamBatchSize);
+        return isCrossValidating() ? runSettings + String.format(";folds=%d", folds) : runSettings;
+    }
+
+    private static boolean isCrossValidating()
+    {
+        return folds > 1 && !isStreaming();
+    }
+
+    private static boolean isStreaming()
+    {
+        return streamBatchSize > 0;
+    }
+
+    // e-mail the log file of the given method
+    private static void sendResults(MethodConfiguration method)
+    {
+        try
+        {
+            String logFilename = outputFolder + File.separator + method.name() + ".csv";
+
+            String subject = String.format("[ASW] %s - %s", LocalDateTime.now(), logFilename.substring(logFilename.lastIndexOf(File.separator) + 1));
+
+            BasicFileAttributes fileAttributes = Files.readAttributes(Paths.get(logFilename), BasicFileAttributes.class);
+
+            StringBuilder text = new StringBuilder();
+            text.append("creationTime: " + fileAttributes.creationTime() + "\n");
+            text.append("lastAccessTime: " + fileAttributes.lastAccessTime() + "\n");
+            text.append("lastModifiedTime: " + fileAttributes.lastModifiedTime() + "\n");
+            text.append("isDirectory: " + fileAttributes.isDirectory() + "\n");
+            text.append("isOther: " + fileAttributes.isOther() + "\n");
+            text.append("isRegularFile: " + fileAttributes.isRegularFile() + "\n");
+            text.append("isSymbolicLink: " + fileAttributes.isSymbolicLink() + "\n");
+            text.append("size: " + fileAttributes.size() + "\n");
+
+            MailHelper.sendMail(protocol, username, password, server, sender, recipient, subject, text.toString(), logFilename, false);
+        }
+        catch (Exception e)
+        {
+            LOGGER.error(e);
+        }
+    }
+
+    // execute the given amount of runs on the pool, merging their results in run order; runs checkpointed by a previous
+    // execution are replayed instead. returns the amount of runs not started because the experiment was cancelled or the
+    // cell exceeded its budget
+    private static int executeRuns(ForkJoinPool pool, int runsToExecute, CellData cellData, MethodEvaluation baseEvaluation, RandomHelper randomHelper,
+            ExperimentHelper experimentHelper) throws Exception
+    {
+        MethodConfiguration method = baseEvaluation.getMethodConfiguration();
+        Deque<Future<RunResult>> pendingRuns = new ArrayDeque<>();
+        int requestedRuns = runsToExecute;
+        int submittedRuns = 0;
+
+        while (submittedRuns < runsToExecute || !pendingRuns.isEmpty())
+        {
+            // stop starting runs once the experiment is cancelled or the cell is out of time
+            if (cancelled || System.currentTimeMillis() >= cellData.deadline)
+                runsToExecute = submittedRuns;
 
-                    // log the final results for this configuration
-                    if (numberOfRuns > 0 && !skipTest)
-                        MetaHelper.getExperimentHelper().summarizeResults(baseEvaluation, true, true);
+            // keep at most twice as many runs (or folds) in flight as there are workers, so that memory usage stays bounded
+            int maximumPendingRuns = Math.max(1, 2 * pool.getParallelism() / (isCrossValidating() ? folds : 1));
+            while (submittedRuns < runsToExecute && pendingRuns.size() < maximumPendingRuns)
+            {
+                // set random number generator's seed
+                randomHelper.update();
+                int seed = randomHelper.getSeed();
+
+                // look for the run in the journal; runs without test results are not checkpointed
+                CheckpointJournal journal = checkpointRuns ? checkpointJournal : null;
+                String key = (journal != null && !skipTest)
+                    ? CheckpointJournal.buildKey(method, baseEvaluation.getFolder(), cellData.getRawFilesFingerprint(), seed, cellData.runSettings)
+                    : null;
+                Checkpoint checkpoint = key != null ? journal.lookup(key) : null;
+
+                if (checkpoint != null)
+                {
+                    // the shuffle is still replayed, since the shuffles of the following runs build on it
+                    if (!isStreaming())
+                        randomHelper.shuffle(cellData.getOrder(checkpoint.getNumberOfInstances()));
+
+                    pendingRuns.add(CompletableFuture.completedFuture(new RunResult(seed, key, checkpoint)));
                 }
+                else if (isStreaming())
+                {
+                    // read the header of the data set and build the classifier, leaving the instances in their files
+                    cellData.prepareStreaming(baseEvaluation);
 
-                if (emailResults)
+                    // each run gets its own seed and copy of the base classifier, and streams the data set on its own
+                    DataSetMetadata metadata = cellData.cell.getMetadata();
+                    Instances header = cellData.header;
+                    int numberOfInstances = cellData.numberOfInstances;
+                    Instances emptySet = cellData.emptySet;
+                    long cellDeadline = cellData.deadline;
+                    Classifier classifier = AbstractClassifier.makeCopy(cellData.baseClassifier);
+                    pendingRuns.add(pool.submit(
+                        () -> executeStreamingRun(seed, key, metadata, header, numberOfInstances, emptySet, classifier, baseEvaluation, cellDeadline)));
+                }
+                else
                 {
-                    String logFilename = "logs" + File.separator + method.name() + ".log";
+                    // load and filter the data set, or reuse the one prepared for a previous method
+                    cellData.prepare(baseEvaluation);
+
+                    // shuffle the indices to assure balance and avoid biasing, exactly as randomizing the data set would
+                    randomHelper.shuffle(cellData.order);
+
+                    // each run gets its own seed, shuffled view and copy of the base classifier
+                    int[] runOrder = cellData.order.clone();
+                    Instances dataSet = cellData.dataSet;
+                    Instances emptySet = cellData.emptySet;
+                    long cellDeadline = cellData.deadline;
 
-                    String subject = String.format("[ASW] %s - %s", LocalDateTime.now(), logFilename.substring(logFilename.lastIndexOf(File.separator) + 1));
+                    if (isCrossValidating())
+                    {
+                        pendingRuns.add(submitFolds(pool, seed, key, runOrder, cellData, baseEvaluation));
+                    }
+                    else
+                    {
+                        int trainingSetSize = (int) Math.round(runOrder.length * method.getSplitPercent());
+                        Classifier classifier = AbstractClassifier.makeCopy(cellData.baseClassifier);
+                        pendingRuns.add(pool.submit(() -> executeRun(seed, key, runOrder, trainingSetSize, dataSet, emptySet, classifier, baseEvaluation, cellDeadline)));
+                    }
+                }
 
-                    BasicFileAttributes fileAttributes = Files.readAttributes(Paths.get(logFilename), BasicFileAttributes.class);
+                submittedRuns++;
+            }
 
-                    StringBuilder text = new StringBuilder();
-                    text.append("creationTime: " + fileAttributes.creationTime() + "\n");
-                    text.append("lastAccessTime: " + fileAttributes.lastAccessTime() + "\n");
-                    text.append("lastModifiedTime: " + fileAttributes.lastModifiedTime() + "\n");
-                    text.append("isDirectory: " + fileAttributes.isDirectory() + "\n");
-                    text.append("isOther: " + fileAttributes.isOther() + "\n");
-                    text.append("isRegularFile: " + fileAttributes.isRegularFile() + "\n");
-                    text.append("isSymbolicLink: " + fileAttributes.isSymbolicLink() + "\n");
-                    text.append("size: " + fileAttributes.size() + "\n");
+            // wait for the oldest run to finish and merge its results
+            if (!pendingRuns.isEmpty())
+                mergeRun(pendingRuns.poll().get(), baseEvaluation, experimentHelper, cellData.race);
+        }
 
-                    MailHelper.sendMail(protocol, username, password, server, sender, recipient, subject, text.toString(), logFilename, false);
+        return requestedRuns - submittedRuns;
+    }
+
+    // split the shuffled indices into stratified folds and train and test every fold on the pool, each fold testing the
+    // instances no other fold tests; once all folds finish, their predictions are merged into the results of a single run
+    private static Future<RunResult> submitFolds(ForkJoinPool pool, int seed, String key, int[] order, CellData cellData, MethodEvaluation baseEvaluation)
+            throws Exception
+    {
+        int[] foldOf = MetaHelper.getDataSetHelper().stratify(cellData.dataSet, order, folds);
+        List<CompletableFuture<RunResult>> foldRuns = new ArrayList<>();
+
+        for (int fold = 0; fold < folds; fold++)
+        {
+            // the fold's view of the shuffled indices: its training instances first, then its testing ones
+            int[] foldOrder = new int[order.length];
+            int trainingSetSize = 0;
+            int testingSetIndex = order.length;
+            for (int i = order.length - 1; i >= 0; i--)
+            {
+                if (foldOf[i] == fold)
+                    foldOrder[--testingSetIndex] = order[i];
+            }
+            for (int i = 0; i < order.length; i++)
+            {
+                if (foldOf[i] != fold)
+                    foldOrder[trainingSetSize++] = order[i];
+            }
+
+            // empty patterns are tested once, along with the first fold
+            Instances emptySet = fold == 0 ? cellData.emptySet : null;
+            Classifier classifier = AbstractClassifier.makeCopy(cellData.baseClassifier);
+            Instances dataSet = cellData.dataSet;
+            long cellDeadline = cellData.deadline;
+            int foldTrainingSetSize = trainingSetSize;
+
+            foldRuns.add(CompletableFuture.supplyAsync(() ->
+            {
+                try
+                {
+                    return executeRun(seed, key, foldOrder, foldTrainingSetSize, dataSet, emptySet, classifier, baseEvaluation, cellDeadline);
                 }
+                catch (Exception e)
+                {
+                    throw new CompletionException(e);
+                }
+            }, pool));
+        }
+
+        return CompletableFuture
+            .allOf(foldRuns.toArray(new CompletableFuture<?>[0]))
+            .thenApply(v -> mergeFolds(foldRuns.stream().map(CompletableFuture::join).collect(Collectors.toList()), cellData.dataSet, baseEvaluation));
+    }
+
+    // the results of a cross-validation run, made of the results of its folds; a run with a cancelled or timed out fold is so too
+    private static RunResult mergeFolds(List<RunResult> foldResults, Instances dataSet, MethodEvaluation baseEvaluation)
+    {
+        RunResult lastFold = foldResults.get(foldResults.size() - 1);
+
+        MethodEvaluation runEvaluation = new MethodEvaluation(baseEvaluation.getFolder(), baseEvaluation.getMethodConfiguration());
+        runEvaluation.setClassifier(lastFold.evaluation.getClassifier());
+        runEvaluation.setNumberOfTotalFeatures(baseEvaluation.getNumberOfTotalFeatures());
+        runEvaluation.setNumberOfActualFeatures(baseEvaluation.getNumberOfActualFeatures());
+
+        RunStatus status = RunStatus.COMPLETED;
+        try
+        {
+            runEvaluation.setEvaluation(new Evaluation(dataSet));
+
+            for (RunResult foldResult : foldResults)
+            {
+                if (foldResult.status == RunStatus.CANCELLED)
+                    status = RunStatus.CANCELLED;
+                else if (foldResult.status == RunStatus.TIMED_OUT && status != RunStatus.CANCELLED)
+                    status = RunStatus.TIMED_OUT;
+                else if (status == RunStatus.COMPLETED && !skipTest)
+                    runEvaluation.aggregate(foldResult.evaluation, foldResult.testingSet);
             }
         }
         catch (Exception e)
         {
-            LOGGER.error(e);
-            e.printStackTrace();
+            throw new CompletionException(e);
+        }
+
+        return new RunResult(lastFold.seed, lastFold.key, lastFold.numberOfInstances, lastFold.trainingSet, lastFold.testingSet, runEvaluation, status);
+    }
+
+    // train and test a classifier on the given shuffled view of the data set, whose first indices are the training ones
+    private static RunResult executeRun(int seed, String key, int[] order, int trainingSetSize, Instances dataSet, Instances emptySet, Classifier classifier,
+            MethodEvaluation baseEvaluation, long cellDeadline) throws Exception
+    {
+        MethodConfiguration method = baseEvaluation.getMethodConfiguration();
+
+        // build train and test sets as views over the run's permutation; the weighted empty patterns are evaluated apart from the
+        // test set, but still count towards its class priors and are kept at its end for persisting and aggregating folds
+        Instances emptyPatterns = includeEmpty ? emptySet : null;
+        Instances trainingSet = adaptToWeights(new InstancesView(dataSet, order, 0, trainingSetSize), classifier, new Random(seed));
+        Instances testingSet = new InstancesView(dataSet, order, trainingSetSize, order.length);
+        Instances fullTestingSet = new InstancesView(dataSet, order, trainingSetSize, order.length, emptyPatterns);
+
+        // create the object that will hold the single evaluation result
+        Evaluation evaluation = new Evaluation(fullTestingSet);
+
+        // setup the classifier evaluation
+        MethodEvaluation runEvaluation = new MethodEvaluation(baseEvaluation.getFolder(), method);
+        runEvaluation.setClassifier(classifier);
+        runEvaluation.setEvaluation(evaluation);
+        runEvaluation.setNumberOfTotalFeatures(baseEvaluation.getNumberOfTotalFeatures());
+        runEvaluation.setNumberOfActualFeatures(baseEvaluation.getNumberOfActualFeatures());
+
+        // hold as many threads from the budget as the classifier uses while training and testing, until the run finishes or is
+        // abandoned for exceeding its budget
+        ThreadBudgetHelper.Lease lease = MetaHelper.getThreadBudgetHelper().acquire(MethodConfiguration.getThreadsUsedBy(classifier));
+        try
+        {
+            // the run's budget starts once it gets its threads, and never goes beyond the cell's budget
+            long deadline = TimeoutHelper.getDeadline(getRunTimeout(method), cellDeadline);
+
+            TimeoutHelper.callWithin(() ->
+            {
+                // train the classifier, unless the training should be skipped
+                if (!skipTrain)
+                {
+                    TimeoutHelper.checkpoint();
+                    runEvaluation.train(trainingSet);
+                }
+
+                // evaluate the classifier, unless the testing should be skipped
+                if (!skipTest)
+                {
+                    TimeoutHelper.checkpoint();
+                    runEvaluation.test(testingSet, emptyPatterns);
+                }
+
+                return runEvaluation;
+            }, deadline, ExecutionHelper::isCancelled, lease);
+        }
+        catch (TimeoutException e)
+        {
+            return new RunResult(seed, key, order.length, trainingSet, fullTestingSet, runEvaluation, RunStatus.TIMED_OUT);
         }
+        catch (CancellationException e)
+        {
+            return new RunResult(seed, key, order.length, trainingSet, fullTestingSet, runEvaluation, RunStatus.CANCELLED);
+        }
+
+        return new RunResult(seed, key, order.length, trainingSet, fullTestingSet, runEvaluation, RunStatus.COMPLETED);
     }
 
-    // calculate and set the progress bar maximum value
-    private static void setUpProgressBar()
+    // train and test an updateable classifier on batches streamed from the files of the data set; each instance is drawn into the
+    // training set with the method's split probability, and both passes replay the same interleaving and draws from the run's seed
+    private static RunResult executeStreamingRun(int seed, String key, DataSetMetadata metadata, Instances header, int numberOfInstances, Instances emptySet,
+            Classifier classifier, MethodEvaluation baseEvaluation, long cellDeadline) throws Exception
     {
-        SwingUtilities.invokeLater(() ->
+        MethodConfiguration method = baseEvaluation.getMethodConfiguration();
+        Instances emptyPatterns = includeEmpty ? emptySet : null;
+
+        Random random = new Random(seed);
+        long interleavingSeed = random.nextLong();
+        long splitSeed = random.nextLong();
+
+        // setup the classifier evaluation
+        MethodEvaluation runEvaluation = new MethodEvaluation(baseEvaluation.getFolder(), method);
+        runEvaluation.setClassifier(classifier);
+        runEvaluation.setEvaluation(new Evaluation(header));
+        runEvaluation.setNumberOfTotalFeatures(baseEvaluation.getNumberOfTotalFeatures());
+        runEvaluation.setNumberOfActualFeatures(baseEvaluation.getNumberOfActualFeatures());
+
+        // hold as many threads from the budget as the classifier uses while training and testing, until the run finishes or is
+        // abandoned for exceeding its budget
+        ThreadBudgetHelper.Lease lease = MetaHelper.getThreadBudgetHelper().acquire(MethodConfiguration.getThreadsUsedBy(classifier));
+        try
+        {
+            // the run's budget starts once it gets its threads, and never goes beyond the cell's budget
+            long deadline = TimeoutHelper.getDeadline(getRunTimeout(method), cellDeadline);
+
+            TimeoutHelper.callWithin(() ->
+            {
+                // train the classifier, unless the training should be skipped; every batch is a checkpoint of the run
+                if (!skipTrain)
+                {
+                    try (InstanceBatchReader batches = openStreamingBatches(metadata, interleavingSeed))
+                    {
+                        runEvaluation.trainIncrementally(split(batches, new Random(splitSeed), method.getSplitPercent(), true));
+                    }
+                }
+
+                // evaluate the classifier, unless the testing should be skipped
+                if (!skipTest)
+                {
+                    try (InstanceBatchReader batches = openStreamingBatches(metadata, interleavingSeed))
+                    {
+                        runEvaluation.testIncrementally(split(batches, new Random(splitSeed), method.getSplitPercent(), false), emptyPatterns);
+                    }
+                }
+
+                return runEvaluation;
+            }, deadline, ExecutionHelper::isCancelled, lease);
+        }
+        catch (TimeoutException e)
         {
-            UserInterface.progressBar.setMinimum(0);
-            UserInterface.progressBar.setMaximum(methods.size() * metadata.size() * numberOfRuns);
-        });
+            return new RunResult(seed, key, numberOfInstances, null, null, runEvaluation, RunStatus.TIMED_OUT);
+        }
+        catch (CancellationException e)
+        {
+            return new RunResult(seed, key, numberOfInstances, null, null, runEvaluation, RunStatus.CANCELLED);
+        }
+
+        return new RunResult(seed, key, numberOfInstances, null, null, runEvaluation, RunStatus.COMPLETED);
+    }
+
+    private static InstanceBatchReader openStreamingBatches(DataSetMetadata metadata, long interleavingSeed) throws IOException
+    {
+        return MetaHelper.getDataSetHelper().openBatches(metadata, shrinkFeatures, balanceClasses, balanceByWeight, streamBatchSize, new Random(interleavingSeed));
     }
 
-    // increment the progress bar current value
-    private static void updateProgressBar()
+    // the instances of each batch drawn into the training set (or left for the testing set), in stream order, so that passes whose
+    // generators share a seed split the stream alike; the run stops before reading the next batch once it is out of time or cancelled
+    static Iterator<Instances> split(Iterator<Instances> batches, Random random, double splitPercent, boolean training)
     {
-        SwingUtilities.invokeLater(() ->
+        return new Iterator<Instances>()
         {
-            UserInterface.progressBar.setValue(UserInterface.progressBar.getValue() + 1);
-        });
+            @Override
+            public boolean hasNext()
+            {
+                return batches.hasNext();
+            }
+
+            @Override
+            public Instances next()
+            {
+                TimeoutHelper.checkpoint();
+
+                Instances batch = batches.next();
+                Instances part = new Instances(batch, batch.numInstances());
+                for (Instance instance : batch)
+                    if ((random.nextDouble() < splitPercent) == training)
+                        part.add(instance);
+                return part;
+            }
+        };
+    }
+
+    // learners that ignore instance weights are trained on a sample drawn according to the weights when the classes are balanced
+    // by weight, so they still see both classes equally often
+    static Instances adaptToWeights(Instances trainingSet, Classifier classifier, Random random)
+    {
+        if (!balanceByWeight || classifier instanceof WeightedInstancesHandler)
+            return trainingSet;
+
+        return trainingSet.resampleWithWeights(random);
+    }
+
+    // persist and log the results of a single run; must be called in run order
+    private static void mergeRun(RunResult runResult, MethodEvaluation baseEvaluation, ExperimentHelper experimentHelper, MethodRace race) throws Exception
+    {
+        String folder = baseEvaluation.getFolder();
+        MethodConfiguration method = baseEvaluation.getMethodConfiguration();
+        MethodEvaluation runEvaluation = runResult.evaluation;
+
+        // a cancelled run has no results at all
+        if (runResult.status == RunStatus.CANCELLED)
+            return;
+
+        // a run that exceeded its budget is recorded as such in the results
+        if (runResult.status == RunStatus.TIMED_OUT)
+        {
+            experimentHelper.summarizeTimeout(runEvaluation, String.format("run %d exceeded its budget", runResult.seed));
+            progressListener.runFinished();
+            return;
+        }
+
+        // replay the results of a run completed by a previous execution
+        if (runResult.status == RunStatus.REPLAYED)
+        {
+            baseEvaluation.setNumberOfTotalFeatures(runResult.checkpoint.getNumberOfTotalFeatures());
+            baseEvaluation.setNumberOfActualFeatures(runResult.checkpoint.getNumberOfActualFeatures());
+            experimentHelper.addSingleRunResults(runResult.checkpoint.getResults());
+            experimentHelper.summarizeResults(baseEvaluation, false, true);
+            if (race != null)
+                race.record(method, runResult.seed, runResult.checkpoint.getResults().get(racingMetric));
+
+            LOGGER.trace("Replayed run {} of {} on {}.", runResult.seed, method.name(), folder);
+            progressListener.runFinished();
+            return;
+        }
+
+        // save the data sets to .arff files, if specified; streamed runs never hold them
+        if (saveSets && runResult.trainingSet != null)
+        {
+            MetaHelper.getInputOutputHelper().saveInstancesToArffFile(runResult.trainingSet, folder + File.separator + "training.arff");
+            MetaHelper.getInputOutputHelper().saveInstancesToArffFile(runResult.testingSet, folder + File.separator + "testing.arff");
+        }
+
+        // keep the overall evaluation pointing to the latest run
+        baseEvaluation.setClassifier(runEvaluation.getClassifier());
+        baseEvaluation.setEvaluation(runEvaluation.getEvaluation());
+
+        // compute and log the partial results for this configuration
+        Map<Metric, Double> singleRunResults = null;
+        if (!skipTest)
+        {
+            singleRunResults = experimentHelper.computeSingleRunResults(runEvaluation);
+            experimentHelper.summarizeResults(runEvaluation, false, true);
+
+            if (race != null)
+                race.record(method, runResult.seed, singleRunResults.get(racingMetric));
+        }
+
+        // persist the classifier, if specified in args
+        if (saveModel)
+        {
+            String classifierFilename = MetaHelper.getInputOutputHelper().buildClassifierFilename(folder, method, method.getSplitPercent(), runResult.seed);
+            MetaHelper.getInputOutputHelper().saveModelToFile(classifierFilename, runEvaluation.getClassifier());
+        }
+
+        // checkpoint the run once everything else about it was persisted, so that it is not executed again
+        if (runResult.key != null && singleRunResults != null)
+        {
+            Checkpoint checkpoint = new Checkpoint(runResult.numberOfInstances, runEvaluation.getNumberOfTotalFeatures(), runEvaluation.getNumberOfActualFeatures(),
+                    singleRunResults);
+            checkpointJournal.append(runResult.key, checkpoint);
+        }
+
+        // report the finished run
+        progressListener.runFinished();
     }
 
     // used to suppress the default public constructor
     private ExecutionHelper()
     {
     }
+
+    // the state of a single method on a single data set across its rounds of runs
+    private static class CellExecution
+    {
+        private final ExperimentCell cell;
+        private final ForkJoinPool pool;
+        private final MethodRace race;
+
+        // each cell has its own random number generator and run results keeper, so cells may execute concurrently
+        private final RandomHelper randomHelper = new RandomHelper();
+        private final ExperimentHelper experimentHelper = MetaHelper.getExperimentHelper().fork();
+
+        // the data set is only prepared when a run that was not checkpointed by a previous execution is found
+        private final CellData cellData;
+
+        // the object that will hold the overall evaluations result
+        private final MethodEvaluation baseEvaluation;
+
+        private int previousResultCount;
+        private boolean stopped;
+
+        private CellExecution(ExperimentCell cell, ForkJoinPool pool, int filterThreads, MethodRace race)
+        {
+            this.cell = cell;
+            this.pool = pool;
+            this.race = race;
+            this.cellData = new CellData(cell, pool, filterThreads, race);
+            this.baseEvaluation = new MethodEvaluation(cell.getMetadata().getFolder(), cell.getMethod());
+        }
+
+        // execute a round of the given amount of runs, re-executing the outliers detected and removed (if specified); returns
+        // whether further rounds may follow, i.e. the experiment was not cancelled and the cell did not exceed its budget
+        private boolean executeRound(int runsToExecute) throws Exception
+        {
+            previousResultCount = experimentHelper.getResultCount();
+
+            while (runsToExecute > 0)
+            {
+                int skippedRuns = executeRuns(pool, runsToExecute, cellData, baseEvaluation, randomHelper, experimentHelper);
+
+                if (cancelled)
+                {
+                    LOGGER.info("Cancelled {}.", cell);
+                    stopped = true;
+                    return false;
+                }
+
+                if (skippedRuns > 0)
+                {
+                    experimentHelper.summarizeTimeout(baseEvaluation, String.format("%d runs not started, the cell exceeded its budget", skippedRuns));
+                    return false;
+                }
+
+                runsToExecute = (removeOutliers && !skipTest) ? experimentHelper.detectAndRemoveOutliers() : 0;
+            }
+
+            return true;
+        }
+
+        // keep adding runs while they are not converged or the method is still in the race, unless the last ones timed out
+        private int getFurtherRuns()
+        {
+            if (experimentHelper.getResultCount() <= previousResultCount)
+                return 0;
+
+            return ExecutionHelper.getFurtherRuns(cell, pool, race, experimentHelper);
+        }
+
+        private void finish() throws Exception
+        {
+            if (stopped)
+                return;
+
+            // log the final results for this configuration, unless every run timed out
+            if (numberOfRuns > 0 && !skipTest && experimentHelper.getResultCount() > 0)
+                experimentHelper.summarizeResults(baseEvaluation, true, true);
+
+            // feed the cost model with the observed run duration, so that future experiments are planned better
+            if (numberOfRuns > 0 && !skipTrain && !skipTest)
+                MetaHelper.getPlanningHelper().record(cell, experimentHelper.getMeanRunTime());
+        }
+    }
+
+    // holds the data set, shuffled indices and base classifier of a cell, prepared on first use
+    private static class CellData
+    {
+        private final ExperimentCell cell;
+        private final ForkJoinPool pool;
+        private final int filterThreads;
+        private final String runSettings;
+        private final long deadline;
+        private final MethodRace race;
+
+        private Instances dataSet;
+        private Instances emptySet;
+        private Classifier baseClassifier;
+        private int[] order;
+        private Instances header;
+        private int numberOfInstances;
+        private Long rawFilesFingerprint;
+
+        private CellData(ExperimentCell cell, ForkJoinPool pool, int filterThreads, MethodRace race)
+        {
+            this.cell = cell;
+            this.pool = pool;
+            this.filterThreads = filterThreads;
+            this.runSettings = buildRunSettings(cell.getMetadata());
+            this.deadline = TimeoutHelper.getDeadline(cellTimeout, TimeoutHelper.NO_DEADLINE);
+            this.race = race;
+        }
+
+        // fingerprinted on first use, i.e. only when runs are checkpointed
+        private long getRawFilesFingerprint() throws IOException
+        {
+            if (rawFilesFingerprint == null)
+                rawFilesFingerprint = MetaHelper.getDataSetHelper().fingerprintRawFiles(cell.getMetadata().getFolder());
+            return rawFilesFingerprint;
+        }
+
+        // the prepared data set is shared among methods and runs, so only its indices are shuffled
+        private int[] getOrder(int numberOfInstances)
+        {
+            if (order == null)
+                order = IntStream.range(0, numberOfInstances).toArray();
+            return order;
+        }
+
+        private void prepare(MethodEvaluation baseEvaluation) throws Exception
+        {
+            if (dataSet != null)
+                return;
+
+            DataSetMetadata metadata = cell.getMetadata();
+            String folder = metadata.getFolder();
+
+            // load and filter the data set, or reuse the one prepared for a previous method
+            PreparedDataSet preparedDataSet = MetaHelper.getDataSetHelper().prepare(metadata, shrinkFeatures, balanceClasses, balanceByWeight, mapRawFiles, filterThreads);
+            dataSet = preparedDataSet.getDataSet();
+
+            // replayed runs shuffled indices of the data set they were executed on, which must still be the same size
+            if (order != null && order.length != dataSet.numInstances())
+                throw new IllegalStateException(String.format("Checkpointed runs of %s were executed on %d instances, but the data set now has %d.", cell,
+                    order.length, dataSet.numInstances()));
+            getOrder(dataSet.numInstances());
+
+            // save whole set to .arff file, if specified
+            if (saveArff)
+                MetaHelper.getInputOutputHelper().saveInstancesToArffFile(dataSet, folder + File.separator + "data.arff");
+
+            // build empty patterns set, if specified
+            if (includeEmpty)
+                emptySet = MetaHelper.getInputOutputHelper().createWeightedEmptyInstances(dataSet.numAttributes() - 1, metadata.getEmptyHamCount(), metadata.getEmptySpamCount());
+
+            // build the classifier for the given configuration, sharing the cores with the other runs in the pool
+            int classifierThreads = MetaHelper.getThreadBudgetHelper().getThreadsPerTask(pool.getParallelism());
+            baseClassifier = MethodConfiguration.buildClassifierFor(cell.getMethod(), classifierThreads);
+
+            baseEvaluation.setNumberOfTotalFeatures(preparedDataSet.getNumberOfTotalFeatures());
+            baseEvaluation.setNumberOfActualFeatures(preparedDataSet.getNumberOfActualFeatures());
+        }
+
+        // streaming runs only need the header of the data set and an updateable classifier, since the instances stay in their files
+        private void prepareStreaming(MethodEvaluation baseEvaluation) throws Exception
+        {
+            if (header != null)
+                return;
+
+            DataSetMetadata metadata = cell.getMetadata();
+
+            // build the classifier for the given configuration, sharing the cores with the other runs in the pool
+            int classifierThreads = MetaHelper.getThreadBudgetHelper().getThreadsPerTask(pool.getParallelism());
+            Classifier classifier = MethodConfiguration.buildClassifierFor(cell.getMethod(), classifierThreads);
+            if (!(classifier instanceof UpdateableClassifier))
+                throw new IllegalArgumentException(String.format("%s cannot be trained incrementally, so it cannot stream %s.", cell.getMethod().name(),
+                    metadata.getFolder()));
+
+            // open the data set once to read its header and amounts, without reading its instances
+            try (InstanceBatchReader batches = MetaHelper.getDataSetHelper().openBatches(metadata, shrinkFeatures, balanceClasses, balanceByWeight,
+                streamBatchSize, new Random(0)))
+            {
+                Instances batchHeader = batches.getHeader();
+
+                // build empty patterns set, if specified
+                if (includeEmpty)
+                    emptySet = MetaHelper.getInputOutputHelper().createWeightedEmptyInstances(batchHeader.numAttributes() - 1, metadata.getEmptyHamCount(),
+                        metadata.getEmptySpamCount());
+
+                baseEvaluation.setNumberOfTotalFeatures(batches.getNumberOfTotalFeatures());
+                baseEvaluation.setNumberOfActualFeatures(batchHeader.numAttributes() - 1);
+
+                numberOfInstances = batches.getNumberOfInstances();
+                baseClassifier = classifier;
+                header = new Instances(batchHeader, 0);
+            }
+        }
+    }
+
+    private enum RunStatus
+    {
+        COMPLETED,
+        REPLAYED,
+        TIMED_OUT,
+        CANCELLED
+    }
+
+    // holds the outcome of a single run until it is merged; replayed runs only hold their checkpoint
+    private static class RunResult
+    {
+        private final int seed;
+        private final String key;
+        private final int numberOfInstances;
+        private final Instances trainingSet;
+        private final Instances testingSet;
+        private final MethodEvaluation evaluation;
+        private final Checkpoint checkpoint;
+        private final RunStatus status;
+
+        private RunResult(int seed, String key, int numberOfInstances, Instances trainingSet, Instances testingSet, MethodEvaluation evaluation, RunStatus status)
+        {
+            this.seed = seed;
+            this.key = key;
+            this.numberOfInstances = numberOfInstances;
+            this.trainingSet = trainingSet;
+            this.testingSet = testingSet;
+            this.evaluation = evaluation;
+            this.checkpoint = null;
+            this.status = status;
+        }
+
+        private RunResult(int seed, String key, Checkpoint checkpoint)
+        {
+            this.seed = seed;
+            this.key = key;
+            this.numberOfInstances = checkpoint.getNumberOfInstances();
+            this.trainingSet = null;
+            this.testingSet = null;
+            this.evaluation = null;
+            this.checkpoint = checkpoint;
+            this.status = RunStatus.REPLAYED;
+        }
+    }
 }
@@ -25,6 +25,7 @@ import static io.github.marcelovca90.common.Constants.MessageType.HAM;
 import static io.github.marcelovca90.common.Constants.MessageType.SPAM;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -52,18 +53,35 @@ public class ExperimentHelper
 {
     private static final Logger LOGGER = LogManager.getLogger(ExperimentHelper.class);
 
-    private final Set<String> methodsWithHeaderAlreadyPrinted = new HashSet<>();
+    private final Set<String> methodsWithHeaderAlreadyPrinted;
 
     private Map<Metric, List<Double>> resultHistory = new EnumMap<>(Metric.class);
 
+    public ExperimentHelper()
+    {
+        this(new HashSet<>());
+    }
+
+    private ExperimentHelper(Set<String> methodsWithHeaderAlreadyPrinted)
+    {
+        this.methodsWithHeaderAlreadyPrinted = methodsWithHeaderAlreadyPrinted;
+    }
+
+    // creates a helper with its own result keeper, sharing the record of already printed headers with this one,
+    // so that cells executing concurrently neither mix their results nor print a method's header twice
+    public ExperimentHelper fork()
+    {
+        return new ExperimentHelper(methodsWithHeaderAlreadyPrinted);
+    }
+
     // clears the data in result keeper
     public void clearResultHistory()
     {
         resultHistory.clear();
     }
 
-    // compute and persist all metrics' resultHistory for a given MethodEvaluation
-    public void computeSingleRunResults(MethodEvaluation methodEvaluation)
+    // compute and persist all metrics' resultHistory for a given MethodEvaluation, returning the computed values
+    public Map<Metric, Double> computeSingleRunResults(MethodEvaluation methodEvaluation)
     {
         Evaluation evaluation = methodEvaluation.getEvaluation();
         int hamIndex = HAM.ordinal();
@@ -93,23 +111,46 @@ public class ExperimentHelper
 
         Double testTime = (double) (methodEvaluation.getTestEnd() - methodEvaluation.getTestStart());
 
-        addSingleRunResult(Metric.HAM_PRECISION, hamPrecision);
-        addSingleRunResult(Metric.SPAM_PRECISION, spamPrecision);
-        addSingleRunResult(Metric.WEIGHTED_PRECISION, weightedPrecision);
-        addSingleRunResult(Metric.HAM_RECALL, hamRecall);
-        addSingleRunResult(Metric.SPAM_RECALL, spamRecall);
-        addSingleRunResult(Metric.WEIGHTED_RECALL, weightedRecall);
-        addSingleRunResult(Metric.HAM_AREA_UNDER_PRC, hamAreaUnderPRC);
-        addSingleRunResult(Metric.SPAM_AREA_UNDER_PRC, spamAreaUnderPRC);
-        addSingleRunResult(Metric.WEIGHTED_AREA_UNDER_PRC, weightedAreaUnderPRC);
-        addSingleRunResult(Metric.HAM_AREA_UNDER_ROC, hamAreaUnderROC);
-        addSingleRunResult(Metric.SPAM_AREA_UNDER_ROC, spamAreaUnderROC);
-        addSingleRunResult(Metric.WEIGHTED_AREA_UNDER_ROC, weightedAreaUnderROC);
-        addSingleRunResult(Metric.HAM_F_MEASURE, hamFMeasure);
-        addSingleRunResult(Metric.SPAM_F_MEASURE, spamFMeasure);
-        addSingleRunResult(Metric.WEIGHTED_F_MEASURE, weightedFMeasure);
-        addSingleRunResult(Metric.TRAIN_TIME, trainTime);
-        addSingleRunResult(Metric.TEST_TIME, testTime);
+        Map<Metric, Double> singleRunResults = new EnumMap<>(Metric.class);
+        singleRunResults.put(Metric.HAM_PRECISION, hamPrecision);
+        singleRunResults.put(Metric.SPAM_PRECISION, spamPrecision);
+        singleRunResults.put(Metric.WEIGHTED_PRECISION, weightedPrecision);
+        singleRunResults.put(Metric.HAM_RECALL, hamRecall);
+        singleRunResults.put(Metric.SPAM_RECALL, spamRecall);
+        singleRunResults.put(Metric.WEIGHTED_RECALL, weightedRecall);
+        singleRunResults.put(Metric.HAM_AREA_UNDER_PRC, hamAreaUnderPRC);
+        singleRunResults.put(Metric.SPAM_AREA_UNDER_PRC, spamAreaUnderPRC);
+        singleRunResults.put(Metric.WEIGHTED_AREA_UNDER_PRC, weightedAreaUnderPRC);
+        singleRunResults.put(Metric.HAM_AREA_UNDER_ROC, hamAreaUnderROC);
+        singleRunResults.put(Metric.SPAM_AREA_UNDER_ROC, spamAreaUnderROC);
+        singleRunResults.put(Metric.WEIGHTED_AREA_UNDER_ROC, weightedAreaUnderROC);
+        singleRunResults.put(Metric.HAM_F_MEASURE, hamFMeasure);
+        singleRunResults.put(Metric.SPAM_F_MEASURE, spamFMeasure);
+        singleRunResults.put(Metric.WEIGHTED_F_MEASURE, weightedFMeasure);
+        singleRunResults.put(Metric.TRAIN_TIME, trainTime);
+        singleRunResults.put(Metric.TEST_TIME, testTime);
+
+        addSingleRunResults(singleRunResults);
+
+        return singleRunResults;
+    }
+
+    // persist the metrics' values of a single run, e.g. computed by a previous execution
+    public void addSingleRunResults(Map<Metric, Double> singleRunResults)
+    {
+        singleRunResults.forEach(this::addSingleRunResult);
+    }
+
+    // mean duration of a run (train + test) in the result keeper, or NaN if there are no results
+    public double getMeanRunTime()
+    {
+        if (!resultHistory.containsKey(Metric.TRAIN_TIME) || !resultHistory.containsKey(Metric.TEST_TIME))
+            return Double.NaN;
+
+        double meanTrainTime = doubleArrayToDescriptiveStatistics(resultHistory.get(Metric.TRAIN_TIME)).getMean();
+        double meanTestTime = doubleArrayToDescriptiveStatistics(resultHistory.get(Metric.TEST_TIME)).getMean();
+
+        return meanTrainTime + meanTestTime;
     }
 
     // detects, removes and return the amount of outliers in the result keeper, if any
@@ -142,21 +183,9 @@ public class ExperimentHelper
     // displays the experiment's [last resultHistory] or [mean ± standard deviation] for every metric
     public void summarizeResults(Map<Metric, DescriptiveStatistics> results, MethodEvaluation methodEvaluation, boolean printStats, boolean formatMillis)
     {
-        MethodConfiguration methodConfiguration = methodEvaluation.getMethodConfiguration();
-        String methodName = methodConfiguration.name();
+        String methodName = methodEvaluation.getMethodConfiguration().name();
 
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(String.format(";%s", methodEvaluation.getDataSetName()));
-        sb.append(String.format(";%s", methodEvaluation.getStatMethod()));
-        sb.append(String.format(";%s", methodConfiguration.name()));
-        sb.append(String.format(";%d;%d;", methodEvaluation.getNumberOfTotalFeatures(), methodEvaluation.getNumberOfActualFeatures()));
-
-        if (!methodsWithHeaderAlreadyPrinted.contains(methodName))
-        {
-            printResultHeader(methodName);
-            methodsWithHeaderAlreadyPrinted.add(methodName);
-        }
+        StringBuilder sb = buildResultLinePrefix(methodEvaluation);
 
         for (Metric metric : Metric.values())
         {
@@ -178,6 +207,64 @@ public class ExperimentHelper
         summarizeResults(getMetricsToDescriptiveStatisticsMap(), methodEvaluation, printStats, formatMillis);
     }
 
+    // records in the results that (part of) the evaluation did not finish within its time budget
+    public void summarizeTimeout(MethodEvaluation methodEvaluation, String reason)
+    {
+        StringBuilder sb = buildResultLinePrefix(methodEvaluation);
+
+        sb.append(String.format("TIMED_OUT;%s", reason));
+
+        LogManager.getLogger(methodEvaluation.getMethodConfiguration().name()).info(sb.toString());
+    }
+
+    // amount of runs in the result keeper
+    public int getResultCount()
+    {
+        return resultHistory.isEmpty() ? 0 : resultHistory.values().iterator().next().size();
+    }
+
+    // whether the 95% confidence interval half-width of every given metric is within the target, e.g. 0.5 percentage points
+    public boolean hasConverged(Collection<Metric> metrics, double targetHalfWidth)
+    {
+        for (Metric metric : metrics)
+        {
+            // at least two runs are needed to estimate the spread
+            if (!resultHistory.containsKey(metric) || resultHistory.get(metric).size() < 2)
+                return false;
+
+            DescriptiveStatistics statistics = doubleArrayToDescriptiveStatistics(resultHistory.get(metric));
+            if (!(computeConfidenceInterval(statistics, 0.05) <= targetHalfWidth))
+                return false;
+        }
+
+        return true;
+    }
+
+    // data set, method and features columns of a result line; the header is printed before the method's first line
+    private StringBuilder buildResultLinePrefix(MethodEvaluation methodEvaluation)
+    {
+        MethodConfiguration methodConfiguration = methodEvaluation.getMethodConfiguration();
+        String methodName = methodConfiguration.name();
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format(";%s", methodEvaluation.getDataSetName()));
+        sb.append(String.format(";%s", methodEvaluation.getStatMethod()));
+        sb.append(String.format(";%s", methodConfiguration.name()));
+        sb.append(String.format(";%d;%d;", methodEvaluation.getNumberOfTotalFeatures(), methodEvaluation.getNumberOfActualFeatures()));
+
+        synchronized (methodsWithHeaderAlreadyPrinted)
+        {
+            if (!methodsWithHeaderAlreadyPrinted.contains(methodName))
+            {
+                printResultHeader(methodName);
+                methodsWithHeaderAlreadyPrinted.add(methodName);
+            }
+        }
+
+        return sb;
+    }
+
     private void addSingleRunResult(Metric key, Double value)
     {
         resultHistory.putIfAbsent(key, new LinkedList<>());
@@ -21,20 +21,35 @@
  ******************************************************************************/
 package io.github.marcelovca90.helper;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -45,11 +60,18 @@ import com.arturmkrtchyan.sizeof4j.SizeOf;
 import io.github.marcelovca90.common.Constants.MessageType;
 import io.github.marcelovca90.common.DataSetMetadata;
 import io.github.marcelovca90.common.MethodConfiguration;
+import io.github.marcelovca90.common.ParameterSpace;
+import io.github.marcelovca90.data.ColumnarDataSet;
+import io.github.marcelovca90.data.CompressedRawFile;
+import io.github.marcelovca90.data.InstanceBatchReader;
+import io.github.marcelovca90.data.RawFileBatchReader;
+import io.github.marcelovca90.data.SegmentedRawStore;
 import weka.classifiers.Classifier;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.SparseInstance;
 import weka.core.converters.ArffLoader.ArffReader;
 import weka.core.converters.ArffSaver;
 
@@ -59,7 +81,19 @@ public class InputOutputHelper
     private static final int SIZE_INT = SizeOf.intSize();
     private static final int SIZE_DOUBLE = SizeOf.doubleSize();
 
+    public static final String SPARSE_RAW_EXTENSION = ".sparse";
+    public static final String COMPRESSED_RAW_EXTENSION = CompressedRawFile.EXTENSION;
+    public static final String SEGMENTED_RAW_EXTENSION = SegmentedRawStore.EXTENSION;
+
+    // attributes are never changed once created, so the ham, spam, merged and empty sets with the same amount of features share them
+    private final Map<Long, List<Attribute>> attributesByFeatureAmount = new ConcurrentHashMap<>();
+
     public String buildClassifierFilename(String folder, MethodConfiguration method, double splitPercent)
+    {
+        return buildClassifierFilename(folder, method, splitPercent, MetaHelper.getRandomHelper().getSeed());
+    }
+
+    public String buildClassifierFilename(String folder, MethodConfiguration method, double splitPercent, int seed)
     {
         StringBuilder sb = new StringBuilder();
 
@@ -67,7 +101,7 @@ public class InputOutputHelper
         sb.append(method.getClazz().getSimpleName());
         sb.append("_TRAIN=" + (int) (100 * splitPercent));
         sb.append("_TEST=" + (int) (100 * (1.0 - splitPercent)));
-        sb.append("_SEED=" + MetaHelper.getRandomHelper().getSeed());
+        sb.append("_SEED=" + seed);
         sb.append(".model");
 
         return sb.toString();
@@ -75,60 +109,36 @@ public class InputOutputHelper
 
     public Instances createEmptyInstances(int featureAmount, int emptyHamCount, int emptySpamCount)
     {
-        LOGGER.trace("Creating empty [{}] data set with [{}] features and [{}] instances.", "ham", featureAmount, emptyHamCount);
-
-        // declare ham instance to be reused
-        Instance hamInstance;
+        LOGGER.trace("Creating empty data set with [{}] features, [{}] ham and [{}] spam instances.", featureAmount, emptyHamCount, emptySpamCount);
 
-        // create ham attributes
-        ArrayList<Attribute> hamAttributes = createAttributes(featureAmount);
-
-        // create ham data set
-        Instances hamDataSet = new Instances(MessageType.HAM.name(), hamAttributes, emptyHamCount);
-        hamDataSet.setClassIndex(hamAttributes.size() - 1);
+        // create data set attributes
+        ArrayList<Attribute> dataSetAttributes = createAttributes(featureAmount);
 
-        // read ham data and insert in data set
+        // create and fill data set with sparse all-zero instances, so no zero is stored explicitly
+        Instances dataSet = new Instances(UUID.randomUUID().toString(), dataSetAttributes, emptyHamCount + emptySpamCount);
+        dataSet.setClassIndex(dataSet.numAttributes() - 1);
         for (int i = 0; i < emptyHamCount; i++)
-        {
-            hamInstance = new DenseInstance(featureAmount + 1);
-            hamInstance.setDataset(hamDataSet);
-            for (int j = 0; j < featureAmount; j++)
-                hamInstance.setValue(j, 0.0);
-            hamInstance.setClassValue(MessageType.HAM.name());
-            hamDataSet.add(hamInstance);
-        }
-
-        LOGGER.trace("Creating empty [{}] data set with [{}] features and [{}] instances.", "spam", featureAmount, emptySpamCount);
-
-        // declare spam instance to be reused
-        Instance spamInstance;
-
-        // create spam attributes
-        ArrayList<Attribute> spamAttributes = createAttributes(featureAmount);
+            dataSet.add(new SparseInstance(1.0, createEmptyValues(featureAmount, MessageType.HAM)));
+        for (int i = 0; i < emptySpamCount; i++)
+            dataSet.add(new SparseInstance(1.0, createEmptyValues(featureAmount, MessageType.SPAM)));
 
-        // create spam data set
-        Instances spamDataSet = new Instances(MessageType.SPAM.name(), spamAttributes, emptySpamCount);
-        spamDataSet.setClassIndex(spamAttributes.size() - 1);
+        return dataSet;
+    }
 
-        // read spam data and insert in data set
-        for (int i = 0; i < emptySpamCount; i++)
-        {
-            spamInstance = new DenseInstance(featureAmount + 1);
-            spamInstance.setDataset(spamDataSet);
-            for (int j = 0; j < featureAmount; j++)
-                spamInstance.setValue(j, 0.0);
-            spamInstance.setClassValue(MessageType.SPAM.name());
-            spamDataSet.add(spamInstance);
-        }
+    public Instances createWeightedEmptyInstances(int featureAmount, int emptyHamCount, int emptySpamCount)
+    {
+        LOGGER.trace("Creating weighted empty data set with [{}] features, [{}] ham and [{}] spam instances.", featureAmount, emptyHamCount, emptySpamCount);
 
-        // create merged data set attributes
+        // create data set attributes
         ArrayList<Attribute> dataSetAttributes = createAttributes(featureAmount);
 
-        // create and fill merged data set
-        Instances dataSet = new Instances(UUID.randomUUID().toString(), dataSetAttributes, hamDataSet.size() + spamDataSet.size());
-        dataSet.addAll(hamDataSet);
-        dataSet.addAll(spamDataSet);
+        // create data set with a single all-zero instance per class, weighted by the amount of empty patterns it stands for
+        Instances dataSet = new Instances(UUID.randomUUID().toString(), dataSetAttributes, 2);
         dataSet.setClassIndex(dataSet.numAttributes() - 1);
+        if (emptyHamCount > 0)
+            dataSet.add(new SparseInstance(emptyHamCount, createEmptyValues(featureAmount, MessageType.HAM)));
+        if (emptySpamCount > 0)
+            dataSet.add(new SparseInstance(emptySpamCount, createEmptyValues(featureAmount, MessageType.SPAM)));
 
         return dataSet;
     }
@@ -163,6 +173,61 @@ public class InputOutputHelper
         return metadata;
     }
 
+    // reads METHOD=option template lines, e.g. FRF=-I {50,100,200} -K 0 -S 1
+    public Map<MethodConfiguration, ParameterSpace> loadParameterSpacesFromFile(String filename) throws IOException
+    {
+        Map<MethodConfiguration, ParameterSpace> parameterSpaces = new EnumMap<>(MethodConfiguration.class);
+
+        BufferedReader reader = new BufferedReader(new FileReader(new File(filename)));
+
+        String line = null;
+
+        while ((line = reader.readLine()) != null)
+        {
+            // only process the line if it is not empty and does not start with a comment mark (#)
+            if (!StringUtils.isBlank(line) && !line.startsWith("#"))
+            {
+                int separator = line.indexOf('=');
+                if (separator < 0)
+                {
+                    reader.close();
+                    throw new IllegalArgumentException("Invalid parameter space: " + line);
+                }
+                MethodConfiguration method = MethodConfiguration.valueOf(line.substring(0, separator).trim().toUpperCase());
+                String template = line.substring(separator + 1);
+
+                parameterSpaces.put(method, new ParameterSpace(method, template));
+            }
+        }
+
+        reader.close();
+
+        return parameterSpaces;
+    }
+
+    // reads only the number of instances and attributes from the header of a RAW file
+    public int[] loadRawFileHeader(String filename) throws IOException
+    {
+        if (filename.endsWith(COMPRESSED_RAW_EXTENSION))
+        {
+            CompressedRawFile compressedRawFile = CompressedRawFile.open(filename);
+            return new int[] { compressedRawFile.getNumberOfInstances(), compressedRawFile.getNumberOfAttributes() };
+        }
+        if (filename.endsWith(SEGMENTED_RAW_EXTENSION))
+        {
+            SegmentedRawStore.Manifest manifest = new SegmentedRawStore(filename).readManifest();
+            return new int[] { manifest.getNumberOfInstances(), manifest.getNumberOfAttributes() };
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(new FileInputStream(filename)))
+        {
+            int numberOfInstances = inputStream.readInt();
+            int numberOfAttributes = inputStream.readInt();
+
+            return new int[] { numberOfInstances, numberOfAttributes };
+        }
+    }
+
     public Instances loadInstancesFromRawFile(String filename, MessageType messageType) throws IOException
     {
         LOGGER.trace("Reading [{}] data from RAW file [{}].", messageType, filename);
@@ -212,6 +277,214 @@ public class InputOutputHelper
         return dataSet;
     }
 
+    // reads only the given records of a RAW file, each one through a single positional read, since every record takes the same amount
+    // of bytes after the header; records in increasing order keep the reads sequential
+    public Instances loadInstancesFromRawFile(String filename, MessageType messageType, int[] records) throws IOException
+    {
+        LOGGER.trace("Reading [{}] [{}] records from RAW file [{}].", records.length, messageType, filename);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(2 * SIZE_INT);
+            readFully(channel, header, 0);
+            header.flip();
+            int numberOfInstances = header.getInt();
+            int numberOfAttributes = header.getInt();
+
+            // create attributes
+            ArrayList<Attribute> attributes = createAttributes(numberOfAttributes);
+
+            // create data set
+            Instances dataSet = new Instances(UUID.randomUUID().toString(), attributes, records.length);
+            dataSet.setClassIndex(attributes.size() - 1);
+
+            double classValue = dataSet.classAttribute().indexOfValue(messageType.name());
+            long recordSize = (long) numberOfAttributes * SIZE_DOUBLE;
+            ByteBuffer record = ByteBuffer.allocate((int) recordSize);
+
+            for (int i : records)
+            {
+                if (i < 0 || i >= numberOfInstances)
+                    throw new IOException(String.format("Invalid record %d of RAW file %s with %d instances", i, filename, numberOfInstances));
+
+                record.clear();
+                readFully(channel, record, 2L * SIZE_INT + i * recordSize);
+                record.flip();
+
+                double[] values = new double[numberOfAttributes + 1];
+                record.asDoubleBuffer().get(values, 0, numberOfAttributes);
+                values[numberOfAttributes] = classValue;
+                dataSet.add(new DenseInstance(1.0, values));
+            }
+
+            return dataSet;
+        }
+    }
+
+    // the sparse raw format has the same header as the dense one, followed by the amount of non-zero features of each instance and
+    // then their (index, value) pairs, with increasing indices
+    public Instances loadInstancesFromSparseRawFile(String filename, MessageType messageType) throws IOException
+    {
+        LOGGER.trace("Reading [{}] data from sparse RAW file [{}].", messageType, filename);
+
+        // a single batch holds every instance
+        try (InstanceBatchReader reader = openRawFileBatches(filename, messageType, Integer.MAX_VALUE, 1.0))
+        {
+            return reader.hasNext() ? reader.next() : new Instances(reader.getHeader(), 0);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    // opens a dense, sparse, compressed or segmented (by its extension) raw file to be read in batches of at most the given size, instead
+    // of as a whole
+    public InstanceBatchReader openRawFileBatches(String filename, MessageType messageType, int batchSize, double weight) throws IOException
+    {
+        if (filename.endsWith(SEGMENTED_RAW_EXTENSION))
+        {
+            SegmentedRawStore store = new SegmentedRawStore(filename);
+            return store.openBatches(createHeader(store.readManifest().getNumberOfAttributes()), messageType, batchSize, weight);
+        }
+        if (filename.endsWith(COMPRESSED_RAW_EXTENSION))
+        {
+            CompressedRawFile compressedRawFile = CompressedRawFile.open(filename);
+            return compressedRawFile.openBatches(createHeader(compressedRawFile.getNumberOfAttributes()), messageType, batchSize, weight);
+        }
+
+        Instances header = createHeader(loadRawFileHeader(filename)[1]);
+
+        return new RawFileBatchReader(filename, messageType, header, filename.endsWith(SPARSE_RAW_EXTENSION), batchSize, weight);
+    }
+
+    // the compressed raw format splits the instances in blocks that are deflated on their own, so they are inflated with up to the
+    // given amount of threads; its instances are sparse if it was written so
+    public Instances loadInstancesFromCompressedRawFile(String filename, MessageType messageType, int threads) throws IOException
+    {
+        CompressedRawFile compressedRawFile = CompressedRawFile.open(filename);
+
+        return compressedRawFile.read(createHeader(compressedRawFile.getNumberOfAttributes()), messageType, null, threads);
+    }
+
+    // reads only the given records of a compressed raw file, inflating only the blocks that hold them
+    public Instances loadInstancesFromCompressedRawFile(String filename, MessageType messageType, int[] records, int threads) throws IOException
+    {
+        CompressedRawFile compressedRawFile = CompressedRawFile.open(filename);
+
+        return compressedRawFile.read(createHeader(compressedRawFile.getNumberOfAttributes()), messageType, records, threads);
+    }
+
+    public File saveInstancesToCompressedRawFile(Instances instances, String filename, boolean sparse, int threads) throws IOException
+    {
+        return CompressedRawFile.write(instances, filename, sparse, CompressedRawFile.DEFAULT_ROWS_PER_BLOCK, threads).toFile();
+    }
+
+    // the segmented raw store is a folder of compressed raw files read as a single one, in the order listed by its manifest, so newly
+    // labelled instances are appended without rewriting the others
+    public Instances loadInstancesFromSegmentedRawStore(String filename, MessageType messageType, int threads) throws IOException
+    {
+        return loadInstancesFromSegmentedRawStore(filename, messageType, null, threads);
+    }
+
+    // reads only the given records of a segmented raw store, inflating only the blocks that hold them
+    public Instances loadInstancesFromSegmentedRawStore(String filename, MessageType messageType, int[] records, int threads) throws IOException
+    {
+        SegmentedRawStore store = new SegmentedRawStore(filename);
+
+        return store.read(createHeader(store.readManifest().getNumberOfAttributes()), messageType, records, threads);
+    }
+
+    public void appendInstancesToSegmentedRawStore(Instances instances, String filename, boolean sparse, int threads) throws IOException
+    {
+        new SegmentedRawStore(filename).append(instances, sparse, threads);
+    }
+
+    // opens a columnar file to be read in batches of at most the given size, holding only the instances of the given class
+    public InstanceBatchReader openColumnarFileBatches(String filename, MessageType messageType, int batchSize, double weightFactor) throws IOException
+    {
+        return ColumnarDataSet.openBatches(filename, messageType, batchSize, weightFactor);
+    }
+
+    public File saveInstancesToSparseRawFile(Instances instances, String filename) throws IOException
+    {
+        LOGGER.trace("Saving data to sparse RAW file [{}].", filename);
+
+        int classIndex = instances.classIndex();
+        File outputFile = new File(filename);
+
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16)))
+        {
+            outputStream.writeInt(instances.numInstances());
+            outputStream.writeInt(instances.numAttributes() - 1);
+
+            for (Instance instance : instances)
+            {
+                int count = 0;
+                for (int k = 0; k < instance.numValues(); k++)
+                    if (instance.index(k) != classIndex && instance.valueSparse(k) != 0)
+                        count++;
+
+                outputStream.writeInt(count);
+                for (int k = 0; k < instance.numValues(); k++)
+                {
+                    if (instance.index(k) != classIndex && instance.valueSparse(k) != 0)
+                    {
+                        outputStream.writeInt(instance.index(k) < classIndex ? instance.index(k) : instance.index(k) - 1);
+                        outputStream.writeDouble(instance.valueSparse(k));
+                    }
+                }
+            }
+        }
+
+        return outputFile;
+    }
+
+    public Instances loadInstancesFromMappedRawFile(String filename, MessageType messageType) throws IOException
+    {
+        LOGGER.trace("Mapping [{}] data from RAW file [{}].", messageType, filename);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            // read the header (the raw format is big-endian, which is also the buffer's default order)
+            MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0, 2L * SIZE_INT);
+            int numberOfInstances = header.getInt();
+            int numberOfAttributes = header.getInt();
+
+            // create attributes
+            ArrayList<Attribute> attributes = createAttributes(numberOfAttributes);
+
+            // create data set
+            Instances dataSet = new Instances(UUID.randomUUID().toString(), attributes, numberOfInstances);
+            dataSet.setClassIndex(attributes.size() - 1);
+
+            double classValue = dataSet.classAttribute().indexOfValue(messageType.name());
+            long recordSize = (long) numberOfAttributes * SIZE_DOUBLE;
+            long numberOfRecords = recordSize > 0 ? (channel.size() - 2L * SIZE_INT) / recordSize : 0;
+
+            // a single mapping is limited to 2GB, so map as many whole records as fit in each window
+            long recordsPerWindow = Math.max(1, Integer.MAX_VALUE / Math.max(1, recordSize));
+
+            for (long firstRecord = 0; firstRecord < numberOfRecords; firstRecord += recordsPerWindow)
+            {
+                long windowRecords = Math.min(recordsPerWindow, numberOfRecords - firstRecord);
+                long windowOffset = 2L * SIZE_INT + firstRecord * recordSize;
+                DoubleBuffer window = channel.map(MapMode.READ_ONLY, windowOffset, windowRecords * recordSize).asDoubleBuffer();
+
+                // decode each record straight into the array that backs its instance
+                for (long i = 0; i < windowRecords; i++)
+                {
+                    double[] values = new double[numberOfAttributes + 1];
+                    window.get(values, 0, numberOfAttributes);
+                    values[numberOfAttributes] = classValue;
+                    dataSet.add(new DenseInstance(1.0, values));
+                }
+            }
+
+            return dataSet;
+        }
+    }
+
     public Instances mergeInstances(Instances hamDataSet, Instances spamDataSet)
     {
         // create merged data set attributes
@@ -227,10 +500,14 @@ public class InputOutputHelper
     }
 
     public void matchCardinalities(Instances hamDataSet, Instances spamDataSet)
+    {
+        matchCardinalities(hamDataSet, spamDataSet, MetaHelper.getRandomHelper().getRandom());
+    }
+
+    public void matchCardinalities(Instances hamDataSet, Instances spamDataSet, Random random)
     {
         int hamAmount = hamDataSet.size();
         int spamAmount = spamDataSet.size();
-        Random random = MetaHelper.getRandomHelper().getRandom();
 
         if (hamAmount < spamAmount)
         {
@@ -246,6 +523,26 @@ public class InputOutputHelper
         }
     }
 
+    // same as above, but the minority class keeps a single copy of each instance, weighted so both classes weigh the same
+    public void matchCardinalitiesByWeight(Instances hamDataSet, Instances spamDataSet)
+    {
+        int hamAmount = hamDataSet.size();
+        int spamAmount = spamDataSet.size();
+
+        if (hamAmount < spamAmount)
+        {
+            LOGGER.trace("Weighting [{}] instances to match [{}] set cardinality.", "ham", "spam");
+            double weight = (double) spamAmount / hamAmount;
+            hamDataSet.forEach(instance -> instance.setWeight(instance.weight() * weight));
+        }
+        else if (spamAmount < hamAmount)
+        {
+            LOGGER.trace("Weighting [{}] instances to match [{}] set cardinality.", "spam", "ham");
+            double weight = (double) hamAmount / spamAmount;
+            spamDataSet.forEach(instance -> instance.setWeight(instance.weight() * weight));
+        }
+    }
+
     public Instances loadInstancesFromArffFile(String filename) throws IOException
     {
         LOGGER.trace("Loading data from ARFF file [{}].", filename);
@@ -281,6 +578,21 @@ public class InputOutputHelper
         return arffSaver.retrieveFile();
     }
 
+    public ColumnarDataSet loadColumnarDataSetFromFile(String filename) throws IOException
+    {
+        return ColumnarDataSet.read(filename);
+    }
+
+    public ColumnarDataSet mapColumnarDataSetFromFile(String filename) throws IOException
+    {
+        return ColumnarDataSet.map(filename);
+    }
+
+    public File saveColumnarDataSetToFile(ColumnarDataSet columnarDataSet, String filename) throws IOException
+    {
+        return columnarDataSet.write(filename).toFile();
+    }
+
     public Classifier loadModelFromFile(String filename) throws Exception
     {
         return (Classifier) weka.core.SerializationHelper.read(filename);
@@ -295,12 +607,36 @@ public class InputOutputHelper
         return new File(filename);
     }
 
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of file at byte " + (position + buffer.position()));
+    }
+
+    private Instances createHeader(int featureAmount)
+    {
+        Instances header = new Instances(UUID.randomUUID().toString(), createAttributes(featureAmount), 0);
+        header.setClassIndex(header.numAttributes() - 1);
+        return header;
+    }
+
     private ArrayList<Attribute> createAttributes(long featureAmount)
     {
-        ArrayList<Attribute> attributes = new ArrayList<>();
-        for (long i = 0; i < featureAmount; i++)
-            attributes.add(new Attribute("x" + i));
-        attributes.add(new Attribute("class", Arrays.asList(MessageType.HAM.name(), MessageType.SPAM.name())));
-        return attributes;
+        return new ArrayList<>(attributesByFeatureAmount.computeIfAbsent(featureAmount, amount ->
+        {
+            List<Attribute> attributes = new ArrayList<>();
+            for (long i = 0; i < amount; i++)
+                attributes.add(new Attribute("x" + i));
+            attributes.add(new Attribute("class", Arrays.asList(MessageType.HAM.name(), MessageType.SPAM.name())));
+            return attributes;
+        }));
+    }
+
+    private double[] createEmptyValues(int featureAmount, MessageType messageType)
+    {
+        double[] values = new double[featureAmount + 1];
+        values[featureAmount] = messageType.ordinal();
+        return values;
     }
 }
@@ -23,9 +23,20 @@ package io.github.marcelovca90.helper;
 
 public class MetaHelper
 {
+    private static DataSetHelper dataSetHelper;
     private static ExperimentHelper experimentHelper;
     private static InputOutputHelper inputOutputHelper;
+    private static PlanningHelper planningHelper;
     private static RandomHelper randomHelper;
+    private static SearchHelper searchHelper;
+    private static ThreadBudgetHelper threadBudgetHelper;
+
+    public static DataSetHelper getDataSetHelper()
+    {
+        if (dataSetHelper == null)
+            dataSetHelper = new DataSetHelper();
+        return dataSetHelper;
+    }
 
     public static ExperimentHelper getExperimentHelper()
     {
@@ -41,6 +52,13 @@ public class MetaHelper
         return inputOutputHelper;
     }
 
+    public static PlanningHelper getPlanningHelper()
+    {
+        if (planningHelper == null)
+            planningHelper = new PlanningHelper();
+        return planningHelper;
+    }
+
     public static RandomHelper getRandomHelper()
     {
         if (randomHelper == null)
@@ -48,6 +66,20 @@ public class MetaHelper
         return randomHelper;
     }
 
+    public static SearchHelper getSearchHelper()
+    {
+        if (searchHelper == null)
+            searchHelper = new SearchHelper();
+        return searchHelper;
+    }
+
+    public static ThreadBudgetHelper getThreadBudgetHelper()
+    {
+        if (threadBudgetHelper == null)
+            threadBudgetHelper = new ThreadBudgetHelper();
+        return threadBudgetHelper;
+    }
+
     public static void initialize(ExperimentHelper _experimentHelper, InputOutputHelper _inputOutputHelper, RandomHelper _randomHelper)
     {
         experimentHelper = _experimentHelper;
@@ -57,9 +89,13 @@ public class MetaHelper
 
     public static void reset()
     {
+        dataSetHelper = null;
         experimentHelper = null;
         inputOutputHelper = null;
+        planningHelper = null;
         randomHelper = null;
+        searchHelper = null;
+        threadBudgetHelper = null;
     }
 
     // used to suppress the default public constructor
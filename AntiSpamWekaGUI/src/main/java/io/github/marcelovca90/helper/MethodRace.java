@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.math3.distribution.TDistribution;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+
+import io.github.marcelovca90.common.MethodConfiguration;
+
+public class MethodRace
+{
+    private final double significance;
+    private final int minimumRuns;
+
+    // metric value of every run of every method, by seed; methods racing on the same data set share seeds and splits
+    private final Map<MethodConfiguration, Map<Integer, Double>> results = new EnumMap<>(MethodConfiguration.class);
+
+    public MethodRace(double significance, int minimumRuns)
+    {
+        this.significance = significance;
+        this.minimumRuns = Math.max(2, minimumRuns);
+    }
+
+    public synchronized void record(MethodConfiguration method, int seed, double value)
+    {
+        results.computeIfAbsent(method, m -> new TreeMap<>()).put(seed, value);
+    }
+
+    // the method with the highest mean among those with enough runs, or null if there is none
+    public synchronized MethodConfiguration getLeader()
+    {
+        MethodConfiguration leader = null;
+        double leaderMean = Double.NEGATIVE_INFINITY;
+
+        for (Map.Entry<MethodConfiguration, Map<Integer, Double>> entry : results.entrySet())
+        {
+            if (entry.getValue().size() < minimumRuns)
+                continue;
+
+            double mean = entry.getValue().values().stream().mapToDouble(Double::doubleValue).average().getAsDouble();
+            if (mean > leaderMean)
+            {
+                leader = entry.getKey();
+                leaderMean = mean;
+            }
+        }
+
+        return leader;
+    }
+
+    // whether the method is significantly worse than the leader, by a one-sided paired t-test on the runs both executed
+    public synchronized boolean isDominated(MethodConfiguration method)
+    {
+        MethodConfiguration leader = getLeader();
+        if (leader == null || leader == method || !results.containsKey(method))
+            return false;
+
+        Map<Integer, Double> leaderResults = results.get(leader);
+        List<Double> differences = new ArrayList<>();
+        results.get(method).forEach((seed, value) ->
+        {
+            if (leaderResults.containsKey(seed))
+                differences.add(leaderResults.get(seed) - value);
+        });
+
+        if (differences.size() < minimumRuns)
+            return false;
+
+        return computePValue(differences) < significance;
+    }
+
+    // p-value of the null hypothesis that the mean difference is not positive
+    private double computePValue(List<Double> differences)
+    {
+        DescriptiveStatistics statistics = new DescriptiveStatistics();
+        differences.forEach(statistics::addValue);
+
+        double mean = statistics.getMean();
+        double standardError = statistics.getStandardDeviation() / Math.sqrt(statistics.getN());
+
+        // identical differences leave no doubt either way
+        if (standardError == 0.0)
+            return mean > 0.0 ? 0.0 : 1.0;
+
+        TDistribution tDist = new TDistribution(statistics.getN() - 1);
+        return 1.0 - tDist.cumulativeProbability(mean / standardError);
+    }
+}
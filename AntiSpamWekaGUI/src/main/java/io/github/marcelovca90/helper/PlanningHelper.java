@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.ExperimentCell;
+import io.github.marcelovca90.common.ExperimentPlan;
+import io.github.marcelovca90.data.CostModel;
+
+public class PlanningHelper
+{
+    private static final Logger LOGGER = LogManager.getLogger(PlanningHelper.class);
+
+    private CostModel costModel;
+
+    public CostModel getCostModel()
+    {
+        if (costModel == null)
+            costModel = new CostModel(Paths.get("cache", "cost-model.properties"));
+        return costModel;
+    }
+
+    public void setCostModel(CostModel costModel)
+    {
+        this.costModel = costModel;
+    }
+
+    // predicts each cell's duration and orders the cells longest-first (longest processing time rule), projecting the makespan
+    // of packing them onto the given workers; cells without history go first, since they may well be the longest ones
+    public ExperimentPlan plan(List<ExperimentCell> cells, int numberOfRuns, int cellWorkers, int runWorkers)
+    {
+        // the runs of concurrently executing cells share the run pool, so each cell executes its runs in rounds
+        int runsPerRound = Math.max(1, runWorkers / Math.max(1, cellWorkers));
+        int rounds = (numberOfRuns + runsPerRound - 1) / runsPerRound;
+
+        for (ExperimentCell cell : cells)
+        {
+            double millisPerRun = getCostModel().predict(cell.getMethod(), cell.getNumberOfFeatures(), cell.getNumberOfInstances());
+            cell.setPredictedMillis(millisPerRun * rounds);
+        }
+
+        // the sort is stable, so cells with the same prediction keep their original (method by method) order
+        List<ExperimentCell> orderedCells = new ArrayList<>(cells);
+        orderedCells.sort(Comparator.comparingDouble(c -> Double.isNaN(c.getPredictedMillis()) ? Double.NEGATIVE_INFINITY : -c.getPredictedMillis()));
+
+        // assign each cell to the least loaded worker, as the scheduler will do when a worker becomes idle
+        PriorityQueue<Double> workerLoads = new PriorityQueue<>();
+        for (int i = 0; i < Math.max(1, cellWorkers); i++)
+            workerLoads.add(0.0);
+
+        int unpredictedCells = 0;
+        double makespan = 0.0;
+        for (ExperimentCell cell : orderedCells)
+        {
+            if (Double.isNaN(cell.getPredictedMillis()))
+            {
+                unpredictedCells++;
+            }
+            else
+            {
+                double load = workerLoads.poll() + cell.getPredictedMillis();
+                workerLoads.add(load);
+                makespan = Math.max(makespan, load);
+            }
+        }
+
+        ExperimentPlan plan = new ExperimentPlan(orderedCells, Math.max(1, cellWorkers), makespan, unpredictedCells);
+        LOGGER.debug("Planned {}.", plan);
+
+        return plan;
+    }
+
+    // feeds the cost model with the mean run duration observed for the cell, and persists it
+    public void record(ExperimentCell cell, double millisPerRun)
+    {
+        getCostModel().record(cell.getMethod(), cell.getNumberOfFeatures(), cell.getNumberOfInstances(), millisPerRun);
+        getCostModel().save();
+    }
+}
@@ -44,4 +44,16 @@ public class RandomHelper
 
         random.setSeed(seed.get());
     }
+
+    // shuffle the given indices in the very same way Instances.randomize shuffles the instances
+    public void shuffle(int[] indices)
+    {
+        for (int j = indices.length - 1; j > 0; j--)
+        {
+            int k = random.nextInt(j + 1);
+            int swap = indices[j];
+            indices[j] = indices[k];
+            indices[k] = swap;
+        }
+    }
 }
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.marcelovca90.common.MethodConfiguration;
+import io.github.marcelovca90.common.ParameterSpace;
+import io.github.marcelovca90.common.SearchResult;
+import io.github.marcelovca90.data.InstancesView;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instances;
+
+public class SearchHelper
+{
+    private static final Logger LOGGER = LogManager.getLogger(SearchHelper.class);
+
+    // the search results are kept in a file of their own, like the results of each method
+    private static final Logger RESULTS_LOGGER = LogManager.getLogger("SEARCH");
+
+    // share of the training set held out to validate the candidates, since the orders are the very ones whose testing sets the
+    // experiment reports on, and tuning on those would bias its results
+    static final double VALIDATION_PERCENT = 0.2;
+
+    // each rung keeps the best 1/eta of the candidates, which are given eta times the budget
+    private int eta = 3;
+
+    public int getEta()
+    {
+        return eta;
+    }
+
+    public void setEta(int eta)
+    {
+        this.eta = Math.max(2, eta);
+    }
+
+    // successive halving: every candidate is first trained on a small part of the training set in a single run, and the
+    // most promising ones are retrained on growing parts of it in more runs, until the best one is trained on the whole
+    // training set (but its validation part) in the given maximum amount of runs. (candidate, run) pairs are evaluated in parallel by the workers
+    public SearchResult search(ParameterSpace space, Instances dataSet, String folder, int maximumRuns, int workers) throws Exception
+    {
+        MethodConfiguration method = space.getMethod();
+        List<String> candidates = space.getCandidates();
+
+        // the amount of rungs after which a single candidate is left
+        int lastRung = 0;
+        while (Math.pow(eta, lastRung) < candidates.size())
+            lastRung++;
+
+        // shuffled indices shared by every candidate, so that candidates are compared on the very same splits
+        List<int[]> orders = buildOrders(dataSet.numInstances(), Math.max(1, maximumRuns));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, workers));
+        int classifierThreads = MetaHelper.getThreadBudgetHelper().getThreadsPerTask(Math.max(1, workers));
+
+        Map<String, Double> scores = new LinkedHashMap<>();
+        int evaluations = 0;
+        long costMillis = 0;
+
+        try
+        {
+            for (int rung = 0; rung <= lastRung; rung++)
+            {
+                if (ExecutionHelper.isCancelled())
+                    throw new CancellationException("Search of " + method + " on " + folder + " was cancelled.");
+
+                double fraction = Math.pow(eta, rung - lastRung);
+                int runs = Math.max(1, (int) Math.round(orders.size() * fraction));
+
+                LOGGER.info("Evaluating {} candidates of {} on {}: {}% of the training set, {} runs.", candidates.size(), method, folder,
+                    String.format("%.1f", 100.0 * fraction), runs);
+
+                // submit every (candidate, run) pair before waiting for any of them
+                Map<String, List<Future<double[]>>> pendingEvaluations = new LinkedHashMap<>();
+                for (String candidate : candidates)
+                {
+                    List<Future<double[]>> futures = new ArrayList<>();
+                    for (int run = 0; run < runs; run++)
+                    {
+                        int[] order = orders.get(run);
+                        futures.add(executor.submit(() -> evaluate(method, candidate, dataSet, order, fraction, classifierThreads)));
+                    }
+                    pendingEvaluations.put(candidate, futures);
+                }
+
+                // a candidate whose options are invalid or whose training fails is ranked last
+                scores.clear();
+                for (Map.Entry<String, List<Future<double[]>>> entry : pendingEvaluations.entrySet())
+                {
+                    DescriptiveStatistics statistics = new DescriptiveStatistics();
+                    for (Future<double[]> future : entry.getValue())
+                    {
+                        try
+                        {
+                            double[] evaluation = future.get();
+                            statistics.addValue(evaluation[0]);
+                            costMillis += (long) evaluation[1];
+                        }
+                        catch (ExecutionException e)
+                        {
+                            LOGGER.warn("Candidate [{}] of {} failed: {}", entry.getKey(), method, e.getCause().toString());
+                            statistics.addValue(Double.NaN);
+                        }
+                        evaluations++;
+                    }
+                    scores.put(entry.getKey(), statistics.getMean());
+                }
+
+                // keep the best candidates; once a single one is left, it goes straight to the full budget
+                candidates = rank(scores).subList(0, Math.max(1, candidates.size() / eta));
+                if (candidates.size() == 1 && rung < lastRung - 1)
+                    rung = lastRung - 1;
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        String bestConfig = candidates.get(0);
+        SearchResult result = new SearchResult(method, folder, bestConfig, scores.get(bestConfig), space.getCandidates().size(), evaluations, costMillis);
+
+        LOGGER.info("Best options of {} on {}: [{}] ({} evaluations, {}).", method, folder, bestConfig, evaluations,
+            DurationFormatUtils.formatDurationHMS(costMillis));
+        RESULTS_LOGGER.info(String.format(";%s;%s;%d;%d;%d;%.2f;%s", folder, method.name(), result.getCandidates(), evaluations, costMillis,
+            result.getBestScore(), bestConfig));
+
+        return result;
+    }
+
+    // the candidates ordered from the highest to the lowest score, failed ones (NaN) last
+    private List<String> rank(Map<String, Double> scores)
+    {
+        Comparator<Map.Entry<String, Double>> byScore = Comparator.comparing(entry -> Double.isNaN(entry.getValue()) ? Double.NEGATIVE_INFINITY : entry.getValue());
+
+        return scores
+            .entrySet()
+            .stream()
+            .sorted(byScore.reversed())
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    }
+
+    // shuffles the indices once per run, just like the experiment does
+    private List<int[]> buildOrders(int numberOfInstances, int runs)
+    {
+        RandomHelper randomHelper = new RandomHelper();
+        int[] order = IntStream.range(0, numberOfInstances).toArray();
+
+        List<int[]> orders = new ArrayList<>();
+        for (int run = 0; run < runs; run++)
+        {
+            randomHelper.update();
+            randomHelper.shuffle(order);
+            orders.add(order.clone());
+        }
+
+        return orders;
+    }
+
+    // the bounds, in the order, of the part of the training set the candidate is trained on (starting at 0) and of the part it is
+    // validated on (ending where the training set does), i.e. the end of the first, the start and the end of the second
+    static int[] splitTrainingSet(int numberOfInstances, double splitPercent, double fraction)
+    {
+        int trainingSetSize = (int) Math.round(numberOfInstances * splitPercent);
+        int validationStart = Math.min(trainingSetSize - 1, (int) Math.round(trainingSetSize * (1.0 - VALIDATION_PERCENT)));
+        int subsetSize = Math.max(1, (int) Math.round(validationStart * fraction));
+
+        return new int[] { subsetSize, validationStart, trainingSetSize };
+    }
+
+    // trains the candidate on the given fraction of the training set and validates it on the held-out end of the training set,
+    // returning the weighted F-measure and the time it took; the testing set is never touched
+    private double[] evaluate(MethodConfiguration method, String config, Instances dataSet, int[] order, double fraction, int classifierThreads) throws Exception
+    {
+        int[] bounds = splitTrainingSet(order.length, method.getSplitPercent(), fraction);
+
+        AbstractClassifier classifier = MethodConfiguration.buildClassifierFor(method, config, classifierThreads);
+
+        Instances trainingSet = ExecutionHelper.adaptToWeights(new InstancesView(dataSet, order, 0, bounds[0]), classifier, new RandomHelper().getRandom());
+        Instances validationSet = new InstancesView(dataSet, order, bounds[1], bounds[2]);
+
+        ThreadBudgetHelper.Lease lease = MetaHelper.getThreadBudgetHelper().acquire(MethodConfiguration.getThreadsUsedBy(classifier));
+        try
+        {
+            long start = System.currentTimeMillis();
+
+            classifier.buildClassifier(trainingSet);
+            Evaluation evaluation = new Evaluation(validationSet);
+            evaluation.evaluateModel(classifier, validationSet);
+
+            return new double[] { 100.0 * evaluation.weightedFMeasure(), System.currentTimeMillis() - start };
+        }
+        finally
+        {
+            lease.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import java.util.concurrent.Semaphore;
+
+public class ThreadBudgetHelper
+{
+    private final int availableCores;
+
+    // fair, so that a large request (e.g. a multi-threaded filter) is not starved by a stream of small ones
+    private final Semaphore threads;
+
+    public ThreadBudgetHelper()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ThreadBudgetHelper(int availableCores)
+    {
+        this.availableCores = Math.max(1, availableCores);
+        this.threads = new Semaphore(this.availableCores, true);
+    }
+
+    public int getAvailableCores()
+    {
+        return availableCores;
+    }
+
+    // number of threads not currently leased
+    public int getAvailableThreads()
+    {
+        return threads.availablePermits();
+    }
+
+    // number of workers granted to an outer pool that requested the given amount (never more than the cores)
+    public int grantWorkers(int requestedWorkers)
+    {
+        return Math.min(Math.max(1, requestedWorkers), availableCores);
+    }
+
+    // number of threads each of the given amount of concurrent tasks may use internally, so that together they fit in the cores
+    public int getThreadsPerTask(int concurrentTasks)
+    {
+        return Math.max(1, availableCores / Math.max(1, concurrentTasks));
+    }
+
+    // blocks until the given amount of threads is available; the returned lease gives them back when closed
+    public Lease acquire(int requestedThreads) throws InterruptedException
+    {
+        int leasedThreads = Math.min(Math.max(1, requestedThreads), availableCores);
+
+        threads.acquire(leasedThreads);
+
+        return new Lease(leasedThreads);
+    }
+
+    public class Lease implements AutoCloseable
+    {
+        private final int leasedThreads;
+        private boolean released;
+
+        private Lease(int leasedThreads)
+        {
+            this.leasedThreads = leasedThreads;
+        }
+
+        public int getThreads()
+        {
+            return leasedThreads;
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            if (!released)
+            {
+                threads.release(leasedThreads);
+                released = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class TimeoutHelper
+{
+    private static final Logger LOGGER = LogManager.getLogger(TimeoutHelper.class);
+
+    // deadline of tasks without a time budget
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    // interval at which the deadline and the cancellation flag are checked
+    private static final long POLL_MILLIS = 100;
+
+    // deadline and cancellation flag of the task executing on the current thread, checked by its checkpoints
+    private static final ThreadLocal<Budget> BUDGET = new ThreadLocal<>();
+
+    // time given to an interrupted task to reach its next checkpoint, before it is abandoned
+    private static long graceMillis = 5_000;
+
+    // number of abandoned tasks whose threads are still running
+    private static final AtomicInteger ABANDONED_TASKS = new AtomicInteger();
+
+    // executes the task until it finishes, the deadline (epoch millis) passes or the task is cancelled (a null flag meaning it never
+    // is); cancellation is cooperative, i.e. the task stops at its next checkpoint (or interruptible wait) once it is out of time or
+    // cancelled
+    public static <T> T callWithin(Callable<T> task, long deadline, BooleanSupplier cancelled) throws Exception
+    {
+        return callWithin(task, deadline, cancelled, null);
+    }
+
+    // same as above, closing the given resource (e.g. the threads leased for the task) once the task finishes; a task that can be
+    // cancelled or has a deadline executes on a thread of its own, which is interrupted once the deadline passes or the task is
+    // cancelled, even in the middle of a phase without checkpoints (e.g. training a classifier); only a task that can neither be
+    // cancelled nor run out of time executes on the current thread. a task that does not stop within the grace period is abandoned
+    // as timed out (or cancelled) and its resource is closed right away, so that runaway tasks do not hold it (e.g. starving the
+    // thread budget) while they finish on their own; they are counted until then
+    public static <T> T callWithin(Callable<T> task, long deadline, BooleanSupplier cancelled, AutoCloseable resource) throws Exception
+    {
+        Budget budget = new Budget(deadline, cancelled);
+
+        if (deadline == NO_DEADLINE && cancelled == null)
+        {
+            try
+            {
+                return callWithBudget(task, budget);
+            }
+            finally
+            {
+                close(resource);
+            }
+        }
+
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // set by whichever comes first: the task finishing, or the task being abandoned
+        AtomicBoolean settled = new AtomicBoolean();
+
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                result.set(callWithBudget(task, budget));
+            }
+            catch (Throwable t)
+            {
+                failure.set(t);
+            }
+            finally
+            {
+                close(resource);
+                if (!settled.compareAndSet(false, true))
+                {
+                    ABANDONED_TASKS.decrementAndGet();
+                    LOGGER.info("Abandoned thread [{}] finished.", Thread.currentThread().getName());
+                }
+            }
+        }, Thread.currentThread().getName() + "-task");
+        thread.setDaemon(true);
+        thread.start();
+
+        try
+        {
+            while (thread.isAlive())
+            {
+                long remainingMillis = deadline - System.currentTimeMillis();
+
+                if (remainingMillis <= 0)
+                {
+                    interrupt(thread, settled, resource);
+                    throw new TimeoutException(String.format("Task did not finish within its budget (%d ms late).", -remainingMillis));
+                }
+
+                if (cancelled != null && cancelled.getAsBoolean())
+                {
+                    interrupt(thread, settled, resource);
+                    throw new CancellationException("Task was cancelled.");
+                }
+
+                thread.join(Math.min(POLL_MILLIS, remainingMillis));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            thread.interrupt();
+            throw e;
+        }
+
+        if (failure.get() instanceof Exception)
+            throw (Exception) failure.get();
+        if (failure.get() instanceof Error)
+            throw (Error) failure.get();
+
+        return result.get();
+    }
+
+    // called by tasks between their phases and on every iteration of their loops: stops the task, by throwing a cancellation,
+    // once it is out of time, cancelled or interrupted
+    public static void checkpoint()
+    {
+        Budget budget = BUDGET.get();
+
+        if (Thread.interrupted())
+            throw new CancellationException("Task was interrupted.");
+        if (budget != null && System.currentTimeMillis() >= budget.deadline)
+            throw new CancellationException("Task ran out of time.");
+        if (budget != null && budget.cancelled != null && budget.cancelled.getAsBoolean())
+            throw new CancellationException("Task was cancelled.");
+    }
+
+    // the deadline of a task with the given budget (non-positive means no budget) starting now, bounded by an outer deadline
+    public static long getDeadline(long budgetMillis, long outerDeadline)
+    {
+        if (budgetMillis <= 0)
+            return outerDeadline;
+
+        return Math.min(outerDeadline, System.currentTimeMillis() + budgetMillis);
+    }
+
+    // number of tasks abandoned after their grace period that are still running
+    public static int getAbandonedTasks()
+    {
+        return ABANDONED_TASKS.get();
+    }
+
+    public static long getGraceMillis()
+    {
+        return graceMillis;
+    }
+
+    public static void setGraceMillis(long graceMillis)
+    {
+        TimeoutHelper.graceMillis = graceMillis;
+    }
+
+    // a task stopped at a checkpoint because its deadline passed timed out, rather than being cancelled
+    private static <T> T callWithBudget(Callable<T> task, Budget budget) throws Exception
+    {
+        Budget outerBudget = BUDGET.get();
+        BUDGET.set(budget);
+
+        try
+        {
+            return task.call();
+        }
+        catch (CancellationException e)
+        {
+            if (System.currentTimeMillis() >= budget.deadline)
+                throw new TimeoutException("Task did not finish within its budget.");
+            throw e;
+        }
+        finally
+        {
+            BUDGET.set(outerBudget);
+        }
+    }
+
+    // asks the thread to stop at its next checkpoint and waits for it; since most Weka classifiers never reach one while
+    // training, a thread still running after the grace period is abandoned rather than stopped forcibly, which could leave
+    // shared state corrupted
+    private static void interrupt(Thread thread, AtomicBoolean settled, AutoCloseable resource) throws InterruptedException
+    {
+        thread.interrupt();
+        thread.join(graceMillis);
+
+        if (thread.isAlive() && settled.compareAndSet(false, true))
+        {
+            close(resource);
+            LOGGER.warn("Thread [{}] did not stop within {} ms, abandoning it ({} abandoned threads still running).", thread.getName(), graceMillis,
+                ABANDONED_TASKS.incrementAndGet());
+        }
+    }
+
+    private static void close(AutoCloseable resource)
+    {
+        if (resource == null)
+            return;
+
+        try
+        {
+            resource.close();
+        }
+        catch (Exception e)
+        {
+            LOGGER.warn("Could not release resource of task: {}", e.getMessage());
+        }
+    }
+
+    // used to suppress the default public constructor
+    private TimeoutHelper()
+    {
+    }
+
+    private static class Budget
+    {
+        private final long deadline;
+        private final BooleanSupplier cancelled;
+
+        private Budget(long deadline, BooleanSupplier cancelled)
+        {
+            this.deadline = deadline;
+            this.cancelled = cancelled;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.cli;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.CLIOption;
+import io.github.marcelovca90.common.FilterConfiguration;
+import io.github.marcelovca90.data.AttributeSelectionStore;
+import io.github.marcelovca90.data.CheckpointJournal;
+import io.github.marcelovca90.helper.ExecutionHelper;
+import io.github.marcelovca90.helper.MetaHelper;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CommandLineInterfaceTest
+{
+    private Path folder;
+    private Path metadataFile;
+    private AttributeSelectionStore attributeSelectionStore;
+    private CheckpointJournal checkpointJournal;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = Files.createTempDirectory("command-line");
+        metadataFile = folder.resolve("metadata.txt");
+        Files.write(metadataFile, Arrays.asList("src/test/resources/data-sets-bin/10,0,0"));
+        attributeSelectionStore = FilterConfiguration.getAttributeSelectionStore();
+        checkpointJournal = ExecutionHelper.checkpointJournal;
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FilterConfiguration.setAttributeSelectionStore(attributeSelectionStore);
+        ExecutionHelper.checkpointJournal = checkpointJournal;
+        ExecutionHelper.checkpointRuns = false;
+        ExecutionHelper.outputFolder = "logs";
+        ExecutionHelper.runTimeout = 0;
+        ExecutionHelper.cellTimeout = 0;
+        ExecutionHelper.setUpMethodTimeouts("");
+        ExecutionHelper.minimumRuns = 0;
+        ExecutionHelper.targetHalfWidth = 0.5;
+        ExecutionHelper.setUpConvergenceMetrics("WEIGHTED_F_MEASURE");
+        ExecutionHelper.racing = false;
+        ExecutionHelper.folds = 0;
+        ExecutionHelper.searchSpaces.clear();
+        ExecutionHelper.racingSignificance = 0.05;
+        System.clearProperty(ExecutionHelper.OUTPUT_FOLDER_PROPERTY);
+        MetaHelper.reset();
+        FileUtils.deleteDirectory(folder.toFile());
+    }
+
+    @Test
+    public void buildOptions_shouldContainEveryCLIOption()
+    {
+        for (CLIOption option : CLIOption.values())
+            assertTrue(CommandLineInterface.buildOptions().hasLongOption(CommandLineInterface.getLongName(option)));
+    }
+
+    @Test
+    public void getLongName_shouldReturnLowerCaseHyphenatedName()
+    {
+        assertThat(CommandLineInterface.getLongName(CLIOption.RUN_PARALLELISM), equalTo("run-parallelism"));
+    }
+
+    @Test
+    public void logging_shouldOnlyShutDownOnceTheExperimentDoes() throws IOException
+    {
+        String configuration = new String(Files.readAllBytes(Paths.get("src/main/resources/log4j2.xml")), StandardCharsets.UTF_8);
+
+        assertThat(configuration, containsString("<Configuration status=\"WARN\" shutdownHook=\"disable\">"));
+    }
+
+    @Test
+    public void execute_help_shouldReturnSuccess()
+    {
+        assertThat(CommandLineInterface.execute(new String[] { "--help" }), equalTo(CommandLineInterface.EXIT_SUCCESS));
+    }
+
+    @Test
+    public void execute_unknownOption_shouldReturnUsageError()
+    {
+        assertThat(CommandLineInterface.execute(new String[] { "--unknown" }), equalTo(CommandLineInterface.EXIT_USAGE));
+    }
+
+    @Test
+    public void execute_missingMethods_shouldReturnUsageError()
+    {
+        assertThat(CommandLineInterface.execute(new String[] { "--metadata", metadataFile.toString() }), equalTo(CommandLineInterface.EXIT_USAGE));
+    }
+
+    @Test
+    public void execute_unknownMethod_shouldReturnUsageError()
+    {
+        String[] args = { "--metadata", metadataFile.toString(), "--methods", "UNKNOWN" };
+
+        assertThat(CommandLineInterface.execute(args), equalTo(CommandLineInterface.EXIT_USAGE));
+    }
+
+    @Test
+    public void execute_negativeRuns_shouldReturnUsageError()
+    {
+        String[] args = { "--metadata", metadataFile.toString(), "--methods", "NB", "--runs", "-1" };
+
+        assertThat(CommandLineInterface.execute(args), equalTo(CommandLineInterface.EXIT_USAGE));
+    }
+
+    @Test
+    public void execute_malformedMethodTimeouts_shouldReturnUsageError()
+    {
+        String[] args = { "--metadata", metadataFile.toString(), "--methods", "NB", "--method-timeouts", "NB=soon" };
+
+        assertThat(CommandLineInterface.execute(args), equalTo(CommandLineInterface.EXIT_USAGE));
+    }
+
+    @Test
+    public void execute_unknownConvergenceMetric_shouldReturnUsageError()
+    {
+        String[] args = { "--metadata", metadataFile.toString(), "--methods", "NB", "--minimum-runs", "3", "--convergence-metrics", "ACCURACY" };
+
+        assertThat(CommandLineInterface.execute(args), equalTo(CommandLineInterface.EXIT_USAGE));
+    }
+
+    @Test
+    public void execute_searchSpaces_shouldSearchInsteadOfRunning() throws IOException
+    {
+        Path searchSpacesFile = folder.resolve("search-spaces.txt");
+        Files.write(searchSpacesFile, Arrays.asList("J48=-C {0.1,0.25} -M 2"));
+        String[] args = { "--metadata", metadataFile.toString(), "--methods", "J48", "--runs", "1", "--search-spaces", searchSpacesFile.toString(), "--no-cache" };
+
+        assertThat(CommandLineInterface.execute(args), equalTo(CommandLineInterface.EXIT_SUCCESS));
+        assertThat(ExecutionHelper.searchSpaces.size(), equalTo(1));
+    }
+
+    @Test
+    public void execute_missingDataSet_shouldReturnFailedCells() throws IOException
+    {
+        Files.write(metadataFile, Arrays.asList(folder.resolve("missing").toString() + ",0,0"));
+        String[] args = { "--metadata", metadataFile.toString(), "--methods", "NB", "--runs", "1", "--no-cache" };
+
+        assertThat(CommandLineInterface.execute(args), equalTo(CommandLineInterface.EXIT_FAILED_CELLS));
+    }
+
+    @Test
+    public void execute_validConfiguration_shouldReturnSuccess()
+    {
+        String[] args = { "--metadata", metadataFile.toString(), "--methods", "hp, nb", "--runs", "2", "--run-parallelism", "2", "--cell-parallelism", "2",
+                "--output-folder", folder.resolve("results").toString(), "--cache-folder", folder.resolve("cache").toString(), "--checkpoint-runs" };
+
+        assertThat(CommandLineInterface.execute(args), equalTo(CommandLineInterface.EXIT_SUCCESS));
+        assertThat(ExecutionHelper.outputFolder, equalTo(folder.resolve("results").toString()));
+        assertTrue(Files.exists(folder.resolve("cache").resolve("cost-model.properties")));
+        assertTrue(Files.exists(folder.resolve("cache").resolve("checkpoints.journal")));
+    }
+}
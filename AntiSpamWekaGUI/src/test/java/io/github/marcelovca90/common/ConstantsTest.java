@@ -41,9 +41,9 @@ public class ConstantsTest
     }
 
     @Test
-    public void enum_CLIOption_shouldReturnTwelveValues()
+    public void enum_CLIOption_shouldReturnThirtyFiveValues()
     {
-        assertThat(Constants.CLIOption.values().length, equalTo(12));
+        assertThat(Constants.CLIOption.values().length, equalTo(35));
         Arrays
             .stream(Constants.CLIOption.values())
             .forEach(v -> assertThat(Constants.CLIOption.valueOf(v.name()), notNullValue()));
@@ -58,6 +58,15 @@ public class ConstantsTest
             .forEach(v -> assertThat(Constants.MessageType.valueOf(v.name()), notNullValue()));
     }
 
+    @Test
+    public void enum_SamplingMode_shouldReturnThreeValues()
+    {
+        assertThat(Constants.SamplingMode.values().length, equalTo(3));
+        Arrays
+            .stream(Constants.SamplingMode.values())
+            .forEach(v -> assertThat(Constants.SamplingMode.valueOf(v.name()), notNullValue()));
+    }
+
     @Test
     public void enum_Metric_shouldReturnSeventeenValues()
     {
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.common;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExperimentCellTest
+{
+    private final DataSetMetadata metadata = new DataSetMetadata("/some/folder/DATA_SET/STAT_METHOD/100", 10, 20);
+
+    private final long dataSetBytes = 1_000_000L;
+
+    @Test
+    public void constructor_shouldSetMethodAndMetadata()
+    {
+        ExperimentCell cell = new ExperimentCell(MethodConfiguration.J48, metadata, dataSetBytes);
+
+        assertThat(cell.getMethod(), equalTo(MethodConfiguration.J48));
+        assertThat(cell.getMetadata(), equalTo(metadata));
+        assertThat(cell.getEstimatedBytes(), equalTo(ExperimentCell.estimateBytes(MethodConfiguration.J48, dataSetBytes)));
+    }
+
+    @Test
+    public void constructor_withDimensions_shouldSetDimensionsAndNoPrediction()
+    {
+        ExperimentCell cell = new ExperimentCell(MethodConfiguration.J48, metadata, dataSetBytes, 100, 10);
+
+        assertThat(cell.getNumberOfInstances(), equalTo(100));
+        assertThat(cell.getNumberOfFeatures(), equalTo(10));
+        assertTrue(Double.isNaN(cell.getPredictedMillis()));
+
+        cell.setPredictedMillis(1500.0);
+
+        assertThat(cell.getPredictedMillis(), equalTo(1500.0));
+    }
+
+    @Test
+    public void estimateBytes_everyMethod_shouldAccountForDataSet()
+    {
+        for (MethodConfiguration method : MethodConfiguration.values())
+            assertThat(ExperimentCell.estimateBytes(method, dataSetBytes), greaterThanOrEqualTo(dataSetBytes));
+    }
+
+    @Test
+    public void estimateBytes_expensiveMethods_shouldExceedCheapMethods()
+    {
+        long naiveBayesBytes = ExperimentCell.estimateBytes(MethodConfiguration.NB, dataSetBytes);
+        long decisionTreeBytes = ExperimentCell.estimateBytes(MethodConfiguration.J48, dataSetBytes);
+        long supportVectorMachineBytes = ExperimentCell.estimateBytes(MethodConfiguration.LIBSVM, dataSetBytes);
+
+        assertThat(decisionTreeBytes, greaterThan(naiveBayesBytes));
+        assertThat(supportVectorMachineBytes, greaterThan(decisionTreeBytes));
+    }
+
+    @Test
+    public void toString_shouldContainAllFieldsValues()
+    {
+        ExperimentCell cell = new ExperimentCell(MethodConfiguration.NB, metadata, dataSetBytes);
+
+        assertThat(cell.toString(), containsString(MethodConfiguration.NB.name()));
+        assertThat(cell.toString(), containsString(metadata.getFolder()));
+        assertThat(cell.toString(), containsString(String.valueOf(cell.getEstimatedBytes())));
+    }
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.common;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExperimentPlanTest
+{
+    private final DataSetMetadata metadata = new DataSetMetadata("/some/folder/DATA_SET/STAT_METHOD/100", 10, 20);
+
+    @Test
+    public void constructor_shouldSetAllFields()
+    {
+        List<ExperimentCell> cells = Arrays.asList(new ExperimentCell(MethodConfiguration.J48, metadata, 1000L));
+
+        ExperimentPlan plan = new ExperimentPlan(cells, 2, 1500.0, 1);
+
+        assertThat(plan.getCells(), equalTo(cells));
+        assertThat(plan.getWorkers(), equalTo(2));
+        assertThat(plan.getProjectedMakespanMillis(), equalTo(1500.0));
+        assertThat(plan.getUnpredictedCells(), equalTo(1));
+    }
+
+    @Test
+    public void toString_shouldContainAllFieldsValues()
+    {
+        ExperimentPlan plan = new ExperimentPlan(Arrays.asList(new ExperimentCell(MethodConfiguration.J48, metadata, 1000L)), 2, 1500.0, 1);
+
+        assertThat(plan.toString(), containsString("cells=1"));
+        assertThat(plan.toString(), containsString("workers=2"));
+        assertThat(plan.toString(), containsString("1500.0"));
+        assertThat(plan.toString(), containsString("unpredictedCells=1"));
+    }
+}
@@ -27,11 +27,16 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,6 +45,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 import io.github.marcelovca90.common.Constants.MessageType;
 import io.github.marcelovca90.common.FilterConfiguration.AttributeFilter;
 import io.github.marcelovca90.common.FilterConfiguration.InstanceFilter;
+import io.github.marcelovca90.data.AttributeSelectionStore;
 import io.github.marcelovca90.helper.MetaHelper;
 import weka.core.Instances;
 
@@ -53,10 +59,16 @@ public class FilterConfigurationTest
     private String spamDataFilename;
     private Instances spamDataSet;
     private Instances dataSet;
+    private Path storeFolder;
+    private AttributeSelectionStore defaultStore;
 
     @Before
     public void setUp() throws IOException
     {
+        storeFolder = Files.createTempDirectory("attribute-selection");
+        defaultStore = FilterConfiguration.getAttributeSelectionStore();
+        FilterConfiguration.setAttributeSelectionStore(new AttributeSelectionStore(storeFolder));
+
         hamDataFilename = classLoader.getResource("data-sets-bin/10/ham").getFile();
         hamDataSet = MetaHelper.getInputOutputHelper().loadInstancesFromRawFile(hamDataFilename, MessageType.HAM);
         spamDataFilename = classLoader.getResource("data-sets-bin/10/spam").getFile();
@@ -64,6 +76,55 @@ public class FilterConfigurationTest
         dataSet = MetaHelper.getInputOutputHelper().mergeInstances(hamDataSet, spamDataSet);
     }
 
+    @After
+    public void tearDown() throws IOException
+    {
+        FilterConfiguration.setAttributeSelectionStore(defaultStore);
+        FileUtils.deleteDirectory(storeFolder.toFile());
+    }
+
+    @Test
+    public void buildAndApply_sameDataSetTwice_shouldReplayStoredSelection()
+    {
+        Instances first = FilterConfiguration.buildAndApply(dataSet, AttributeFilter.CfsSubsetEval_BestFirst);
+        Instances second = FilterConfiguration.buildAndApply(dataSet, AttributeFilter.CfsSubsetEval_BestFirst);
+
+        assertThat(storeFolder.toFile().listFiles((File f) -> f.getName().endsWith(".properties")).length, equalTo(1));
+        assertThat(second.numAttributes(), equalTo(first.numAttributes()));
+        assertThat(second.classIndex(), equalTo(first.classIndex()));
+        for (int i = 0; i < first.size(); i++)
+            assertThat(second.get(i).toDoubleArray(), equalTo(first.get(i).toDoubleArray()));
+    }
+
+    @Test
+    public void buildAndApply_differentThreads_shouldSelectSameAttributes()
+    {
+        FilterConfiguration.setAttributeSelectionStore(null);
+
+        Instances singleThreaded = FilterConfiguration.buildAndApply(dataSet, AttributeFilter.CfsSubsetEval_BestFirst, 1);
+        Instances multiThreaded = FilterConfiguration.buildAndApply(dataSet, AttributeFilter.CfsSubsetEval_BestFirst, 4);
+
+        assertThat(multiThreaded.numAttributes(), equalTo(singleThreaded.numAttributes()));
+        for (int j = 0; j < singleThreaded.numAttributes(); j++)
+            assertThat(multiThreaded.attribute(j).name(), equalTo(singleThreaded.attribute(j).name()));
+    }
+
+    @Test
+    public void buildAndApply_storedSelection_shouldMatchAttributeSelectionFilter()
+    {
+        Instances stored = FilterConfiguration.buildAndApply(dataSet, AttributeFilter.InfoGainAttributeEval_Ranker);
+
+        FilterConfiguration.setAttributeSelectionStore(null);
+        Instances filtered = FilterConfiguration.buildAndApply(dataSet, AttributeFilter.InfoGainAttributeEval_Ranker);
+
+        assertThat(stored.numAttributes(), equalTo(filtered.numAttributes()));
+        assertThat(stored.classIndex(), equalTo(filtered.classIndex()));
+        for (int j = 0; j < filtered.numAttributes(); j++)
+            assertThat(stored.attribute(j).name(), equalTo(filtered.attribute(j).name()));
+        for (int i = 0; i < filtered.size(); i++)
+            assertThat(stored.get(i).toDoubleArray(), equalTo(filtered.get(i).toDoubleArray()));
+    }
+
     @Test
     public void buildAttributeFilterFor_actualDataSet_shouldReturnNullDataSet() throws IOException
     {
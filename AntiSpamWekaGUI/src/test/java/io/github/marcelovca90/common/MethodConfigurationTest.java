@@ -21,12 +21,17 @@
  ******************************************************************************/
 package io.github.marcelovca90.common;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
 
 import org.junit.Test;
@@ -34,6 +39,7 @@ import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import weka.classifiers.AbstractClassifier;
+import weka.core.Utils;
 
 @RunWith(MockitoJUnitRunner.class)
 public class MethodConfigurationTest
@@ -60,9 +66,45 @@ public class MethodConfigurationTest
     }
 
     @Test
-    public void enum_MethodConfiguration_shouldReturnTwentyFourValues()
+    public void values_everyMethod_shouldHaveItsOwnResultsFile() throws IOException
     {
-        assertThat(MethodConfiguration.values().length, equalTo(24));
+        String configuration = new String(Files.readAllBytes(Paths.get("src/main/resources/log4j2.xml")), StandardCharsets.UTF_8);
+
+        Arrays
+            .stream(MethodConfiguration.values())
+            .forEach(v ->
+            {
+                assertThat(configuration, containsString(String.format("fileName=\"${folder}/%s.csv\"", v.name())));
+                assertThat(configuration, containsString(String.format("<appender-ref ref=\"%s\" />", v.name())));
+            });
+    }
+
+    @Test
+    public void buildClassifierFor_givenThreads_shouldLimitMultiThreadedClassifiers()
+    {
+        assertThat(MethodConfiguration.getThreadsUsedBy(MethodConfiguration.buildClassifierFor(MethodConfiguration.WRF, 3)), equalTo(3));
+        assertThat(MethodConfiguration.getThreadsUsedBy(MethodConfiguration.buildClassifierFor(MethodConfiguration.FRF, 2)), equalTo(2));
+        assertThat(MethodConfiguration.getThreadsUsedBy(MethodConfiguration.buildClassifierFor(MethodConfiguration.NB, 4)), equalTo(1));
+    }
+
+    @Test
+    public void buildClassifierFor_givenConfig_shouldUseItInsteadOfOwnConfig() throws Exception
+    {
+        AbstractClassifier classifier = MethodConfiguration.buildClassifierFor(MethodConfiguration.J48, "-C 0.1 -M 5", 1);
+
+        assertThat(Utils.joinOptions(classifier.getOptions()), containsString("-C 0.1 -M 5"));
+    }
+
+    @Test(expected = Exception.class)
+    public void buildClassifierFor_invalidConfig_shouldThrowException() throws Exception
+    {
+        MethodConfiguration.buildClassifierFor(MethodConfiguration.J48, "-C invalid", 1);
+    }
+
+    @Test
+    public void enum_MethodConfiguration_shouldReturnTwentyFiveValues()
+    {
+        assertThat(MethodConfiguration.values().length, equalTo(25));
         Arrays
             .stream(MethodConfiguration.values())
             .forEach(v -> assertThat(MethodConfiguration.valueOf(v.name()), notNullValue()));
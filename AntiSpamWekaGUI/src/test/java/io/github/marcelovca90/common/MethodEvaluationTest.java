@@ -24,6 +24,7 @@ package io.github.marcelovca90.common;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -33,7 +34,10 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.Iterator;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -44,6 +48,10 @@ import org.mockito.junit.MockitoJUnitRunner;
 import io.github.marcelovca90.common.Constants.MessageType;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.bayes.NaiveBayesUpdateable;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
 import weka.core.Instances;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -68,6 +76,77 @@ public class MethodEvaluationTest
         methodEvaluation.setEvaluation(evaluation);
     }
 
+    @Test
+    public void aggregate_folds_shouldReplayTheirPredictions() throws Exception
+    {
+        Instances dataSet = buildDataSet(20);
+        Instances firstHalf = new Instances(dataSet, 0, 10);
+        Instances secondHalf = new Instances(dataSet, 10, 10);
+
+        MethodEvaluation runEvaluation = new MethodEvaluation(folder, MethodConfiguration.NB);
+        runEvaluation.setEvaluation(new Evaluation(dataSet));
+
+        runEvaluation.aggregate(evaluateFold(dataSet, secondHalf, firstHalf), firstHalf);
+        runEvaluation.aggregate(evaluateFold(dataSet, firstHalf, secondHalf), secondHalf);
+
+        assertThat(runEvaluation.getEvaluation().numInstances(), equalTo(20.0));
+        assertThat(runEvaluation.getTestingSetCounts().get(MessageType.HAM) + runEvaluation.getTestingSetCounts().get(MessageType.SPAM), equalTo(20));
+        assertThat(runEvaluation.getTrainEnd() - runEvaluation.getTrainStart(), greaterThanOrEqualTo(0L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void aggregate_mismatchingTestingSet_shouldThrowException() throws Exception
+    {
+        Instances dataSet = buildDataSet(20);
+        Instances firstHalf = new Instances(dataSet, 0, 10);
+        Instances secondHalf = new Instances(dataSet, 10, 10);
+
+        MethodEvaluation runEvaluation = new MethodEvaluation(folder, MethodConfiguration.NB);
+        runEvaluation.setEvaluation(new Evaluation(dataSet));
+
+        runEvaluation.aggregate(evaluateFold(dataSet, secondHalf, firstHalf), dataSet);
+    }
+
+    @Test
+    public void trainAndTestIncrementally_batches_shouldCountEveryInstance() throws Exception
+    {
+        Instances dataSet = buildDataSet(20);
+
+        MethodEvaluation runEvaluation = new MethodEvaluation(folder, MethodConfiguration.NBU);
+        runEvaluation.setClassifier(new NaiveBayesUpdateable());
+        runEvaluation.setEvaluation(new Evaluation(new Instances(dataSet, 0)));
+
+        runEvaluation.trainIncrementally(batchesOf(new Instances(dataSet, 0, 10), 3));
+        runEvaluation.testIncrementally(batchesOf(new Instances(dataSet, 10, 10), 3), null);
+
+        assertThat(runEvaluation.getTrainingSetCounts().get(MessageType.HAM) + runEvaluation.getTrainingSetCounts().get(MessageType.SPAM), equalTo(10));
+        assertThat(runEvaluation.getTestingSetCounts().get(MessageType.HAM) + runEvaluation.getTestingSetCounts().get(MessageType.SPAM), equalTo(10));
+        assertThat(runEvaluation.getEvaluation().numInstances(), equalTo(10.0));
+    }
+
+    @Test
+    public void trainAndTestIncrementally_singleBatch_shouldMatchBatchEvaluation() throws Exception
+    {
+        Instances dataSet = buildDataSet(20);
+        Instances trainingSet = new Instances(dataSet, 0, 10);
+        Instances testingSet = new Instances(dataSet, 10, 10);
+
+        MethodEvaluation batchEvaluation = new MethodEvaluation(folder, MethodConfiguration.NBU);
+        batchEvaluation.setClassifier(new NaiveBayesUpdateable());
+        batchEvaluation.setEvaluation(new Evaluation(dataSet));
+        batchEvaluation.train(trainingSet);
+        batchEvaluation.test(testingSet);
+
+        MethodEvaluation incrementalEvaluation = new MethodEvaluation(folder, MethodConfiguration.NBU);
+        incrementalEvaluation.setClassifier(new NaiveBayesUpdateable());
+        incrementalEvaluation.setEvaluation(new Evaluation(dataSet));
+        incrementalEvaluation.trainIncrementally(batchesOf(trainingSet, trainingSet.size()));
+        incrementalEvaluation.testIncrementally(batchesOf(testingSet, 4), null);
+
+        assertThat(incrementalEvaluation.getEvaluation().pctCorrect(), closeTo(batchEvaluation.getEvaluation().pctCorrect(), 1e-9));
+        assertThat(incrementalEvaluation.getEvaluation().weightedAreaUnderROC(), closeTo(batchEvaluation.getEvaluation().weightedAreaUnderROC(), 1e-9));
+    }
+
     @Test
     public void getClassifier_shouldReturnSetClassifier()
     {
@@ -204,6 +283,42 @@ public class MethodEvaluationTest
         assertThat(methodEvaluation.getTestEnd(), greaterThanOrEqualTo(methodEvaluation.getTestStart()));
     }
 
+    @Test
+    public void test_withWeightedEmptySet_shouldMatchExplicitEmptyPatterns() throws Exception
+    {
+        Instances dataSet = buildDataSet(20);
+        Instances trainingSet = new Instances(dataSet, 0, 10);
+        Instances testingSet = new Instances(dataSet, 10, 10);
+        Instances emptySet = new Instances(dataSet, 2);
+        emptySet.add(new DenseInstance(7.0, new double[] { 0.0, MessageType.HAM.ordinal() }));
+        emptySet.add(new DenseInstance(3.0, new double[] { 0.0, MessageType.SPAM.ordinal() }));
+        Instances explicitTestingSet = new Instances(testingSet);
+        for (int i = 0; i < 10; i++)
+            explicitTestingSet.add(new DenseInstance(1.0, new double[] { 0.0, i < 7 ? MessageType.HAM.ordinal() : MessageType.SPAM.ordinal() }));
+        Instances weightedTestingSet = new Instances(testingSet);
+        weightedTestingSet.addAll(emptySet);
+
+        MethodEvaluation explicitEvaluation = new MethodEvaluation(folder, MethodConfiguration.NB);
+        explicitEvaluation.setClassifier(new NaiveBayes());
+        explicitEvaluation.setEvaluation(new Evaluation(explicitTestingSet));
+        explicitEvaluation.train(trainingSet);
+        explicitEvaluation.test(explicitTestingSet);
+
+        MethodEvaluation weightedEvaluation = new MethodEvaluation(folder, MethodConfiguration.NB);
+        weightedEvaluation.setClassifier(new NaiveBayes());
+        weightedEvaluation.setEvaluation(new Evaluation(weightedTestingSet));
+        weightedEvaluation.train(trainingSet);
+        weightedEvaluation.test(testingSet, emptySet);
+
+        assertThat(weightedEvaluation.getEvaluation().numInstances(), equalTo(explicitEvaluation.getEvaluation().numInstances()));
+        assertThat(weightedEvaluation.getEvaluation().correct(), equalTo(explicitEvaluation.getEvaluation().correct()));
+        assertThat(weightedEvaluation.getEvaluation().confusionMatrix(), equalTo(explicitEvaluation.getEvaluation().confusionMatrix()));
+        assertThat(weightedEvaluation.getEvaluation().weightedFMeasure(), closeTo(explicitEvaluation.getEvaluation().weightedFMeasure(), 1e-9));
+        assertThat(weightedEvaluation.getEvaluation().weightedAreaUnderROC(), closeTo(explicitEvaluation.getEvaluation().weightedAreaUnderROC(), 1e-9));
+        assertThat(weightedEvaluation.getEvaluation().rootMeanSquaredError(), closeTo(explicitEvaluation.getEvaluation().rootMeanSquaredError(), 1e-9));
+        assertThat(weightedEvaluation.getTestingSetCounts(), equalTo(explicitEvaluation.getTestingSetCounts()));
+    }
+
     @Test
     public void test_whenThrowingException_shouldNotFinishTesting() throws Exception
     {
@@ -215,4 +330,39 @@ public class MethodEvaluationTest
         assertThat(methodEvaluation.getTestStart(), not(equalTo(0L)));
         assertThat(methodEvaluation.getTestEnd(), equalTo(0L));
     }
+
+    // a single feature that tells the classes apart, with the classes alternating
+    private Instances buildDataSet(int size)
+    {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("feature"));
+        attributes.add(new Attribute("class", Arrays.asList(MessageType.HAM.name(), MessageType.SPAM.name())));
+
+        Instances dataSet = new Instances("data", attributes, size);
+        dataSet.setClassIndex(1);
+        for (int i = 0; i < size; i++)
+            dataSet.add(new DenseInstance(1.0, new double[] { (i % 2) + 0.1 * i, i % 2 }));
+
+        return dataSet;
+    }
+
+    private Iterator<Instances> batchesOf(Instances dataSet, int batchSize)
+    {
+        ArrayList<Instances> batches = new ArrayList<>();
+        for (int i = 0; i < dataSet.size(); i += batchSize)
+            batches.add(new Instances(dataSet, i, Math.min(batchSize, dataSet.size() - i)));
+
+        return batches.iterator();
+    }
+
+    private MethodEvaluation evaluateFold(Instances dataSet, Instances trainingSet, Instances testingSet) throws Exception
+    {
+        MethodEvaluation foldEvaluation = new MethodEvaluation(folder, MethodConfiguration.NB);
+        foldEvaluation.setClassifier(new NaiveBayes());
+        foldEvaluation.setEvaluation(new Evaluation(dataSet));
+        foldEvaluation.train(trainingSet);
+        foldEvaluation.test(testingSet);
+
+        return foldEvaluation;
+    }
 }
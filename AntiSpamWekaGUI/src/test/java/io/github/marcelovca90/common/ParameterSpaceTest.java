@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.common;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ParameterSpaceTest
+{
+    @Test
+    public void getCandidates_choices_shouldReturnEveryCombination()
+    {
+        ParameterSpace space = new ParameterSpace(MethodConfiguration.FRF, " -I {50, 100} -K {0,2} -S 1 ");
+
+        assertThat(space.getTemplate(), equalTo("-I {50, 100} -K {0,2} -S 1"));
+        assertThat(space.getCandidates(), equalTo(Arrays.asList("-I 50 -K 0 -S 1", "-I 50 -K 2 -S 1", "-I 100 -K 0 -S 1", "-I 100 -K 2 -S 1")));
+    }
+
+    @Test
+    public void getCandidates_noChoices_shouldReturnTemplate()
+    {
+        ParameterSpace space = new ParameterSpace(MethodConfiguration.J48, "-C 0.25 -M 2");
+
+        assertThat(space.getCandidates(), equalTo(Arrays.asList("-C 0.25 -M 2")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_emptyChoices_shouldThrowException()
+    {
+        new ParameterSpace(MethodConfiguration.J48, "-C { } -M 2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_unbalancedBraces_shouldThrowException()
+    {
+        new ParameterSpace(MethodConfiguration.J48, "-C {0.1,0.25 -M 2");
+    }
+
+    @Test
+    public void toString_shouldContainAllFieldsValues()
+    {
+        ParameterSpace space = new ParameterSpace(MethodConfiguration.J48, "-C {0.1,0.25} -M 2");
+
+        assertThat(space.toString(), containsString("J48"));
+        assertThat(space.toString(), containsString("-C {0.1,0.25} -M 2"));
+        assertThat(space.toString(), containsString("candidates=2"));
+    }
+}
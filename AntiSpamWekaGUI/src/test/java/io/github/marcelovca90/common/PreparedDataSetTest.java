@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.common;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.helper.MetaHelper;
+import weka.core.Instances;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PreparedDataSetTest
+{
+    private final int numberOfTotalFeatures = 42;
+
+    private Instances dataSet;
+    private PreparedDataSet preparedDataSet;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dataSet = MetaHelper.getInputOutputHelper().loadInstancesFromRawFile(Paths.get("src/test/resources/data-sets-bin/10/spam").toString(), MessageType.SPAM);
+        preparedDataSet = new PreparedDataSet(dataSet, numberOfTotalFeatures);
+    }
+
+    @Test
+    public void getDataSet_shouldReturnValueSetInConstructor()
+    {
+        assertThat(preparedDataSet.getDataSet(), equalTo(dataSet));
+    }
+
+    @Test
+    public void getNumberOfTotalFeatures_shouldReturnValueSetInConstructor()
+    {
+        assertThat(preparedDataSet.getNumberOfTotalFeatures(), equalTo(numberOfTotalFeatures));
+    }
+
+    @Test
+    public void getNumberOfActualFeatures_shouldReturnDataSetAttributesExceptClass()
+    {
+        assertThat(preparedDataSet.getNumberOfActualFeatures(), equalTo(dataSet.numAttributes() - 1));
+    }
+
+    @Test
+    public void getEstimatedBytes_shouldAccountForEveryValue()
+    {
+        assertThat(preparedDataSet.getEstimatedBytes() >= dataSet.numInstances() * dataSet.numAttributes() * 8L, equalTo(true));
+    }
+
+    @Test
+    public void estimateBytes_shouldMatchEstimatedBytesOfDataSet()
+    {
+        assertThat(PreparedDataSet.estimateBytes(dataSet.numInstances(), dataSet.numAttributes()), equalTo(preparedDataSet.getEstimatedBytes()));
+    }
+
+    @Test
+    public void getEstimatedBytes_sparseDataSet_shouldOnlyAccountForNonZeroValues()
+    {
+        Instances sparseDataSet = MetaHelper.getInputOutputHelper().createEmptyInstances(dataSet.numAttributes() - 1, 3, 2);
+
+        long estimatedBytes = new PreparedDataSet(sparseDataSet, numberOfTotalFeatures).getEstimatedBytes();
+
+        assertThat(estimatedBytes, equalTo(PreparedDataSet.estimateSparseBytes(5, 2)));
+    }
+
+    @Test
+    public void toString_shouldContainAllFieldsValues()
+    {
+        String string = preparedDataSet.toString();
+
+        assertThat(string, notNullValue());
+        assertThat(string, containsString(String.valueOf(numberOfTotalFeatures)));
+        assertThat(string, containsString(String.valueOf(dataSet.numInstances())));
+    }
+}
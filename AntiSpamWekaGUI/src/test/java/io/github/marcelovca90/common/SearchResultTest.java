@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.common;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SearchResultTest
+{
+    @Test
+    public void constructor_shouldSetAllFields()
+    {
+        SearchResult result = new SearchResult(MethodConfiguration.J48, "/some/folder", "-C 0.1 -M 2", 95.5, 9, 13, 2500L);
+
+        assertThat(result.getMethod(), equalTo(MethodConfiguration.J48));
+        assertThat(result.getFolder(), equalTo("/some/folder"));
+        assertThat(result.getBestConfig(), equalTo("-C 0.1 -M 2"));
+        assertThat(result.getBestScore(), equalTo(95.5));
+        assertThat(result.getCandidates(), equalTo(9));
+        assertThat(result.getEvaluations(), equalTo(13));
+        assertThat(result.getCostMillis(), equalTo(2500L));
+    }
+
+    @Test
+    public void toString_shouldContainAllFieldsValues()
+    {
+        SearchResult result = new SearchResult(MethodConfiguration.J48, "/some/folder", "-C 0.1 -M 2", 95.5, 9, 13, 2500L);
+
+        assertThat(result.toString(), containsString("J48"));
+        assertThat(result.toString(), containsString("bestConfig=-C 0.1 -M 2"));
+        assertThat(result.toString(), containsString("evaluations=13"));
+        assertThat(result.toString(), containsString("costMillis=2500"));
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.data.AttributeSelectionStore.Selection;
+import io.github.marcelovca90.helper.MetaHelper;
+import weka.core.Instances;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AttributeSelectionStoreTest
+{
+    private Path folder;
+    private AttributeSelectionStore store;
+    private Instances dataSet;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = Files.createTempDirectory("attribute-selection");
+        store = new AttributeSelectionStore(folder);
+        dataSet = MetaHelper.getInputOutputHelper().loadInstancesFromRawFile(Paths.get("src/test/resources/data-sets-bin/10/spam").toString(), MessageType.SPAM);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(folder.toFile());
+    }
+
+    @Test
+    public void hash_sameContent_shouldReturnSameValue()
+    {
+        assertThat(AttributeSelectionStore.hash(dataSet), equalTo(AttributeSelectionStore.hash(new Instances(dataSet))));
+    }
+
+    @Test
+    public void hash_differentContent_shouldReturnDifferentValue()
+    {
+        String before = AttributeSelectionStore.hash(dataSet);
+
+        dataSet.instance(0).setValue(0, dataSet.instance(0).value(0) + 1.0);
+
+        assertThat(AttributeSelectionStore.hash(dataSet), not(equalTo(before)));
+    }
+
+    @Test
+    public void buildKey_differentConfigurations_shouldReturnDifferentKeys()
+    {
+        String key = store.buildKey(dataSet, "filter", "-A 1", "-B 2");
+
+        assertThat(store.buildKey(dataSet, "filter", "-A 1", "-B 2"), equalTo(key));
+        assertThat(store.buildKey(dataSet, "filter", "-A 1", "-B 3"), not(equalTo(key)));
+        assertThat(store.buildKey(dataSet, "other", "-A 1", "-B 2"), not(equalTo(key)));
+    }
+
+    @Test
+    public void saveAndLoad_shouldPreserveSelection()
+    {
+        store.save("key", new Selection(new int[] { 3, 1, 10 }, new double[] { 0.5, 0.25 }, Double.NaN), "description");
+
+        Selection selection = store.load("key");
+
+        assertThat(selection, notNullValue());
+        assertThat(selection.getSelectedAttributes(), equalTo(new int[] { 3, 1, 10 }));
+        assertThat(selection.getAttributeMerits(), equalTo(new double[] { 0.5, 0.25 }));
+        assertThat(Double.isNaN(selection.getSubsetMerit()), equalTo(true));
+    }
+
+    @Test
+    public void load_unknownKey_shouldReturnNull()
+    {
+        assertThat(store.load("unknown"), nullValue());
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.Metric;
+import io.github.marcelovca90.common.MethodConfiguration;
+import io.github.marcelovca90.data.CheckpointJournal.Checkpoint;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CheckpointJournalTest
+{
+    private final String folder = "/some/folder/DATA_SET/STAT_METHOD/100";
+
+    private Path journalFolder;
+    private CheckpointJournal journal;
+    private Checkpoint checkpoint;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        journalFolder = Files.createTempDirectory("checkpoints");
+        journal = new CheckpointJournal(journalFolder.resolve("checkpoints.journal"));
+
+        Map<Metric, Double> results = new EnumMap<>(Metric.class);
+        for (Metric metric : Metric.values())
+            results.put(metric, 100.0 / (metric.ordinal() + 3));
+        checkpoint = new Checkpoint(100, 20, 10, results);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(journalFolder.toFile());
+    }
+
+    @Test
+    public void buildKey_sameRun_shouldReturnSameValue()
+    {
+        assertThat(CheckpointJournal.buildKey(MethodConfiguration.NB, folder, 1L, 3, "settings"), equalTo(CheckpointJournal.buildKey(MethodConfiguration.NB, folder, 1L, 3, "settings")));
+    }
+
+    @Test
+    public void buildKey_differentRuns_shouldReturnDifferentValues()
+    {
+        String key = CheckpointJournal.buildKey(MethodConfiguration.NB, folder, 1L, 3, "settings");
+
+        assertThat(CheckpointJournal.buildKey(MethodConfiguration.J48, folder, 1L, 3, "settings"), not(equalTo(key)));
+        assertThat(CheckpointJournal.buildKey(MethodConfiguration.NB, folder + "0", 1L, 3, "settings"), not(equalTo(key)));
+        assertThat(CheckpointJournal.buildKey(MethodConfiguration.NB, folder, 2L, 3, "settings"), not(equalTo(key)));
+        assertThat(CheckpointJournal.buildKey(MethodConfiguration.NB, folder, 1L, 5, "settings"), not(equalTo(key)));
+        assertThat(CheckpointJournal.buildKey(MethodConfiguration.NB, folder, 1L, 3, "other settings"), not(equalTo(key)));
+    }
+
+    @Test
+    public void lookup_neverAppended_shouldReturnNull()
+    {
+        assertThat(journal.lookup("key"), nullValue());
+    }
+
+    @Test
+    public void append_thenReload_shouldRestoreCheckpoint()
+    {
+        journal.append("key", checkpoint);
+
+        Checkpoint restored = new CheckpointJournal(journal.getFile()).lookup("key");
+
+        assertThat(restored, notNullValue());
+        assertThat(restored.getNumberOfInstances(), equalTo(100));
+        assertThat(restored.getNumberOfTotalFeatures(), equalTo(20));
+        assertThat(restored.getNumberOfActualFeatures(), equalTo(10));
+        assertThat(restored.getResults(), equalTo(checkpoint.getResults()));
+    }
+
+    @Test
+    public void reload_truncatedLastLine_shouldKeepPreviousCheckpoints() throws IOException
+    {
+        journal.append("first", checkpoint);
+        journal.append("second", checkpoint);
+
+        // simulate a crash in the middle of writing a third checkpoint
+        String content = new String(Files.readAllBytes(journal.getFile()), StandardCharsets.UTF_8);
+        String lastLine = content.substring(content.indexOf('\n') + 1);
+        Files.write(journal.getFile(), lastLine.substring(0, lastLine.length() / 2).replace("second", "third").getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND);
+
+        CheckpointJournal restored = new CheckpointJournal(journal.getFile());
+
+        assertThat(restored.size(), equalTo(2));
+        assertThat(restored.lookup("third"), nullValue());
+    }
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.helper.InputOutputHelper;
+import io.github.marcelovca90.helper.MetaHelper;
+import weka.core.Instance;
+import weka.core.Instances;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ColumnarDataSetTest
+{
+    private final InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+
+    private String columnarFilename;
+    private Instances dataSet;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        columnarFilename = "data-set.columnar";
+
+        Instances hamDataSet = ioHelper.loadInstancesFromRawFile(Paths.get("src/test/resources/data-sets-bin/10/ham").toString(), MessageType.HAM);
+        Instances spamDataSet = ioHelper.loadInstancesFromRawFile(Paths.get("src/test/resources/data-sets-bin/10/spam").toString(), MessageType.SPAM);
+        dataSet = ioHelper.mergeInstances(hamDataSet, spamDataSet);
+        dataSet.instance(0).setWeight(2.5);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(Paths.get(columnarFilename));
+    }
+
+    @Test
+    public void writeAndRead_shouldPreserveInstancesWeightsAndHeader() throws IOException
+    {
+        File file = ioHelper.saveColumnarDataSetToFile(new ColumnarDataSet(dataSet, 42, true, false, true, 7L), columnarFilename);
+
+        ColumnarDataSet recovered = ioHelper.loadColumnarDataSetFromFile(columnarFilename);
+
+        assertThat(file.exists(), equalTo(Boolean.TRUE));
+        assertThat(recovered, notNullValue());
+        assertThat(recovered.getNumberOfTotalFeatures(), equalTo(42));
+        assertThat(recovered.getRawFilesFingerprint(), equalTo(7L));
+        assertThat(recovered.matches(true, false, true, 7L), equalTo(Boolean.TRUE));
+        assertThat(recovered.matches(true, true, true, 7L), equalTo(Boolean.FALSE));
+        assertThat(recovered.matches(true, false, false, 7L), equalTo(Boolean.FALSE));
+        assertThat(recovered.matches(true, false, true, 8L), equalTo(Boolean.FALSE));
+        assertThat(recovered.getDataSet().size(), equalTo(dataSet.size()));
+        assertThat(recovered.getDataSet().numAttributes(), equalTo(dataSet.numAttributes()));
+        assertThat(recovered.getDataSet().classIndex(), equalTo(dataSet.classIndex()));
+        for (int j = 0; j < dataSet.numAttributes(); j++)
+            assertThat(recovered.getDataSet().attribute(j).name(), equalTo(dataSet.attribute(j).name()));
+        for (int i = 0; i < dataSet.size(); i++)
+        {
+            assertThat(recovered.getDataSet().get(i).toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+            assertThat(recovered.getDataSet().get(i).weight(), equalTo(dataSet.get(i).weight()));
+        }
+    }
+
+    @Test
+    public void writeAndMap_shouldExposeMappedInstancesWithSameValuesAndWeights() throws IOException
+    {
+        ioHelper.saveColumnarDataSetToFile(new ColumnarDataSet(dataSet, 42, false, false, false, 7L), columnarFilename);
+
+        ColumnarDataSet mapped = ioHelper.mapColumnarDataSetFromFile(columnarFilename);
+
+        assertThat(mapped.getDataSet().get(0), instanceOf(MatrixInstance.class));
+        assertThat(((MatrixInstance) mapped.getDataSet().get(0)).getMatrix().isMapped(), equalTo(Boolean.TRUE));
+        assertThat(mapped.getDataSet().size(), equalTo(dataSet.size()));
+        for (int i = 0; i < dataSet.size(); i++)
+        {
+            assertThat(mapped.getDataSet().get(i).toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+            assertThat(mapped.getDataSet().get(i).weight(), equalTo(dataSet.get(i).weight()));
+        }
+    }
+
+    @Test
+    public void openBatches_givenClass_shouldStreamItsInstancesWithScaledWeights() throws IOException
+    {
+        ioHelper.saveColumnarDataSetToFile(new ColumnarDataSet(dataSet, 42, false, true, true, 7L), columnarFilename);
+        int hamCount = (int) dataSet.stream().filter(instance -> instance.classValue() == MessageType.HAM.ordinal()).count();
+
+        assertThat(ColumnarDataSet.matches(columnarFilename, false, true, true, 7L), equalTo(Boolean.TRUE));
+        assertThat(ColumnarDataSet.matches(columnarFilename, true, true, true, 7L), equalTo(Boolean.FALSE));
+        assertThat(ColumnarDataSet.matches(columnarFilename, false, true, true, 8L), equalTo(Boolean.FALSE));
+        try (InstanceBatchReader batches = ColumnarDataSet.openBatches(columnarFilename, MessageType.HAM, 7, 2.0))
+        {
+            assertThat(batches.getNumberOfInstances(), equalTo(hamCount));
+            assertThat(batches.getNumberOfTotalFeatures(), equalTo(42));
+
+            int i = 0;
+            while (batches.hasNext())
+            {
+                Instances batch = batches.next();
+                assertThat(batch.size() <= 7, equalTo(Boolean.TRUE));
+                for (Instance instance : batch)
+                {
+                    while (dataSet.get(i).classValue() != MessageType.HAM.ordinal())
+                        i++;
+                    assertThat(instance.toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+                    assertThat(instance.weight(), equalTo(2.0 * dataSet.get(i).weight()));
+                    i++;
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void read_notColumnarFile_shouldThrowException() throws IOException
+    {
+        Files.write(Paths.get(columnarFilename), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+        ColumnarDataSet.read(columnarFilename);
+    }
+}
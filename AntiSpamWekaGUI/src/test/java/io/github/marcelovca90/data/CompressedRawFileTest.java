@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.data.InstanceMatrix.Storage;
+import io.github.marcelovca90.helper.InputOutputHelper;
+import io.github.marcelovca90.helper.MetaHelper;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CompressedRawFileTest
+{
+    private final InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+
+    private String rawFilename;
+    private String compressedFilename;
+    private Instances dataSet;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        rawFilename = Paths.get("src/test/resources/data-sets-bin/10/ham").toString();
+        compressedFilename = "ham" + InputOutputHelper.COMPRESSED_RAW_EXTENSION;
+        dataSet = ioHelper.loadInstancesFromRawFile(rawFilename, MessageType.HAM);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(Paths.get(compressedFilename));
+    }
+
+    @Test
+    public void writeAndRead_dense_shouldPreserveInstancesInFewerBytes() throws IOException
+    {
+        CompressedRawFile.write(dataSet, compressedFilename, false, 100, 4);
+
+        CompressedRawFile compressedRawFile = CompressedRawFile.open(compressedFilename);
+        Instances recovered = compressedRawFile.read(new Instances(dataSet, 0), MessageType.HAM, null, 4);
+
+        assertThat(Files.size(Paths.get(compressedFilename)), lessThan(Files.size(Paths.get(rawFilename))));
+        assertThat(compressedRawFile.isSparse(), equalTo(Boolean.FALSE));
+        assertThat(compressedRawFile.getNumberOfBlocks(), equalTo((dataSet.size() + 99) / 100));
+        assertThat(recovered.size(), equalTo(dataSet.size()));
+        for (int i = 0; i < dataSet.size(); i++)
+            assertThat(recovered.get(i).toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+    }
+
+    @Test
+    public void writeAndRead_sparse_shouldPreserveInstancesAsSparseInstances() throws IOException
+    {
+        CompressedRawFile.write(dataSet, compressedFilename, true, 100, 1);
+
+        CompressedRawFile compressedRawFile = CompressedRawFile.open(compressedFilename);
+        Instances recovered = compressedRawFile.read(new Instances(dataSet, 0), MessageType.HAM, null, 2);
+
+        assertThat(compressedRawFile.isSparse(), equalTo(Boolean.TRUE));
+        assertThat(recovered.size(), equalTo(dataSet.size()));
+        for (int i = 0; i < dataSet.size(); i++)
+        {
+            assertThat(recovered.get(i), instanceOf(SparseInstance.class));
+            assertThat(recovered.get(i).toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+        }
+    }
+
+    @Test
+    public void write_fractionalValues_shouldWidenStorage() throws IOException
+    {
+        dataSet.get(0).setValue(0, 0.1);
+
+        CompressedRawFile.write(dataSet, compressedFilename, false, 100, 1);
+        Instances recovered = CompressedRawFile.open(compressedFilename).read(new Instances(dataSet, 0), MessageType.HAM, null, 1);
+
+        assertThat(CompressedRawFile.open(compressedFilename).getStorage(), equalTo(Storage.DOUBLE));
+        assertThat(recovered.get(0).value(0), equalTo(0.1));
+    }
+
+    @Test
+    public void read_givenRecords_shouldReturnThemInOrder() throws IOException
+    {
+        CompressedRawFile.write(dataSet, compressedFilename, false, 64, 1);
+        int[] records = { dataSet.size() - 1, 0, 65, 65, 3 };
+
+        Instances recovered = CompressedRawFile.open(compressedFilename).read(new Instances(dataSet, 0), MessageType.HAM, records, 4);
+
+        assertThat(recovered.size(), equalTo(records.length));
+        for (int i = 0; i < records.length; i++)
+            assertThat(recovered.get(i).toDoubleArray(), equalTo(dataSet.get(records[i]).toDoubleArray()));
+    }
+
+    @Test
+    public void openBatches_shouldStreamEveryInstanceWithGivenWeight() throws IOException
+    {
+        CompressedRawFile.write(dataSet, compressedFilename, false, 64, 1);
+
+        int i = 0;
+        try (InstanceBatchReader batches = CompressedRawFile.open(compressedFilename).openBatches(new Instances(dataSet, 0), MessageType.HAM, 50, 2.0))
+        {
+            while (batches.hasNext())
+            {
+                Instances batch = batches.next();
+                assertThat(batch.size() <= 50, equalTo(Boolean.TRUE));
+                for (int k = 0; k < batch.size(); k++, i++)
+                {
+                    assertThat(batch.get(k).toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+                    assertThat(batch.get(k).weight(), equalTo(2.0));
+                }
+            }
+        }
+
+        assertThat(i, equalTo(dataSet.size()));
+    }
+
+    @Test
+    public void openWriter_instancesAddedOneByOne_shouldWriteSameFileAsWrite() throws IOException
+    {
+        String writtenFilename = "written" + InputOutputHelper.COMPRESSED_RAW_EXTENSION;
+        try
+        {
+            CompressedRawFile.write(dataSet, writtenFilename, true, 64, 3);
+            try (CompressedRawFile.BlockWriter writer = CompressedRawFile.openWriter(compressedFilename, dataSet,
+                CompressedRawFile.open(writtenFilename).getStorage(), true, dataSet.size(), 64, 3))
+            {
+                for (int i = 0; i < dataSet.size(); i++)
+                    writer.add(dataSet.get(i));
+                writer.commit();
+            }
+
+            assertThat(Files.readAllBytes(Paths.get(compressedFilename)), equalTo(Files.readAllBytes(Paths.get(writtenFilename))));
+        }
+        finally
+        {
+            Files.deleteIfExists(Paths.get(writtenFilename));
+        }
+    }
+
+    @Test
+    public void openWriter_missingInstances_shouldThrowExceptionAndLeaveNoFile() throws IOException
+    {
+        try (CompressedRawFile.BlockWriter writer = CompressedRawFile.openWriter(compressedFilename, dataSet, Storage.SHORT, false, dataSet.size(), 64, 1))
+        {
+            writer.add(dataSet.get(0));
+            writer.commit();
+        }
+        catch (IOException e)
+        {
+            assertThat(Files.exists(Paths.get(compressedFilename)), equalTo(Boolean.FALSE));
+            return;
+        }
+
+        throw new AssertionError("Expected the incomplete file not to be committed.");
+    }
+
+    @Test(expected = IOException.class)
+    public void read_corruptedBlock_shouldThrowException() throws IOException
+    {
+        CompressedRawFile.write(dataSet, compressedFilename, false, 100, 1);
+        try (RandomAccessFile file = new RandomAccessFile(compressedFilename, "rw"))
+        {
+            file.seek(file.length() - 8);
+            int value = file.read();
+            file.seek(file.length() - 8);
+            file.write(~value);
+        }
+
+        CompressedRawFile.open(compressedFilename).read(new Instances(dataSet, 0), MessageType.HAM, null, 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void open_corruptedIndex_shouldThrowException() throws IOException
+    {
+        CompressedRawFile.write(dataSet, compressedFilename, false, 100, 1);
+        try (RandomAccessFile file = new RandomAccessFile(compressedFilename, "rw"))
+        {
+            file.seek(40);
+            int value = file.read();
+            file.seek(40);
+            file.write(~value);
+        }
+
+        CompressedRawFile.open(compressedFilename);
+    }
+}
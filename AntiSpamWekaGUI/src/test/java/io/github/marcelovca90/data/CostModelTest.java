@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.MethodConfiguration;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CostModelTest
+{
+    private Path folder;
+    private CostModel costModel;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = Files.createTempDirectory("cost-model");
+        costModel = new CostModel(folder.resolve("cost-model.properties"));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(folder.toFile());
+    }
+
+    @Test
+    public void predict_neverObservedMethod_shouldReturnNaN()
+    {
+        assertTrue(Double.isNaN(costModel.predict(MethodConfiguration.J48, 10, 100)));
+    }
+
+    @Test
+    public void predict_observedDimensions_shouldReturnBlendedObservations()
+    {
+        costModel.record(MethodConfiguration.J48, 10, 100, 100.0);
+        costModel.record(MethodConfiguration.J48, 10, 100, 200.0);
+
+        assertThat(costModel.predict(MethodConfiguration.J48, 10, 100), closeTo(150.0, 1e-9));
+    }
+
+    @Test
+    public void predict_unseenDimensions_shouldExtrapolateLinearly()
+    {
+        costModel.record(MethodConfiguration.J48, 10, 100, 100.0);
+
+        assertThat(costModel.predict(MethodConfiguration.J48, 20, 100), closeTo(200.0, 1e-9));
+        assertTrue(Double.isNaN(costModel.predict(MethodConfiguration.NB, 20, 100)));
+    }
+
+    @Test
+    public void record_notANumber_shouldBeIgnored()
+    {
+        costModel.record(MethodConfiguration.J48, 10, 100, Double.NaN);
+
+        assertThat(costModel.size(), equalTo(0));
+    }
+
+    @Test
+    public void save_thenLoad_shouldRestoreObservations()
+    {
+        costModel.record(MethodConfiguration.J48, 10, 100, 100.0);
+        costModel.save();
+
+        CostModel loaded = new CostModel(costModel.getFile());
+
+        assertThat(loaded.size(), equalTo(1));
+        assertThat(loaded.predict(MethodConfiguration.J48, 10, 100), closeTo(100.0, 1e-9));
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Paths;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.common.PreparedDataSet;
+import io.github.marcelovca90.data.InstanceMatrix.Storage;
+import io.github.marcelovca90.helper.InputOutputHelper;
+import io.github.marcelovca90.helper.MetaHelper;
+import weka.classifiers.Evaluation;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+import weka.core.Utils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InstanceMatrixTest
+{
+    private final InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+
+    private Instances dataSet;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        Instances hamDataSet = ioHelper.loadInstancesFromRawFile(Paths.get("src/test/resources/data-sets-bin/10/ham").toString(), MessageType.HAM);
+        Instances spamDataSet = ioHelper.loadInstancesFromRawFile(Paths.get("src/test/resources/data-sets-bin/10/spam").toString(), MessageType.SPAM);
+        dataSet = ioHelper.mergeInstances(hamDataSet, spamDataSet);
+        dataSet.instance(0).setWeight(2.5);
+    }
+
+    @Test
+    public void of_integralValues_shouldUseShortStorage()
+    {
+        InstanceMatrix matrix = InstanceMatrix.of(new double[] { 0, 1, -2, 300 }, 2, 2);
+
+        assertThat(matrix.getStorage(), equalTo(Storage.SHORT));
+        assertThat(matrix.get(1, 1), equalTo(300.0));
+        assertThat(matrix.getRow(1), equalTo(new double[] { -2, 300 }));
+    }
+
+    @Test
+    public void map_columns_shouldReadValuesWithoutCopyingThem()
+    {
+        DoubleBuffer[] columns = { DoubleBuffer.wrap(new double[] { 0.5, 2 }), DoubleBuffer.wrap(new double[] { 1, 0 }) };
+
+        InstanceMatrix matrix = InstanceMatrix.map(columns, 2);
+        columns[0].put(1, 3);
+
+        assertThat(matrix.isMapped(), equalTo(Boolean.TRUE));
+        assertThat(matrix.getRow(1), equalTo(new double[] { 3, 0 }));
+        assertThat(matrix.estimateBytes(), equalTo(2 * InstanceMatrix.VIEW_OVERHEAD));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void map_columnsOfDifferentLengths_shouldThrowException()
+    {
+        InstanceMatrix.map(new DoubleBuffer[] { DoubleBuffer.wrap(new double[2]), DoubleBuffer.wrap(new double[3]) }, 2);
+    }
+
+    @Test
+    public void of_floatValuesOrMissingValues_shouldUseFloatStorage()
+    {
+        InstanceMatrix matrix = InstanceMatrix.of(new double[] { 0.5, Utils.missingValue(), 1e6, 2 }, 2, 2);
+
+        assertThat(matrix.getStorage(), equalTo(Storage.FLOAT));
+        assertThat(matrix.get(0, 0), equalTo(0.5));
+        assertThat(Utils.isMissingValue(matrix.get(0, 1)), equalTo(true));
+    }
+
+    @Test
+    public void of_arbitraryValues_shouldUseDoubleStorage()
+    {
+        InstanceMatrix matrix = InstanceMatrix.of(new double[] { 0.1, 2 }, 1, 2);
+
+        assertThat(matrix.getStorage(), equalTo(Storage.DOUBLE));
+        assertThat(matrix.get(0, 0), equalTo(0.1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_mismatchingDimensions_shouldThrowException()
+    {
+        InstanceMatrix.of(new double[] { 1, 2, 3 }, 2, 2);
+    }
+
+    @Test
+    public void compact_shouldPreserveInstancesWeightsAndHeaderWithLessHeap()
+    {
+        Instances compacted = InstanceMatrix.compact(dataSet);
+
+        assertThat(compacted.size(), equalTo(dataSet.size()));
+        assertThat(compacted.classIndex(), equalTo(dataSet.classIndex()));
+        assertThat(compacted.equalHeaders(dataSet), equalTo(true));
+        for (int i = 0; i < dataSet.size(); i++)
+        {
+            assertThat(compacted.get(i), instanceOf(MatrixInstance.class));
+            assertThat(compacted.get(i).toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+            assertThat(compacted.get(i).weight(), equalTo(dataSet.get(i).weight()));
+        }
+        assertThat(((MatrixInstance) compacted.get(1)).getMatrix(), sameInstance(((MatrixInstance) compacted.get(0)).getMatrix()));
+        assertThat(new PreparedDataSet(compacted, 0).getEstimatedBytes(), lessThan(new PreparedDataSet(dataSet, 0).getEstimatedBytes()));
+    }
+
+    @Test
+    public void compact_buildAndEvaluate_shouldMatchDenseInstances() throws Exception
+    {
+        Instances compacted = InstanceMatrix.compact(dataSet);
+
+        J48 denseClassifier = new J48();
+        denseClassifier.buildClassifier(dataSet);
+        Evaluation denseEvaluation = new Evaluation(dataSet);
+        denseEvaluation.evaluateModel(denseClassifier, dataSet);
+
+        J48 classifier = new J48();
+        classifier.buildClassifier(compacted);
+        Evaluation evaluation = new Evaluation(compacted);
+        evaluation.evaluateModel(classifier, compacted);
+
+        assertThat(classifier.toString(), equalTo(denseClassifier.toString()));
+        assertThat(evaluation.weightedFMeasure(), equalTo(denseEvaluation.weightedFMeasure()));
+    }
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.helper.InputOutputHelper;
+import io.github.marcelovca90.helper.MetaHelper;
+import weka.classifiers.Evaluation;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.core.Instances;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InstancesViewTest
+{
+    private final InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+
+    private Instances dataSet;
+    private int[] order;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        Instances hamDataSet = ioHelper.loadInstancesFromRawFile(Paths.get("src/test/resources/data-sets-bin/10/ham").toString(), MessageType.HAM);
+        Instances spamDataSet = ioHelper.loadInstancesFromRawFile(Paths.get("src/test/resources/data-sets-bin/10/spam").toString(), MessageType.SPAM);
+        dataSet = ioHelper.mergeInstances(hamDataSet, spamDataSet);
+
+        order = new int[dataSet.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = order.length - 1 - i;
+    }
+
+    @Test
+    public void get_shouldReadThroughPermutationWithoutCopying()
+    {
+        InstancesView view = new InstancesView(dataSet, order, 2, 7);
+
+        assertThat(view.numInstances(), equalTo(5));
+        assertThat(view.classIndex(), equalTo(dataSet.classIndex()));
+        for (int i = 0; i < 5; i++)
+            assertThat(view.instance(i), sameInstance(dataSet.get(order[2 + i])));
+        assertThat(view.isMaterialized(), equalTo(Boolean.FALSE));
+    }
+
+    @Test
+    public void get_withTail_shouldAppendTailAfterPermutedInstances()
+    {
+        Instances tail = ioHelper.createEmptyInstances(dataSet.numAttributes() - 1, 2, 1);
+
+        InstancesView view = new InstancesView(dataSet, order, order.length - 3, order.length, tail);
+
+        assertThat(view.size(), equalTo(6));
+        assertThat(view.get(2), sameInstance(dataSet.get(order[order.length - 1])));
+        for (int i = 0; i < tail.size(); i++)
+            assertThat(view.get(3 + i), sameInstance(tail.get(i)));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_outOfRange_shouldThrowException()
+    {
+        new InstancesView(dataSet, order, 0, 3).get(3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void constructor_invalidRange_shouldThrowException()
+    {
+        new InstancesView(dataSet, order, 5, order.length + 1);
+    }
+
+    @Test
+    public void delete_shouldMaterializeAndLeaveSharedDataSetUntouched()
+    {
+        int size = dataSet.size();
+        InstancesView view = new InstancesView(dataSet, order, 0, 10);
+
+        view.delete(0);
+        view.randomize(new Random(0));
+
+        assertThat(view.isMaterialized(), equalTo(Boolean.TRUE));
+        assertThat(view.size(), equalTo(9));
+        assertThat(dataSet.size(), equalTo(size));
+    }
+
+    @Test
+    public void buildAndEvaluate_shouldMatchCopiedSets() throws Exception
+    {
+        int trainingSetSize = order.length / 2;
+        Instances copiedTrainingSet = new Instances(dataSet, trainingSetSize);
+        Instances copiedTestingSet = new Instances(dataSet, order.length - trainingSetSize);
+        for (int i = 0; i < trainingSetSize; i++)
+            copiedTrainingSet.add(dataSet.get(order[i]));
+        for (int i = trainingSetSize; i < order.length; i++)
+            copiedTestingSet.add(dataSet.get(order[i]));
+
+        InstancesView trainingSet = new InstancesView(dataSet, order, 0, trainingSetSize);
+        InstancesView testingSet = new InstancesView(dataSet, order, trainingSetSize, order.length);
+
+        NaiveBayes copiedClassifier = new NaiveBayes();
+        copiedClassifier.buildClassifier(copiedTrainingSet);
+        Evaluation copiedEvaluation = new Evaluation(copiedTestingSet);
+        copiedEvaluation.evaluateModel(copiedClassifier, copiedTestingSet);
+
+        NaiveBayes classifier = new NaiveBayes();
+        classifier.buildClassifier(trainingSet);
+        Evaluation evaluation = new Evaluation(testingSet);
+        evaluation.evaluateModel(classifier, testingSet);
+
+        assertThat(evaluation.weightedFMeasure(), equalTo(copiedEvaluation.weightedFMeasure()));
+        assertThat(evaluation.correct(), equalTo(copiedEvaluation.correct()));
+        assertThat(trainingSet.isMaterialized(), equalTo(Boolean.FALSE));
+        assertThat(testingSet.isMaterialized(), equalTo(Boolean.FALSE));
+    }
+
+    @Test
+    public void serialize_shouldWritePlainInstances() throws Exception
+    {
+        InstancesView view = new InstancesView(dataSet, order, 0, 10);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(view);
+        }
+        Instances recovered;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            recovered = (Instances) in.readObject();
+        }
+
+        assertThat(recovered.size(), equalTo(10));
+        for (int i = 0; i < 10; i++)
+            assertThat(recovered.get(i).toDoubleArray(), equalTo(dataSet.get(order[i]).toDoubleArray()));
+    }
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.helper.InputOutputHelper;
+import io.github.marcelovca90.helper.MetaHelper;
+import weka.core.Instance;
+import weka.core.Instances;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InterleavedBatchReaderTest
+{
+    private final InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+
+    private final String hamFilename = Paths.get("src/test/resources/data-sets-bin/10/ham").toString();
+    private final String spamFilename = Paths.get("src/test/resources/data-sets-bin/10/spam").toString();
+
+    @Test
+    public void next_shouldInterleaveEveryInstanceOfBothReaders() throws IOException
+    {
+        List<Double> classValues = readClassValues(new Random(42));
+        int hamCount = ioHelper.loadRawFileHeader(hamFilename)[0];
+        int spamCount = ioHelper.loadRawFileHeader(spamFilename)[0];
+
+        assertThat(classValues.size(), equalTo(hamCount + spamCount));
+        assertThat((int) classValues.stream().filter(value -> value == MessageType.HAM.ordinal()).count(), equalTo(hamCount));
+
+        // both classes are spread over the stream, instead of one following the other
+        List<Double> firstHalf = classValues.subList(0, classValues.size() / 2);
+        assertThat(firstHalf.contains((double) MessageType.HAM.ordinal()), equalTo(Boolean.TRUE));
+        assertThat(firstHalf.contains((double) MessageType.SPAM.ordinal()), equalTo(Boolean.TRUE));
+    }
+
+    @Test
+    public void next_sameSeed_shouldRepeatTheSameOrder() throws IOException
+    {
+        assertThat(readClassValues(new Random(7)), equalTo(readClassValues(new Random(7))));
+    }
+
+    private List<Double> readClassValues(Random random) throws IOException
+    {
+        List<Double> classValues = new ArrayList<>();
+        try (InstanceBatchReader batches = new InterleavedBatchReader(ioHelper.openRawFileBatches(hamFilename, MessageType.HAM, 100, 1.0),
+            ioHelper.openRawFileBatches(spamFilename, MessageType.SPAM, 100, 1.0), 128, random))
+        {
+            while (batches.hasNext())
+            {
+                Instances batch = batches.next();
+                assertThat(batch.size() <= 128, equalTo(Boolean.TRUE));
+                for (Instance instance : batch)
+                    classValues.add(instance.classValue());
+            }
+        }
+        return classValues;
+    }
+}
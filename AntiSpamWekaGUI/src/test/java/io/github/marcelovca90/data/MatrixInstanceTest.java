@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MatrixInstanceTest
+{
+    private InstanceMatrix matrix;
+    private Instances dataSet;
+
+    @Before
+    public void setUp()
+    {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("x0"));
+        attributes.add(new Attribute("x1"));
+        attributes.add(new Attribute("class", Arrays.asList("HAM", "SPAM")));
+
+        dataSet = new Instances("data", attributes, 2);
+        dataSet.setClassIndex(2);
+        matrix = InstanceMatrix.of(new double[] { 1, 2, 0, 3, 4, 1 }, 2, 3);
+        matrix.toInstances(dataSet, new double[] { 1.0, 2.0 });
+    }
+
+    @Test
+    public void value_shouldReadFromMatrixRow()
+    {
+        Instance instance = dataSet.get(1);
+
+        assertThat(instance.value(0), equalTo(3.0));
+        assertThat(instance.valueSparse(1), equalTo(4.0));
+        assertThat(instance.classValue(), equalTo(1.0));
+        assertThat(instance.weight(), equalTo(2.0));
+        assertThat(instance.numAttributes(), equalTo(3));
+        assertThat(instance.numValues(), equalTo(3));
+        assertThat(instance.index(2), equalTo(2));
+        assertThat(instance.toString(), equalTo("3,4,SPAM,{2}"));
+    }
+
+    @Test
+    public void setValue_shouldCopyValuesAndLeaveMatrixAndCopiesUntouched()
+    {
+        Instance instance = dataSet.get(0);
+        Instance copy = (Instance) instance.copy();
+
+        instance.setValue(1, 9.0);
+        instance.setClassMissing();
+
+        assertThat(instance.value(1), equalTo(9.0));
+        assertThat(instance.classIsMissing(), equalTo(true));
+        assertThat(copy.value(1), equalTo(2.0));
+        assertThat(matrix.get(0, 1), equalTo(2.0));
+        assertThat(copy.dataset(), sameInstance(dataSet));
+    }
+
+    @Test
+    public void replaceMissingValues_shouldOnlyReplaceMissingValues()
+    {
+        Instance instance = dataSet.get(0);
+        instance.setMissing(0);
+
+        instance.replaceMissingValues(new double[] { 7, 8, 1 });
+
+        assertThat(instance.toDoubleArray(), equalTo(new double[] { 7, 2, 0 }));
+    }
+
+    @Test
+    public void insertAndDeleteAttribute_shouldShiftValues()
+    {
+        Instances copy = new Instances(dataSet);
+
+        copy.insertAttributeAt(new Attribute("x"), 1);
+        assertThat(Utils.isMissingValue(copy.get(0).value(1)), equalTo(true));
+        assertThat(copy.get(0).value(2), equalTo(2.0));
+
+        copy.deleteAttributeAt(1);
+        assertThat(copy.get(0).toDoubleArray(), equalTo(new double[] { 1, 2, 0 }));
+    }
+
+    @Test
+    public void mergeAndCopyValues_shouldReturnDenseInstances()
+    {
+        Instance merged = dataSet.get(0).mergeInstance(dataSet.get(1));
+        Instance copied = dataSet.get(0).copy(new double[] { 5, 6, 1 });
+
+        assertThat(merged.toDoubleArray(), equalTo(new double[] { 1, 2, 0, 3, 4, 1 }));
+        assertThat(copied, instanceOf(DenseInstance.class));
+        assertThat(copied.weight(), equalTo(1.0));
+        assertThat(copied.dataset(), sameInstance(dataSet));
+    }
+
+    @Test
+    public void serialize_shouldWriteDenseInstance() throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(dataSet);
+        }
+        Instances recovered;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            recovered = (Instances) in.readObject();
+        }
+
+        assertThat(recovered.get(1), instanceOf(DenseInstance.class));
+        assertThat(recovered.get(1).toDoubleArray(), equalTo(new double[] { 3, 4, 1 }));
+        assertThat(recovered.get(1).weight(), equalTo(2.0));
+        assertThat(recovered.get(1).dataset(), sameInstance(recovered));
+    }
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.helper.InputOutputHelper;
+import io.github.marcelovca90.helper.MetaHelper;
+import weka.core.Instance;
+import weka.core.Instances;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RawFileBatchReaderTest
+{
+    private final InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+
+    private String filename;
+    private Instances dataSet;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        filename = Paths.get("src/test/resources/data-sets-bin/10/spam").toString();
+        dataSet = ioHelper.loadInstancesFromRawFile(filename, MessageType.SPAM);
+    }
+
+    @Test
+    public void next_smallBatches_shouldReadEveryInstanceInFileOrder() throws IOException
+    {
+        try (InstanceBatchReader batches = ioHelper.openRawFileBatches(filename, MessageType.SPAM, 64, 1.5))
+        {
+            assertThat(batches.getNumberOfInstances(), equalTo(dataSet.size()));
+            assertThat(batches.getNumberOfTotalFeatures(), equalTo(dataSet.numAttributes() - 1));
+
+            int i = 0;
+            while (batches.hasNext())
+            {
+                Instances batch = batches.next();
+                assertThat(batch.size() <= 64, equalTo(Boolean.TRUE));
+                for (Instance instance : batch)
+                {
+                    assertThat(instance.toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+                    assertThat(instance.weight(), equalTo(1.5));
+                    i++;
+                }
+            }
+            assertThat(i, equalTo(dataSet.size()));
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void next_exhausted_shouldThrowException() throws IOException
+    {
+        try (InstanceBatchReader batches = ioHelper.openRawFileBatches(filename, MessageType.SPAM, Integer.MAX_VALUE, 1.0))
+        {
+            batches.next();
+            batches.next();
+        }
+    }
+}
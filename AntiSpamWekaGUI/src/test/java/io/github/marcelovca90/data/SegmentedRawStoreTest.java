@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.data;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.data.InstanceMatrix.Storage;
+import io.github.marcelovca90.helper.InputOutputHelper;
+import io.github.marcelovca90.helper.MetaHelper;
+import weka.core.Instance;
+import weka.core.Instances;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SegmentedRawStoreTest
+{
+    private final InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+
+    private Path folder;
+    private SegmentedRawStore store;
+    private Instances dataSet;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = Files.createTempDirectory("data-set");
+        store = new SegmentedRawStore(folder.resolve("ham" + SegmentedRawStore.EXTENSION).toString());
+        dataSet = ioHelper.loadInstancesFromRawFile(Paths.get("src/test/resources/data-sets-bin/10/ham").toString(), MessageType.HAM);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(folder.toFile());
+    }
+
+    @Test
+    public void append_segments_shouldBeReadAsSingleDataSet() throws IOException
+    {
+        int split = dataSet.size() / 3;
+        store.append(new Instances(dataSet, 0, split), false, 1);
+        store.append(new Instances(dataSet, split, dataSet.size() - split), true, 2);
+
+        Instances recovered = store.read(new Instances(dataSet, 0), MessageType.HAM, null, 2);
+
+        assertThat(store.readManifest().getSegments().size(), equalTo(2));
+        assertThat(store.readManifest().getNumberOfInstances(), equalTo(dataSet.size()));
+        assertThat(recovered.size(), equalTo(dataSet.size()));
+        for (int i = 0; i < dataSet.size(); i++)
+            assertThat(recovered.get(i).toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+    }
+
+    @Test
+    public void read_recordsAcrossSegments_shouldReturnThemInOrder() throws IOException
+    {
+        int split = dataSet.size() / 2;
+        store.append(new Instances(dataSet, 0, split), false, 1);
+        store.append(new Instances(dataSet, split, dataSet.size() - split), false, 1);
+        int[] records = { dataSet.size() - 1, 0, split, split - 1 };
+
+        Instances recovered = store.read(new Instances(dataSet, 0), MessageType.HAM, records, 1);
+
+        assertThat(recovered.size(), equalTo(records.length));
+        for (int i = 0; i < records.length; i++)
+            assertThat(recovered.get(i).toDoubleArray(), equalTo(dataSet.get(records[i]).toDoubleArray()));
+    }
+
+    @Test
+    public void openBatches_segments_shouldStreamEveryInstanceInOrder() throws IOException
+    {
+        int split = dataSet.size() / 2;
+        store.append(new Instances(dataSet, 0, split), false, 1);
+        store.append(new Instances(dataSet, split, dataSet.size() - split), false, 1);
+
+        int i = 0;
+        try (InstanceBatchReader batches = store.openBatches(new Instances(dataSet, 0), MessageType.HAM, 100, 1.0))
+        {
+            assertThat(batches.getNumberOfInstances(), equalTo(dataSet.size()));
+            while (batches.hasNext())
+                for (Instance instance : batches.next())
+                    assertThat(instance.toDoubleArray(), equalTo(dataSet.get(i++).toDoubleArray()));
+        }
+
+        assertThat(i, equalTo(dataSet.size()));
+    }
+
+    @Test
+    public void compactInBackground_concurrentAppendsAndReads_shouldKeepEveryInstanceInOrder() throws Exception
+    {
+        int parts = 6;
+        int partSize = dataSet.size() / parts;
+        for (int p = 0; p < parts / 2; p++)
+            store.append(new Instances(dataSet, p * partSize, partSize), false, 1);
+
+        // the writer keeps appending and readers keep reading while the segments written so far are merged
+        CompletableFuture<Boolean> compaction = store.compactInBackground(2);
+        for (int p = parts / 2; p < parts; p++)
+        {
+            store.append(new Instances(dataSet, p * partSize, partSize), false, 1);
+            Instances snapshot = store.read(new Instances(dataSet, 0), MessageType.HAM, null, 1);
+            assertThat(snapshot.size(), equalTo((p + 1) * partSize));
+        }
+
+        // the merge covers the segments written before it started, and possibly some appended right after
+        assertThat(compaction.get(), equalTo(Boolean.TRUE));
+        assertThat(store.readManifest().getSegments().size(), lessThanOrEqualTo(1 + parts / 2));
+        store.compact(2);
+        assertThat(store.readManifest().getSegments().size(), equalTo(1));
+        assertThat(store.compact(2), equalTo(Boolean.FALSE));
+
+        Instances recovered = store.read(new Instances(dataSet, 0), MessageType.HAM, null, 2);
+        assertThat(recovered.size(), equalTo(parts * partSize));
+        for (int i = 0; i < recovered.size(); i++)
+            assertThat(recovered.get(i).toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+        try (Stream<Path> files = Files.list(store.getDirectory()))
+        {
+            assertThat(files.filter(file -> file.toString().endsWith(CompressedRawFile.EXTENSION)).count(), equalTo(1L));
+        }
+    }
+
+    @Test
+    public void compact_denseAndSparseSegmentsOfDifferentStorages_shouldMergeThemIntoWidestSparseSegment() throws IOException
+    {
+        int split = dataSet.size() / 2;
+        Instances fractional = new Instances(dataSet, split, dataSet.size() - split);
+        fractional.get(0).setValue(0, 0.1);
+        store.append(new Instances(dataSet, 0, split), false, 1);
+        store.append(fractional, true, 2);
+
+        assertThat(store.compact(2), equalTo(Boolean.TRUE));
+
+        CompressedRawFile merged = CompressedRawFile.open(store.getDirectory().resolve(store.readManifest().getSegments().get(0)).toString());
+        Instances recovered = store.read(new Instances(dataSet, 0), MessageType.HAM, null, 2);
+        assertThat(store.readManifest().getSegments().size(), equalTo(1));
+        assertThat(merged.isSparse(), equalTo(Boolean.TRUE));
+        assertThat(merged.getStorage(), equalTo(Storage.DOUBLE));
+        assertThat(recovered.size(), equalTo(dataSet.size()));
+        for (int i = 0; i < split; i++)
+            assertThat(recovered.get(i).toDoubleArray(), equalTo(dataSet.get(i).toDoubleArray()));
+        for (int i = split; i < dataSet.size(); i++)
+            assertThat(recovered.get(i).toDoubleArray(), equalTo(fractional.get(i - split).toDoubleArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void append_differentAttributes_shouldThrowException() throws IOException
+    {
+        store.append(dataSet, false, 1);
+
+        Instances narrower = new Instances(dataSet);
+        narrower.deleteAttributeAt(0);
+        store.append(narrower, false, 1);
+    }
+}
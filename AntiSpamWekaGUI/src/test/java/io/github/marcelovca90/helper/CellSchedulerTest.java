@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.DataSetMetadata;
+import io.github.marcelovca90.common.ExperimentCell;
+import io.github.marcelovca90.common.MethodConfiguration;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CellSchedulerTest
+{
+    private final DataSetMetadata metadata = new DataSetMetadata("/some/folder/DATA_SET/STAT_METHOD/100", 10, 20);
+
+    private final AtomicInteger runningCells = new AtomicInteger();
+    private final AtomicInteger maximumRunningCells = new AtomicInteger();
+    private final List<ExperimentCell> startedCells = Collections.synchronizedList(new ArrayList<>());
+    private final List<ExperimentCell> finishedCells = new ArrayList<>();
+
+    @Mock
+    private MemoryMXBean memoryBeanMock;
+
+    @Test
+    public void execute_cheapCells_shouldRunConcurrently() throws Exception
+    {
+        List<ExperimentCell> cells = buildCells(4, 100);
+        CellScheduler scheduler = new CellScheduler(4, 10_000, ManagementFactory.getMemoryMXBean());
+
+        int failedCells = scheduler.execute(cells, this::simulate, finishedCells::add);
+
+        assertThat(failedCells, equalTo(0));
+        assertThat(finishedCells, containsInAnyOrder(cells.toArray()));
+        assertThat(maximumRunningCells.get(), equalTo(4));
+    }
+
+    @Test
+    public void execute_cellsExceedingBudget_shouldRunOneAtATime() throws Exception
+    {
+        List<ExperimentCell> cells = buildCells(3, 100);
+        CellScheduler scheduler = new CellScheduler(3, 150, ManagementFactory.getMemoryMXBean());
+
+        scheduler.execute(cells, this::simulate, finishedCells::add);
+
+        assertThat(finishedCells, equalTo(cells));
+        assertThat(maximumRunningCells.get(), equalTo(1));
+    }
+
+    @Test
+    public void execute_cellsExceedingHeadroom_shouldRunOneAtATime() throws Exception
+    {
+        when(memoryBeanMock.getHeapMemoryUsage()).thenReturn(new MemoryUsage(0, 950, 1000, 1000));
+
+        List<ExperimentCell> cells = buildCells(3, 100);
+        CellScheduler scheduler = new CellScheduler(3, 10_000, memoryBeanMock);
+
+        scheduler.execute(cells, this::simulate, finishedCells::add);
+
+        assertThat(finishedCells, equalTo(cells));
+        assertThat(maximumRunningCells.get(), equalTo(1));
+    }
+
+    @Test
+    public void execute_expensiveCellWaiting_shouldBeOvertakenByCheapCells() throws Exception
+    {
+        ExperimentCell firstExpensiveCell = new ExperimentCell(MethodConfiguration.NB, metadata, 800);
+        ExperimentCell secondExpensiveCell = new ExperimentCell(MethodConfiguration.NB, metadata, 800);
+        ExperimentCell firstCheapCell = new ExperimentCell(MethodConfiguration.NB, metadata, 50);
+        ExperimentCell secondCheapCell = new ExperimentCell(MethodConfiguration.NB, metadata, 50);
+        List<ExperimentCell> cells = Arrays.asList(firstExpensiveCell, secondExpensiveCell, firstCheapCell, secondCheapCell);
+        CellScheduler scheduler = new CellScheduler(3, 1000, ManagementFactory.getMemoryMXBean());
+
+        scheduler.execute(cells, this::simulate, finishedCells::add);
+
+        assertThat(finishedCells, containsInAnyOrder(cells.toArray()));
+        assertThat(startedCells.get(startedCells.size() - 1), equalTo(secondExpensiveCell));
+        assertThat(maximumRunningCells.get(), equalTo(3));
+    }
+
+    @Test
+    public void execute_failingCell_shouldExecuteRemainingCells() throws Exception
+    {
+        List<ExperimentCell> cells = buildCells(3, 100);
+        CellScheduler scheduler = new CellScheduler(1, 10_000, ManagementFactory.getMemoryMXBean());
+
+        int failedCells = scheduler.execute(cells, cell ->
+        {
+            if (cell == cells.get(0))
+                throw new IllegalStateException("failure");
+            simulate(cell);
+        }, finishedCells::add);
+
+        assertThat(failedCells, equalTo(1));
+        assertThat(finishedCells, equalTo(cells));
+        assertThat(startedCells.size(), equalTo(2));
+    }
+
+    private List<ExperimentCell> buildCells(int amount, long dataSetBytes)
+    {
+        List<ExperimentCell> cells = new ArrayList<>();
+        for (int i = 0; i < amount; i++)
+            cells.add(new ExperimentCell(MethodConfiguration.NB, metadata, dataSetBytes));
+        return cells;
+    }
+
+    private void simulate(ExperimentCell cell) throws InterruptedException
+    {
+        startedCells.add(cell);
+        maximumRunningCells.accumulateAndGet(runningCells.incrementAndGet(), Math::max);
+        Thread.sleep(200);
+        runningCells.decrementAndGet();
+    }
+}
@@ -0,0 +1,551 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.Constants.MessageType;
+import io.github.marcelovca90.common.Constants.SamplingMode;
+import io.github.marcelovca90.common.DataSetMetadata;
+import io.github.marcelovca90.common.PreparedDataSet;
+import io.github.marcelovca90.data.ColumnarDataSet;
+import io.github.marcelovca90.data.InstanceBatchReader;
+import io.github.marcelovca90.data.InstanceMatrix;
+import io.github.marcelovca90.data.MatrixInstance;
+import io.github.marcelovca90.data.SegmentedRawStore;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DataSetHelperTest
+{
+    private final DataSetHelper dataSetHelper = new DataSetHelper();
+
+    private DataSetMetadata metadata;
+
+    @Before
+    public void setUp()
+    {
+        metadata = new DataSetMetadata("src/test/resources/data-sets-bin/10", 6563, 1407);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        File[] columnarFiles = Paths.get(metadata.getFolder()).toFile().listFiles((f, p) -> p.endsWith(ColumnarDataSet.EXTENSION)
+            || p.endsWith(ColumnarDataSet.EXTENSION + DataSetHelper.LOCK_EXTENSION));
+        for (File columnarFile : columnarFiles)
+            Files.deleteIfExists(columnarFile.toPath());
+    }
+
+    @Test
+    public void prepare_sameFolderAndSettings_shouldReturnSharedDataSet() throws Exception
+    {
+        PreparedDataSet first = dataSetHelper.prepare(metadata, false, false, true);
+        PreparedDataSet second = dataSetHelper.prepare(metadata, false, false, true);
+
+        assertThat(first, notNullValue());
+        assertThat(second, sameInstance(first));
+        assertThat(dataSetHelper.getCachedCount(), equalTo(1));
+        assertThat(dataSetHelper.getCachedBytes(), equalTo(first.getEstimatedBytes()));
+    }
+
+    @Test
+    public void prepare_differentSettings_shouldReturnDifferentDataSets() throws Exception
+    {
+        PreparedDataSet unbalanced = dataSetHelper.prepare(metadata, false, false, true);
+        PreparedDataSet balanced = dataSetHelper.prepare(metadata, false, true, true);
+
+        assertThat(balanced, not(sameInstance(unbalanced)));
+        assertThat(dataSetHelper.getCachedCount(), equalTo(2));
+    }
+
+    @Test
+    public void prepare_balanceByWeight_shouldKeepOneCopyOfEachInstance() throws Exception
+    {
+        Instances replicated = dataSetHelper.prepare(metadata, false, false, true).getDataSet();
+        Instances weighted = dataSetHelper.prepare(metadata, false, false, true, true, 1).getDataSet();
+        int[] dimensions = dataSetHelper.estimateDimensions(metadata, true);
+
+        double[] classWeights = new double[2];
+        weighted.forEach(instance -> classWeights[(int) instance.classValue()] += instance.weight());
+
+        assertThat(weighted.size(), lessThan(replicated.size()));
+        assertThat(weighted.size(), equalTo(dimensions[0]));
+        assertThat(classWeights[0], closeTo(classWeights[1], 1e-6));
+        assertThat(weighted.sumOfWeights(), closeTo(replicated.size(), 1e-6));
+    }
+
+    @Test
+    public void prepare_differentSettings_shouldKeepColumnarCacheOfEach() throws Exception
+    {
+        // the shared store always writes the columnar cache, even for data sets that would be kept sparse on the heap
+        for (boolean balanceClasses : new boolean[] { false, true })
+        {
+            DataSetHelper sharedDataSetHelper = new DataSetHelper();
+            sharedDataSetHelper.setSharedStore(true);
+            sharedDataSetHelper.prepare(metadata, false, balanceClasses, true);
+        }
+
+        // neither setting overwrote the cache of the other, so both are still valid for their own settings
+        long rawFilesFingerprint = dataSetHelper.fingerprintRawFiles(metadata.getFolder());
+        assertThat(ColumnarDataSet.matches(Paths.get(metadata.getFolder(), ColumnarDataSet.getFilename(false, false, false)).toString(), false, false, false,
+            rawFilesFingerprint), equalTo(Boolean.TRUE));
+        assertThat(ColumnarDataSet.matches(Paths.get(metadata.getFolder(), ColumnarDataSet.getFilename(false, true, false)).toString(), false, true, false,
+            rawFilesFingerprint), equalTo(Boolean.TRUE));
+    }
+
+    @Test
+    public void prepare_sharedStore_shouldMapSameDataSetOffHeap() throws Exception
+    {
+        Instances heapDataSet = dataSetHelper.prepare(metadata, false, true, true).getDataSet();
+        Files.deleteIfExists(Paths.get(metadata.getFolder(), ColumnarDataSet.getFilename(false, true, false)));
+        DataSetHelper sharedDataSetHelper = new DataSetHelper();
+        sharedDataSetHelper.setSharedStore(true);
+
+        PreparedDataSet mapped = sharedDataSetHelper.prepare(metadata, false, true, true);
+
+        assertThat(Files.exists(Paths.get(metadata.getFolder(), ColumnarDataSet.getFilename(false, true, false))), equalTo(Boolean.TRUE));
+        assertThat(mapped.getDataSet().get(0), instanceOf(MatrixInstance.class));
+        assertThat(((MatrixInstance) mapped.getDataSet().get(0)).getMatrix().isMapped(), equalTo(Boolean.TRUE));
+        assertThat(mapped.getEstimatedBytes(), equalTo(mapped.getDataSet().size() * InstanceMatrix.VIEW_OVERHEAD));
+        assertThat(mapped.getDataSet().size(), equalTo(heapDataSet.size()));
+        for (int i = 0; i < heapDataSet.size(); i++)
+        {
+            assertThat(mapped.getDataSet().get(i).toDoubleArray(), equalTo(heapDataSet.get(i).toDoubleArray()));
+            assertThat(mapped.getDataSet().get(i).weight(), equalTo(heapDataSet.get(i).weight()));
+        }
+    }
+
+    @Test
+    public void prepare_exceededBudget_shouldNotCacheDataSet() throws Exception
+    {
+        dataSetHelper.setMaximumBytes(0);
+
+        PreparedDataSet first = dataSetHelper.prepare(metadata, false, false, false);
+        PreparedDataSet second = dataSetHelper.prepare(metadata, false, false, false);
+
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getDataSet().size(), equalTo(first.getDataSet().size()));
+        assertThat(dataSetHelper.getCachedCount(), equalTo(0));
+    }
+
+    @Test
+    public void estimateDimensions_shouldMatchPreparedDataSet() throws Exception
+    {
+        int[] dimensions = dataSetHelper.estimateDimensions(metadata);
+
+        PreparedDataSet preparedDataSet = dataSetHelper.prepare(metadata, false, false, true);
+
+        assertThat(dimensions[0], equalTo(preparedDataSet.getDataSet().numInstances()));
+        assertThat(dimensions[1], equalTo(preparedDataSet.getNumberOfTotalFeatures()));
+    }
+
+    @Test
+    public void stratify_shouldKeepClassProportionsInEveryFold() throws Exception
+    {
+        Instances dataSet = dataSetHelper.prepare(metadata, false, false, true).getDataSet();
+        int[] order = IntStream.range(0, dataSet.numInstances()).toArray();
+
+        int[] foldOf = dataSetHelper.stratify(dataSet, order, 5);
+
+        int[][] countsPerFold = new int[5][dataSet.numClasses()];
+        for (int i = 0; i < order.length; i++)
+            countsPerFold[foldOf[i]][(int) dataSet.get(order[i]).classValue()]++;
+
+        for (int fold = 1; fold < 5; fold++)
+            for (int classIndex = 0; classIndex < dataSet.numClasses(); classIndex++)
+                assertThat(Math.abs(countsPerFold[fold][classIndex] - countsPerFold[0][classIndex]), lessThanOrEqualTo(1));
+    }
+
+    @Test
+    public void sample_stratified_shouldKeepClassProportions()
+    {
+        int[][] records = dataSetHelper.sample(300, 100, 40, SamplingMode.STRATIFIED, new Random(1));
+
+        assertThat(records[0].length, equalTo(30));
+        assertThat(records[1].length, equalTo(10));
+        assertThat(Arrays.stream(records[0]).distinct().sorted().toArray(), equalTo(records[0]));
+        assertThat(records[0][records[0].length - 1], lessThan(300));
+    }
+
+    @Test
+    public void sample_balanced_shouldDrawSameAmountOfEachClass()
+    {
+        int[][] records = dataSetHelper.sample(300, 15, 40, SamplingMode.BALANCED, new Random(1));
+
+        assertThat(records[0].length, equalTo(15));
+        assertThat(records[1], equalTo(IntStream.range(0, 15).toArray()));
+    }
+
+    @Test
+    public void sample_random_shouldDrawDistinctRecordsOfBothClasses()
+    {
+        int[][] records = dataSetHelper.sample(300, 100, 400, SamplingMode.RANDOM, new Random(1));
+        int[][] someRecords = dataSetHelper.sample(300, 100, 50, SamplingMode.RANDOM, new Random(1));
+
+        assertThat(records[0], equalTo(IntStream.range(0, 300).toArray()));
+        assertThat(records[1], equalTo(IntStream.range(0, 100).toArray()));
+        assertThat(someRecords[0].length + someRecords[1].length, equalTo(50));
+        assertThat(Arrays.stream(someRecords[1]).distinct().sorted().toArray(), equalTo(someRecords[1]));
+        assertThat(someRecords[1].length == 0 || someRecords[1][someRecords[1].length - 1] < 100, equalTo(Boolean.TRUE));
+    }
+
+    @Test
+    public void prepare_sampleSize_shouldReadOnlySampledInstances() throws Exception
+    {
+        Instances dataSet = dataSetHelper.prepare(metadata, false, false, true).getDataSet();
+        DataSetHelper samplingDataSetHelper = new DataSetHelper();
+        samplingDataSetHelper.setSampling(100, SamplingMode.STRATIFIED);
+
+        Instances sample = samplingDataSetHelper.prepare(metadata, false, false, true, true, 1).getDataSet();
+
+        assertThat(sample.size(), equalTo(samplingDataSetHelper.estimateDimensions(metadata, true)[0]));
+        assertThat(sample.size(), lessThanOrEqualTo(100));
+        assertThat(sample.numAttributes(), equalTo(dataSet.numAttributes()));
+        assertThat(sample.sumOfWeights(), closeTo(2 * Math.max(sample.attributeStats(sample.classIndex()).nominalCounts[0],
+            sample.attributeStats(sample.classIndex()).nominalCounts[1]), 1e-6));
+    }
+
+    @Test
+    public void pack_mostlyZeroValues_shouldKeepDataSetSparse()
+    {
+        Instances dataSet = MetaHelper.getInputOutputHelper().createEmptyInstances(200, 30, 20);
+        dataSet.get(0).setValue(3, 0.25);
+
+        Instances packed = dataSetHelper.pack(dataSet);
+
+        assertThat(packed.get(0), instanceOf(SparseInstance.class));
+        assertThat(packed.size(), equalTo(dataSet.size()));
+        assertThat(packed.get(0).value(3), equalTo(0.25));
+    }
+
+    @Test
+    public void pack_mostlyNonZeroValues_shouldCompactDataSetIntoMatrix()
+    {
+        Instances sparseDataSet = MetaHelper.getInputOutputHelper().createEmptyInstances(20, 0, 0);
+        for (int i = 0; i < 50; i++)
+        {
+            double[] values = new double[sparseDataSet.numAttributes()];
+            for (int j = 0; j < values.length - 1; j++)
+                values[j] = i + j + 1;
+            values[values.length - 1] = i % 2;
+            sparseDataSet.add(new SparseInstance(1.0, values));
+        }
+
+        Instances packed = dataSetHelper.pack(sparseDataSet);
+
+        assertThat(packed.get(0), instanceOf(MatrixInstance.class));
+        assertThat(packed.get(0).toDoubleArray(), equalTo(sparseDataSet.get(0).toDoubleArray()));
+    }
+
+    @Test
+    public void prepare_sparseRawFiles_shouldMatchDenseRawFiles() throws Exception
+    {
+        Path folder = Files.createTempDirectory("data-set");
+        try
+        {
+            InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+            for (MessageType messageType : MessageType.values())
+            {
+                String denseFilename = Paths.get(metadata.getFolder(), messageType.name().toLowerCase()).toString();
+                String sparseFilename = folder.resolve(messageType.name().toLowerCase() + InputOutputHelper.SPARSE_RAW_EXTENSION).toString();
+                ioHelper.saveInstancesToSparseRawFile(ioHelper.loadInstancesFromRawFile(denseFilename, messageType), sparseFilename);
+            }
+            DataSetMetadata sparseMetadata = new DataSetMetadata(folder.toString(), 0, 0);
+
+            Instances dense = dataSetHelper.prepare(metadata, false, false, true).getDataSet();
+            Instances sparse = dataSetHelper.prepare(sparseMetadata, false, false, true).getDataSet();
+
+            assertThat(dataSetHelper.estimateDimensions(sparseMetadata), equalTo(dataSetHelper.estimateDimensions(metadata)));
+            assertThat(sparse.size(), equalTo(dense.size()));
+            for (int i = 0; i < dense.size(); i++)
+                assertThat(sparse.get(i).toDoubleArray(), equalTo(dense.get(i).toDoubleArray()));
+        }
+        finally
+        {
+            FileUtils.deleteDirectory(folder.toFile());
+        }
+    }
+
+    @Test
+    public void prepare_compressedRawFiles_shouldMatchDenseRawFiles() throws Exception
+    {
+        Path folder = Files.createTempDirectory("data-set");
+        try
+        {
+            InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+            for (MessageType messageType : MessageType.values())
+            {
+                String denseFilename = Paths.get(metadata.getFolder(), messageType.name().toLowerCase()).toString();
+                String compressedFilename = folder.resolve(messageType.name().toLowerCase() + InputOutputHelper.COMPRESSED_RAW_EXTENSION).toString();
+                ioHelper.saveInstancesToCompressedRawFile(ioHelper.loadInstancesFromRawFile(denseFilename, messageType), compressedFilename, false, 2);
+            }
+            DataSetMetadata compressedMetadata = new DataSetMetadata(folder.toString(), 0, 0);
+
+            Instances dense = dataSetHelper.prepare(metadata, false, false, true).getDataSet();
+            Instances compressed = dataSetHelper.prepare(compressedMetadata, false, false, true).getDataSet();
+
+            assertThat(dataSetHelper.estimateDimensions(compressedMetadata), equalTo(dataSetHelper.estimateDimensions(metadata)));
+            assertThat(compressed.size(), equalTo(dense.size()));
+            for (int i = 0; i < dense.size(); i++)
+                assertThat(compressed.get(i).toDoubleArray(), equalTo(dense.get(i).toDoubleArray()));
+
+            // a sample only inflates the blocks holding its records, yet reads the same records
+            DataSetHelper samplingDataSetHelper = new DataSetHelper();
+            samplingDataSetHelper.setSampling(100, SamplingMode.STRATIFIED);
+            DataSetHelper denseSamplingDataSetHelper = new DataSetHelper();
+            denseSamplingDataSetHelper.setSampling(100, SamplingMode.STRATIFIED);
+            Instances compressedSample = samplingDataSetHelper.prepare(compressedMetadata, false, false, true).getDataSet();
+            Instances denseSample = denseSamplingDataSetHelper.prepare(metadata, false, false, true).getDataSet();
+            assertThat(compressedSample.size(), equalTo(denseSample.size()));
+        }
+        finally
+        {
+            FileUtils.deleteDirectory(folder.toFile());
+        }
+    }
+
+    @Test
+    public void fingerprintRawFiles_compactedSegments_shouldKeepFingerprintUntilAppended() throws Exception
+    {
+        Path folder = Files.createTempDirectory("data-set");
+        try
+        {
+            InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+            for (MessageType messageType : MessageType.values())
+            {
+                Instances dataSet = ioHelper.loadInstancesFromRawFile(Paths.get(metadata.getFolder(), messageType.name().toLowerCase()).toString(), messageType);
+                String storeFilename = folder.resolve(messageType.name().toLowerCase() + InputOutputHelper.SEGMENTED_RAW_EXTENSION).toString();
+                ioHelper.appendInstancesToSegmentedRawStore(new Instances(dataSet, 0, 10), storeFilename, false, 1);
+                ioHelper.appendInstancesToSegmentedRawStore(new Instances(dataSet, 10, 10), storeFilename, false, 1);
+            }
+            long appended = dataSetHelper.fingerprintRawFiles(folder.toString());
+
+            // compaction rewrites the segments and the manifest, but not the data set they make up
+            for (MessageType messageType : MessageType.values())
+                new SegmentedRawStore(folder.resolve(messageType.name().toLowerCase() + InputOutputHelper.SEGMENTED_RAW_EXTENSION).toString()).compact(1);
+            assertThat(dataSetHelper.fingerprintRawFiles(folder.toString()), equalTo(appended));
+
+            // appending does change it
+            Instances hamDataSet = ioHelper.loadInstancesFromRawFile(Paths.get(metadata.getFolder(), "ham").toString(), MessageType.HAM);
+            ioHelper.appendInstancesToSegmentedRawStore(new Instances(hamDataSet, 20, 10),
+                folder.resolve("ham" + InputOutputHelper.SEGMENTED_RAW_EXTENSION).toString(), false, 1);
+            assertThat(dataSetHelper.fingerprintRawFiles(folder.toString()), not(equalTo(appended)));
+        }
+        finally
+        {
+            FileUtils.deleteDirectory(folder.toFile());
+        }
+    }
+
+    @Test
+    public void prepare_appendedSegments_shouldRebuildStaleColumnarCache() throws Exception
+    {
+        Path folder = Files.createTempDirectory("data-set");
+        try
+        {
+            InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+            Instances[] dataSets = new Instances[MessageType.values().length];
+            for (MessageType messageType : MessageType.values())
+            {
+                dataSets[messageType.ordinal()] = ioHelper.loadInstancesFromRawFile(Paths.get(metadata.getFolder(), messageType.name().toLowerCase()).toString(),
+                    messageType);
+                String storeFilename = folder.resolve(messageType.name().toLowerCase() + InputOutputHelper.SEGMENTED_RAW_EXTENSION).toString();
+                ioHelper.appendInstancesToSegmentedRawStore(new Instances(dataSets[messageType.ordinal()], 0, 10), storeFilename, false, 1);
+            }
+            DataSetMetadata segmentedMetadata = new DataSetMetadata(folder.toString(), 0, 0);
+
+            // the shared store always writes the columnar cache, even for data sets that would be kept sparse on the heap
+            DataSetHelper sharedDataSetHelper = new DataSetHelper();
+            sharedDataSetHelper.setSharedStore(true);
+            Instances initial = sharedDataSetHelper.prepare(segmentedMetadata, false, false, true, true, 1).getDataSet();
+            assertThat(Files.exists(folder.resolve(ColumnarDataSet.getFilename(false, false, true))), equalTo(Boolean.TRUE));
+
+            // nightly deltas are appended as new segments, and the next load reads them along with the others
+            for (MessageType messageType : MessageType.values())
+            {
+                String storeFilename = folder.resolve(messageType.name().toLowerCase() + InputOutputHelper.SEGMENTED_RAW_EXTENSION).toString();
+                Instances delta = dataSets[messageType.ordinal()];
+                ioHelper.appendInstancesToSegmentedRawStore(new Instances(delta, 10, delta.size() - 10), storeFilename, false, 1);
+            }
+            DataSetHelper restartedDataSetHelper = new DataSetHelper();
+            restartedDataSetHelper.setSharedStore(true);
+            Instances grown = restartedDataSetHelper.prepare(segmentedMetadata, false, false, true, true, 1).getDataSet();
+            Instances dense = dataSetHelper.prepare(metadata, false, false, true, true, 1).getDataSet();
+
+            assertThat(initial.size(), equalTo(20));
+            assertThat(dataSetHelper.estimateDimensions(segmentedMetadata), equalTo(dataSetHelper.estimateDimensions(metadata)));
+            assertThat(grown.size(), equalTo(dense.size()));
+            for (int i = 0; i < dense.size(); i++)
+                assertThat(grown.get(i).toDoubleArray(), equalTo(dense.get(i).toDoubleArray()));
+        }
+        finally
+        {
+            FileUtils.deleteDirectory(folder.toFile());
+        }
+    }
+
+    @Test
+    public void prepare_rewrittenRawFiles_shouldRebuildStaleColumnarCache() throws Exception
+    {
+        Path folder = Files.createTempDirectory("data-set");
+        try
+        {
+            InputOutputHelper ioHelper = MetaHelper.getInputOutputHelper();
+            Instances[] dataSets = new Instances[MessageType.values().length];
+            for (MessageType messageType : MessageType.values())
+            {
+                dataSets[messageType.ordinal()] = ioHelper.loadInstancesFromRawFile(Paths.get(metadata.getFolder(), messageType.name().toLowerCase()).toString(),
+                    messageType);
+                String compressedFilename = folder.resolve(messageType.name().toLowerCase() + InputOutputHelper.COMPRESSED_RAW_EXTENSION).toString();
+                ioHelper.saveInstancesToCompressedRawFile(new Instances(dataSets[messageType.ordinal()], 0, 10), compressedFilename, false, 1);
+            }
+            DataSetMetadata compressedMetadata = new DataSetMetadata(folder.toString(), 0, 0);
+            DataSetHelper sharedDataSetHelper = new DataSetHelper();
+            sharedDataSetHelper.setSharedStore(true);
+            Instances initial = sharedDataSetHelper.prepare(compressedMetadata, false, false, true, true, 1).getDataSet();
+            long initialFingerprint = dataSetHelper.fingerprintRawFiles(folder.toString());
+
+            // the raw files are rewritten in place, with more instances, and the next load reads them instead of the cached ones
+            for (MessageType messageType : MessageType.values())
+            {
+                String compressedFilename = folder.resolve(messageType.name().toLowerCase() + InputOutputHelper.COMPRESSED_RAW_EXTENSION).toString();
+                ioHelper.saveInstancesToCompressedRawFile(new Instances(dataSets[messageType.ordinal()], 0, 20), compressedFilename, false, 1);
+            }
+            DataSetHelper restartedDataSetHelper = new DataSetHelper();
+            restartedDataSetHelper.setSharedStore(true);
+            Instances rewritten = restartedDataSetHelper.prepare(compressedMetadata, false, false, true, true, 1).getDataSet();
+
+            assertThat(initial.size(), equalTo(20));
+            assertThat(dataSetHelper.fingerprintRawFiles(folder.toString()), not(equalTo(initialFingerprint)));
+            assertThat(rewritten.size(), equalTo(40));
+        }
+        finally
+        {
+            FileUtils.deleteDirectory(folder.toFile());
+        }
+    }
+
+    @Test
+    public void estimateDimensions_missingFolder_shouldReturnZeros()
+    {
+        int[] dimensions = dataSetHelper.estimateDimensions(new DataSetMetadata("src/test/resources/missing", 0, 0));
+
+        assertThat(dimensions[0], equalTo(0));
+        assertThat(dimensions[1], equalTo(0));
+    }
+
+    @Test
+    public void estimateBytes_notPreparedYet_shouldBoundPreparedDataSet() throws Exception
+    {
+        long estimatedBytes = dataSetHelper.estimateBytes(metadata, false, false);
+
+        PreparedDataSet preparedDataSet = dataSetHelper.prepare(metadata, false, false, true);
+
+        assertThat(estimatedBytes, greaterThanOrEqualTo(preparedDataSet.getEstimatedBytes()));
+        assertThat(dataSetHelper.estimateBytes(metadata, false, false), equalTo(preparedDataSet.getEstimatedBytes()));
+    }
+
+    @Test
+    public void estimateBytes_missingFolder_shouldReturnZero()
+    {
+        DataSetMetadata missingMetadata = new DataSetMetadata("src/test/resources/data-sets-bin/missing", 0, 0);
+
+        assertThat(dataSetHelper.estimateBytes(missingMetadata, false, false), equalTo(0L));
+    }
+
+    @Test
+    public void prepare_givenThreads_shouldReturnLeasedThreadsToBudget() throws Exception
+    {
+        ThreadBudgetHelper threadBudgetHelper = MetaHelper.getThreadBudgetHelper();
+
+        PreparedDataSet preparedDataSet = dataSetHelper.prepare(metadata, true, false, true, 2);
+
+        assertThat(preparedDataSet.getNumberOfActualFeatures(), lessThanOrEqualTo(preparedDataSet.getNumberOfTotalFeatures()));
+        assertThat(threadBudgetHelper.getAvailableThreads(), equalTo(threadBudgetHelper.getAvailableCores()));
+    }
+
+    @Test
+    public void openBatches_rawFiles_shouldInterleaveClassesMatchedByWeight() throws Exception
+    {
+        double[] classWeights = new double[2];
+        int[] classCounts = new int[2];
+        int numberOfInstances;
+        try (InstanceBatchReader batches = dataSetHelper.openBatches(metadata, false, true, true, 100, new Random(42)))
+        {
+            numberOfInstances = batches.getNumberOfInstances();
+            while (batches.hasNext())
+            {
+                Instances batch = batches.next();
+                assertThat(batch.size(), lessThanOrEqualTo(100));
+                batch.forEach(instance -> classWeights[(int) instance.classValue()] += instance.weight());
+                batch.forEach(instance -> classCounts[(int) instance.classValue()]++);
+            }
+        }
+
+        assertThat(classCounts[0] + classCounts[1], equalTo(numberOfInstances));
+        assertThat(classWeights[0], closeTo(classWeights[1], 1e-6));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void openBatches_shrinkWithoutColumnarCache_shouldThrowException() throws Exception
+    {
+        dataSetHelper.openBatches(metadata, true, false, true, 100, new Random(42));
+    }
+
+    @Test
+    public void clear_shouldReleaseAllDataSets() throws Exception
+    {
+        dataSetHelper.prepare(metadata, false, false, true);
+
+        dataSetHelper.clear();
+
+        assertThat(dataSetHelper.getCachedCount(), equalTo(0));
+        assertThat(dataSetHelper.getCachedBytes(), equalTo(0L));
+    }
+}
@@ -22,6 +22,8 @@
 package io.github.marcelovca90.helper;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -30,9 +32,13 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.apache.commons.compress.utils.Sets;
@@ -44,6 +50,10 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import io.github.marcelovca90.common.DataSetMetadata;
 import io.github.marcelovca90.common.MethodConfiguration;
+import io.github.marcelovca90.data.CheckpointJournal;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.functions.VotedPerceptron;
+import weka.core.Instances;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ExecutionHelperTest
@@ -51,6 +61,7 @@ public class ExecutionHelperTest
     private static String[] args;
     private static Set<DataSetMetadata> metadata;
     private static List<MethodConfiguration> methods;
+    private static CheckpointJournal checkpointJournal;
 
     private ExperimentHelper experimentHelper = new ExperimentHelper();
     private InputOutputHelper inputOutputHelper = new InputOutputHelper();
@@ -69,6 +80,8 @@ public class ExecutionHelperTest
         metadata = Sets.newHashSet(metadataMock);
 
         methods = Arrays.asList(MethodConfiguration.SPEGASOS);
+
+        checkpointJournal = ExecutionHelper.checkpointJournal;
     }
 
     @AfterClass
@@ -76,13 +89,39 @@ public class ExecutionHelperTest
     {
         MetaHelper.reset();
 
+        ExecutionHelper.checkpointJournal = checkpointJournal;
+
         File folder = Paths.get("src/test/resources/data-sets-bin/10").toFile();
 
         Arrays
-            .stream(folder.listFiles((f, p) -> p.endsWith(".arff") || p.endsWith(".csv") || p.endsWith(".model")))
+            .stream(folder.listFiles((f, p) -> p.endsWith(".arff") || p.endsWith(".columnar") || p.endsWith(".csv") || p.endsWith(".model")))
             .forEach(File::delete);
     }
 
+    @Test
+    public void adaptToWeights_balanceByWeight_shouldResampleOnlyForLearnersIgnoringWeights() throws Exception
+    {
+        Instances trainingSet = MetaHelper.getInputOutputHelper().createEmptyInstances(3, 6, 2);
+        trainingSet.forEach(instance -> instance.setWeight(instance.classValue() == 0 ? 1.0 : 3.0));
+
+        ExecutionHelper.balanceByWeight = true;
+        try
+        {
+            Instances weightedSet = ExecutionHelper.adaptToWeights(trainingSet, new NaiveBayes(), new Random(0));
+            Instances resampledSet = ExecutionHelper.adaptToWeights(trainingSet, new VotedPerceptron(), new Random(0));
+
+            assertThat(weightedSet == trainingSet, equalTo(true));
+            assertThat(resampledSet == trainingSet, equalTo(false));
+            assertThat(resampledSet.size(), equalTo(trainingSet.size()));
+        }
+        finally
+        {
+            ExecutionHelper.balanceByWeight = false;
+        }
+
+        assertThat(ExecutionHelper.adaptToWeights(trainingSet, new VotedPerceptron(), new Random(0)) == trainingSet, equalTo(true));
+    }
+
     @Test(expected = IllegalAccessException.class)
     public void privateConstructor_shouldThrowException() throws Exception
     {
@@ -97,7 +136,7 @@ public class ExecutionHelperTest
     @Test
     public void run_notPragmaticConfiguration_shouldReturnSucccess() throws Exception
     {
-        setUpExecutionHelper(args, metadata, methods, 3, true, true, false, false, false, false, true, false, false);
+        setUpExecutionHelper(args, metadata, methods, 3, 1, 1, true, true, false, false, false, false, false, true, false, false);
 
         MetaHelper.initialize(experimentHelper, inputOutputHelper, randomHelper);
 
@@ -107,25 +146,288 @@ public class ExecutionHelperTest
     @Test
     public void run_pragmaticConfiguration_shouldReturnSucccess() throws Exception
     {
-        setUpExecutionHelper(args, metadata, methods, 25, false, false, true, true, true, true, false, true, true);
+        setUpExecutionHelper(args, metadata, methods, 25, 1, 1, false, false, true, true, true, true, true, false, true, true);
 
         MetaHelper.initialize(experimentHelper, inputOutputHelper, randomHelper);
 
         ExecutionHelper.run();
     }
 
-    private void setUpExecutionHelper(String[] args, Set<DataSetMetadata> metadata, List<MethodConfiguration> methods, int numberOfRuns, boolean skipTrain, boolean skipTest,
-            boolean shrinkFeatures, boolean balanceClasses, boolean includeEmpty, boolean removeOutliers, boolean saveArff, boolean saveModel, boolean saveSets) throws Exception
+    @Test
+    public void run_parallelRuns_shouldReturnSucccess() throws Exception
+    {
+        setUpExecutionHelper(args, metadata, methods, 5, 4, 1, false, false, true, true, true, true, true, false, true, true);
+
+        MetaHelper.initialize(experimentHelper, inputOutputHelper, randomHelper);
+
+        ExecutionHelper.run();
+    }
+
+    @Test
+    public void run_parallelCells_shouldReturnSucccess() throws Exception
+    {
+        setUpExecutionHelper(args, metadata, Arrays.asList(MethodConfiguration.HP, MethodConfiguration.NB), 3, 2, 2, false, false, false, false, true, false, true, false, false, false);
+
+        MetaHelper.initialize(experimentHelper, inputOutputHelper, randomHelper);
+
+        ExecutionHelper.run();
+    }
+
+    @Test
+    public void run_checkpointedRuns_shouldOnlyExecuteMissingRuns() throws Exception
+    {
+        Path journalFile = Files.createTempFile("checkpoints", ".journal");
+        Path hamFile = Paths.get("src/test/resources/data-sets-bin/10/ham");
+        FileTime hamModifiedTime = Files.getLastModifiedTime(hamFile);
+
+        try
+        {
+            setUpExecutionHelper(args, metadata, Arrays.asList(MethodConfiguration.NB), 3, 1, 1, false, false, false, false, false, false, false, false, false, false);
+
+            MetaHelper.initialize(experimentHelper, inputOutputHelper, randomHelper);
+
+            ExecutionHelper.checkpointRuns = true;
+            ExecutionHelper.checkpointJournal = new CheckpointJournal(journalFile);
+            assertThat(ExecutionHelper.run(), equalTo(true));
+            assertThat(ExecutionHelper.checkpointJournal.size(), equalTo(3));
+            long journalSize = Files.size(journalFile);
+
+            // a restarted execution replays every run from the journal
+            ExecutionHelper.checkpointJournal = new CheckpointJournal(journalFile);
+            assertThat(ExecutionHelper.run(), equalTo(true));
+            assertThat(Files.size(journalFile), equalTo(journalSize));
+
+            // a larger experiment only executes the runs not checkpointed yet
+            ExecutionHelper.numberOfRuns = 5;
+            ExecutionHelper.checkpointJournal = new CheckpointJournal(journalFile);
+            assertThat(ExecutionHelper.run(), equalTo(true));
+            assertThat(ExecutionHelper.checkpointJournal.size(), equalTo(5));
+
+            // once the raw files change, every run is executed again instead of replayed
+            Files.setLastModifiedTime(hamFile, FileTime.fromMillis(hamModifiedTime.toMillis() + 1000));
+            ExecutionHelper.checkpointJournal = new CheckpointJournal(journalFile);
+            assertThat(ExecutionHelper.run(), equalTo(true));
+            assertThat(ExecutionHelper.checkpointJournal.size(), equalTo(10));
+        }
+        finally
+        {
+            Files.setLastModifiedTime(hamFile, hamModifiedTime);
+            ExecutionHelper.checkpointRuns = false;
+            ExecutionHelper.checkpointJournal = checkpointJournal;
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    @Test
+    public void run_runsExceedingTheirBudget_shouldReturnSuccess() throws Exception
+    {
+        long graceMillis = TimeoutHelper.getGraceMillis();
+
+        try
+        {
+            setUpExecutionHelper(args, metadata, Arrays.asList(MethodConfiguration.NB), 3, 2, 1, false, false, false, false, false, false, false, false, false, false);
+
+            MetaHelper.initialize(experimentHelper, inputOutputHelper, randomHelper);
+
+            TimeoutHelper.setGraceMillis(100);
+            ExecutionHelper.runTimeout = 1;
+            assertThat(ExecutionHelper.run(), equalTo(true));
+
+            // a cell without budget left does not start any run
+            ExecutionHelper.runTimeout = 0;
+            ExecutionHelper.cellTimeout = 1;
+            assertThat(ExecutionHelper.run(), equalTo(true));
+        }
+        finally
+        {
+            TimeoutHelper.setGraceMillis(graceMillis);
+            ExecutionHelper.runTimeout = 0;
+            ExecutionHelper.cellTimeout = 0;
+        }
+    }
+
+    @Test
+    public void run_crossValidation_shouldCheckpointOneResultPerRun() throws Exception
+    {
+        Path journalFile = Files.createTempFile("checkpoints", ".journal");
+
+        try
+        {
+            setUpExecutionHelper(args, metadata, Arrays.asList(MethodConfiguration.NB), 2, 2, 1, false, false, false, false, true, false, false, false, false, false);
+
+            MetaHelper.initialize(experimentHelper, inputOutputHelper, randomHelper);
+
+            ExecutionHelper.folds = 3;
+            ExecutionHelper.checkpointRuns = true;
+            ExecutionHelper.checkpointJournal = new CheckpointJournal(journalFile);
+            assertThat(ExecutionHelper.run(), equalTo(true));
+            assertThat(ExecutionHelper.checkpointJournal.size(), equalTo(2));
+        }
+        finally
+        {
+            ExecutionHelper.folds = 0;
+            ExecutionHelper.checkpointRuns = false;
+            ExecutionHelper.checkpointJournal = checkpointJournal;
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    @Test
+    public void run_streaming_shouldCheckpointOneHoldoutPerRun() throws Exception
+    {
+        Path journalFile = Files.createTempFile("checkpoints", ".journal");
+
+        try
+        {
+            setUpExecutionHelper(args, metadata, Arrays.asList(MethodConfiguration.NBU), 2, 2, 1, false, false, false, true, true, false, false, false, false, true);
+
+            MetaHelper.initialize(experimentHelper, inputOutputHelper, randomHelper);
+
+            // streamed runs are never cross-validated
+            ExecutionHelper.folds = 3;
+            ExecutionHelper.streamBatchSize = 500;
+            ExecutionHelper.checkpointRuns = true;
+            ExecutionHelper.checkpointJournal = new CheckpointJournal(journalFile);
+            assertThat(ExecutionHelper.run(), equalTo(true));
+            assertThat(ExecutionHelper.checkpointJournal.size(), equalTo(2));
+        }
+        finally
+        {
+            ExecutionHelper.folds = 0;
+            ExecutionHelper.streamBatchSize = 0;
+            ExecutionHelper.checkpointRuns = false;
+            ExecutionHelper.checkpointJournal = checkpointJournal;
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    @Test
+    public void split_sameSeed_shouldPartitionEveryBatch()
+    {
+        Instances batch = MetaHelper.getInputOutputHelper().createEmptyInstances(3, 60, 40);
+
+        Instances trainingPart = ExecutionHelper.split(Arrays.asList(batch).iterator(), new Random(7), 0.5, true).next();
+        Instances testingPart = ExecutionHelper.split(Arrays.asList(batch).iterator(), new Random(7), 0.5, false).next();
+
+        assertThat(trainingPart.size() + testingPart.size(), equalTo(batch.size()));
+        assertThat(trainingPart.size(), greaterThan(0));
+        assertThat(testingPart.size(), greaterThan(0));
+    }
+
+    @Test
+    public void run_adaptiveRuns_shouldStopOnceResultsConverge() throws Exception
+    {
+        Path journalFile = Files.createTempFile("checkpoints", ".journal");
+
+        try
+        {
+            setUpExecutionHelper(args, metadata, Arrays.asList(MethodConfiguration.NB), 6, 1, 1, false, false, false, false, false, false, false, false, false, false);
+
+            MetaHelper.initialize(experimentHelper, inputOutputHelper, randomHelper);
+
+            // any spread is within a target of 100 percentage points, so only the minimum amount of runs is executed
+            ExecutionHelper.minimumRuns = 2;
+            ExecutionHelper.targetHalfWidth = 100.0;
+            ExecutionHelper.checkpointRuns = true;
+            ExecutionHelper.checkpointJournal = new CheckpointJournal(journalFile);
+            assertThat(ExecutionHelper.run(), equalTo(true));
+            assertThat(ExecutionHelper.checkpointJournal.size(), equalTo(2));
+
+            // an unreachable target executes runs up to the maximum amount of runs
+            ExecutionHelper.targetHalfWidth = Double.MIN_VALUE;
+            ExecutionHelper.checkpointJournal = new CheckpointJournal(journalFile);
+            assertThat(ExecutionHelper.run(), equalTo(true));
+            assertThat(ExecutionHelper.checkpointJournal.size(), lessThanOrEqualTo(6));
+            assertThat(ExecutionHelper.checkpointJournal.size(), greaterThan(2));
+        }
+        finally
+        {
+            ExecutionHelper.minimumRuns = 0;
+            ExecutionHelper.targetHalfWidth = 0.5;
+            ExecutionHelper.checkpointRuns = false;
+            ExecutionHelper.checkpointJournal = checkpointJournal;
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    @Test
+    public void run_racing_shouldDropDominatedMethods() throws Exception
+    {
+        Path journalFile = Files.createTempFile("checkpoints", ".journal");
+
+        try
+        {
+            setUpExecutionHelper(args, metadata, Arrays.asList(MethodConfiguration.NB, MethodConfiguration.HP), 8, 1, 1, false, false, false, false, false, false, false, false, false, false);
+
+            MetaHelper.initialize(experimentHelper, inputOutputHelper, randomHelper);
+
+            // with any difference being significant, the method behind the leader stops after its first round, even though a
+            // single cell executes at a time
+            ExecutionHelper.racing = true;
+            ExecutionHelper.racingMinimumRuns = 3;
+            ExecutionHelper.racingSignificance = 1.0;
+            ExecutionHelper.checkpointRuns = true;
+            ExecutionHelper.checkpointJournal = new CheckpointJournal(journalFile);
+            assertThat(ExecutionHelper.run(), equalTo(true));
+            assertThat(ExecutionHelper.checkpointJournal.size(), equalTo(8 + 3));
+        }
+        finally
+        {
+            ExecutionHelper.racing = false;
+            ExecutionHelper.racingMinimumRuns = 5;
+            ExecutionHelper.racingSignificance = 0.05;
+            ExecutionHelper.checkpointRuns = false;
+            ExecutionHelper.checkpointJournal = checkpointJournal;
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setUpConvergenceMetrics_noMetrics_shouldThrowException()
+    {
+        ExecutionHelper.setUpConvergenceMetrics(" , ");
+    }
+
+    @Test
+    public void setUpMethodTimeouts_validBudgets_shouldOverrideRunTimeout()
+    {
+        try
+        {
+            ExecutionHelper.runTimeout = 1_000;
+            ExecutionHelper.setUpMethodTimeouts("smo=600, NB = 5");
+
+            assertThat(ExecutionHelper.getRunTimeout(MethodConfiguration.SMO), equalTo(600_000L));
+            assertThat(ExecutionHelper.getRunTimeout(MethodConfiguration.NB), equalTo(5_000L));
+            assertThat(ExecutionHelper.getRunTimeout(MethodConfiguration.HP), equalTo(1_000L));
+        }
+        finally
+        {
+            ExecutionHelper.runTimeout = 0;
+            ExecutionHelper.setUpMethodTimeouts("");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setUpMethodTimeouts_malformedBudgets_shouldThrowException()
+    {
+        ExecutionHelper.setUpMethodTimeouts("NB:5");
+    }
+
+    private void setUpExecutionHelper(String[] args, Set<DataSetMetadata> metadata, List<MethodConfiguration> methods, int numberOfRuns, int runParallelism, int cellParallelism, boolean skipTrain, boolean skipTest,
+            boolean shrinkFeatures, boolean balanceClasses, boolean includeEmpty, boolean removeOutliers, boolean mapRawFiles, boolean saveArff, boolean saveModel, boolean saveSets) throws Exception
     {
         ExecutionHelper.metadata = metadata;
         ExecutionHelper.methods = methods;
         ExecutionHelper.numberOfRuns = numberOfRuns;
+        ExecutionHelper.runParallelism = runParallelism;
+        ExecutionHelper.cellParallelism = cellParallelism;
         ExecutionHelper.skipTrain = skipTrain;
         ExecutionHelper.skipTest = skipTest;
         ExecutionHelper.shrinkFeatures = shrinkFeatures;
         ExecutionHelper.balanceClasses = balanceClasses;
         ExecutionHelper.includeEmpty = includeEmpty;
         ExecutionHelper.removeOutliers = removeOutliers;
+        ExecutionHelper.mapRawFiles = mapRawFiles;
         ExecutionHelper.saveArff = saveArff;
         ExecutionHelper.saveModel = saveModel;
         ExecutionHelper.saveSets = saveSets;
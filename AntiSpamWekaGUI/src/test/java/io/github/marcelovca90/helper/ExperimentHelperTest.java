@@ -21,12 +21,18 @@
  ******************************************************************************/
 package io.github.marcelovca90.helper;
 
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -93,6 +99,81 @@ public class ExperimentHelperTest
         assertThat(experimentHelper.detectAndRemoveOutliers(), greaterThanOrEqualTo(0));
     }
 
+    @Test
+    public void fork_shouldReturnHelperWithItsOwnResultKeeper()
+    {
+        ExperimentHelper forkedHelper = experimentHelper.fork();
+
+        assertThat(forkedHelper, not(sameInstance(experimentHelper)));
+
+        forkedHelper.computeSingleRunResults(methodEvaluationMock);
+        forkedHelper.summarizeResults(results, methodEvaluation, false, true);
+    }
+
+    @Test
+    public void addSingleRunResults_computedResults_shouldReplayThem()
+    {
+        ExperimentHelper forkedHelper = experimentHelper.fork();
+        Map<Metric, Double> singleRunResults = forkedHelper.computeSingleRunResults(methodEvaluationMock);
+
+        ExperimentHelper replayingHelper = experimentHelper.fork();
+        replayingHelper.addSingleRunResults(singleRunResults);
+
+        assertThat(singleRunResults.size(), equalTo(Metric.values().length));
+        assertThat(replayingHelper.getMeanRunTime(), equalTo(forkedHelper.getMeanRunTime()));
+    }
+
+    @Test
+    public void getResultCount_shouldReturnAmountOfRuns()
+    {
+        ExperimentHelper forkedHelper = experimentHelper.fork();
+        assertThat(forkedHelper.getResultCount(), equalTo(0));
+
+        forkedHelper.computeSingleRunResults(methodEvaluationMock);
+        forkedHelper.computeSingleRunResults(methodEvaluationMock);
+        assertThat(forkedHelper.getResultCount(), equalTo(2));
+    }
+
+    @Test
+    public void hasConverged_shouldCompareConfidenceIntervalWithTarget()
+    {
+        ExperimentHelper forkedHelper = experimentHelper.fork();
+        assertThat(forkedHelper.hasConverged(Arrays.asList(Metric.WEIGHTED_F_MEASURE), 100.0), equalTo(false));
+
+        forkedHelper.addSingleRunResults(Collections.singletonMap(Metric.WEIGHTED_F_MEASURE, 90.0));
+        assertThat(forkedHelper.hasConverged(Arrays.asList(Metric.WEIGHTED_F_MEASURE), 100.0), equalTo(false));
+
+        forkedHelper.addSingleRunResults(Collections.singletonMap(Metric.WEIGHTED_F_MEASURE, 92.0));
+        forkedHelper.addSingleRunResults(Collections.singletonMap(Metric.WEIGHTED_F_MEASURE, 94.0));
+        assertThat(forkedHelper.hasConverged(Arrays.asList(Metric.WEIGHTED_F_MEASURE), 5.0), equalTo(true));
+        assertThat(forkedHelper.hasConverged(Arrays.asList(Metric.WEIGHTED_F_MEASURE), 0.5), equalTo(false));
+        assertThat(forkedHelper.hasConverged(Arrays.asList(Metric.WEIGHTED_F_MEASURE, Metric.HAM_RECALL), 5.0), equalTo(false));
+    }
+
+    @Test
+    public void summarizeTimeout_shouldReturnSuccess()
+    {
+        experimentHelper.fork().summarizeTimeout(methodEvaluation, "run 1 exceeded its budget");
+    }
+
+    @Test
+    public void getMeanRunTime_noResults_shouldReturnNaN()
+    {
+        ExperimentHelper forkedHelper = experimentHelper.fork();
+
+        assertTrue(Double.isNaN(forkedHelper.getMeanRunTime()));
+    }
+
+    @Test
+    public void getMeanRunTime_withResults_shouldReturnTrainPlusTestTime()
+    {
+        ExperimentHelper forkedHelper = experimentHelper.fork();
+
+        forkedHelper.computeSingleRunResults(methodEvaluationMock);
+
+        assertThat(forkedHelper.getMeanRunTime(), closeTo(500.0, 10.0));
+    }
+
     @Test
     public void reset_shouldReturnSuccess()
     {
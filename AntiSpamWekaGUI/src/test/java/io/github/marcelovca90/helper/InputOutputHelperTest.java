@@ -28,11 +28,17 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.assertThat;
 
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.RandomUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -42,9 +48,11 @@ import org.mockito.junit.MockitoJUnitRunner;
 import io.github.marcelovca90.common.Constants.MessageType;
 import io.github.marcelovca90.common.DataSetMetadata;
 import io.github.marcelovca90.common.MethodConfiguration;
+import io.github.marcelovca90.common.ParameterSpace;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.core.Instances;
+import weka.core.SparseInstance;
 
 @RunWith(MockitoJUnitRunner.class)
 public class InputOutputHelperTest
@@ -80,6 +88,22 @@ public class InputOutputHelperTest
         assertThat(filename, containsString(String.valueOf(seed)));
     }
 
+    @Test
+    public void buildClassifierFilename_givenSeed_shouldReturnStringWithGivenSeed()
+    {
+        String folder = "/some/folder";
+        MethodConfiguration method = MethodConfiguration.RT;
+        double splitPercent = RandomUtils.nextDouble();
+        int seed = 7919;
+
+        String filename = ioHelper.buildClassifierFilename(folder, method, splitPercent, seed);
+
+        assertThat(filename, notNullValue());
+        assertThat(filename, containsString(folder));
+        assertThat(filename, containsString(method.getClazz().getSimpleName()));
+        assertThat(filename, containsString("_SEED=" + seed));
+    }
+
     @Test
     public void createEmptyInstances_shouldReturnDataSetWithGivenAmountOfInstances()
     {
@@ -97,6 +121,63 @@ public class InputOutputHelperTest
         assertThat(emptyInstances.numClasses(), equalTo(2));
     }
 
+    @Test
+    public void createWeightedEmptyInstances_shouldReturnOneWeightedInstancePerClass()
+    {
+        int featureAmount = RandomUtils.nextInt(1, 11);
+        int emptyHamCount = RandomUtils.nextInt(1, 101);
+        int emptySpamCount = RandomUtils.nextInt(1, 101);
+
+        Instances emptyInstances = ioHelper.createWeightedEmptyInstances(featureAmount, emptyHamCount, emptySpamCount);
+
+        assertThat(emptyInstances, notNullValue());
+        assertThat(emptyInstances.size(), equalTo(2));
+        assertThat(emptyInstances.numAttributes(), equalTo(featureAmount + 1));
+        assertThat(emptyInstances.sumOfWeights(), equalTo((double) (emptyHamCount + emptySpamCount)));
+        assertThat(emptyInstances.get(0).classValue(), equalTo((double) MessageType.HAM.ordinal()));
+        assertThat(emptyInstances.get(0).weight(), equalTo((double) emptyHamCount));
+        assertThat(emptyInstances.get(1).classValue(), equalTo((double) MessageType.SPAM.ordinal()));
+        assertThat(emptyInstances.get(1).weight(), equalTo((double) emptySpamCount));
+        for (int j = 0; j < featureAmount; j++)
+            assertThat(emptyInstances.get(1).value(j), equalTo(0.0));
+    }
+
+    @Test
+    public void matchCardinalitiesByWeight_shouldWeightMinorityClassWithoutReplicating()
+    {
+        Instances hamDataSet = ioHelper.createEmptyInstances(3, 6, 0);
+        Instances spamDataSet = ioHelper.createEmptyInstances(3, 0, 4);
+
+        ioHelper.matchCardinalitiesByWeight(hamDataSet, spamDataSet);
+
+        assertThat(hamDataSet.size(), equalTo(6));
+        assertThat(spamDataSet.size(), equalTo(4));
+        assertThat(hamDataSet.sumOfWeights(), equalTo(6.0));
+        assertThat(spamDataSet.sumOfWeights(), equalTo(6.0));
+        spamDataSet.forEach(instance -> assertThat(instance.weight(), equalTo(1.5)));
+    }
+
+    @Test
+    public void loadParameterSpacesFromFile_shouldProperlyDeserializeParameterSpaces() throws IOException
+    {
+        Path file = Files.createTempFile("search-spaces", ".txt");
+
+        try
+        {
+            Files.write(file, Arrays.asList("# comment", "", "frf=-I {50,100} -K 0 -S 1", "J48=-C 0.25 -M {2,4,8}"));
+
+            Map<MethodConfiguration, ParameterSpace> parameterSpaces = ioHelper.loadParameterSpacesFromFile(file.toString());
+
+            assertThat(parameterSpaces.size(), equalTo(2));
+            assertThat(parameterSpaces.get(MethodConfiguration.FRF).getCandidates().size(), equalTo(2));
+            assertThat(parameterSpaces.get(MethodConfiguration.J48).getCandidates().size(), equalTo(3));
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
     @Test
     public void loadDataSetsMetadataFromFile_shouldProperlyDeserializeDataSetsMetadata() throws IOException
     {
@@ -128,6 +209,142 @@ public class InputOutputHelperTest
         assertThat(dataSet.numClasses(), equalTo(2));
     }
 
+    @Test
+    public void loadRawFileHeader_shouldMatchDeserializedInstances() throws IOException
+    {
+        dataSet = ioHelper.loadInstancesFromRawFile(hamDataFilename, MessageType.HAM);
+
+        int[] header = ioHelper.loadRawFileHeader(hamDataFilename);
+
+        assertThat(header[0], equalTo(dataSet.size()));
+        assertThat(header[1], equalTo(dataSet.numAttributes() - 1));
+    }
+
+    @Test
+    public void loadInstancesFromMappedRawFile_shouldMatchStreamedInstances() throws IOException
+    {
+        Instances streamed = ioHelper.loadInstancesFromRawFile(spamDataFilename, MessageType.SPAM);
+
+        dataSet = ioHelper.loadInstancesFromMappedRawFile(spamDataFilename, MessageType.SPAM);
+
+        assertThat(dataSet, notNullValue());
+        assertThat(dataSet.size(), equalTo(streamed.size()));
+        assertThat(dataSet.numAttributes(), equalTo(streamed.numAttributes()));
+        assertThat(dataSet.classIndex(), equalTo(streamed.classIndex()));
+        for (int i = 0; i < dataSet.size(); i++)
+            assertThat(dataSet.get(i).toDoubleArray(), equalTo(streamed.get(i).toDoubleArray()));
+    }
+
+    @Test
+    public void loadInstancesFromRawFile_givenRecords_shouldMatchStreamedInstances() throws IOException
+    {
+        Instances streamed = ioHelper.loadInstancesFromRawFile(spamDataFilename, MessageType.SPAM);
+        int[] records = { 0, 3, 4, streamed.size() - 1 };
+
+        dataSet = ioHelper.loadInstancesFromRawFile(spamDataFilename, MessageType.SPAM, records);
+
+        assertThat(dataSet.size(), equalTo(records.length));
+        assertThat(dataSet.numAttributes(), equalTo(streamed.numAttributes()));
+        for (int i = 0; i < records.length; i++)
+            assertThat(dataSet.get(i).toDoubleArray(), equalTo(streamed.get(records[i]).toDoubleArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void loadInstancesFromRawFile_recordOutOfRange_shouldThrowException() throws IOException
+    {
+        int numberOfInstances = ioHelper.loadRawFileHeader(hamDataFilename)[0];
+
+        ioHelper.loadInstancesFromRawFile(hamDataFilename, MessageType.HAM, new int[] { numberOfInstances });
+    }
+
+    @Test
+    public void saveAndLoadInstancesFromSparseRawFile_shouldMatchDenseInstances() throws IOException
+    {
+        Instances dense = ioHelper.loadInstancesFromRawFile(spamDataFilename, MessageType.SPAM);
+
+        File file = ioHelper.saveInstancesToSparseRawFile(dense, "spam" + InputOutputHelper.SPARSE_RAW_EXTENSION);
+        dataSet = ioHelper.loadInstancesFromSparseRawFile(file.getPath(), MessageType.SPAM);
+
+        assertThat(file.delete(), equalTo(Boolean.TRUE));
+        assertThat(dataSet.size(), equalTo(dense.size()));
+        assertThat(dataSet.numAttributes(), equalTo(dense.numAttributes()));
+        assertThat(dataSet.classIndex(), equalTo(dense.classIndex()));
+        for (int i = 0; i < dataSet.size(); i++)
+        {
+            assertThat(dataSet.get(i), instanceOf(SparseInstance.class));
+            assertThat(dataSet.get(i).toDoubleArray(), equalTo(dense.get(i).toDoubleArray()));
+        }
+    }
+
+    @Test
+    public void saveAndLoadInstancesFromCompressedRawFile_shouldMatchDenseInstances() throws IOException
+    {
+        Instances dense = ioHelper.loadInstancesFromRawFile(spamDataFilename, MessageType.SPAM);
+
+        File file = ioHelper.saveInstancesToCompressedRawFile(dense, "spam" + InputOutputHelper.COMPRESSED_RAW_EXTENSION, false, 2);
+        int[] header = ioHelper.loadRawFileHeader(file.getPath());
+        dataSet = ioHelper.loadInstancesFromCompressedRawFile(file.getPath(), MessageType.SPAM, 2);
+        Instances sample = ioHelper.loadInstancesFromCompressedRawFile(file.getPath(), MessageType.SPAM, new int[] { 1, 2 }, 2);
+
+        assertThat(file.delete(), equalTo(Boolean.TRUE));
+        assertThat(header, equalTo(ioHelper.loadRawFileHeader(spamDataFilename)));
+        assertThat(dataSet.size(), equalTo(dense.size()));
+        assertThat(dataSet.classIndex(), equalTo(dense.classIndex()));
+        for (int i = 0; i < dataSet.size(); i++)
+            assertThat(dataSet.get(i).toDoubleArray(), equalTo(dense.get(i).toDoubleArray()));
+        assertThat(sample.get(1).toDoubleArray(), equalTo(dense.get(2).toDoubleArray()));
+    }
+
+    @Test
+    public void appendAndLoadInstancesFromSegmentedRawStore_shouldMatchDenseInstances() throws IOException
+    {
+        Instances dense = ioHelper.loadInstancesFromRawFile(spamDataFilename, MessageType.SPAM);
+        Path folder = Files.createTempDirectory("data-set");
+        String storeFilename = folder.resolve("spam" + InputOutputHelper.SEGMENTED_RAW_EXTENSION).toString();
+
+        try
+        {
+            ioHelper.appendInstancesToSegmentedRawStore(new Instances(dense, 0, 5), storeFilename, false, 1);
+            ioHelper.appendInstancesToSegmentedRawStore(new Instances(dense, 5, dense.size() - 5), storeFilename, true, 1);
+            int[] header = ioHelper.loadRawFileHeader(storeFilename);
+            dataSet = ioHelper.loadInstancesFromSegmentedRawStore(storeFilename, MessageType.SPAM, 2);
+
+            assertThat(header, equalTo(ioHelper.loadRawFileHeader(spamDataFilename)));
+            assertThat(dataSet.size(), equalTo(dense.size()));
+            for (int i = 0; i < dataSet.size(); i++)
+                assertThat(dataSet.get(i).toDoubleArray(), equalTo(dense.get(i).toDoubleArray()));
+        }
+        finally
+        {
+            FileUtils.deleteDirectory(folder.toFile());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void loadInstancesFromSparseRawFile_unsortedIndices_shouldThrowException() throws IOException
+    {
+        Path file = Files.createTempFile("ham", InputOutputHelper.SPARSE_RAW_EXTENSION);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file)))
+        {
+            out.writeInt(1);
+            out.writeInt(3);
+            out.writeInt(2);
+            out.writeInt(2);
+            out.writeDouble(1.0);
+            out.writeInt(1);
+            out.writeDouble(1.0);
+        }
+
+        try
+        {
+            ioHelper.loadInstancesFromSparseRawFile(file.toString(), MessageType.HAM);
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
     @Test
     public void loadModelFromFile_shouldProperlyDeserializeModel() throws Exception
     {
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.MethodConfiguration;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MethodRaceTest
+{
+    @Test
+    public void getLeader_notEnoughRuns_shouldReturnNull()
+    {
+        MethodRace race = new MethodRace(0.05, 3);
+        race.record(MethodConfiguration.NB, 2, 90.0);
+        race.record(MethodConfiguration.NB, 3, 91.0);
+
+        assertThat(race.getLeader(), nullValue());
+    }
+
+    @Test
+    public void getLeader_shouldReturnMethodWithHighestMean()
+    {
+        MethodRace race = new MethodRace(0.05, 2);
+        record(race, MethodConfiguration.NB, 90.0, 91.0, 92.0);
+        record(race, MethodConfiguration.J48, 95.0, 96.0, 94.0);
+
+        assertThat(race.getLeader(), equalTo(MethodConfiguration.J48));
+    }
+
+    @Test
+    public void isDominated_consistentlyWorseMethod_shouldReturnTrue()
+    {
+        MethodRace race = new MethodRace(0.05, 5);
+        record(race, MethodConfiguration.J48, 95.0, 96.0, 94.5, 95.5, 96.5);
+        record(race, MethodConfiguration.NB, 90.0, 91.5, 89.0, 90.5, 91.0);
+
+        assertThat(race.isDominated(MethodConfiguration.NB), equalTo(true));
+        assertThat(race.isDominated(MethodConfiguration.J48), equalTo(false));
+    }
+
+    @Test
+    public void isDominated_overlappingMethods_shouldReturnFalse()
+    {
+        MethodRace race = new MethodRace(0.05, 5);
+        record(race, MethodConfiguration.J48, 95.0, 90.0, 96.0, 89.0, 94.0);
+        record(race, MethodConfiguration.NB, 94.0, 91.0, 95.0, 90.0, 93.0);
+
+        assertThat(race.isDominated(MethodConfiguration.NB), equalTo(false));
+    }
+
+    @Test
+    public void isDominated_identicalDifferences_shouldReturnTrue()
+    {
+        MethodRace race = new MethodRace(0.05, 3);
+        record(race, MethodConfiguration.J48, 95.0, 96.0, 97.0);
+        record(race, MethodConfiguration.NB, 94.0, 95.0, 96.0);
+
+        assertThat(race.isDominated(MethodConfiguration.NB), equalTo(true));
+    }
+
+    @Test
+    public void isDominated_notEnoughSharedRuns_shouldReturnFalse()
+    {
+        MethodRace race = new MethodRace(0.05, 3);
+        record(race, MethodConfiguration.J48, 95.0, 96.0, 97.0);
+        race.record(MethodConfiguration.NB, 2, 50.0);
+        race.record(MethodConfiguration.NB, 3, 50.0);
+
+        assertThat(race.isDominated(MethodConfiguration.NB), equalTo(false));
+        assertThat(race.isDominated(MethodConfiguration.SMO), equalTo(false));
+    }
+
+    // records the values as the runs with seeds 2, 3, 4, ...
+    private void record(MethodRace race, MethodConfiguration method, double... values)
+    {
+        for (int i = 0; i < values.length; i++)
+            race.record(method, i + 2, values[i]);
+    }
+}
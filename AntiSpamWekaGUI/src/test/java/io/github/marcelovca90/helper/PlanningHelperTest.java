@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.DataSetMetadata;
+import io.github.marcelovca90.common.ExperimentCell;
+import io.github.marcelovca90.common.ExperimentPlan;
+import io.github.marcelovca90.common.MethodConfiguration;
+import io.github.marcelovca90.data.CostModel;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PlanningHelperTest
+{
+    private final DataSetMetadata metadata = new DataSetMetadata("/some/folder/DATA_SET/STAT_METHOD/100", 10, 20);
+
+    private Path folder;
+    private PlanningHelper planningHelper;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = Files.createTempDirectory("planning");
+        planningHelper = new PlanningHelper();
+        planningHelper.setCostModel(new CostModel(folder.resolve("cost-model.properties")));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(folder.toFile());
+    }
+
+    @Test
+    public void plan_predictedCells_shouldOrderLongestFirstAndProjectMakespan()
+    {
+        planningHelper.getCostModel().record(MethodConfiguration.NB, 10, 100, 100.0);
+        planningHelper.getCostModel().record(MethodConfiguration.J48, 10, 100, 300.0);
+        planningHelper.getCostModel().record(MethodConfiguration.LIBSVM, 10, 100, 200.0);
+
+        List<ExperimentCell> cells = Arrays.asList(
+                new ExperimentCell(MethodConfiguration.NB, metadata, 1000L, 100, 10),
+                new ExperimentCell(MethodConfiguration.J48, metadata, 1000L, 100, 10),
+                new ExperimentCell(MethodConfiguration.LIBSVM, metadata, 1000L, 100, 10));
+
+        ExperimentPlan plan = planningHelper.plan(cells, 1, 2, 2);
+
+        List<MethodConfiguration> order = plan.getCells().stream().map(ExperimentCell::getMethod).collect(Collectors.toList());
+        assertThat(order, equalTo(Arrays.asList(MethodConfiguration.J48, MethodConfiguration.LIBSVM, MethodConfiguration.NB)));
+
+        // J48 alone on one worker, LIBSVM followed by NB on the other
+        assertThat(plan.getProjectedMakespanMillis(), closeTo(300.0, 1e-9));
+        assertThat(plan.getUnpredictedCells(), equalTo(0));
+    }
+
+    @Test
+    public void plan_unpredictedCells_shouldComeFirstAndBeCounted()
+    {
+        planningHelper.getCostModel().record(MethodConfiguration.J48, 10, 100, 300.0);
+
+        List<ExperimentCell> cells = Arrays.asList(
+                new ExperimentCell(MethodConfiguration.J48, metadata, 1000L, 100, 10),
+                new ExperimentCell(MethodConfiguration.NB, metadata, 1000L, 100, 10));
+
+        ExperimentPlan plan = planningHelper.plan(cells, 1, 1, 1);
+
+        assertThat(plan.getCells().get(0).getMethod(), equalTo(MethodConfiguration.NB));
+        assertTrue(Double.isNaN(plan.getCells().get(0).getPredictedMillis()));
+        assertThat(plan.getUnpredictedCells(), equalTo(1));
+        assertThat(plan.getProjectedMakespanMillis(), closeTo(300.0, 1e-9));
+    }
+
+    @Test
+    public void plan_runsSharingPool_shouldScaleByRounds()
+    {
+        planningHelper.getCostModel().record(MethodConfiguration.J48, 10, 100, 100.0);
+
+        List<ExperimentCell> cells = Arrays.asList(new ExperimentCell(MethodConfiguration.J48, metadata, 1000L, 100, 10));
+
+        // 10 runs, 4 run workers for a single cell: ceil(10 / 4) = 3 rounds of runs
+        ExperimentPlan plan = planningHelper.plan(cells, 10, 1, 4);
+
+        assertThat(plan.getCells().get(0).getPredictedMillis(), closeTo(300.0, 1e-9));
+        assertThat(plan.getProjectedMakespanMillis(), closeTo(300.0, 1e-9));
+    }
+
+    @Test
+    public void record_shouldPersistCostModel()
+    {
+        planningHelper.record(new ExperimentCell(MethodConfiguration.J48, metadata, 1000L, 100, 10), 100.0);
+
+        assertTrue(Files.exists(planningHelper.getCostModel().getFile()));
+        assertThat(new CostModel(planningHelper.getCostModel().getFile()).predict(MethodConfiguration.J48, 10, 100), closeTo(100.0, 1e-9));
+    }
+}
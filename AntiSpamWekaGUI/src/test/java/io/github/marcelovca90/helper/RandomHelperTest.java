@@ -25,11 +25,17 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
 @RunWith (MockitoJUnitRunner.class)
 public class RandomHelperTest
 {
@@ -75,4 +81,34 @@ public class RandomHelperTest
     {
         assertThat(randomHelper.getRandom(), notNullValue());
     }
+
+    @Test
+    public void shuffle_sameSeed_shouldMatchInstancesRandomize()
+    {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("index"));
+        Instances instances = new Instances("test", attributes, 100);
+        int[] indices = new int[100];
+        for (int i = 0; i < indices.length; i++)
+        {
+            instances.add(new DenseInstance(1.0, new double[] { i }));
+            indices[i] = i;
+        }
+
+        RandomHelper otherRandomHelper = new RandomHelper();
+
+        for (int run = 0; run < 5; run++)
+        {
+            randomHelper.update();
+            instances.randomize(randomHelper.getRandom());
+
+            otherRandomHelper.update();
+            otherRandomHelper.shuffle(indices);
+
+            for (int i = 0; i < indices.length; i++)
+            {
+                assertThat((int) instances.get(i).value(0), equalTo(indices[i]));
+            }
+        }
+    }
 }
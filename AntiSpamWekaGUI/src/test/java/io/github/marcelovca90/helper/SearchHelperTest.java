@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.isIn;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.github.marcelovca90.common.DataSetMetadata;
+import io.github.marcelovca90.common.MethodConfiguration;
+import io.github.marcelovca90.common.ParameterSpace;
+import io.github.marcelovca90.common.SearchResult;
+import io.github.marcelovca90.data.ColumnarDataSet;
+import weka.core.Instances;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SearchHelperTest
+{
+    private final SearchHelper searchHelper = new SearchHelper();
+
+    private DataSetMetadata metadata;
+    private Instances dataSet;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metadata = new DataSetMetadata("src/test/resources/data-sets-bin/10", 6563, 1407);
+        dataSet = new DataSetHelper().prepare(metadata, false, false, false).getDataSet();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(Paths.get(metadata.getFolder(), ColumnarDataSet.getFilename(false, false, false)));
+    }
+
+    @Test
+    public void setEta_lessThanTwo_shouldKeepHalving()
+    {
+        searchHelper.setEta(1);
+
+        assertThat(searchHelper.getEta(), equalTo(2));
+    }
+
+    @Test
+    public void splitTrainingSet_anyFraction_shouldValidateOnEndOfTrainingSetOnly()
+    {
+        for (double fraction : new double[] { 1.0 / 9, 1.0 / 3, 1.0 })
+        {
+            int[] bounds = SearchHelper.splitTrainingSet(1000, 0.5, fraction);
+
+            // trained on the start of the training set, validated on its end, and the testing set [500, 1000) is left alone
+            assertThat(bounds[0], lessThanOrEqualTo(bounds[1]));
+            assertThat(bounds[1], equalTo(400));
+            assertThat(bounds[2], equalTo(500));
+        }
+        assertThat(SearchHelper.splitTrainingSet(1000, 0.5, 1.0)[0], equalTo(400));
+    }
+
+    @Test
+    public void search_severalCandidates_shouldHalveThemUntilOneIsLeft() throws Exception
+    {
+        ParameterSpace space = new ParameterSpace(MethodConfiguration.J48, "-C {0.05,0.25} -M {2,4}");
+
+        SearchResult result = searchHelper.search(space, dataSet, metadata.getFolder(), 2, 2);
+
+        // four candidates in a single run on a ninth of the training set, then the best one in two runs on all of it
+        assertThat(result.getBestConfig(), isIn(space.getCandidates()));
+        assertThat(result.getCandidates(), equalTo(4));
+        assertThat(result.getEvaluations(), equalTo(4 + 2));
+        assertThat(result.getBestScore(), greaterThan(0.0));
+        assertThat(result.getCostMillis(), greaterThanOrEqualTo(0L));
+    }
+
+    @Test
+    public void search_invalidCandidate_shouldRankItLast() throws Exception
+    {
+        ParameterSpace space = new ParameterSpace(MethodConfiguration.J48, "-C {invalid,0.25} -M 2");
+
+        SearchResult result = searchHelper.search(space, dataSet, metadata.getFolder(), 1, 1);
+
+        assertThat(result.getBestConfig(), equalTo("-C 0.25 -M 2"));
+    }
+}
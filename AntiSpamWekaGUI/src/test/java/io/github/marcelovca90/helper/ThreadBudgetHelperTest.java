@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ThreadBudgetHelperTest
+{
+    private final ThreadBudgetHelper threadBudgetHelper = new ThreadBudgetHelper(8);
+
+    @Test
+    public void grantWorkers_shouldNeverExceedCores()
+    {
+        assertThat(threadBudgetHelper.grantWorkers(0), equalTo(1));
+        assertThat(threadBudgetHelper.grantWorkers(4), equalTo(4));
+        assertThat(threadBudgetHelper.grantWorkers(32), equalTo(8));
+    }
+
+    @Test
+    public void getThreadsPerTask_shouldSplitCoresAmongTasks()
+    {
+        assertThat(threadBudgetHelper.getThreadsPerTask(1), equalTo(8));
+        assertThat(threadBudgetHelper.getThreadsPerTask(3), equalTo(2));
+        assertThat(threadBudgetHelper.getThreadsPerTask(16), equalTo(1));
+    }
+
+    @Test
+    public void acquire_shouldLeaseThreadsUntilClosed() throws Exception
+    {
+        ThreadBudgetHelper.Lease lease = threadBudgetHelper.acquire(3);
+        assertThat(lease.getThreads(), equalTo(3));
+        assertThat(threadBudgetHelper.getAvailableThreads(), equalTo(5));
+
+        // closing a lease twice gives its threads back only once
+        lease.close();
+        lease.close();
+
+        assertThat(threadBudgetHelper.getAvailableThreads(), equalTo(8));
+    }
+
+    @Test
+    public void acquire_moreThreadsThanCores_shouldLeaseAllCores() throws Exception
+    {
+        try (ThreadBudgetHelper.Lease lease = threadBudgetHelper.acquire(100))
+        {
+            assertThat(lease.getThreads(), equalTo(8));
+            assertThat(threadBudgetHelper.getAvailableThreads(), equalTo(0));
+        }
+    }
+
+    @Test
+    public void acquire_exhaustedBudget_shouldBlockUntilThreadsAreReleased() throws Exception
+    {
+        ThreadBudgetHelper.Lease lease = threadBudgetHelper.acquire(8);
+        CountDownLatch acquired = new CountDownLatch(1);
+
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                threadBudgetHelper.acquire(1).close();
+                acquired.countDown();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+
+        assertThat(acquired.await(200, TimeUnit.MILLISECONDS), equalTo(false));
+
+        lease.close();
+
+        assertThat(acquired.await(5, TimeUnit.SECONDS), equalTo(true));
+        thread.join();
+        assertThat(threadBudgetHelper.getAvailableThreads(), equalTo(8));
+    }
+}
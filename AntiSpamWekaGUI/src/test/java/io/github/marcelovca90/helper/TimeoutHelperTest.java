@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Marcelo Vinícius Cysneiros Aragão
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.github.marcelovca90.helper;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TimeoutHelperTest
+{
+    private long graceMillis;
+
+    @Before
+    public void setUp()
+    {
+        graceMillis = TimeoutHelper.getGraceMillis();
+        TimeoutHelper.setGraceMillis(200);
+    }
+
+    @After
+    public void tearDown()
+    {
+        TimeoutHelper.setGraceMillis(graceMillis);
+    }
+
+    @Test(expected = IllegalAccessException.class)
+    public void privateConstructor_shouldThrowException() throws Exception
+    {
+        Constructor<TimeoutHelper> constructor = TimeoutHelper.class.getDeclaredConstructor();
+        assertThat(Modifier.isPrivate(constructor.getModifiers()), equalTo(true));
+
+        constructor.setAccessible(true);
+        constructor.newInstance();
+        TimeoutHelper.class.newInstance();
+    }
+
+    @Test
+    public void callWithin_taskFinishesInTime_shouldReturnItsResult() throws Exception
+    {
+        assertThat(TimeoutHelper.callWithin(() -> 42, TimeoutHelper.NO_DEADLINE, () -> false), equalTo(42));
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void callWithin_interruptibleTaskExceedsDeadline_shouldThrowException() throws Exception
+    {
+        TimeoutHelper.callWithin(() ->
+        {
+            Thread.sleep(60_000);
+            return null;
+        }, System.currentTimeMillis() + 100, () -> false);
+    }
+
+    @Test
+    public void callWithin_taskWithCheckpointsExceedsDeadline_shouldStopItAndReleaseResource() throws Exception
+    {
+        CountDownLatch released = new CountDownLatch(1);
+
+        try
+        {
+            TimeoutHelper.callWithin(() ->
+            {
+                while (true)
+                    TimeoutHelper.checkpoint();
+            }, System.currentTimeMillis() + 100, () -> false, released::countDown);
+            fail("Task should have timed out.");
+        }
+        catch (TimeoutException e)
+        {
+            assertThat(released.getCount(), equalTo(0L));
+        }
+    }
+
+    @Test
+    public void callWithin_busyTaskExceedsDeadline_shouldAbandonItAndReleaseResourceRightAway() throws Exception
+    {
+        CountDownLatch released = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        int abandonedTasks = TimeoutHelper.getAbandonedTasks();
+        long start = System.currentTimeMillis();
+
+        try
+        {
+            TimeoutHelper.callWithin(() ->
+            {
+                // ignores interruptions and never reaches a checkpoint, just like most classifiers do, yet finishes eventually
+                long count = 0;
+                while (System.currentTimeMillis() < start + 2_000)
+                    count++;
+                finished.countDown();
+                return count;
+            }, start + 100, () -> false, released::countDown);
+            fail("Task should have timed out.");
+        }
+        catch (TimeoutException e)
+        {
+            assertThat(System.currentTimeMillis() - start, lessThan(2_000L));
+            assertThat(released.getCount(), equalTo(0L));
+            assertThat(TimeoutHelper.getAbandonedTasks(), equalTo(abandonedTasks + 1));
+        }
+
+        // the abandoned task stops being counted once it finishes on its own
+        assertThat(finished.await(10, TimeUnit.SECONDS), equalTo(Boolean.TRUE));
+        for (int attempt = 0; attempt < 100 && TimeoutHelper.getAbandonedTasks() > abandonedTasks; attempt++)
+            Thread.sleep(50);
+        assertThat(TimeoutHelper.getAbandonedTasks(), equalTo(abandonedTasks));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void callWithin_cancelledTask_shouldThrowException() throws Exception
+    {
+        TimeoutHelper.callWithin(() ->
+        {
+            Thread.sleep(60_000);
+            return null;
+        }, System.currentTimeMillis() + 60_000, () -> true);
+    }
+
+    @Test(expected = CancellationException.class)
+    public void callWithin_cancelledTaskWithoutDeadline_shouldStopAtCheckpoint() throws Exception
+    {
+        TimeoutHelper.callWithin(() ->
+        {
+            TimeoutHelper.checkpoint();
+            return null;
+        }, TimeoutHelper.NO_DEADLINE, () -> true);
+    }
+
+    @Test
+    public void callWithin_busyTaskCancelledWithoutDeadline_shouldStopWaitingForIt() throws Exception
+    {
+        CountDownLatch training = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        int abandonedTasks = TimeoutHelper.getAbandonedTasks();
+        long start = System.currentTimeMillis();
+
+        Thread canceller = new Thread(() ->
+        {
+            try
+            {
+                training.await();
+                cancelled.set(true);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        canceller.start();
+
+        try
+        {
+            TimeoutHelper.callWithin(() ->
+            {
+                // a long training phase that never reaches a checkpoint, cancelled while it is running
+                training.countDown();
+                long count = 0;
+                while (System.currentTimeMillis() < start + 3_000)
+                    count++;
+                finished.countDown();
+                return count;
+            }, TimeoutHelper.NO_DEADLINE, cancelled::get);
+            fail("Task should have been cancelled.");
+        }
+        catch (CancellationException e)
+        {
+            assertThat(System.currentTimeMillis() - start, lessThan(3_000L));
+        }
+        finally
+        {
+            canceller.join();
+            finished.await(10, TimeUnit.SECONDS);
+            for (int attempt = 0; attempt < 100 && TimeoutHelper.getAbandonedTasks() > abandonedTasks; attempt++)
+                Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void callWithin_neitherDeadlineNorCancellation_shouldExecuteOnCurrentThread() throws Exception
+    {
+        assertThat(TimeoutHelper.callWithin(Thread::currentThread, TimeoutHelper.NO_DEADLINE, null), sameInstance(Thread.currentThread()));
+        assertThat(TimeoutHelper.callWithin(Thread::currentThread, TimeoutHelper.NO_DEADLINE, () -> false), not(sameInstance(Thread.currentThread())));
+    }
+
+    @Test(expected = IOException.class)
+    public void callWithin_failingTask_shouldRethrowItsException() throws Exception
+    {
+        TimeoutHelper.callWithin(() ->
+        {
+            throw new IOException();
+        }, TimeoutHelper.NO_DEADLINE, () -> false);
+    }
+
+    @Test
+    public void getDeadline_shouldHonourBudgetAndOuterDeadline()
+    {
+        long now = System.currentTimeMillis();
+
+        assertThat(TimeoutHelper.getDeadline(0, TimeoutHelper.NO_DEADLINE), equalTo(TimeoutHelper.NO_DEADLINE));
+        assertThat(TimeoutHelper.getDeadline(0, now), equalTo(now));
+        assertThat(TimeoutHelper.getDeadline(1_000, now), equalTo(now));
+        assertThat(TimeoutHelper.getDeadline(1_000, TimeoutHelper.NO_DEADLINE), greaterThan(now));
+        assertThat(TimeoutHelper.getDeadline(1_000, TimeoutHelper.NO_DEADLINE), lessThanOrEqualTo(System.currentTimeMillis() + 1_000));
+    }
+}